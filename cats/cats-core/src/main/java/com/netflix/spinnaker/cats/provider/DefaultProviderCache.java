@@ -103,6 +103,30 @@ public class DefaultProviderCache implements ProviderCache {
     return getAll(type, Arrays.asList(identifiers));
   }
 
+  @Override
+  public boolean supportsGetAllByApplication() {
+    return backingStore.supportsGetAllByApplication();
+  }
+
+  @Override
+  public Map<String, Collection<CacheData>> getAllByApplication(String type, String application) {
+    return getAllByApplication(type, application, null);
+  }
+
+  @Override
+  public Map<String, Collection<CacheData>> getAllByApplication(
+      String type, String application, CacheFilter cacheFilter) {
+    validateTypes(type);
+    return buildResponse(backingStore.getAllByApplication(type, application, cacheFilter));
+  }
+
+  @Override
+  public Map<String, Collection<CacheData>> getAllByApplication(
+      Collection<String> types, String application, Map<String, CacheFilter> cacheFilters) {
+    validateTypes(types);
+    return buildResponse(backingStore.getAllByApplication(types, application, cacheFilters));
+  }
+
   @Override
   public Collection<String> existingIdentifiers(String type, Collection<String> identifiers) {
     Set<String> existing = new HashSet<>(backingStore.existingIdentifiers(type, identifiers));
@@ -210,6 +234,13 @@ public class DefaultProviderCache implements ProviderCache {
     return Collections.unmodifiableCollection(response);
   }
 
+  private Map<String, Collection<CacheData>> buildResponse(
+      Map<String, Collection<CacheData>> source) {
+    Map<String, Collection<CacheData>> response = new HashMap<>(source.size());
+    source.forEach((type, items) -> response.put(type, buildResponse(items)));
+    return response;
+  }
+
   private Collection<String> getExistingSourceIdentifiers(String type, String sourceAgentType) {
     CacheData all =
         backingStore.get(type, ALL_ID, RelationshipCacheFilter.include(sourceAgentType));
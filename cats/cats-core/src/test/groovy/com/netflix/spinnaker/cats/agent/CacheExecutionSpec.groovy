@@ -16,6 +16,9 @@
 
 package com.netflix.spinnaker.cats.agent
 
+import com.netflix.spinnaker.cats.cache.AgentExecutionProfile
+import com.netflix.spinnaker.cats.cache.CacheData
+import com.netflix.spinnaker.cats.cache.CacheIntrospectionStore
 import com.netflix.spinnaker.cats.cache.DefaultCacheData
 import com.netflix.spinnaker.cats.provider.ProviderCache
 import com.netflix.spinnaker.cats.provider.ProviderRegistry
@@ -81,4 +84,112 @@ class CacheExecutionSpec extends Specification {
 
     result.evictions.isEmpty()
   }
+
+  void "should evict keys written by the previous run instead of scanning the cache key pattern"() {
+    given:
+    def cacheExecution = new CachingAgent.CacheExecution(providerRegistry)
+    def result = new DefaultCacheResult([
+      "securityGroups": [new DefaultCacheData("securityGroups:foo:test:us-west-1", [:], [:])]
+    ], [:])
+    def previous = new DefaultCacheData("agentType", [
+      runsSinceFullScan: 1,
+      securityGroups   : WrittenKeys.encode(["securityGroups:foo:test:us-west-1", "securityGroups:bar:test:us-west-1"])
+    ], [:])
+    CacheData recorded = null
+
+    when:
+    cacheExecution.storeAgentResult(cachingAgent, result)
+
+    then:
+    _ * cachingAgent.getAgentType() >> "agentType"
+    1 * cachingAgent.getProvidedDataTypes() >> [AUTHORITATIVE.forType("securityGroups")]
+    1 * cachingAgent.getCacheKeyPatterns() >> ["securityGroups": "securityGroups:*:test:us-west-1"]
+    1 * providerRegistry.getProviderCache(_) >> providerCache
+    1 * providerCache.get(WrittenKeys.TYPE, "agentType", _) >> previous
+    0 * providerCache.filterIdentifiers(*_)
+    1 * providerCache.putCacheData(WrittenKeys.TYPE, _) >> { type, data -> recorded = data }
+
+    result.evictions["securityGroups"] == ["securityGroups:bar:test:us-west-1"]
+    recorded.id == "agentType"
+    recorded.attributes.runsSinceFullScan == 2
+    WrittenKeys.decode(recorded.attributes.securityGroups) == ["securityGroups:foo:test:us-west-1"] as Set
+  }
+
+  void "should periodically scan the cache key pattern for keys written by others"() {
+    given:
+    def cacheExecution = new CachingAgent.CacheExecution(providerRegistry)
+    def result = new DefaultCacheResult([
+      "securityGroups": [new DefaultCacheData("securityGroups:foo:test:us-west-1", [:], [:])]
+    ], [:])
+    def previous = new DefaultCacheData("agentType", [
+      runsSinceFullScan: 9,
+      securityGroups   : WrittenKeys.encode(["securityGroups:foo:test:us-west-1"])
+    ], [:])
+
+    when:
+    cacheExecution.storeAgentResult(cachingAgent, result)
+
+    then:
+    _ * cachingAgent.getAgentType() >> "agentType"
+    1 * cachingAgent.getProvidedDataTypes() >> [AUTHORITATIVE.forType("securityGroups")]
+    1 * cachingAgent.getCacheKeyPatterns() >> ["securityGroups": "securityGroups:*:test:us-west-1"]
+    1 * providerRegistry.getProviderCache(_) >> providerCache
+    1 * providerCache.get(WrittenKeys.TYPE, "agentType", _) >> previous
+    1 * providerCache.filterIdentifiers("securityGroups", "securityGroups:*:test:us-west-1") >> [
+      "securityGroups:foo:test:us-west-1",
+      "securityGroups:onDemand:test:us-west-1"
+    ]
+    1 * providerCache.putCacheData(WrittenKeys.TYPE, { it.attributes.runsSinceFullScan == 0 })
+
+    result.evictions["securityGroups"] == ["securityGroups:onDemand:test:us-west-1"]
+  }
+
+  void "should front code written keys"() {
+    expect:
+    WrittenKeys.decode(WrittenKeys.encode(ids)) == ids as Set
+
+    where:
+    ids << [
+      [],
+      ["aws:instances:test:us-west-1:i-1"],
+      ["aws:instances:test:us-west-1:i-10", "aws:instances:test:us-west-1:i-1", "aws:instances:test:us-east-1:i-2", "a", ""]
+    ]
+  }
+
+  void "should profile the phases and results of an execution"() {
+    given:
+    def cacheExecution = new CachingAgent.CacheExecution(providerRegistry)
+    def result = new DefaultCacheResult([
+      "securityGroups": (1..100).collect { new DefaultCacheData("securityGroups:sg-${it}:test:us-west-1".toString(), [name: "sg-${it}".toString()], [:]) }
+    ], [:])
+
+    when:
+    cacheExecution.executeAgent(cachingAgent)
+    def profile = CacheIntrospectionStore.store.getAgentIntrospection("profiledAgent").profile
+
+    then:
+    _ * cachingAgent.getAgentType() >> "profiledAgent"
+    _ * cachingAgent.getProvidedDataTypes() >> [AUTHORITATIVE.forType("securityGroups")]
+    _ * providerRegistry.getProviderCache(_) >> providerCache
+    1 * cachingAgent.loadData(providerCache) >> {
+      AgentExecutionProfile.time(AgentExecutionProfile.Phase.CONVERT, { Thread.sleep(5) } as Runnable)
+      result
+    }
+    _ * cachingAgent.getCacheKeyPatterns() >> Optional.empty()
+    1 * providerCache.putCacheResult("profiledAgent", ["securityGroups"] as Set, result)
+
+    profile.phaseNanos().keySet() == [
+      AgentExecutionProfile.Phase.LOAD,
+      AgentExecutionProfile.Phase.CONVERT,
+      AgentExecutionProfile.Phase.STORE,
+      AgentExecutionProfile.Phase.EVICT
+    ] as Set
+    profile.phaseDurationsMs.load >= profile.phaseDurationsMs.convert
+    profile.phaseDurationsMs.convert >= 5
+    profile.items == [securityGroups: 100]
+    profile.estimatedBytes.securityGroups > 100 * "securityGroups:sg-1:test:us-west-1".length()
+    profile.markPublished()
+    !profile.markPublished()
+    AgentExecutionProfile.current() == null
+  }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent
+
+import com.netflix.spinnaker.cats.cache.CacheData
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.provider.ProviderCache
+import com.netflix.spinnaker.cats.provider.ProviderRegistry
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryType
+
+import static com.netflix.spinnaker.cats.agent.AgentDataType.Authority.AUTHORITATIVE
+import static com.netflix.spinnaker.cats.agent.AgentDataType.Authority.INFORMATIVE
+
+class StreamingCacheExecutionSpec extends Specification {
+  private static final Logger log = LoggerFactory.getLogger(StreamingCacheExecutionSpec)
+
+  def providerRegistry = Mock(ProviderRegistry)
+  def providerCache = Mock(ProviderCache)
+  def streams = []
+
+  def setup() {
+    providerCache.openResultStream(_, _) >> { String source, Collection<String> types ->
+      def stream = new ClosureResultStream(onAdd: { providerCache.addCacheResult(source, types as Set, it) })
+      streams << stream
+      return stream
+    }
+  }
+
+  void "should store chunks as they are emitted and evict stale keys once the stream completes"() {
+    given:
+    def agent = new TestStreamingAgent(
+      patterns: ["securityGroups": "securityGroups:*:test:us-west-1"],
+      chunks: [
+        ["securityGroups", ["securityGroups:foo:test:us-west-1"]],
+        ["securityGroups", ["securityGroups:bar:test:us-west-1"]],
+        ["instances", ["instances:i-1"]]
+      ]
+    )
+    def stored = []
+
+    when:
+    agent.getAgentExecution(providerRegistry).executeAgent(agent)
+
+    then:
+    1 * providerRegistry.getProviderCache("test") >> providerCache
+    3 * providerCache.addCacheResult("streamingAgent", ["securityGroups"] as Set, _) >> { source, types, result ->
+      stored << result.cacheResults.collectEntries { type, data -> [(type): data*.id] }
+    }
+    1 * providerCache.filterIdentifiers("securityGroups", "securityGroups:*:test:us-west-1") >> [
+      "securityGroups:foo:test:us-west-1",
+      "securityGroups:bar:test:us-west-1",
+      "securityGroups:baz:test:us-west-1"
+    ]
+    1 * providerCache.evictDeletedItems("securityGroups", ["securityGroups:baz:test:us-west-1"] as Set)
+    0 * providerCache.putCacheResult(*_)
+
+    streams*.closed == [true]
+    stored == [
+      ["securityGroups": ["securityGroups:foo:test:us-west-1"]],
+      ["securityGroups": ["securityGroups:bar:test:us-west-1"]],
+      ["instances": ["instances:i-1"]]
+    ]
+  }
+
+  void "should not evict anything when the stream fails"() {
+    given:
+    def agent = new TestStreamingAgent(
+      patterns: ["securityGroups": "securityGroups:*:test:us-west-1"],
+      chunks: [["securityGroups", ["securityGroups:foo:test:us-west-1"]]],
+      failure: new IllegalStateException("throttled")
+    )
+
+    when:
+    agent.getAgentExecution(providerRegistry).executeAgent(agent)
+
+    then:
+    thrown(IllegalStateException)
+    1 * providerRegistry.getProviderCache("test") >> providerCache
+    1 * providerCache.addCacheResult("streamingAgent", _, _)
+    0 * providerCache.filterIdentifiers(*_)
+    0 * providerCache.evictDeletedItems(*_)
+    streams*.closed == [true]
+  }
+
+  void "should buffer results when an authoritative type has no cache key pattern"() {
+    given:
+    def agent = new TestStreamingAgent(
+      patterns: [:],
+      chunks: [
+        ["securityGroups", ["securityGroups:foo:test:us-west-1"]],
+        ["securityGroups", ["securityGroups:bar:test:us-west-1"]]
+      ]
+    )
+
+    when:
+    agent.getAgentExecution(providerRegistry).executeAgent(agent)
+
+    then:
+    2 * providerRegistry.getProviderCache("test") >> providerCache
+    1 * providerCache.putCacheResult("streamingAgent", ["securityGroups"] as Set, _) >> { source, types, result ->
+      assert result.cacheResults.securityGroups*.id == [
+        "securityGroups:foo:test:us-west-1",
+        "securityGroups:bar:test:us-west-1"
+      ]
+    }
+    0 * providerCache.addCacheResult(*_)
+    streams.empty
+  }
+
+  /**
+   * Compares wall time and peak heap of a buffered and a streamed execution of a synthetic 500k
+   * item agent, against a store that takes a while per chunk, and logs them. Timings and heap usage
+   * depend on the machine, so only what each execution handed to the store is asserted on:
+   * streaming should never need to hold the whole result.
+   *
+   * Run with -Dcats.streaming.benchmark=true.
+   */
+  @Requires({ Boolean.getBoolean("cats.streaming.benchmark") })
+  void "benchmark buffered and streamed executions"() {
+    given:
+    def bufferedItems = []
+    def streamedChunkSizes = []
+    def store = Stub(ProviderCache) {
+      putCacheResult(*_) >> { source, types, CacheResult result ->
+        bufferedItems << result.cacheResults.instances.size()
+        Thread.sleep(500)
+      }
+      openResultStream(*_) >> new ClosureResultStream(onAdd: { CacheResult chunk ->
+        streamedChunkSizes << chunk.cacheResults.instances.size()
+        Thread.sleep(1)
+      })
+      filterIdentifiers(*_) >> []
+    }
+    providerRegistry.getProviderCache(_) >> store
+
+    def buffered = new SyntheticAgent(items: 500_000, chunkSize: 1_000, patterns: [:])
+    def streamed = new SyntheticAgent(items: 500_000, chunkSize: 1_000, patterns: ["instances": "*"])
+
+    when:
+    def bufferedRun = measure { buffered.getAgentExecution(providerRegistry).executeAgent(buffered) }
+    def streamedRun = measure { streamed.getAgentExecution(providerRegistry).executeAgent(streamed) }
+    log.info("buffered: {}, streamed: {}", bufferedRun, streamedRun)
+
+    then:
+    bufferedItems == [500_000]
+    streamedChunkSizes.size() == 500
+    streamedChunkSizes.every { it == 1_000 }
+  }
+
+  private static Map measure(Closure execution) {
+    def pools = ManagementFactory.memoryPoolMXBeans.findAll { it.type == MemoryType.HEAP }
+    System.gc()
+    pools*.resetPeakUsage()
+    long start = System.nanoTime()
+    execution()
+    return [
+      wallMs: (System.nanoTime() - start).intdiv(1_000_000),
+      peakHeapMb: pools.sum { it.peakUsage.used }.intdiv(1024 * 1024)
+    ]
+  }
+
+  private static class ClosureResultStream implements ProviderCache.ResultStream {
+    Closure onAdd
+    boolean closed
+
+    @Override
+    void add(CacheResult chunk) {
+      onAdd(chunk)
+    }
+
+    @Override
+    void close() {
+      closed = true
+    }
+  }
+
+  private static class TestStreamingAgent implements StreamingCachingAgent {
+    Map<String, String> patterns
+    List<List> chunks
+    RuntimeException failure
+
+    String agentType = "streamingAgent"
+    String providerName = "test"
+
+    Collection<AgentDataType> providedDataTypes = [
+      AUTHORITATIVE.forType("securityGroups"),
+      INFORMATIVE.forType("instances")
+    ]
+
+    @Override
+    Optional<Map<String, String>> getCacheKeyPatterns() {
+      return Optional.of(patterns)
+    }
+
+    @Override
+    void streamData(ProviderCache providerCache, StreamingCachingAgent.Emitter emitter) {
+      chunks.each { type, ids ->
+        emitter.emit(type, ids.collect { new DefaultCacheData(it, [:], [:]) as CacheData })
+      }
+      if (failure) {
+        throw failure
+      }
+    }
+  }
+
+  private static class SyntheticAgent implements StreamingCachingAgent {
+    int items
+    int chunkSize
+    Map<String, String> patterns
+
+    String agentType = "syntheticAgent"
+    String providerName = "test"
+    Collection<AgentDataType> providedDataTypes = [AUTHORITATIVE.forType("instances")]
+
+    @Override
+    Optional<Map<String, String>> getCacheKeyPatterns() {
+      return Optional.of(patterns)
+    }
+
+    @Override
+    void streamData(ProviderCache providerCache, StreamingCachingAgent.Emitter emitter) {
+      for (int offset = 0; offset < items; offset += chunkSize) {
+        // stands in for a page of a cloud provider API call
+        Thread.sleep(1)
+        emitter.emit("instances", (offset..<Math.min(offset + chunkSize, items)).collect {
+          new DefaultCacheData("instances:i-${it}".toString(), [index: it, padding: "x" * 256], [:]) as CacheData
+        })
+      }
+    }
+  }
+}
@@ -18,11 +18,17 @@ package com.netflix.spinnaker.cats.redis.cache;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.CacheFilter;
+import com.netflix.spinnaker.cats.cache.UnsupportedCacheMethodException;
 import com.netflix.spinnaker.cats.cache.WriteableCache;
 import com.netflix.spinnaker.kork.jedis.RedisClientDelegate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +53,14 @@ public abstract class AbstractRedisCache implements WriteableCache {
   protected final ObjectMapper objectMapper;
   protected final RedisCacheOptions options;
 
+  /**
+   * Types whose application index this instance has started to backfill from their stored items,
+   * mapped to whether the backfill has completed.
+   */
+  private final Map<String, Boolean> applicationIndexedTypes = new ConcurrentHashMap<>();
+
+  private final ThreadPoolExecutor applicationIndexBackfills;
+
   protected AbstractRedisCache(
       String prefix,
       RedisClientDelegate redisClientDelegate,
@@ -56,6 +70,18 @@ public abstract class AbstractRedisCache implements WriteableCache {
     this.redisClientDelegate = redisClientDelegate;
     this.objectMapper = objectMapper;
     this.options = options;
+    this.applicationIndexBackfills =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat(prefix + "-application-index-backfill-%d")
+                .setDaemon(true)
+                .build());
+    this.applicationIndexBackfills.allowCoreThreadTimeOut(true);
   }
 
   protected abstract void mergeItems(String type, Collection<CacheData> items);
@@ -66,6 +92,12 @@ public abstract class AbstractRedisCache implements WriteableCache {
   protected abstract Collection<CacheData> getItems(
       String type, List<String> ids, List<String> knownRels);
 
+  /**
+   * Indexes every stored item of a type by its application, including items that were stored
+   * before the application index was enabled.
+   */
+  protected abstract void backfillApplicationIndex(String type);
+
   @Override
   public void merge(String type, CacheData item) {
     mergeAll(type, Arrays.asList(item));
@@ -73,6 +105,9 @@ public abstract class AbstractRedisCache implements WriteableCache {
 
   @Override
   public void mergeAll(String type, Collection<CacheData> items) {
+    if (options.isApplicationIndexEnabled()) {
+      backfillApplicationIndexInBackground(type);
+    }
     for (List<CacheData> partition : Iterables.partition(items, options.getMaxMergeBatchSize())) {
       mergeItems(type, partition);
     }
@@ -172,6 +207,79 @@ public abstract class AbstractRedisCache implements WriteableCache {
     return result;
   }
 
+  @Override
+  public boolean supportsGetAllByApplication() {
+    return options.isApplicationIndexEnabled();
+  }
+
+  @Override
+  public Map<String, Collection<CacheData>> getAllByApplication(String type, String application) {
+    return getAllByApplication(type, application, null);
+  }
+
+  @Override
+  public Map<String, Collection<CacheData>> getAllByApplication(
+      String type, String application, CacheFilter cacheFilter) {
+    return getAllByApplication(
+        Collections.singletonList(type),
+        application,
+        Collections.singletonMap(type, cacheFilter));
+  }
+
+  /**
+   * Reads the ids of the application's items of every type from the application index in a single
+   * pipeline, then reads the items of each type. The index of each type is backfilled in the
+   * background from its stored items once it is first written or read, so items stored before the
+   * index was enabled and not cached again since may be missing from the result until then.
+   */
+  @Override
+  public Map<String, Collection<CacheData>> getAllByApplication(
+      Collection<String> types, String application, Map<String, CacheFilter> cacheFilters) {
+    if (!supportsGetAllByApplication()) {
+      throw new UnsupportedCacheMethodException(
+          "Method requires caching.redis.applicationIndexEnabled");
+    }
+
+    types.forEach(this::backfillApplicationIndexInBackground);
+
+    final Map<String, Response<Set<String>>> members = new LinkedHashMap<>();
+    redisClientDelegate.withMultiKeyPipeline(
+        pipeline -> {
+          for (String type : types) {
+            members.put(type, pipeline.smembers(applicationId(type, application)));
+          }
+          pipeline.sync();
+        });
+
+    final Map<String, Collection<CacheData>> result = new HashMap<>();
+    members.forEach(
+        (type, ids) -> result.put(type, getAll(type, ids.get(), cacheFilters.get(type))));
+    return result;
+  }
+
+  private void backfillApplicationIndexInBackground(String type) {
+    if (applicationIndexedTypes.putIfAbsent(type, false) != null) {
+      return;
+    }
+
+    applicationIndexBackfills.execute(
+        () -> {
+          long start = System.currentTimeMillis();
+          try {
+            backfillApplicationIndex(type);
+            applicationIndexedTypes.put(type, true);
+            log.info(
+                "Backfilled the {} application index in {}ms",
+                type,
+                System.currentTimeMillis() - start);
+          } catch (Exception e) {
+            // retried on the next write or read of the type
+            applicationIndexedTypes.remove(type);
+            log.warn("Failed to backfill the {} application index", type, e);
+          }
+        });
+  }
+
   @Override
   public Collection<String> getIdentifiers(String type) {
     return scanMembers(allOfTypeId(type));
@@ -234,6 +342,16 @@ public abstract class AbstractRedisCache implements WriteableCache {
     return String.join(":", prefix, type, "members");
   }
 
+  /** The set of ids of the items of a type whose application attribute is the application. */
+  protected String applicationId(String type, String application) {
+    return String.join(":", prefix, type, "application", application);
+  }
+
+  /** The hash of the application each indexed id of a type is in the application index under. */
+  protected String applicationsId(String type) {
+    return String.join(":", prefix, type, "applications");
+  }
+
   protected TypeReference<? extends Collection<String>> getRelationshipsTypeReference() {
     return options.isTreatRelationshipsAsSet() ? RELATIONSHIPS_SET : RELATIONSHIPS_LIST;
   }
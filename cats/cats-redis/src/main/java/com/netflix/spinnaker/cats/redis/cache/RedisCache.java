@@ -22,6 +22,7 @@ import com.google.common.collect.Lists;
 import com.google.common.hash.Hashing;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter;
 import com.netflix.spinnaker.kork.jedis.RedisClientDelegate;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -36,6 +37,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -102,6 +104,10 @@ public class RedisCache extends AbstractRedisCache {
     if (items.isEmpty()) {
       return;
     }
+    if (options.isApplicationIndexEnabled()) {
+      updateApplicationIndex(type, applications(items), false);
+    }
+
     final Set<String> relationshipNames = new HashSet<>();
     final List<String> keysToSet = new LinkedList<>();
     final Set<String> idSet = new HashSet<>();
@@ -203,6 +209,14 @@ public class RedisCache extends AbstractRedisCache {
   @Override
   protected void evictItems(
       String type, List<String> identifiers, Collection<String> allRelationships) {
+    if (options.isApplicationIndexEnabled()) {
+      Map<String, String> applications = new HashMap<>();
+      for (String id : identifiers) {
+        applications.put(id, null);
+      }
+      updateApplicationIndex(type, applications, false);
+    }
+
     List<String> delKeys = new ArrayList<>((allRelationships.size() + 1) * identifiers.size());
     for (String id : identifiers) {
       for (String relationship : allRelationships) {
@@ -318,6 +332,98 @@ public class RedisCache extends AbstractRedisCache {
     }
   }
 
+  @Override
+  protected void backfillApplicationIndex(String type) {
+    for (List<String> ids :
+        Iterables.partition(getIdentifiers(type), options.getMaxGetBatchSize())) {
+      updateApplicationIndex(
+          type, applications(getAll(type, ids, RelationshipCacheFilter.none())), true);
+    }
+  }
+
+  /**
+   * The application of each item that has one. Items without an application attribute are left
+   * out, as relationship-only merges don't replace the stored attributes and so shouldn't move the
+   * item out of its application.
+   */
+  private static Map<String, String> applications(Collection<CacheData> items) {
+    Map<String, String> applications = new HashMap<>();
+    for (CacheData item : items) {
+      Object application = item.getAttributes().get("application");
+      if (application instanceof String) {
+        applications.put(item.getId(), (String) application);
+      }
+    }
+    return applications;
+  }
+
+  /**
+   * Moves ids to the application they are now in, or out of the application index if they are in
+   * none. Ids are only written to when their application changed, which includes items that were
+   * stored before the index was enabled and are cached again.
+   *
+   * @param applications the application of each id, or null if it isn't in one
+   * @param unindexedOnly whether to leave ids that are already indexed alone, so that a backfill
+   *     doesn't undo a concurrent merge
+   */
+  private void updateApplicationIndex(
+      String type, Map<String, String> applications, boolean unindexedOnly) {
+    if (applications.isEmpty()) {
+      return;
+    }
+
+    final List<String> ids = new ArrayList<>(applications.keySet());
+    final List<String> previousApplications = getHashValues(ids, applicationsId(type));
+    if (previousApplications.size() != ids.size()) {
+      throw new RuntimeException("Expected same size result as request");
+    }
+
+    final Map<String, Set<String>> added = new HashMap<>();
+    final Map<String, Set<String>> removed = new HashMap<>();
+    final Map<String, String> moved = new HashMap<>();
+    final List<String> unindexed = new ArrayList<>();
+    for (int i = 0; i < ids.size(); i++) {
+      final String id = ids.get(i);
+      final String previous = previousApplications.get(i);
+      final String application = applications.get(id);
+      if (Objects.equals(previous, application) || (unindexedOnly && previous != null)) {
+        continue;
+      }
+      if (previous != null) {
+        removed.computeIfAbsent(previous, a -> new HashSet<>()).add(id);
+      }
+      if (application != null) {
+        added.computeIfAbsent(application, a -> new HashSet<>()).add(id);
+        moved.put(id, application);
+      } else {
+        unindexed.add(id);
+      }
+    }
+
+    if (moved.isEmpty() && unindexed.isEmpty()) {
+      return;
+    }
+
+    redisClientDelegate.withMultiKeyPipeline(
+        pipeline -> {
+          removed.forEach(
+              (application, applicationIds) ->
+                  pipeline.srem(
+                      applicationId(type, application), applicationIds.toArray(new String[0])));
+          added.forEach(
+              (application, applicationIds) ->
+                  pipeline.sadd(
+                      applicationId(type, application), applicationIds.toArray(new String[0])));
+          if (!moved.isEmpty()) {
+            pipeline.hmset(applicationsId(type), moved);
+          }
+          if (!unindexed.isEmpty()) {
+            pipeline.hdel(applicationsId(type), unindexed.toArray(new String[0]));
+          }
+          pipeline.sync();
+        });
+  }
+
   private static class MergeOp {
     public final Set<String> relNames;
     public final List<String> keysToSet;
@@ -36,6 +36,7 @@ public class RedisCacheOptions {
   private final int maxGetBatchSize;
   private final boolean hashingEnabled;
   private final boolean treatRelationshipsAsSet;
+  private final boolean applicationIndexEnabled;
 
   private static int posInt(String name, int value) {
     Preconditions.checkArgument(value > 0, "%s must be a positive integer (%s)", name, value);
@@ -62,6 +63,38 @@ public class RedisCacheOptions {
       int maxGetBatchSize,
       boolean hashingEnabled,
       boolean treatRelationshipsAsSet) {
+    this(
+        maxMsetSize,
+        maxMgetSize,
+        maxHmgetSize,
+        maxHmsetSize,
+        maxSaddSize,
+        maxDelSize,
+        maxPipelineSize,
+        scanSize,
+        maxMergeBatchSize,
+        maxEvictBatchSize,
+        maxGetBatchSize,
+        hashingEnabled,
+        treatRelationshipsAsSet,
+        false);
+  }
+
+  public RedisCacheOptions(
+      int maxMsetSize,
+      int maxMgetSize,
+      int maxHmgetSize,
+      int maxHmsetSize,
+      int maxSaddSize,
+      int maxDelSize,
+      int maxPipelineSize,
+      int scanSize,
+      int maxMergeBatchSize,
+      int maxEvictBatchSize,
+      int maxGetBatchSize,
+      boolean hashingEnabled,
+      boolean treatRelationshipsAsSet,
+      boolean applicationIndexEnabled) {
     this.maxMsetSize = posEven("maxMsetSize", maxMsetSize);
     this.maxMgetSize = posInt("maxMgetSize", maxMgetSize);
     this.maxHmgetSize = posInt("maxHmgetSize", maxHmgetSize);
@@ -75,6 +108,7 @@ public class RedisCacheOptions {
     this.maxGetBatchSize = posInt("maxGetBatchSize", maxGetBatchSize);
     this.hashingEnabled = hashingEnabled;
     this.treatRelationshipsAsSet = treatRelationshipsAsSet;
+    this.applicationIndexEnabled = applicationIndexEnabled;
   }
 
   public int getMaxMsetSize() {
@@ -129,6 +163,16 @@ public class RedisCacheOptions {
     return treatRelationshipsAsSet;
   }
 
+  /**
+   * Whether the ids of the items of each type are indexed by the application attribute of the
+   * items, to support {@link RedisCache#getAllByApplication}. Each instance backfills the index of
+   * a type in the background once it first writes or reads the type, and keeps it up to date as it
+   * writes, so every instance writing to the cache has to enable it.
+   */
+  public boolean isApplicationIndexEnabled() {
+    return applicationIndexEnabled;
+  }
+
   public static class Builder {
     public static final int DEFAULT_MULTI_OP_SIZE = 200;
     public static final int DEFAULT_BATCH_SIZE = 200;
@@ -136,6 +180,7 @@ public class RedisCacheOptions {
     public static final int DEFAULT_MAX_PIPELINE_SIZE = 200;
     public static final boolean DEFAULT_HASHING_ENABLED = true;
     public static final boolean DEFAULT_TREAT_RELATIONSHIPS_AS_SET_DISABLED = false;
+    public static final boolean DEFAULT_APPLICATION_INDEX_ENABLED = false;
 
     int maxMsetSize;
     int maxMgetSize;
@@ -150,6 +195,7 @@ public class RedisCacheOptions {
     int maxGetBatchSize;
     boolean hashingEnabled;
     boolean treatRelationshipsAsSet;
+    boolean applicationIndexEnabled;
 
     public Builder() {
       batchSize(DEFAULT_BATCH_SIZE);
@@ -158,6 +204,7 @@ public class RedisCacheOptions {
       maxPipeline(DEFAULT_MAX_PIPELINE_SIZE);
       hashing(DEFAULT_HASHING_ENABLED);
       treatRelationshipsAsSet(DEFAULT_TREAT_RELATIONSHIPS_AS_SET_DISABLED);
+      applicationIndex(DEFAULT_APPLICATION_INDEX_ENABLED);
     }
 
     public Builder maxMergeBatch(int maxMergeBatch) {
@@ -241,6 +288,11 @@ public class RedisCacheOptions {
       return this;
     }
 
+    public Builder applicationIndex(boolean applicationIndexEnabled) {
+      this.applicationIndexEnabled = applicationIndexEnabled;
+      return this;
+    }
+
     public RedisCacheOptions build() {
       return new RedisCacheOptions(
           maxMsetSize,
@@ -255,7 +307,8 @@ public class RedisCacheOptions {
           maxEvictBatchSize,
           maxGetBatchSize,
           hashingEnabled,
-          treatRelationshipsAsSet);
+          treatRelationshipsAsSet,
+          applicationIndexEnabled);
     }
 
     public void setBatchSize(int batchSize) {
@@ -369,5 +422,13 @@ public class RedisCacheOptions {
     public void setTreatRelationshipsAsSet(boolean treatRelationshipsAsSet) {
       this.treatRelationshipsAsSet = treatRelationshipsAsSet;
     }
+
+    public boolean isApplicationIndexEnabled() {
+      return applicationIndexEnabled;
+    }
+
+    public void setApplicationIndexEnabled(boolean applicationIndexEnabled) {
+      this.applicationIndexEnabled = applicationIndexEnabled;
+    }
   }
 }
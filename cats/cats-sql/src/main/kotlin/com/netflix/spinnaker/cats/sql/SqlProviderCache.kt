@@ -1,19 +1,32 @@
 package com.netflix.spinnaker.cats.sql
 
 import com.netflix.spinnaker.cats.agent.CacheResult
+import com.netflix.spinnaker.cats.cache.AgentExecutionProfile
 import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.cats.cache.CacheFilter
 import com.netflix.spinnaker.cats.cache.DefaultCacheData
 import com.netflix.spinnaker.cats.cache.WriteableCache
 import com.netflix.spinnaker.cats.provider.ProviderCache
+import com.netflix.spinnaker.cats.sql.cache.CatsCoroutineScope
 import com.netflix.spinnaker.cats.sql.cache.SqlCache
 import com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.*
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.slf4j.MDCContext
 import org.slf4j.LoggerFactory
 import org.slf4j.MDC
 import kotlin.contracts.ExperimentalContracts
+import kotlin.coroutines.CoroutineContext
 
+/**
+ * @param writeContext if set, the types of a cache result are stored concurrently on this context
+ */
 @ExperimentalContracts
-class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache {
+class SqlProviderCache @JvmOverloads constructor(
+  private val backingStore: WriteableCache,
+  private val writeContext: CoroutineContext? = null
+) : ProviderCache {
 
   private val log = LoggerFactory.getLogger(javaClass)
 
@@ -188,40 +201,43 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
       when {
         // OnDemand agents should only be treated as authoritative and don't use standard eviction logic
         source.contains(ON_DEMAND.ns, ignoreCase = true) ->
-          cacheResult.cacheResults
-            // And OnDemand agents shouldn't update other resource type tables
-            .filter {
-              it.key.contains(ON_DEMAND.ns, ignoreCase = true)
-            }
-            .forEach {
-              cacheDataType(it.key, source, it.value, authoritative = true, cleanup = false)
-            }
-        authoritativeTypes.isNotEmpty() ->
-          cacheResult.cacheResults
+          cacheDataTypes(
+            cacheResult.cacheResults
+              // And OnDemand agents shouldn't update other resource type tables
+              .filter {
+                it.key.contains(ON_DEMAND.ns, ignoreCase = true)
+              }
+          ) { type, items ->
+            cacheDataType(type, source, items, authoritative = true, cleanup = false)
+          }
+        authoritativeTypes.isNotEmpty() -> {
+          val types = cacheResult.cacheResults
             .filter {
               authoritativeTypes.contains(it.key) || globalTypes.contains(it.key)
             }
-            .forEach {
-              cacheDataType(it.key, source, it.value, authoritative = true, cleanup = !globalTypes.contains(it.key))
-              cachedTypes.add(it.key)
-            }
-        else -> // If there are no authoritative types in cacheResult, override all as authoritative without cleanup
-          cacheResult.cacheResults
-            .forEach {
-              cacheDataType(it.key, source, it.value, authoritative = true, cleanup = false)
-              cachedTypes.add(it.key)
-            }
+          cacheDataTypes(types) { type, items ->
+            cacheDataType(type, source, items, authoritative = true, cleanup = !globalTypes.contains(type))
+          }
+          cachedTypes.addAll(types.keys)
+        }
+        else -> { // If there are no authoritative types in cacheResult, override all as authoritative without cleanup
+          cacheDataTypes(cacheResult.cacheResults) { type, items ->
+            cacheDataType(type, source, items, authoritative = true, cleanup = false)
+          }
+          cachedTypes.addAll(cacheResult.cacheResults.keys)
+        }
       }
 
-      // Update relationships for non-authoritative types
+      // Update relationships for non-authoritative types, only once all resources have been stored
       if (!source.contains(ON_DEMAND.ns, ignoreCase = true)) {
-        cacheResult.cacheResults
-          .filter {
-            !cachedTypes.contains(it.key)
-          }
-          .forEach {
-            cacheDataType(it.key, source, it.value, authoritative = false)
-          }
+        cacheDataTypes(
+          cacheResult.cacheResults
+            .filter {
+              !cachedTypes.contains(it.key)
+            }
+        ) { type, items ->
+          cacheDataType(type, source, items, authoritative = false)
+        }
       }
 
       if (cacheResult.evictions.isNotEmpty()) {
@@ -238,6 +254,25 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
     source: String,
     authoritativeTypes: MutableCollection<String>,
     cacheResult: CacheResult
+  ) {
+    addCacheResult(source, authoritativeTypes, cacheResult, storedHashes = null)
+  }
+
+  override fun openResultStream(
+    source: String,
+    authoritativeTypes: Collection<String>
+  ): ProviderCache.ResultStream {
+    val storedHashes = SqlCache.StoredHashes()
+    return ProviderCache.ResultStream { chunk ->
+      addCacheResult(source, authoritativeTypes.toMutableSet(), chunk, storedHashes)
+    }
+  }
+
+  private fun addCacheResult(
+    source: String,
+    authoritativeTypes: MutableCollection<String>,
+    cacheResult: CacheResult,
+    storedHashes: SqlCache.StoredHashes?
   ) {
     try {
       MDC.put("agentClass", "$source putCacheResult")
@@ -247,21 +282,19 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
       val cachedTypes = mutableSetOf<String>()
 
       if (authoritativeTypes.isNotEmpty()) {
-        cacheResult.cacheResults
+        val types = cacheResult.cacheResults
           .filter {
             authoritativeTypes.contains(it.key)
           }
-          .forEach {
-            cacheDataType(it.key, source, it.value, authoritative = true, cleanup = false)
-            cachedTypes.add(it.key)
-          }
+        cacheDataTypes(types) { type, items ->
+          cacheDataType(type, source, items, authoritative = true, cleanup = false, storedHashes = storedHashes)
+        }
+        cachedTypes.addAll(types.keys)
       }
 
-      cacheResult.cacheResults
-        .filter { !cachedTypes.contains(it.key) }
-        .forEach {
-          cacheDataType(it.key, source, it.value, authoritative = false, cleanup = false)
-        }
+      cacheDataTypes(cacheResult.cacheResults.filter { !cachedTypes.contains(it.key) }) { type, items ->
+        cacheDataType(type, source, items, authoritative = false, cleanup = false)
+      }
     } finally {
       MDC.remove("agentClass")
     }
@@ -295,6 +328,35 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
     }
   }
 
+  /**
+   * Stores each type with [store], concurrently if a [writeContext] is configured.
+   *
+   * Each type is written to its own resource table, and relationship rows are keyed by the type
+   * that wrote them, so the types of a single batch never touch the same rows. Returns once every
+   * type has been stored so callers can still order resources before relationships before
+   * evictions.
+   */
+  private fun cacheDataTypes(
+    types: Map<String, Collection<CacheData>>,
+    store: (String, Collection<CacheData>) -> Unit
+  ) {
+    if (types.size > 1 && writeContext != null) {
+      val scope = CatsCoroutineScope(writeContext)
+      val profile = AgentExecutionProfile.current()
+      val deferred = types.map { (type, items) ->
+        scope.async(MDCContext()) {
+          AgentExecutionProfile.runWith(profile) { store(type, items) }
+        }
+      }
+
+      runBlocking {
+        deferred.awaitAll()
+      }
+    } else {
+      types.forEach { (type, items) -> store(type, items) }
+    }
+  }
+
   private fun cacheDataType(type: String, agent: String, items: Collection<CacheData>, authoritative: Boolean) {
     cacheDataType(type, agent, items, authoritative, cleanup = true)
   }
@@ -304,7 +366,8 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
     agent: String,
     items: Collection<CacheData>,
     authoritative: Boolean,
-    cleanup: Boolean
+    cleanup: Boolean,
+    storedHashes: SqlCache.StoredHashes? = null
   ) {
     val toStore = ArrayList<CacheData>(items.size + 1)
     items.forEach {
@@ -319,7 +382,7 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
         cleanup
       }
 
-    (backingStore as SqlCache).mergeAll(type, agent, toStore, authoritative, cleanupOverride)
+    (backingStore as SqlCache).mergeAll(type, agent, toStore, authoritative, cleanupOverride, storedHashes)
   }
 
   private fun uniqueifyRelationships(source: CacheData, sourceAgentType: String): CacheData {
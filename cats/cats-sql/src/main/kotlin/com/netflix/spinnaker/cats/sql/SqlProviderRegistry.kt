@@ -8,20 +8,22 @@ import com.netflix.spinnaker.cats.provider.ProviderCacheConfiguration
 import com.netflix.spinnaker.cats.provider.ProviderRegistry
 import java.util.concurrent.ConcurrentHashMap
 import kotlin.contracts.ExperimentalContracts
+import kotlin.coroutines.CoroutineContext
 
 @ExperimentalContracts
 class SqlProviderRegistry(
   private val providerList: Collection<Provider>,
-  private val cacheFactory: NamedCacheFactory
+  private val cacheFactory: NamedCacheFactory,
+  private val writeContext: CoroutineContext? = null
 ) : ProviderRegistry {
   private val providerCaches = ConcurrentHashMap<String, ProviderCache>()
 
   init {
     providerList.forEach {
       if (it is ProviderCacheConfiguration) {
-        providerCaches[it.providerName] = SqlProviderCache(cacheFactory.getCache(it.providerName, it))
+        providerCaches[it.providerName] = SqlProviderCache(cacheFactory.getCache(it.providerName, it), writeContext)
       } else {
-        providerCaches[it.providerName] = SqlProviderCache(cacheFactory.getCache(it.providerName))
+        providerCaches[it.providerName] = SqlProviderCache(cacheFactory.getCache(it.providerName), writeContext)
       }
     }
   }
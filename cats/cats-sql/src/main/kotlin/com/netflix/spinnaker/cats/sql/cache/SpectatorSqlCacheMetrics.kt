@@ -18,6 +18,7 @@ package com.netflix.spinnaker.cats.sql.cache
 import com.netflix.spectator.api.BasicTag
 import com.netflix.spectator.api.Registry
 import com.netflix.spectator.api.Tag
+import java.util.concurrent.TimeUnit
 
 class SpectatorSqlCacheMetrics(
   private val registry: Registry
@@ -44,6 +45,18 @@ class SpectatorSqlCacheMetrics(
     registry.counter(id("cats.sqlCache.merge", "deleteOperations", tags)).increment(deleteOperations.toLong())
   }
 
+  override fun store(
+    prefix: String,
+    type: String,
+    authoritative: Boolean,
+    durationMs: Long,
+    async: Boolean
+  ) {
+    val id = id("cats.sqlCache.merge", "duration", tags(prefix, type, async))
+      .withTag("authoritative", authoritative.toString())
+    registry.timer(id).record(durationMs, TimeUnit.MILLISECONDS)
+  }
+
   override fun evict(
     prefix: String,
     type: String,
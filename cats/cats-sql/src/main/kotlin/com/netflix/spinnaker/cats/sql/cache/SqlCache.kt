@@ -1,6 +1,8 @@
 package com.netflix.spinnaker.cats.sql.cache
 
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.AgentExecutionProfile
+import com.netflix.spinnaker.cats.cache.AgentExecutionProfile.Phase.SERIALIZE
 import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.cats.cache.CacheFilter
 import com.netflix.spinnaker.cats.cache.DefaultJsonCacheData
@@ -24,6 +26,7 @@ import java.sql.SQLSyntaxErrorException
 import java.time.Clock
 import java.time.Duration
 import java.util.Arrays
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentSkipListSet
 import java.util.concurrent.atomic.AtomicInteger
 import javax.annotation.PreDestroy
@@ -77,6 +80,8 @@ class SqlCache(
 
   private val sqlNames = SqlNames(tableNamespace, sqlConstraints)
 
+  private val keySegmentIndex = SqlKeySegmentIndex(jooq, sqlNames, dynamicConfigService, clock)
+
   private var createdTables = ConcurrentSkipListSet<String>()
 
   init {
@@ -93,7 +98,7 @@ class SqlCache(
 
     log.info("evicting ${ids.size} $type records")
 
-    var deletedCount = 0
+    val deleted = mutableListOf<String>()
     var opCount = 0
     try {
       ids.chunked(dynamicConfigService.getConfig(Int::class.java, "sql.cache.read-batch-size", 500)) { chunk ->
@@ -102,28 +107,32 @@ class SqlCache(
             .where(field("id").`in`(*chunk.toTypedArray()))
             .execute()
         }
-        deletedCount += chunk.size
+        deleted.addAll(chunk)
         opCount += 1
       }
     } catch (e: Exception) {
       log.error("error evicting records", e)
     }
+    // keys of chunks that failed to delete are still stored, so they have to stay indexed
+    keySegmentIndex.evicted(type, deleted)
 
     cacheMetrics.evict(
       prefix = name,
       type = type,
       itemCount = ids.size,
-      itemsDeleted = deletedCount,
+      itemsDeleted = deleted.size,
       deleteOperations = opCount
     )
   }
 
+  @JvmOverloads
   fun mergeAll(
     type: String,
     agentHint: String?,
     items: MutableCollection<CacheData>?,
     authoritative: Boolean,
-    cleanup: Boolean
+    cleanup: Boolean,
+    storedHashes: StoredHashes? = null
   ) {
     if (type.isEmpty()) {
       return
@@ -157,12 +166,21 @@ class SqlCache(
       log.debug("warning: null agent for type $type")
     }
 
+    val start = clock.millis()
     val storeResult = if (authoritative) {
-      storeAuthoritative(type, agent, items ?: mutableListOf(), cleanup)
+      storeAuthoritative(type, agent, items ?: mutableListOf(), cleanup, storedHashes)
     } else {
       storeInformative(type, items ?: mutableListOf(), cleanup)
     }
 
+    cacheMetrics.store(
+      prefix = name,
+      type = type,
+      authoritative = authoritative,
+      durationMs = clock.millis() - start,
+      async = wasAsync()
+    )
+
     cacheMetrics.merge(
       prefix = name,
       type = type,
@@ -435,17 +453,18 @@ class SqlCache(
       return mutableSetOf()
     }
 
+    val segmentFilter = keySegmentIndex.filter(type, glob)
     val sql = if (glob.matches(useRegexp)) {
       val filter = glob.replace("?", ".", true).replace("*", ".*").replace(cleanRegexp, ".*")
       jooq
         .select(field("id"))
         .from(table(sqlNames.resourceTableName(type)))
-        .where(field("id").likeRegex("^$filter$"))
+        .where(field("id").likeRegex("^$filter$"), segmentFilter)
     } else {
       jooq
         .select(field("id"))
         .from(table(sqlNames.resourceTableName(type)))
-        .where(field("id").like(glob.replace('*', '%')))
+        .where(field("id").like(glob.replace('*', '%')), segmentFilter)
     }
 
     val ids = try {
@@ -510,7 +529,8 @@ class SqlCache(
     type: String,
     agentHint: String?,
     items: MutableCollection<CacheData>,
-    cleanup: Boolean
+    cleanup: Boolean,
+    storedHashes: StoredHashes?
   ): StoreResult {
     val result = StoreResult()
     result.itemCount.addAndGet(items.size)
@@ -523,17 +543,14 @@ class SqlCache(
       agentHint ?: "unknown"
     }
 
-    val existingHashIds = getHashIds(type, agent)
-    result.selectQueries.incrementAndGet()
+    val existing = storedHashes?.byType?.get(type)
+      ?: StoredHashes.Stored(getHashIds(type, agent)).also {
+        result.selectQueries.incrementAndGet()
+        storedHashes?.byType?.putIfAbsent(type, it)
+      }
 
-    val existingHashes = existingHashIds // ids previously store by the calling caching agent
-      .asSequence()
-      .map { it.body_hash }
-      .toSet()
-    val existingIds = existingHashIds
-      .asSequence()
-      .map { it.id }
-      .toSet()
+    val existingHashes = existing.hashes // ids previously store by the calling caching agent
+    val existingIds = existing.ids
     val currentIds = mutableSetOf<String>() // current ids from the caching agent
     val toStore = mutableListOf<String>() // ids that are new or changed
     val bodies = mutableMapOf<String, String>() // id to body
@@ -545,6 +562,7 @@ class SqlCache(
         log.error("Dropping ${it.id} - character length exceeds MAX_ID_LENGTH ($sqlConstraints.maxIdLength)")
       }
 
+    val serializeStart = System.nanoTime()
     items
       .filter { it.id != "_ALL_" && it.id.length <= sqlConstraints.maxIdLength }
       .forEach {
@@ -574,6 +592,7 @@ class SqlCache(
           hashes[it.id] = bodyHash
         }
       }
+    AgentExecutionProfile.current()?.record(SERIALIZE, System.nanoTime() - serializeStart)
 
     val now = clock.millis()
 
@@ -666,6 +685,8 @@ class SqlCache(
       }
     }
 
+    keySegmentIndex.added(type, toStore.filter { !existingIds.contains(it) })
+
     if (!cleanup) {
       return result
     }
@@ -1533,6 +1554,21 @@ class SqlCache(
   fun clearCreatedTables() {
     val tables = createdTables.toList()
     createdTables.removeAll(tables)
+    keySegmentIndex.clearCreatedTables()
+  }
+
+  /**
+   * The hashes an agent had stored before it started storing a result in chunks, read once per type
+   * and reused for every chunk. Chunks never repeat an id, so what the earlier chunks stored does
+   * not need to be read back.
+   */
+  class StoredHashes {
+    internal val byType = ConcurrentHashMap<String, Stored>()
+
+    internal class Stored(hashIds: List<HashId>) {
+      val hashes = hashIds.asSequence().map { it.body_hash }.toSet()
+      val ids = hashIds.asSequence().map { it.id }.toSet()
+    }
   }
 
   data class HashId(
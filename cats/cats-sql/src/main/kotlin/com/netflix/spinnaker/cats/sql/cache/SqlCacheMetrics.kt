@@ -28,6 +28,14 @@ interface SqlCacheMetrics {
     deleteOperations: Int
   ) {}
 
+  fun store(
+    prefix: String,
+    type: String,
+    authoritative: Boolean,
+    durationMs: Long,
+    async: Boolean = false
+  ) {}
+
   fun evict(
     prefix: String,
     type: String,
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.sql.cache
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import com.netflix.spinnaker.cats.sql.SqlUtil
+import com.netflix.spinnaker.config.coroutineThreadPrefix
+import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
+import java.time.Clock
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentSkipListSet
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicLong
+import org.jooq.Condition
+import org.jooq.DSLContext
+import org.jooq.impl.DSL.and
+import org.jooq.impl.DSL.field
+import org.jooq.impl.DSL.noCondition
+import org.jooq.impl.DSL.notExists
+import org.jooq.impl.DSL.select
+import org.jooq.impl.DSL.table
+import org.slf4j.LoggerFactory
+
+/**
+ * An index of the segments of the keys in each type's resource table, so that globs with a leading
+ * wildcard don't have to be matched against every row of the table.
+ *
+ * Keys are split on ':' and their segments, except for the leading provider and type that every key
+ * of a table shares, are stored in a side table next to the resource table. A literal segment of a
+ * glob, delimited by ':' and free of wildcards, has to be a whole segment of every key the glob
+ * matches, so globs are only matched against the keys having all of their literal segments.
+ *
+ * The side table is maintained as keys are stored and evicted. Before it is used for a type, it is
+ * backfilled from the resource table in the background, and it is backfilled again periodically to
+ * pick up keys written by instances that have the index disabled. Until then globs are matched
+ * against the whole table, as they are when the index is disabled. Keys stored while the index is
+ * disabled are not indexed, so disabling it discards every backfill, and only a backfill that ran
+ * entirely while the index was enabled is used once it is enabled again.
+ */
+class SqlKeySegmentIndex(
+  private val jooq: DSLContext,
+  private val sqlNames: SqlNames,
+  private val dynamicConfigService: DynamicConfigService,
+  private val clock: Clock,
+  private val backfillExecutor: Executor = Executors.newSingleThreadExecutor(
+    ThreadFactoryBuilder().setNameFormat("${coroutineThreadPrefix}KeySegments-%d").setDaemon(true).build()
+  )
+) {
+
+  companion object {
+    private val schemaVersion = SqlSchemaVersion.current()
+    private const val maxSegmentLength = 255
+    private const val sharedSegments = 2
+
+    private val wildcards = """[*?\[\]]""".toRegex()
+    private val log = LoggerFactory.getLogger(SqlKeySegmentIndex::class.java)
+
+    /**
+     * @return the segments of a key that are indexed
+     */
+    @JvmStatic
+    fun segments(id: String): Set<String> =
+      id.split(':')
+        .drop(sharedSegments)
+        .filter { it.isNotEmpty() && it.length <= maxSegmentLength }
+        .toSet()
+
+    /**
+     * @return the indexed segments every key matched by the glob has
+     */
+    @JvmStatic
+    fun literalSegments(glob: String): Set<String> {
+      if (glob.contains('[')) {
+        // a character class could match the separator
+        return emptySet()
+      }
+
+      // each ':' in the glob is one in the key, so the n-th part of a glob is at least the n-th
+      // segment of the keys it matches, and the leading shared segments are never skipped over
+      return glob.split(':')
+        .drop(sharedSegments)
+        .filter { it.isNotEmpty() && it.length <= maxSegmentLength && !it.contains(wildcards) }
+        .toSet()
+    }
+  }
+
+  private val createdTables = ConcurrentSkipListSet<String>()
+  private val backfilledAt = ConcurrentHashMap<String, Long>()
+  private val backfilling = ConcurrentSkipListSet<String>()
+
+  // bumped whenever the index is found disabled, as stores and evictions skip it from then on
+  private val generation = AtomicLong()
+
+  private fun enabled(): Boolean {
+    if (dynamicConfigService.isEnabled("sql.cache.key-segment-index", false)) {
+      return true
+    }
+
+    generation.incrementAndGet()
+    backfilledAt.clear()
+    return false
+  }
+
+  /**
+   * @return a condition restricting the ids of the type's resource table to those that can match
+   * the glob, or no condition if the index can't be used for it
+   */
+  fun filter(type: String, glob: String): Condition {
+    if (!enabled()) {
+      return noCondition()
+    }
+
+    val segments = literalSegments(glob)
+    if (segments.isEmpty()) {
+      return noCondition()
+    }
+
+    val lastBackfill = backfilledAt[type]
+    val backfillInterval = dynamicConfigService.getConfig(
+      Long::class.java, "sql.cache.key-segment-index.backfill-interval-ms", 1_800_000L
+    )
+    if (lastBackfill == null || clock.millis() - lastBackfill > backfillInterval) {
+      scheduleBackfill(type)
+    }
+    if (lastBackfill == null) {
+      return noCondition()
+    }
+
+    val segmentTable = table(sqlNames.keySegmentTableName(type))
+    return and(
+      segments.map {
+        field("id").`in`(select(field("id")).from(segmentTable).where(field("segment").eq(it)))
+      }
+    )
+  }
+
+  /**
+   * Indexes keys that were just added to the type's resource table.
+   */
+  fun added(type: String, ids: Collection<String>) {
+    if (ids.isEmpty() || !enabled()) {
+      return
+    }
+
+    try {
+      createTable(type)
+      insert(type, ids)
+    } catch (e: Exception) {
+      // the index is missing keys until it is backfilled again, so stop using it until then
+      backfilledAt.remove(type)
+      log.error("Failed to index ${ids.size} $type keys", e)
+    }
+  }
+
+  /**
+   * Removes keys that were just evicted from the type's resource table.
+   */
+  fun evicted(type: String, ids: Collection<String>) {
+    if (ids.isEmpty() || !enabled() || !createdTables.contains(type)) {
+      return
+    }
+
+    try {
+      ids.chunked(batchSize()) { chunk ->
+        jooq.deleteFrom(table(sqlNames.keySegmentTableName(type)))
+          .where(field("id").`in`(*chunk.toTypedArray()))
+          .execute()
+      }
+    } catch (e: Exception) {
+      // segments of evicted keys only ever widen the candidates, the next backfill removes them
+      log.warn("Failed to remove ${ids.size} evicted $type keys from the index", e)
+    }
+  }
+
+  private fun scheduleBackfill(type: String) {
+    if (backfilling.add(type)) {
+      try {
+        backfillExecutor.execute {
+          try {
+            backfill(type)
+          } finally {
+            backfilling.remove(type)
+          }
+        }
+      } catch (e: Exception) {
+        backfilling.remove(type)
+        log.error("Failed to schedule backfilling the $type key index", e)
+      }
+    }
+  }
+
+  /**
+   * Indexes every key of the type's resource table, and removes the segments of keys that are no
+   * longer in it. Both are idempotent, so instances backfilling concurrently are harmless.
+   */
+  fun backfill(type: String) {
+    val started = clock.millis()
+    val startedGeneration = generation.get()
+    if (!enabled()) {
+      return
+    }
+
+    try {
+      createTable(type)
+
+      val resourceTable = table(sqlNames.resourceTableName(type))
+      val segmentTableName = sqlNames.keySegmentTableName(type)
+      var indexed = 0
+      var last = ""
+      while (true) {
+        val ids = jooq.selectDistinct(field("id"))
+          .from(resourceTable)
+          .where(field("id").gt(last))
+          .orderBy(field("id"))
+          .limit(batchSize())
+          .fetch(field("id"), String::class.java)
+        if (ids.isEmpty()) {
+          break
+        }
+
+        insert(type, ids)
+        indexed += ids.size
+        last = ids.last()
+      }
+
+      val removed = jooq.deleteFrom(table(segmentTableName))
+        .where(
+          notExists(
+            select(field("r.id"))
+              .from(resourceTable.`as`("r"))
+              .where(field("r.id").eq(field("$segmentTableName.id")))
+          )
+        )
+        .execute()
+
+      backfilledAt[type] = started
+      if (generation.get() != startedGeneration) {
+        // checked after recording it, so a concurrent disable either sees it or bumps generation first
+        backfilledAt.remove(type, started)
+        log.info("Discarding the $type key index backfill, the index was disabled while it ran")
+        return
+      }
+      log.info("Backfilled the $type key index with $indexed keys, removed $removed stale segments")
+    } catch (e: Exception) {
+      log.error("Failed to backfill the $type key index", e)
+    }
+  }
+
+  private fun insert(type: String, ids: Collection<String>) {
+    val rows = ids.flatMap { id -> segments(id).map { id to it } }
+    rows.chunked(batchSize()) { chunk ->
+      val insert = jooq.insertInto(
+        table(sqlNames.keySegmentTableName(type)),
+        field("id"),
+        field("segment")
+      )
+      chunk.forEach { (id, segment) -> insert.values(id, segment) }
+      insert.onDuplicateKeyIgnore().execute()
+    }
+  }
+
+  private fun createTable(type: String) {
+    if (!createdTables.contains(type)) {
+      SqlUtil.createTableLike(
+        jooq, sqlNames.keySegmentTableName(type), "cats_v${schemaVersion}_key_segment_template"
+      )
+      createdTables.add(type)
+    }
+  }
+
+  private fun batchSize(): Int =
+    dynamicConfigService.getConfig(Int::class.java, "sql.cache.write-batch-size", 100)
+
+  // Assists with unit testing
+  fun clearCreatedTables() {
+    createdTables.clear()
+    backfilledAt.clear()
+  }
+}
@@ -39,6 +39,12 @@ class SqlNames(
   fun relTableName(type: String): String =
     checkTableName("cats_v${schemaVersion}_", sanitizeType(type), "_rel")
 
+  /**
+   * Get the key segment index table name for a given agent type.
+   */
+  fun keySegmentTableName(type: String): String =
+    checkTableName("cats_v${schemaVersion}_", sanitizeType(type), "_keyseg")
+
   private fun sanitizeType(type: String): String {
     return type.replace(typeSanitization, "_")
   }
@@ -64,15 +64,30 @@ class SqlCacheConfiguration {
     return SpectatorSqlCacheMetrics(registry)
   }
 
+  /**
+   * sql.cache.parallel-writes.enabled: If true, the types of a single cache result are written concurrently
+   * on a shared pool of sql.cache.parallel-writes.pool-size threads, which defaults to the size of the default
+   * connection pool so that writers never wait on each other for a connection.
+   */
+  @ObsoleteCoroutinesApi
   @Bean
   fun catsModule(
     providers: List<Provider>,
     executionInstrumentation: List<ExecutionInstrumentation>,
     cacheFactory: NamedCacheFactory,
-    agentScheduler: AgentScheduler<*>
+    agentScheduler: AgentScheduler<*>,
+    @Value("\${sql.cache.parallel-writes.enabled:false}") parallelWrites: Boolean,
+    @Value("\${sql.cache.parallel-writes.pool-size:\${sql.connection-pools.default.max-pool-size:20}}") writePoolSize: Int
   ): CatsModule {
+    val writeContext = if (!parallelWrites || writePoolSize < 2) {
+      null
+    } else {
+      log.info("Configured parallel cache writes with newFixedThreadPoolContext of $writePoolSize threads")
+      newFixedThreadPoolContext(nThreads = writePoolSize, name = "${coroutineThreadPrefix}Write") + MDCContext()
+    }
+
     return CatsModule.Builder()
-      .providerRegistry(SqlProviderRegistry(providers, cacheFactory))
+      .providerRegistry(SqlProviderRegistry(providers, cacheFactory, writeContext))
       .cacheFactory(cacheFactory)
       .scheduler(agentScheduler)
       .instrumentation(executionInstrumentation)
@@ -56,6 +56,24 @@ abstract class SqlCacheSpec extends WriteableCacheSpec {
     1 * ((SqlCache) cache).cacheMetrics.merge('test', 'foo', 1, 0, 0, 0, 1, 0, 0)
   }
 
+  def 'reads the stored hashes once for every chunk of a result'() {
+    setup:
+    def storedHashes = new SqlCache.StoredHashes()
+
+    when:
+    ((SqlCache) cache).mergeAll('foo', 'agent', [createData('blerp-1')], true, false, storedHashes)
+
+    then:
+    1 * ((SqlCache) cache).cacheMetrics.merge('test', 'foo', 1, 1, 0, 0, 1, 1, 0)
+
+    when:
+    ((SqlCache) cache).mergeAll('foo', 'agent', [createData('blerp-2')], true, false, storedHashes)
+
+    then:
+    1 * ((SqlCache) cache).cacheMetrics.merge('test', 'foo', 1, 1, 0, 0, 0, 1, 0)
+    ((SqlCache) cache).getAll('foo')*.id.sort() == ['blerp-1', 'blerp-2']
+  }
+
   def 'all items are stored and retrieved when larger than sql chunk sizes'() {
     given:
     def data = (1..10).collect { createData("fnord-$it") }
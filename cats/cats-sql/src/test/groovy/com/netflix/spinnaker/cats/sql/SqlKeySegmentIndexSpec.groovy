@@ -0,0 +1,224 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.sql
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.sql.cache.SqlCache
+import com.netflix.spinnaker.cats.sql.cache.SqlCacheMetrics
+import com.netflix.spinnaker.cats.sql.cache.SqlKeySegmentIndex
+import com.netflix.spinnaker.cats.sql.cache.SqlNamedCacheFactory
+import com.netflix.spinnaker.config.SqlConstraintsInitializer
+import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
+import com.netflix.spinnaker.kork.sql.config.RetryProperties
+import com.netflix.spinnaker.kork.sql.config.SqlRetryProperties
+import com.netflix.spinnaker.kork.sql.test.SqlTestUtil
+import com.zaxxer.hikari.HikariDataSource
+import org.jooq.DSLContext
+import org.jooq.SQLDialect
+import spock.lang.AutoCleanup
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.Clock
+
+import static org.jooq.impl.DSL.field
+import static org.jooq.impl.DSL.table
+
+class SqlKeySegmentIndexSpec extends Specification {
+
+  @Shared
+  DSLContext context
+
+  @AutoCleanup("close")
+  HikariDataSource dataSource
+
+  boolean indexEnabled = true
+
+  SqlCache cache
+
+  def setup() {
+    def dynamicConfigService = Stub(DynamicConfigService) {
+      getConfig(_ as Class, _ as String, _) >> { type, name, defaultValue -> defaultValue }
+      isEnabled("sql.cache.key-segment-index", _) >> { indexEnabled }
+    }
+
+    SqlTestUtil.TestDatabase testDatabase = SqlTestUtil.initTcMysqlDatabase()
+    context = testDatabase.context
+    dataSource = testDatabase.dataSource
+
+    cache = new SqlCache(
+      "test",
+      context,
+      new ObjectMapper(),
+      null,
+      Clock.systemUTC(),
+      new SqlRetryProperties(new RetryProperties(1, 10), new RetryProperties(1, 10)),
+      "test",
+      Mock(SqlCacheMetrics),
+      dynamicConfigService,
+      new SqlConstraintsInitializer().getDefaultSqlConstraints(SQLDialect.MYSQL),
+      new SqlNamedCacheFactory.DefaultProviderCacheConfiguration()
+    )
+  }
+
+  def cleanup() {
+    SqlTestUtil.cleanupDb(context)
+  }
+
+  @Unroll
+  def "glob #glob requires segments #expected"() {
+    expect:
+    SqlKeySegmentIndex.literalSegments(glob) == expected as Set
+
+    where:
+    glob                                              || expected
+    "aws:securityGroups:*:*:test:us-west-1:*"         || ["test", "us-west-1"]
+    "aws:securityGroups:*:sg-123:*:*:*"               || ["sg-123"]
+    "*:securityGroups:app-*:*:test:*"                 || ["test"]
+    "*:test"                                          || []
+    "aws:serverGroups:*:test:us-west-?:*"             || ["test"]
+    "aws:serverGroups:*:test:us-west-[12]:*"          || []
+    "aws:serverGroups:*"                              || []
+  }
+
+  def "indexes every segment but the provider and type"() {
+    expect:
+    SqlKeySegmentIndex.segments("aws:instances:test:us-west-1:i-1234") == ["test", "us-west-1", "i-1234"] as Set
+    SqlKeySegmentIndex.segments("aws:loadBalancers:test:us-west-1:lb::application") == ["test", "us-west-1", "lb", "application"] as Set
+  }
+
+  def "filters identifiers through the index once it is backfilled"() {
+    given:
+    def ids = ["test", "prod"].collectMany { account ->
+      ["us-west-1", "us-east-1"].collectMany { region ->
+        (1..5).collect { "aws:securityGroups:app:app-sg-${it}:sg-${it}:${account}:${region}:vpc-1".toString() }
+      }
+    }
+    cache.mergeAll("securityGroups", "agent", ids.collect { new DefaultCacheData(it, [:], [:]) }, true, false)
+    def glob = "aws:securityGroups:*:*:*:test:us-west-1:*"
+    def expected = ids.findAll { it.contains(":test:us-west-1:") } as Set
+
+    expect: 'matches are the same before the index is backfilled'
+    cache.filterIdentifiers("securityGroups", glob) as Set == expected
+
+    when:
+    cache.keySegmentIndex.backfill("securityGroups")
+
+    then:
+    cache.filterIdentifiers("securityGroups", glob) as Set == expected
+
+    when: 'keys are added and evicted'
+    def added = "aws:securityGroups:app:app-sg-6:sg-6:test:us-west-1:vpc-1"
+    cache.mergeAll("securityGroups", "agent", [new DefaultCacheData(added, [:], [:])], true, false)
+    cache.evictAll("securityGroups", [ids[0]])
+
+    then:
+    cache.filterIdentifiers("securityGroups", glob) as Set == (expected - ids[0]) + added
+
+    when: 'a key is missing from the index'
+    context.deleteFrom(table("cats_v1_test_securityGroups_keyseg")).where(field("id").eq(added)).execute()
+
+    then: 'only keys having the literal segments of the glob are matched'
+    !cache.filterIdentifiers("securityGroups", glob).contains(added)
+  }
+
+  def "index is not maintained or used when disabled"() {
+    given:
+    indexEnabled = false
+    def id = "aws:securityGroups:app:app-sg-1:sg-1:test:us-west-1:vpc-1"
+
+    when:
+    cache.mergeAll("securityGroups", "agent", [new DefaultCacheData(id, [:], [:])], true, false)
+
+    then:
+    cache.filterIdentifiers("securityGroups", "*:test:us-west-1:*") == [id]
+    SqlUtil.getTablesLike(context, "cats_v1_test_securityGroups_keyseg").next() == false
+  }
+
+  def "index is not used after being disabled until it is backfilled again"() {
+    given:
+    def glob = "aws:securityGroups:*:*:*:test:us-west-1:*"
+    def indexed = "aws:securityGroups:app:app-sg-1:sg-1:test:us-west-1:vpc-1"
+    def unindexed = "aws:securityGroups:app:app-sg-2:sg-2:test:us-west-1:vpc-1"
+    cache.mergeAll("securityGroups", "agent", [new DefaultCacheData(indexed, [:], [:])], true, false)
+    cache.keySegmentIndex.backfill("securityGroups")
+
+    when: 'a key is stored and a backfill runs while the index is disabled'
+    indexEnabled = false
+    cache.mergeAll("securityGroups", "agent", [new DefaultCacheData(unindexed, [:], [:])], true, false)
+    cache.keySegmentIndex.backfill("securityGroups")
+    indexEnabled = true
+
+    then: 'the index is missing the key, so it is not used'
+    !indexedIds().contains(unindexed)
+    cache.filterIdentifiers("securityGroups", glob) as Set == [indexed, unindexed] as Set
+
+    when:
+    cache.keySegmentIndex.backfill("securityGroups")
+
+    then:
+    indexedIds() == [indexed, unindexed] as Set
+    cache.filterIdentifiers("securityGroups", glob) as Set == [indexed, unindexed] as Set
+  }
+
+  private Set<String> indexedIds() {
+    return context.selectDistinct(field("id"))
+      .from(table("cats_v1_test_securityGroups_keyseg"))
+      .fetch(field("id"), String) as Set
+  }
+
+  /**
+   * Compares filterIdentifiers with and without the index on a table of 1M keys.
+   *
+   * Run with -Dcats.sql.keySegmentBenchmark=true.
+   */
+  @Requires({ Boolean.getBoolean("cats.sql.keySegmentBenchmark") })
+  def "benchmark filterIdentifiers on 1M keys"() {
+    given:
+    indexEnabled = false
+    def accounts = (1..20).collect { "account-$it" }
+    def regions = ["us-east-1", "us-east-2", "us-west-1", "us-west-2", "eu-west-1"]
+    (0..<1_000).each { page ->
+      cache.mergeAll("instances", "agent-$page", (0..<1_000).collect {
+        def n = page * 1_000 + it
+        new DefaultCacheData("aws:instances:${accounts[n % 20]}:${regions[n % 5]}:i-${n}".toString(), [:], [:])
+      }, true, false)
+    }
+    def globs = ["aws:instances:*:us-west-2:i-4242", "aws:instances:account-7:*:*", "*:account-3:eu-west-1:*"]
+
+    when:
+    def scanned = globs.collectEntries { [(it): time { cache.filterIdentifiers("instances", it) }] }
+    indexEnabled = true
+    cache.keySegmentIndex.backfill("instances")
+    def indexed = globs.collectEntries { [(it): time { cache.filterIdentifiers("instances", it) }] }
+
+    then:
+    globs.each {
+      println "${it}: scan ${scanned[it].ms}ms, index ${indexed[it].ms}ms"
+      assert scanned[it].ids as Set == indexed[it].ids as Set
+    }
+  }
+
+  private static Map time(Closure<Collection<String>> filter) {
+    long start = System.nanoTime()
+    def ids = filter()
+    return [ids: ids, ms: (System.nanoTime() - start).intdiv(1_000_000)]
+  }
+}
@@ -17,6 +17,7 @@ import com.netflix.spinnaker.kork.sql.config.RetryProperties
 import com.netflix.spinnaker.kork.sql.config.SqlRetryProperties
 import com.netflix.spinnaker.kork.sql.test.SqlTestUtil
 import com.zaxxer.hikari.HikariDataSource
+import kotlinx.coroutines.ExecutorsKt
 import org.jooq.DSLContext
 import org.jooq.SQLDialect
 import spock.lang.AutoCleanup
@@ -26,6 +27,7 @@ import spock.lang.Unroll
 import java.time.Clock
 import java.time.Instant
 import java.time.ZoneId
+import java.util.concurrent.Executors
 
 
 class SqlProviderCacheSpec extends ProviderCacheSpec {
@@ -170,6 +172,29 @@ class SqlProviderCacheSpec extends ProviderCacheSpec {
     fooData["serverGroup"].collect { it.id }.sort() == sgIdsForAppFoo
   }
 
+  def 'types are stored concurrently when a write context is configured'() {
+    setup:
+    def executor = Executors.newFixedThreadPool(4)
+    def parallelCache = new SqlProviderCache(backingStore, ExecutorsKt.from(executor))
+
+    when:
+    parallelCache.putCacheResult('testAgent', ['serverGroup', 'instances', 'cluster'], new DefaultCacheResult(
+      serverGroup: [createData('sg1', [application: 'foo'], [:]), createData('sg2', [application: 'foo'], [:])],
+      instances: [createData('i1', [application: 'foo'], [:])],
+      cluster: [createData('c1', [application: 'foo'], [:])],
+      loadBalancer: [createData('lb1', [application: 'foo'], [serverGroup: ['sg1']])]
+    ))
+
+    then:
+    cache.getAll('serverGroup')*.id.sort() == ['sg1', 'sg2']
+    cache.getAll('instances')*.id == ['i1']
+    cache.getAll('cluster')*.id == ['c1']
+    cache.get('serverGroup', 'sg1').relationships.loadBalancer as Set == ['lb1'] as Set
+
+    cleanup:
+    executor.shutdown()
+  }
+
   void addInformative(String type, String id, CacheData cacheData = createData(id)) {
     defaultProviderCache.putCacheResult('testAgent', ['informative'], new DefaultCacheResult((type): [cacheData]))
   }
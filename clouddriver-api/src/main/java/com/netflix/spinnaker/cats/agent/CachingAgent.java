@@ -16,7 +16,11 @@
 
 package com.netflix.spinnaker.cats.agent;
 
-import com.netflix.spinnaker.cats.cache.AgentIntrospection;
+import static com.netflix.spinnaker.cats.cache.AgentExecutionProfile.Phase.EVICT;
+import static com.netflix.spinnaker.cats.cache.AgentExecutionProfile.Phase.LOAD;
+import static com.netflix.spinnaker.cats.cache.AgentExecutionProfile.Phase.STORE;
+
+import com.netflix.spinnaker.cats.cache.AgentExecutionProfile;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.CacheIntrospectionStore;
 import com.netflix.spinnaker.cats.cache.DefaultAgentIntrospection;
@@ -73,11 +77,19 @@ public interface CachingAgent extends Agent {
 
     @Override
     public void executeAgent(Agent agent) {
-      AgentIntrospection introspection = new DefaultAgentIntrospection(agent);
-      CacheResult result = executeAgentWithoutStore(agent);
-      introspection.finish(result);
-      CacheIntrospectionStore.getStore().recordAgent(introspection);
-      storeAgentResult(agent, result);
+      DefaultAgentIntrospection introspection = new DefaultAgentIntrospection(agent);
+      AgentExecutionProfile profile = AgentExecutionProfile.start();
+      introspection.setProfile(profile);
+      try {
+        CacheResult result =
+            AgentExecutionProfile.time(LOAD, () -> executeAgentWithoutStore(agent));
+        profile.recordResult(result);
+        introspection.finish(result);
+        CacheIntrospectionStore.getStore().recordAgent(introspection);
+        storeAgentResult(agent, result);
+      } finally {
+        profile.finish();
+      }
     }
 
     public CacheResult executeAgentWithoutStore(Agent agent) {
@@ -90,16 +102,15 @@ public interface CachingAgent extends Agent {
     public void storeAgentResult(Agent agent, CacheResult result) {
       CachingAgent cachingAgent = (CachingAgent) agent;
       ProviderCache cache = providerRegistry.getProviderCache(cachingAgent.getProviderName());
-      Collection<AgentDataType> providedTypes = cachingAgent.getProvidedDataTypes();
-      Collection<String> authoritative = new HashSet<>(providedTypes.size());
-      for (AgentDataType type : providedTypes) {
-        if (type.getAuthority() == AgentDataType.Authority.AUTHORITATIVE) {
-          authoritative.add(type.getTypeName());
-        }
-      }
+      Collection<String> authoritative = getAuthoritativeTypes(cachingAgent);
 
       Optional<Map<String, String>> cacheKeyPatterns = cachingAgent.getCacheKeyPatterns();
+      WrittenKeys writtenKeys = null;
+      long evictStart = System.nanoTime();
       if (cacheKeyPatterns.isPresent()) {
+        if (!result.isPartialResult()) {
+          writtenKeys = WrittenKeys.load(cache, agent.getAgentType(), getFullScanInterval());
+        }
         for (String type : authoritative) {
           String cacheKeyPatternForType = cacheKeyPatterns.get().get(type);
           if (cacheKeyPatternForType != null) {
@@ -109,8 +120,17 @@ public interface CachingAgent extends Agent {
                       .map(CacheData::getId)
                       .collect(Collectors.toSet());
 
+              Collection<String> previousIdentifiers =
+                  writtenKeys == null ? null : writtenKeys.previous(type);
+              if (previousIdentifiers == null) {
+                previousIdentifiers = cache.filterIdentifiers(type, cacheKeyPatternForType);
+              }
+              if (writtenKeys != null) {
+                writtenKeys.written(type, cachedIdentifiersForType);
+              }
+
               Collection<String> evictableIdentifiers =
-                  cache.filterIdentifiers(type, cacheKeyPatternForType).stream()
+                  previousIdentifiers.stream()
                       .filter(i -> !cachedIdentifiersForType.contains(i))
                       .collect(Collectors.toSet());
 
@@ -135,11 +155,47 @@ public interface CachingAgent extends Agent {
         }
       }
 
-      if (result.isPartialResult()) {
-        cache.addCacheResult(agent.getAgentType(), authoritative, result);
-      } else {
-        cache.putCacheResult(agent.getAgentType(), authoritative, result);
+      AgentExecutionProfile profile = AgentExecutionProfile.current();
+      if (profile != null) {
+        profile.record(EVICT, System.nanoTime() - evictStart);
+      }
+
+      AgentExecutionProfile.time(
+          STORE,
+          () -> {
+            if (result.isPartialResult()) {
+              cache.addCacheResult(agent.getAgentType(), authoritative, result);
+            } else {
+              cache.putCacheResult(agent.getAgentType(), authoritative, result);
+            }
+          });
+
+      if (writtenKeys != null) {
+        writtenKeys.save(cache);
+      }
+    }
+
+    protected ProviderRegistry getProviderRegistry() {
+      return providerRegistry;
+    }
+
+    /**
+     * Stale keys are normally found by comparing against the keys written on the previous run, but
+     * every this many runs the cache key patterns are scanned to catch keys written by others.
+     */
+    protected int getFullScanInterval() {
+      return 10;
+    }
+
+    protected static Collection<String> getAuthoritativeTypes(CachingAgent cachingAgent) {
+      Collection<AgentDataType> providedTypes = cachingAgent.getProvidedDataTypes();
+      Collection<String> authoritative = new HashSet<>(providedTypes.size());
+      for (AgentDataType type : providedTypes) {
+        if (type.getAuthority() == AgentDataType.Authority.AUTHORITATIVE) {
+          authoritative.add(type.getTypeName());
+        }
       }
+      return authoritative;
     }
   }
 }
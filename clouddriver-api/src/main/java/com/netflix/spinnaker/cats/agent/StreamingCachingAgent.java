@@ -0,0 +1,277 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+import static com.netflix.spinnaker.cats.cache.AgentExecutionProfile.Phase.EVICT;
+import static com.netflix.spinnaker.cats.cache.AgentExecutionProfile.Phase.LOAD;
+import static com.netflix.spinnaker.cats.cache.AgentExecutionProfile.Phase.STORE;
+
+import com.netflix.spinnaker.cats.cache.AgentExecutionProfile;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.CacheIntrospectionStore;
+import com.netflix.spinnaker.cats.cache.DefaultAgentIntrospection;
+import com.netflix.spinnaker.cats.provider.ProviderCache;
+import com.netflix.spinnaker.cats.provider.ProviderRegistry;
+import com.netflix.spinnaker.kork.annotations.Beta;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A CachingAgent that hands its data over in chunks as it is loaded, rather than returning it as
+ * one complete CacheResult.
+ *
+ * <p>Chunks are stored while the agent keeps loading, so the cloud API calls and the cache writes
+ * overlap and only the chunks in flight need to be held in memory. Once the agent has emitted all
+ * of its data, any previously cached key matching the agent's cache key pattern that was not
+ * emitted is evicted.
+ *
+ * <p>Streaming requires a cache key pattern (see {@link #getCacheKeyPatterns()}) for every
+ * authoritative type, as that is how stale keys are found once the stream completes. Agents
+ * without one are executed like any other CachingAgent, with their chunks buffered into a single
+ * CacheResult. Informative relationships are merged as they arrive and are not cleaned up.
+ */
+@Beta
+public interface StreamingCachingAgent extends CachingAgent {
+
+  /** Receives the data of a {@link StreamingCachingAgent}. */
+  interface Emitter {
+    /**
+     * Hands over a chunk of data of a single type. A type may be emitted any number of times.
+     *
+     * <p>May block while the previous chunk is still being stored.
+     */
+    void emit(String type, Collection<CacheData> chunk);
+
+    /** Explicitly evicts items, in addition to the stale keys evicted at the end of the run. */
+    void evict(String type, Collection<String> ids);
+  }
+
+  /**
+   * Triggered by an AgentScheduler to tell this Agent to load its data.
+   *
+   * @param providerCache Cache associated with this Agent's provider
+   * @param emitter receives the complete set of data for this Agent, in chunks
+   */
+  void streamData(ProviderCache providerCache, Emitter emitter);
+
+  /** Buffers the streamed chunks, for schedulers that load and store results separately. */
+  @Override
+  default CacheResult loadData(ProviderCache providerCache) {
+    Map<String, Collection<CacheData>> cacheResults = new HashMap<>();
+    Map<String, Collection<String>> evictions = new HashMap<>();
+    streamData(
+        providerCache,
+        new Emitter() {
+          @Override
+          public void emit(String type, Collection<CacheData> chunk) {
+            cacheResults.computeIfAbsent(type, t -> new ArrayList<>()).addAll(chunk);
+          }
+
+          @Override
+          public void evict(String type, Collection<String> ids) {
+            evictions.computeIfAbsent(type, t -> new ArrayList<>()).addAll(ids);
+          }
+        });
+    return new DefaultCacheResult(cacheResults, evictions);
+  }
+
+  @Override
+  default AgentExecution getAgentExecution(ProviderRegistry providerRegistry) {
+    return new StreamingCacheExecution(providerRegistry);
+  }
+
+  class StreamingCacheExecution extends CacheExecution {
+    private static final Logger log = LoggerFactory.getLogger(StreamingCacheExecution.class);
+
+    private static final AtomicInteger writerThreads = new AtomicInteger();
+
+    /** Each execution has at most one chunk write in flight. */
+    private static final ExecutorService chunkWriter =
+        Executors.newCachedThreadPool(
+            r -> {
+              Thread thread = new Thread(r, "cats-chunk-writer-" + writerThreads.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    public StreamingCacheExecution(ProviderRegistry providerRegistry) {
+      super(providerRegistry);
+    }
+
+    @Override
+    public void executeAgent(Agent agent) {
+      StreamingCachingAgent streamingAgent = (StreamingCachingAgent) agent;
+      Collection<String> authoritative = getAuthoritativeTypes(streamingAgent);
+      Map<String, String> cacheKeyPatterns =
+          streamingAgent.getCacheKeyPatterns().orElse(Collections.emptyMap());
+      if (!cacheKeyPatterns.keySet().containsAll(authoritative)) {
+        log.debug(
+            "Buffering results of {}, not all authoritative types have a cache key pattern",
+            agent.getAgentType());
+        super.executeAgent(agent);
+        return;
+      }
+
+      DefaultAgentIntrospection introspection = new DefaultAgentIntrospection(agent);
+      AgentExecutionProfile profile = AgentExecutionProfile.start();
+      introspection.setProfile(profile);
+      try {
+        execute(streamingAgent, authoritative, cacheKeyPatterns, introspection, profile);
+      } finally {
+        profile.finish();
+      }
+    }
+
+    private void execute(
+        StreamingCachingAgent agent,
+        Collection<String> authoritative,
+        Map<String, String> cacheKeyPatterns,
+        DefaultAgentIntrospection introspection,
+        AgentExecutionProfile profile) {
+      ProviderCache cache = getProviderRegistry().getProviderCache(agent.getProviderName());
+      ProviderCache.ResultStream results =
+          cache.openResultStream(agent.getAgentType(), authoritative);
+      ChunkWriter writer = new ChunkWriter(results, agent.getAgentType(), authoritative, profile);
+      long loadStart = System.nanoTime();
+      try {
+        agent.streamData(cache, writer);
+      } finally {
+        // never evict anything after an incomplete stream, but let the emitted chunks land
+        try {
+          writer.awaitPending();
+        } finally {
+          results.close();
+        }
+        profile.record(LOAD, System.nanoTime() - loadStart - writer.blockedNanos);
+      }
+
+      long evictStart = System.nanoTime();
+      WrittenKeys writtenKeys =
+          WrittenKeys.load(cache, agent.getAgentType(), getFullScanInterval());
+      for (String type : authoritative) {
+        Set<String> emitted = writer.emittedIds.getOrDefault(type, Collections.emptySet());
+        Collection<String> previous = writtenKeys.previous(type);
+        if (previous == null) {
+          previous = cache.filterIdentifiers(type, cacheKeyPatterns.get(type));
+        }
+        writtenKeys.written(type, emitted);
+        Collection<String> stale =
+            previous.stream().filter(id -> !emitted.contains(id)).collect(Collectors.toSet());
+        if (!stale.isEmpty()) {
+          writer.evict(type, stale);
+          log.debug("Evicting stale identifiers: {}", stale);
+        }
+      }
+
+      int evicted = 0;
+      for (Map.Entry<String, Collection<String>> eviction : writer.evictions.entrySet()) {
+        cache.evictDeletedItems(eviction.getKey(), eviction.getValue());
+        evicted += eviction.getValue().size();
+      }
+      writtenKeys.save(cache);
+      profile.record(EVICT, System.nanoTime() - evictStart);
+
+      introspection.finish(writer.additions, evicted);
+      CacheIntrospectionStore.getStore().recordAgent(introspection);
+    }
+
+    private static class ChunkWriter implements Emitter {
+      private final ProviderCache.ResultStream results;
+      private final String source;
+      private final Collection<String> authoritative;
+      private final Map<String, Set<String>> emittedIds = new HashMap<>();
+      private final Map<String, Collection<String>> evictions = new HashMap<>();
+      private final AgentExecutionProfile profile;
+      private Future<?> pending = CompletableFuture.completedFuture(null);
+      private int additions;
+      /** Time the agent spent waiting for chunks to be stored, rather than loading. */
+      private long blockedNanos;
+
+      ChunkWriter(
+          ProviderCache.ResultStream results,
+          String source,
+          Collection<String> authoritative,
+          AgentExecutionProfile profile) {
+        this.results = results;
+        this.source = source;
+        this.authoritative = authoritative;
+        this.profile = profile;
+      }
+
+      @Override
+      public synchronized void emit(String type, Collection<CacheData> chunk) {
+        if (chunk.isEmpty()) {
+          return;
+        }
+
+        if (authoritative.contains(type)) {
+          Set<String> ids = emittedIds.computeIfAbsent(type, t -> new HashSet<>());
+          chunk.forEach(data -> ids.add(data.getId()));
+        }
+        additions += chunk.size();
+
+        List<CacheData> data = new ArrayList<>(chunk);
+        profile.recordItems(type, data);
+        CacheResult result = new DefaultCacheResult(Collections.singletonMap(type, data));
+        awaitPending();
+        pending =
+            chunkWriter.submit(
+                () ->
+                    AgentExecutionProfile.runWith(
+                        profile,
+                        () ->
+                            AgentExecutionProfile.time(STORE, () -> results.add(result))));
+      }
+
+      @Override
+      public synchronized void evict(String type, Collection<String> ids) {
+        evictions.computeIfAbsent(type, t -> new HashSet<>()).addAll(ids);
+      }
+
+      synchronized void awaitPending() {
+        long start = System.nanoTime();
+        try {
+          pending.get();
+          blockedNanos += System.nanoTime() - start;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while storing " + source, e);
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+          throw new IllegalStateException("Failed to store results of " + source, e.getCause());
+        }
+      }
+    }
+  }
+}
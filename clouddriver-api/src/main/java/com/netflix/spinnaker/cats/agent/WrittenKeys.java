@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter;
+import com.netflix.spinnaker.cats.provider.ProviderCache;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The keys a caching agent wrote on its last run, per authoritative type.
+ *
+ * <p>Stale keys are the keys written last time that were not written again, which avoids scanning
+ * the whole type with {@link ProviderCache#filterIdentifiers(String, String)} on every run. Keys
+ * matching an agent's pattern can also be written by others (on demand updates for instance), so
+ * the type is still scanned every {@code fullScanInterval} runs, as well as whenever no key set
+ * was recorded for it.
+ *
+ * <p>Key sets are persisted in the agent's provider cache as a single item per agent, with the ids
+ * sorted and front coded: each id only stores the suffix that differs from the previous one.
+ */
+final class WrittenKeys {
+  private static final Logger log = LoggerFactory.getLogger(WrittenKeys.class);
+
+  static final String TYPE = "agentWrittenKeys";
+
+  private static final String RUNS_SINCE_FULL_SCAN = "runsSinceFullScan";
+
+  private final String agentType;
+  private final Map<String, Object> previous;
+  private final int runsSinceFullScan;
+  private final Map<String, Object> written = new HashMap<>();
+
+  private WrittenKeys(String agentType, Map<String, Object> previous, int runsSinceFullScan) {
+    this.agentType = agentType;
+    this.previous = previous;
+    this.runsSinceFullScan = runsSinceFullScan;
+  }
+
+  static WrittenKeys load(ProviderCache cache, String agentType, int fullScanInterval) {
+    Map<String, Object> previous = Collections.emptyMap();
+    try {
+      CacheData record = cache.get(TYPE, agentType, RelationshipCacheFilter.none());
+      if (record != null) {
+        previous = record.getAttributes();
+      }
+    } catch (Exception e) {
+      log.warn("Failed to read the keys written by {}, scanning for stale keys", agentType, e);
+    }
+
+    Object runs = previous.get(RUNS_SINCE_FULL_SCAN);
+    int runsSinceFullScan = runs instanceof Number ? ((Number) runs).intValue() + 1 : 0;
+    if (runsSinceFullScan >= fullScanInterval) {
+      runsSinceFullScan = 0;
+    }
+    return new WrittenKeys(agentType, previous, runsSinceFullScan);
+  }
+
+  /**
+   * @return the keys written by the previous run, or null if the type has to be scanned instead
+   */
+  @Nullable
+  Set<String> previous(String type) {
+    Object encoded = previous.get(type);
+    if (runsSinceFullScan == 0 || !(encoded instanceof String)) {
+      return null;
+    }
+    return decode((String) encoded);
+  }
+
+  void written(String type, Collection<String> ids) {
+    written.put(type, encode(ids));
+  }
+
+  void save(ProviderCache cache) {
+    if (written.isEmpty()) {
+      return;
+    }
+
+    Map<String, Object> attributes = new HashMap<>(written);
+    attributes.put(RUNS_SINCE_FULL_SCAN, runsSinceFullScan);
+    try {
+      cache.putCacheData(TYPE, new DefaultCacheData(agentType, attributes, Collections.emptyMap()));
+    } catch (Exception e) {
+      log.warn("Failed to record the keys written by {}", agentType, e);
+      try {
+        // an outdated key set would miss stale keys until the next full scan
+        cache.evictDeletedItems(TYPE, Collections.singleton(agentType));
+      } catch (Exception ignored) {
+        // the next run reads whatever is there
+      }
+    }
+  }
+
+  static String encode(Collection<String> ids) {
+    List<String> sorted = new ArrayList<>(ids);
+    Collections.sort(sorted);
+
+    StringBuilder encoded = new StringBuilder();
+    String last = "";
+    for (String id : sorted) {
+      int shared = 0;
+      int max = Math.min(last.length(), id.length());
+      while (shared < max && last.charAt(shared) == id.charAt(shared)) {
+        shared++;
+      }
+      encoded.append(shared).append(' ').append(id, shared, id.length()).append('\n');
+      last = id;
+    }
+    return encoded.toString();
+  }
+
+  static Set<String> decode(String encoded) {
+    Set<String> ids = new HashSet<>();
+    String last = "";
+    int start = 0;
+    while (start < encoded.length()) {
+      int space = encoded.indexOf(' ', start);
+      int end = encoded.indexOf('\n', space);
+      int shared = Integer.parseInt(encoded.substring(start, space));
+      last = last.substring(0, shared) + encoded.substring(space + 1, end);
+      ids.add(last);
+      start = end + 1;
+    }
+    return ids;
+  }
+}
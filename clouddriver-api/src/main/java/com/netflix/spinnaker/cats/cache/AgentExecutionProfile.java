@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.cache;
+
+import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.kork.annotations.Beta;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * Where a single caching agent execution spent its time, and how much data it produced.
+ *
+ * <p>A profile is attached to the thread running the agent for the duration of the execution, so
+ * agents and caches can attribute time to a {@link Phase} with {@link #time(Phase, Supplier)}
+ * without having the profile passed around. Outside of a profiled execution that is a plain call.
+ * Phases reported from within another phase, like {@link Phase#CONVERT} or {@link
+ * Phase#SERIALIZE}, are also included in the enclosing phase's time.
+ *
+ * <p>Everything recorded is cheap enough to be left on: phases are timed with two calls to {@link
+ * System#nanoTime()}, allocations are read from the JVM's per thread counter, and the size of each
+ * type is extrapolated from a small sample of its items rather than serializing all of them.
+ */
+@Beta
+public class AgentExecutionProfile {
+  public enum Phase {
+    /** Fetching the data from the cloud provider, including whatever the agent does with it. */
+    LOAD,
+    /**
+     * Converting cloud provider responses into cache data, as reported by agents that separate it
+     * from loading, like the Kubernetes and AWS cluster caching agents.
+     */
+    CONVERT,
+    /** Serializing and hashing cache data while storing it, as reported by the cache. */
+    SERIALIZE,
+    /** Writing the results to the cache. */
+    STORE,
+    /** Finding and evicting stale items. */
+    EVICT
+  }
+
+  /** Items sampled per type to estimate its size. */
+  private static final int SIZE_SAMPLES = 16;
+
+  private static final ThreadLocal<AgentExecutionProfile> CURRENT = new ThreadLocal<>();
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+  private final Map<String, Integer> items = new TreeMap<>();
+  private final Map<String, Long> estimatedBytes = new TreeMap<>();
+  private final AtomicBoolean published = new AtomicBoolean();
+  private final long threadId = Thread.currentThread().getId();
+  private final long startAllocatedBytes = allocatedBytes(threadId);
+  private Long allocatedBytes;
+  private AgentExecutionProfile enclosing;
+
+  /** Starts profiling an execution on the current thread. */
+  public static AgentExecutionProfile start() {
+    AgentExecutionProfile profile = new AgentExecutionProfile();
+    profile.enclosing = CURRENT.get();
+    CURRENT.set(profile);
+    return profile;
+  }
+
+  /** @return the profile of the execution running on the current thread, if any */
+  @Nullable
+  public static AgentExecutionProfile current() {
+    return CURRENT.get();
+  }
+
+  /** Runs work handed off to another thread as part of the given execution's profile. */
+  public static void runWith(@Nullable AgentExecutionProfile profile, Runnable runnable) {
+    AgentExecutionProfile previous = CURRENT.get();
+    CURRENT.set(profile);
+    try {
+      runnable.run();
+    } finally {
+      CURRENT.set(previous);
+    }
+  }
+
+  /** Times the supplier as part of the current execution's profile, if any. */
+  public static <T> T time(Phase phase, Supplier<T> supplier) {
+    AgentExecutionProfile profile = CURRENT.get();
+    if (profile == null) {
+      return supplier.get();
+    }
+
+    long start = System.nanoTime();
+    try {
+      return supplier.get();
+    } finally {
+      profile.record(phase, System.nanoTime() - start);
+    }
+  }
+
+  public static void time(Phase phase, Runnable runnable) {
+    time(
+        phase,
+        () -> {
+          runnable.run();
+          return null;
+        });
+  }
+
+  public synchronized void record(Phase phase, long nanos) {
+    phaseNanos.merge(phase, nanos, Long::sum);
+  }
+
+  /** Records the number of items per type, and samples them to estimate their size. */
+  public synchronized void recordResult(CacheResult result) {
+    for (Map.Entry<String, Collection<CacheData>> entry : result.getCacheResults().entrySet()) {
+      recordItems(entry.getKey(), entry.getValue());
+    }
+  }
+
+  public synchronized void recordItems(String type, Collection<CacheData> data) {
+    if (data == null || data.isEmpty()) {
+      return;
+    }
+
+    long sampledBytes = 0;
+    int sampled = 0;
+    int stride = Math.max(1, data.size() / SIZE_SAMPLES);
+    Iterator<CacheData> it = data.iterator();
+    for (int i = 0; it.hasNext(); i++) {
+      CacheData item = it.next();
+      if (i % stride == 0 && sampled < SIZE_SAMPLES) {
+        sampledBytes += estimateSize(item);
+        sampled++;
+      }
+    }
+
+    items.merge(type, data.size(), Integer::sum);
+    estimatedBytes.merge(type, sampledBytes * data.size() / sampled, Long::sum);
+  }
+
+  /** Stops profiling, the profile is detached from the thread that started it. */
+  public void finish() {
+    long allocated = allocatedBytes(threadId);
+    if (allocated >= 0 && startAllocatedBytes >= 0) {
+      allocatedBytes = allocated - startAllocatedBytes;
+    }
+    if (CURRENT.get() == this) {
+      if (enclosing == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(enclosing);
+      }
+    }
+  }
+
+  /**
+   * @return true only the first time it is called, so a profile is reported to monitoring once
+   */
+  public boolean markPublished() {
+    return published.compareAndSet(false, true);
+  }
+
+  public synchronized Map<String, Long> getPhaseDurationsMs() {
+    Map<String, Long> durations = new TreeMap<>();
+    phaseNanos.forEach(
+        (phase, nanos) ->
+            durations.put(phase.name().toLowerCase(), TimeUnit.NANOSECONDS.toMillis(nanos)));
+    return durations;
+  }
+
+  public synchronized Map<Phase, Long> phaseNanos() {
+    return new EnumMap<>(phaseNanos);
+  }
+
+  public synchronized Map<String, Integer> getItems() {
+    return new TreeMap<>(items);
+  }
+
+  public synchronized Map<String, Long> getEstimatedBytes() {
+    return new TreeMap<>(estimatedBytes);
+  }
+
+  /**
+   * @return bytes allocated by the thread that ran the execution, or null if the JVM does not
+   *     support measuring it
+   */
+  @Nullable
+  public Long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  private static long allocatedBytes(long threadId) {
+    if (THREADS instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+      if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+        return threads.getThreadAllocatedBytes(threadId);
+      }
+    }
+    return -1;
+  }
+
+  /** Roughly what the item takes once serialized: its id, attributes and relationships. */
+  static long estimateSize(CacheData item) {
+    return estimateSize(item.getId())
+        + estimateSize(item.getAttributes())
+        + estimateSize(item.getRelationships());
+  }
+
+  private static long estimateSize(Object value) {
+    if (value == null) {
+      return 4;
+    }
+    if (value instanceof CharSequence) {
+      return ((CharSequence) value).length() + 2;
+    }
+    if (value instanceof Map) {
+      long size = 2;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        size += estimateSize(entry.getKey()) + estimateSize(entry.getValue()) + 2;
+      }
+      return size;
+    }
+    if (value instanceof Collection) {
+      long size = 2;
+      for (Object element : (Collection<?>) value) {
+        size += estimateSize(element) + 1;
+      }
+      return size;
+    }
+    return String.valueOf(value).length();
+  }
+}
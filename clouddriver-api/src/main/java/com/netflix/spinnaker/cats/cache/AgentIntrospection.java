@@ -48,4 +48,9 @@ public interface AgentIntrospection {
   void finishWithError(Throwable error, CacheResult result);
 
   void finish(CacheResult result);
+
+  /** @return where the last execution spent its time, if it was profiled */
+  default AgentExecutionProfile getProfile() {
+    return null;
+  }
 }
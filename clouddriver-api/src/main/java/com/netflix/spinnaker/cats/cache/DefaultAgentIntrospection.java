@@ -49,6 +49,13 @@ public class DefaultAgentIntrospection implements AgentIntrospection {
         result.getEvictions().values().stream().reduce(0, (a, b) -> a + b.size(), (a, b) -> a + b);
   }
 
+  /** Records an execution whose results were stored incrementally rather than as one result. */
+  public void finish(int totalAdditions, int totalEvictions) {
+    lastExecutionDurationMs = System.currentTimeMillis() - lastExecutionStartMs;
+    this.totalAdditions = totalAdditions;
+    this.totalEvictions = totalEvictions;
+  }
+
   private String id;
   private String provider;
   private int totalAdditions;
@@ -57,6 +64,7 @@ public class DefaultAgentIntrospection implements AgentIntrospection {
   private Throwable lastError;
   private Long lastExecutionStartMs;
   private Long lastExecutionDurationMs;
+  private AgentExecutionProfile profile;
 
   public String getLastExecutionStartDate() {
     return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(lastExecutionStartMs);
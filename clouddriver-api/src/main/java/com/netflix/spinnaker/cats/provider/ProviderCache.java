@@ -21,6 +21,7 @@ import com.netflix.spinnaker.cats.cache.Cache;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.kork.annotations.Beta;
 import java.util.Collection;
+import java.util.HashSet;
 
 @Beta
 public interface ProviderCache extends Cache {
@@ -49,6 +50,27 @@ public interface ProviderCache extends Cache {
   void addCacheResult(
       String source, Collection<String> authoritativeTypes, CacheResult cacheResult);
 
+  /**
+   * * Starts storing a result that source hands over in chunks, each stored like {@link
+   * #addCacheResult}. Implementations may read what source stored before once for all chunks,
+   * rather than once per chunk.
+   *
+   * @param source The calling caching agent
+   * @param authoritativeTypes Authoritative types of every chunk
+   * @return the stream to add each chunk to, to be closed once all chunks have been added
+   */
+  default ResultStream openResultStream(String source, Collection<String> authoritativeTypes) {
+    return chunk -> addCacheResult(source, new HashSet<>(authoritativeTypes), chunk);
+  }
+
+  /** The chunks of a result stored through {@link #openResultStream}. */
+  interface ResultStream extends AutoCloseable {
+    void add(CacheResult chunk);
+
+    @Override
+    default void close() {}
+  }
+
   /**
    * * Add or update a single authoritative resource.
    *
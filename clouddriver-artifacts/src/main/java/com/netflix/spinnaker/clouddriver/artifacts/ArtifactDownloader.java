@@ -17,24 +17,78 @@
 
 package com.netflix.spinnaker.clouddriver.artifacts;
 
+import com.netflix.spinnaker.clouddriver.artifacts.config.ArtifactCredentials;
 import com.netflix.spinnaker.kork.artifacts.model.Artifact;
 import com.netflix.spinnaker.kork.exceptions.MissingCredentialsException;
 import com.netflix.spinnaker.kork.web.exceptions.NotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import lombok.RequiredArgsConstructor;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
-@RequiredArgsConstructor
 public class ArtifactDownloader {
   private final ArtifactCredentialsRepository artifactCredentialsRepository;
+  private final int maxConcurrentDownloadsPerAccount;
+  private final Map<String, Semaphore> accountPermits = new ConcurrentHashMap<>();
+
+  public ArtifactDownloader(ArtifactCredentialsRepository artifactCredentialsRepository) {
+    this(artifactCredentialsRepository, 0);
+  }
+
+  @Autowired
+  public ArtifactDownloader(
+      ArtifactCredentialsRepository artifactCredentialsRepository,
+      @Value("${artifacts.max-concurrent-downloads-per-account:0}")
+          int maxConcurrentDownloadsPerAccount) {
+    this.artifactCredentialsRepository = artifactCredentialsRepository;
+    this.maxConcurrentDownloadsPerAccount = maxConcurrentDownloadsPerAccount;
+  }
 
   public InputStream download(Artifact artifact) throws IOException {
+    return getCredentials(artifact).download(artifact);
+  }
+
+  /**
+   * Streams the artifact straight into {@code outputStream} without buffering it in memory. At
+   * most {@code artifacts.max-concurrent-downloads-per-account} downloads per artifact account run
+   * at once (unlimited when 0), additional callers wait for a running download to finish.
+   */
+  public void download(Artifact artifact, OutputStream outputStream) throws IOException {
+    ArtifactCredentials credentials = getCredentials(artifact);
+    Semaphore permits = null;
+    if (maxConcurrentDownloadsPerAccount > 0) {
+      permits =
+          accountPermits.computeIfAbsent(
+              credentials.getName(), k -> new Semaphore(maxConcurrentDownloadsPerAccount, true));
+      try {
+        permits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(
+            "Interrupted while waiting to download artifact from " + credentials.getName(), e);
+      }
+    }
+
+    try (InputStream inputStream = credentials.download(artifact)) {
+      IOUtils.copy(inputStream, outputStream);
+    } finally {
+      if (permits != null) {
+        permits.release();
+      }
+    }
+  }
+
+  private ArtifactCredentials getCredentials(Artifact artifact) {
     try {
-      return artifactCredentialsRepository
-          .getCredentialsForType(artifact.getArtifactAccount(), artifact.getType())
-          .download(artifact);
+      return artifactCredentialsRepository.getCredentialsForType(
+          artifact.getArtifactAccount(), artifact.getType());
     } catch (MissingCredentialsException e) {
       throw new NotFoundException(e);
     }
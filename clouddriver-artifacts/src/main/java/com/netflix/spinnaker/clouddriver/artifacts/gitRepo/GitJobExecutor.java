@@ -19,6 +19,7 @@ package com.netflix.spinnaker.clouddriver.artifacts.gitRepo;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.base.Strings;
 import com.netflix.spinnaker.clouddriver.jobs.JobExecutor;
 import com.netflix.spinnaker.clouddriver.jobs.JobRequest;
 import com.netflix.spinnaker.clouddriver.jobs.JobResult;
@@ -31,6 +32,8 @@ import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
@@ -41,6 +44,7 @@ import org.springframework.util.StringUtils;
 public class GitJobExecutor {
 
   private static final String SSH_KEY_PWD_ENV_VAR = "SSH_KEY_PWD";
+  private static final Pattern COMMIT_SHA_PATTERN = Pattern.compile("^[0-9a-f]{40}$");
   private static Path genericAskPassBinary;
 
   @Getter private final GitRepoArtifactAccount account;
@@ -114,13 +118,7 @@ public class GitJobExecutor {
   }
 
   private void clone(String repoUrl, String branch, Path destination) throws IOException {
-    if (!isValidReference(repoUrl)) {
-      throw new IllegalArgumentException(
-          "Git reference \""
-              + repoUrl
-              + "\" is invalid for credentials with auth type "
-              + authType);
-    }
+    validateReference(repoUrl);
     FileUtils.deleteDirectory(destination.toFile());
     FileUtils.forceMkdir(destination.toFile());
     log.info("Cloning git/repo {} into {}", repoUrl, destination.toString());
@@ -176,6 +174,139 @@ public class GitJobExecutor {
     }
   }
 
+  /**
+   * Resolves a branch or tag to the commit sha it currently points to, without transferring any
+   * objects. Full commit shas are returned as they are.
+   */
+  public String resolveCommitSha(String repoUrl, String ref) throws IOException {
+    if (COMMIT_SHA_PATTERN.matcher(ref).matches()) {
+      return ref;
+    }
+    validateReference(repoUrl);
+
+    String lsRemoteCommand = gitExecutable + " ls-remote " + repoUrlWithAuth(repoUrl) + " " + ref;
+    List<String> command = cmdToList(lsRemoteCommand);
+    log.debug("Executing command: \"{}\"", String.join(" ", command));
+
+    JobResult<String> result =
+        jobExecutor.runJob(new JobRequest(command, addEnvVars(System.getenv()), (File) null));
+
+    if (result.getResult() != JobResult.Result.SUCCESS) {
+      throw new IOException(
+          "Failed to resolve "
+              + ref
+              + " in repository "
+              + repoUrl
+              + ". Error: "
+              + result.getError()
+              + " Output: "
+              + result.getOutput());
+    }
+
+    return findCommitSha(result.getOutput(), ref)
+        .orElseThrow(
+            () -> new IOException("Reference " + ref + " not found in repository " + repoUrl));
+  }
+
+  /**
+   * Finds the commit a ref resolves to in the output of ls-remote, whose lines look like
+   * "&lt;sha&gt;\trefs/heads/&lt;branch&gt;". ls-remote matches patterns by their trailing path
+   * components, so only refs named exactly like the ref are considered, in the order git itself
+   * resolves short names: the full ref name, then tags, then branches. The peeled "^{}" line of an
+   * annotated tag is preferred, as it has the commit rather than the tag object.
+   */
+  static Optional<String> findCommitSha(String lsRemoteOutput, String ref) {
+    Map<String, String> shas = new HashMap<>();
+    for (String line : Strings.nullToEmpty(lsRemoteOutput).split("\n")) {
+      String[] parts = line.trim().split("\\s+");
+      if (parts.length == 2) {
+        shas.put(parts[1], parts[0]);
+      }
+    }
+    return Stream.of(
+            ref + "^{}",
+            ref,
+            "refs/tags/" + ref + "^{}",
+            "refs/tags/" + ref,
+            "refs/heads/" + ref)
+        .filter(shas::containsKey)
+        .map(shas::get)
+        .findFirst();
+  }
+
+  /** Returns true if the commit is already present in the local mirror. */
+  public boolean hasCommit(Path mirrorPath, String commitSha) {
+    if (!mirrorPath.toFile().isDirectory()) {
+      return false;
+    }
+    List<String> command =
+        Arrays.asList(gitExecutable, "cat-file", "-e", commitSha + "^{commit}");
+    log.debug("Executing command: \"{}\"", String.join(" ", command));
+    return jobExecutor.runJob(new JobRequest(command, mirrorPath.toFile())).getResult()
+        == JobResult.Result.SUCCESS;
+  }
+
+  /**
+   * Fetches only the requested ref into a bare mirror of the repository, creating the mirror first
+   * if needed. Unlike {@link #cloneOrPull}, all branches of a repository share the same mirror.
+   *
+   * @param commitSha the commit the ref was resolved to, which names the ref it is fetched into
+   */
+  public void fetchIntoMirror(String repoUrl, String ref, String commitSha, Path mirrorPath)
+      throws IOException {
+    validateReference(repoUrl);
+    File mirrorFile = mirrorPath.toFile();
+    if (!Paths.get(mirrorPath.toString(), "HEAD").toFile().exists()) {
+      FileUtils.deleteDirectory(mirrorFile);
+      FileUtils.forceMkdir(mirrorFile);
+      log.info("Creating bare mirror for git/repo {} in {}", repoUrl, mirrorPath.toString());
+      JobResult<String> result =
+          jobExecutor.runJob(
+              new JobRequest(Arrays.asList(gitExecutable, "init", "--bare"), mirrorFile));
+      if (result.getResult() != JobResult.Result.SUCCESS) {
+        throw new IOException(
+            "Failed to create mirror for repository "
+                + repoUrl
+                + " in "
+                + mirrorPath
+                + ". Error: "
+                + result.getError()
+                + " Output: "
+                + result.getOutput());
+      }
+    }
+
+    log.info("Fetching {} of git/repo {} into {}", ref, repoUrl, mirrorPath.toString());
+    // fetched into a ref named after the commit, so that gc doesn't remove it from the mirror
+    String fetchCommand =
+        gitExecutable
+            + " fetch --depth 1 "
+            + repoUrlWithAuth(repoUrl)
+            + " +"
+            + ref
+            + ":refs/fetched/"
+            + commitSha;
+    List<String> command = cmdToList(fetchCommand);
+    log.debug("Executing command: \"{}\"", String.join(" ", command));
+
+    JobResult<String> result =
+        jobExecutor.runJob(new JobRequest(command, addEnvVars(System.getenv()), mirrorFile));
+
+    if (result.getResult() != JobResult.Result.SUCCESS) {
+      throw new IOException(
+          "Failed to fetch "
+              + ref
+              + " of repository "
+              + repoUrl
+              + " into "
+              + mirrorPath
+              + ". Error: "
+              + result.getError()
+              + " Output: "
+              + result.getOutput());
+    }
+  }
+
   public void archive(Path localClone, String branch, String subDir, Path outputFile)
       throws IOException {
 
@@ -247,6 +378,16 @@ public class GitJobExecutor {
     return genericAskPassBinary;
   }
 
+  private void validateReference(String repoUrl) {
+    if (!isValidReference(repoUrl)) {
+      throw new IllegalArgumentException(
+          "Git reference \""
+              + repoUrl
+              + "\" is invalid for credentials with auth type "
+              + authType);
+    }
+  }
+
   private boolean isValidReference(String reference) {
     if (authType == AuthType.USER_PASS || authType == AuthType.TOKEN) {
       return reference.startsWith("http");
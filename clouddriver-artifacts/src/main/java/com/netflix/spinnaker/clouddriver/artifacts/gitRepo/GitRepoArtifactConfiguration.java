@@ -16,6 +16,7 @@
 
 package com.netflix.spinnaker.clouddriver.artifacts.gitRepo;
 
+import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.jobs.JobExecutor;
 import com.netflix.spinnaker.credentials.CredentialsTypeProperties;
 import java.io.IOException;
@@ -40,7 +41,8 @@ class GitRepoArtifactConfiguration {
       gitCredentialsProperties(
           @Value("${artifacts.git-repo.git-executable:git}") String gitExecutable,
           JobExecutor jobExecutor,
-          GitRepoFileSystem gitRepoFileSystem) {
+          GitRepoFileSystem gitRepoFileSystem,
+          Registry registry) {
     return CredentialsTypeProperties.<GitRepoArtifactCredentials, GitRepoArtifactAccount>builder()
         .type(GitRepoArtifactCredentials.CREDENTIALS_TYPE)
         .credentialsClass(GitRepoArtifactCredentials.class)
@@ -50,7 +52,9 @@ class GitRepoArtifactConfiguration {
             a -> {
               try {
                 return new GitRepoArtifactCredentials(
-                    new GitJobExecutor(a, jobExecutor, gitExecutable), gitRepoFileSystem);
+                    new GitJobExecutor(a, jobExecutor, gitExecutable),
+                    gitRepoFileSystem,
+                    registry);
               } catch (IOException e) {
                 log.warn("Failure instantiating git artifact account {}: ", a, e);
                 return null;
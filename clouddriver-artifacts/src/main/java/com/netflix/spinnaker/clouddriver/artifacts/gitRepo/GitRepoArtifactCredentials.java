@@ -18,15 +18,21 @@ package com.netflix.spinnaker.clouddriver.artifacts.gitRepo;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.artifacts.config.ArtifactCredentials;
 import com.netflix.spinnaker.kork.annotations.NonnullByDefault;
 import com.netflix.spinnaker.kork.artifacts.model.Artifact;
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lombok.Getter;
@@ -45,10 +51,13 @@ public class GitRepoArtifactCredentials implements ArtifactCredentials {
 
   private final GitJobExecutor executor;
   private final GitRepoFileSystem gitRepoFileSystem;
+  private final Registry registry;
 
-  public GitRepoArtifactCredentials(GitJobExecutor executor, GitRepoFileSystem gitRepoFileSystem) {
+  public GitRepoArtifactCredentials(
+      GitJobExecutor executor, GitRepoFileSystem gitRepoFileSystem, Registry registry) {
     this.executor = executor;
     this.gitRepoFileSystem = gitRepoFileSystem;
+    this.registry = registry;
     this.name = this.executor.getAccount().getName();
   }
 
@@ -62,6 +71,10 @@ public class GitRepoArtifactCredentials implements ArtifactCredentials {
     String repoUrl = artifact.getReference();
     String subPath = artifactSubPath(artifact);
     String branch = artifactVersion(artifact);
+    if (gitRepoFileSystem.isMirrorEnabled()) {
+      return getMirrorInputStream(repoUrl, subPath, branch);
+    }
+
     Path stagingPath = gitRepoFileSystem.getLocalClonePath(repoUrl, branch);
     String repoBasename = getRepoBasename(repoUrl);
     Path outputFile = Paths.get(stagingPath.toString(), repoBasename + ".tgz");
@@ -116,6 +129,87 @@ public class GitRepoArtifactCredentials implements ArtifactCredentials {
     }
   }
 
+  private InputStream getMirrorInputStream(String repoUrl, String subPath, String branch)
+      throws IOException {
+    String commitSha = executor.resolveCommitSha(repoUrl, branch);
+    Optional<byte[]> cached =
+        gitRepoFileSystem.getCachedArchive(name, repoUrl, commitSha, subPath);
+    registry
+        .counter(
+            registry
+                .createId("artifacts.gitRepo.archiveCache")
+                .withTag("account", name)
+                .withTag("hit", cached.isPresent()))
+        .increment();
+    if (cached.isPresent()) {
+      return new ByteArrayInputStream(cached.get());
+    }
+
+    Path mirrorPath = gitRepoFileSystem.getLocalMirrorPath(name, repoUrl);
+    try {
+      if (!gitRepoFileSystem.tryTimedMirrorLock(name, repoUrl)) {
+        throw new IllegalStateException(
+            "Timeout waiting to acquire file system lock for " + repoUrl + " mirror.");
+      }
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(
+          "Interrupted while waiting to acquire file system lock for " + repoUrl + " mirror.", e);
+    }
+
+    try {
+      if (!executor.hasCommit(mirrorPath, commitSha)) {
+        fetchIntoMirror(repoUrl, branch, commitSha, mirrorPath);
+        if (!executor.hasCommit(mirrorPath, commitSha)) {
+          // the branch moved between resolving and fetching it, fetch the exact commit instead
+          fetchIntoMirror(repoUrl, commitSha, commitSha, mirrorPath);
+        }
+      }
+      if (!mirrorPath.toFile().setLastModified(System.currentTimeMillis())) {
+        log.warn("Unable to set last modified time on {}", mirrorPath.toString());
+      }
+
+      log.info("Creating archive for git/repo {} at {}", repoUrl, commitSha);
+      Path outputFile = Files.createTempFile(getRepoBasename(repoUrl), ".tgz");
+      boolean streamed = false;
+      try {
+        executor.archive(mirrorPath, commitSha, subPath, outputFile);
+        if (!gitRepoFileSystem.canCacheArchive(Files.size(outputFile))) {
+          // too large to cache, stream it from disk rather than reading it all into memory
+          InputStream archive =
+              Files.newInputStream(outputFile, StandardOpenOption.DELETE_ON_CLOSE);
+          streamed = true;
+          return archive;
+        }
+        byte[] archive = Files.readAllBytes(outputFile);
+        gitRepoFileSystem.cacheArchive(name, repoUrl, commitSha, subPath, archive);
+        return new ByteArrayInputStream(archive);
+      } finally {
+        if (!streamed) {
+          Files.deleteIfExists(outputFile);
+        }
+      }
+    } finally {
+      gitRepoFileSystem.unlockMirror(name, repoUrl);
+    }
+  }
+
+  private void fetchIntoMirror(String repoUrl, String ref, String commitSha, Path mirrorPath)
+      throws IOException {
+    boolean newMirror = !mirrorPath.toFile().exists();
+    long startTime = registry.clock().monotonicTime();
+    try {
+      executor.fetchIntoMirror(repoUrl, ref, commitSha, mirrorPath);
+    } finally {
+      registry
+          .timer(
+              registry
+                  .createId("artifacts.gitRepo.fetch")
+                  .withTag("account", name)
+                  .withTag("operation", newMirror ? "clone" : "fetch"))
+          .record(registry.clock().monotonicTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+  }
+
   private String getRepoBasename(String url) {
     Matcher matcher = GENERIC_URL_PATTERN.matcher(url);
     if (!matcher.matches()) {
@@ -32,5 +32,9 @@ public class GitRepoArtifactProviderProperties implements ArtifactProvider<GitRe
   private int cloneRetentionCheckMs = DEFAULT_CLONE_RETENTION_CHECK_MS;
   private long cloneRetentionMaxBytes = 1024 * 1024 * 100; // 100 MB
   private int cloneWaitLockTimeoutSec = 60;
+  // Keep one bare mirror per repository instead of a clone per branch, mirrors are retained and
+  // evicted according to cloneRetentionMinutes and cloneRetentionMaxBytes
+  private boolean mirrorEnabled = false;
+  private long archiveCacheMaxBytes = 1024 * 1024 * 50; // 50 MB
   private List<GitRepoArtifactAccount> accounts = new ArrayList<>();
 }
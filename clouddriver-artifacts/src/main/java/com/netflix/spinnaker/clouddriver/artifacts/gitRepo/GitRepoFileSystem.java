@@ -17,12 +17,16 @@
 
 package com.netflix.spinnaker.clouddriver.artifacts.gitRepo;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.hash.Hashing;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -40,18 +44,46 @@ public class GitRepoFileSystem {
 
   private final GitRepoArtifactProviderProperties config;
   private final Map<String, Lock> pathLocks = new ConcurrentHashMap<>();
+  private final Cache<String, byte[]> archiveCache;
 
   public GitRepoFileSystem(GitRepoArtifactProviderProperties properties) {
     this.config = properties;
+    this.archiveCache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(Math.max(0, properties.getArchiveCacheMaxBytes()))
+            .<String, byte[]>weigher((key, archive) -> archive.length)
+            .build();
   }
 
   public Path getLocalClonePath(String repoUrl, String branch) {
     return Paths.get(CLONES_HOME.toString(), hashCoordinates(repoUrl, branch));
   }
 
+  /**
+   * A single bare mirror is kept per account and repository url, every branch, tag or commit
+   * requested for that repository is fetched into it. Mirrors are not shared between accounts, as a
+   * commit already in a mirror is archived without going back to the remote with the account's
+   * credentials.
+   */
+  public Path getLocalMirrorPath(String account, String repoUrl) {
+    return Paths.get(
+        CLONES_HOME.toString(), hashCoordinates(account + "@" + repoUrl, null) + ".git");
+  }
+
+  public boolean isMirrorEnabled() {
+    return config.isMirrorEnabled();
+  }
+
   public boolean tryTimedLock(String repoUrl, String branch) throws InterruptedException {
-    String hash = hashCoordinates(repoUrl, branch);
-    Lock lock = pathLocks.computeIfAbsent(hash, k -> new ReentrantLock());
+    return tryTimedLock(hashCoordinates(repoUrl, branch));
+  }
+
+  public boolean tryTimedMirrorLock(String account, String repoUrl) throws InterruptedException {
+    return tryTimedLock(getLocalMirrorPath(account, repoUrl).toFile().getName());
+  }
+
+  private boolean tryTimedLock(String cloneHashDir) throws InterruptedException {
+    Lock lock = pathLocks.computeIfAbsent(cloneHashDir, k -> new ReentrantLock());
     return lock.tryLock(config.getCloneWaitLockTimeoutSec(), TimeUnit.SECONDS);
   }
 
@@ -72,6 +104,38 @@ public class GitRepoFileSystem {
     lock.unlock();
   }
 
+  public void unlockMirror(String account, String repoUrl) {
+    unlock(getLocalMirrorPath(account, repoUrl).toFile().getName());
+  }
+
+  /**
+   * Archives are keyed by commit sha so they never go stale, the same (account, repo, commit, path)
+   * request is always served from memory once it has been archived. The account is part of the key
+   * as a commit sha is used as is, without checking the account can read the repository.
+   */
+  public Optional<byte[]> getCachedArchive(
+      String account, String repoUrl, String commitSha, String subPath) {
+    return Optional.ofNullable(
+        archiveCache.getIfPresent(archiveKey(account, repoUrl, commitSha, subPath)));
+  }
+
+  public void cacheArchive(
+      String account, String repoUrl, String commitSha, String subPath, byte[] archive) {
+    if (canCacheArchive(archive.length)) {
+      archiveCache.put(archiveKey(account, repoUrl, commitSha, subPath), archive);
+    }
+  }
+
+  /** Archives larger than the whole cache are never cached, so there is no point reading them. */
+  public boolean canCacheArchive(long size) {
+    return size <= config.getArchiveCacheMaxBytes();
+  }
+
+  private static String archiveKey(
+      String account, String repoUrl, String commitSha, String subPath) {
+    return String.join("#", account, repoUrl, commitSha, subPath);
+  }
+
   public boolean canRetainClone() {
     return config.getCloneRetentionMinutes() != 0 && hasFreeDisk();
   }
@@ -97,31 +161,69 @@ public class GitRepoFileSystem {
               + "}")
   private void deleteExpiredRepos() {
     try {
-      if (!CLONES_HOME.toFile().exists() || config.getCloneRetentionMinutes() < 0) {
-        return;
-      }
-      File[] repos = CLONES_HOME.toFile().listFiles();
-      if (repos == null) {
+      if (!CLONES_HOME.toFile().exists()) {
         return;
       }
-      for (File r : repos) {
-        long ageMin = ((System.currentTimeMillis() - r.lastModified()) / 1000) / 60;
-        if (ageMin < config.getCloneRetentionMinutes()) {
-          continue;
-        }
-        if (!tryLock(r.getName())) {
-          // move on if the directory is locked by another thread, just wait for the next cycle
-          continue;
-        }
-        try {
-          log.info("Deleting expired git clone {}", r.getName());
-          FileUtils.forceDelete(r);
-        } finally {
-          unlock(r.getName());
-        }
+      if (config.getCloneRetentionMinutes() >= 0) {
+        deleteExpiredRepos(CLONES_HOME.toFile().listFiles());
       }
+      deleteLeastRecentlyUsedRepos();
     } catch (IOException e) {
       log.error("Error deleting expired git clones, ignoring", e);
     }
   }
+
+  private void deleteExpiredRepos(File[] repos) throws IOException {
+    if (repos == null) {
+      return;
+    }
+    for (File r : repos) {
+      long ageMin = ((System.currentTimeMillis() - r.lastModified()) / 1000) / 60;
+      if (ageMin < config.getCloneRetentionMinutes()) {
+        continue;
+      }
+      if (!tryLock(r.getName())) {
+        // move on if the directory is locked by another thread, just wait for the next cycle
+        continue;
+      }
+      try {
+        log.info("Deleting expired git clone {}", r.getName());
+        FileUtils.forceDelete(r);
+      } finally {
+        unlock(r.getName());
+      }
+    }
+  }
+
+  /**
+   * Keeps the clones directory under {@code cloneRetentionMaxBytes} by deleting the clones and
+   * mirrors that were used least recently.
+   */
+  private void deleteLeastRecentlyUsedRepos() throws IOException {
+    long currentSize = FileUtils.sizeOfDirectory(CLONES_HOME.toFile());
+    if (currentSize < config.getCloneRetentionMaxBytes()) {
+      return;
+    }
+    File[] repos = CLONES_HOME.toFile().listFiles();
+    if (repos == null) {
+      return;
+    }
+    Arrays.sort(repos, Comparator.comparingLong(File::lastModified));
+    for (File r : repos) {
+      if (currentSize < config.getCloneRetentionMaxBytes()) {
+        return;
+      }
+      if (!tryLock(r.getName())) {
+        continue;
+      }
+      try {
+        long repoSize = FileUtils.sizeOf(r);
+        log.info("Deleting least recently used git clone {} ({} bytes)", r.getName(), repoSize);
+        FileUtils.forceDelete(r);
+        currentSize -= repoSize;
+      } finally {
+        unlock(r.getName());
+      }
+    }
+  }
 }
@@ -25,8 +25,13 @@ import com.netflix.spinnaker.credentials.MapBackedCredentialsRepository;
 import com.netflix.spinnaker.credentials.NoopCredentialsLifecycleHandler;
 import com.netflix.spinnaker.kork.artifacts.model.Artifact;
 import com.netflix.spinnaker.kork.exceptions.MissingCredentialsException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.Test;
 
 public class ArtifactDownloaderTest {
@@ -49,10 +54,32 @@ public class ArtifactDownloaderTest {
         .isThrownBy(() -> artifactsCredentials.getCredentialsForType("test", "unsupportedType"));
   }
 
+  @Test
+  public void testDownloadStreamsAndClosesArtifact() throws IOException {
+    CredentialsRepository<TestArtifactCredentials> repository =
+        new MapBackedCredentialsRepository<>(
+            TestArtifactCredentials.artifactType, new NoopCredentialsLifecycleHandler<>());
+    TestArtifactCredentials credentials = new TestArtifactCredentials("test");
+    repository.save(credentials);
+
+    ArtifactDownloader artifactDownloader =
+        new ArtifactDownloader(new ArtifactCredentialsRepository(List.of(repository)), 1);
+    Artifact artifact = Artifact.builder().artifactAccount("test").type("type1").build();
+
+    for (int i = 0; i < 2; i++) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      artifactDownloader.download(artifact, outputStream);
+
+      assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo("contents");
+      assertThat(credentials.closed.get()).isTrue();
+    }
+  }
+
   private static final class TestArtifactCredentials implements ArtifactCredentials {
     static final String artifactType = "artifactType";
     private static final List<String> types = List.of("type1", "type2");
     private String name;
+    private final AtomicBoolean closed = new AtomicBoolean();
 
     public TestArtifactCredentials(String name) {
       this.name = name;
@@ -75,7 +102,14 @@ public class ArtifactDownloaderTest {
 
     @Override
     public InputStream download(Artifact artifact) {
-      return null;
+      closed.set(false);
+      return new ByteArrayInputStream("contents".getBytes(StandardCharsets.UTF_8)) {
+        @Override
+        public void close() throws IOException {
+          closed.set(true);
+          super.close();
+        }
+      };
     }
 
     @Override
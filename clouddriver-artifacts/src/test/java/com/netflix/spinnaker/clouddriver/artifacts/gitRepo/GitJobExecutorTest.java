@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021 Armory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.artifacts.gitRepo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class GitJobExecutorTest {
+  private static final String BRANCH_SHA = "1111111111111111111111111111111111111111";
+  private static final String TAG_SHA = "2222222222222222222222222222222222222222";
+  private static final String PEELED_SHA = "3333333333333333333333333333333333333333";
+
+  @Test
+  void resolvesALightweightTagRatherThanABranchEndingWithItsName() {
+    String output = BRANCH_SHA + "\trefs/heads/release/v1\n" + TAG_SHA + "\trefs/tags/v1\n";
+
+    assertThat(GitJobExecutor.findCommitSha(output, "v1")).contains(TAG_SHA);
+  }
+
+  @Test
+  void resolvesAnAnnotatedTagToTheCommitItPointsTo() {
+    String output = TAG_SHA + "\trefs/tags/v1\n" + PEELED_SHA + "\trefs/tags/v1^{}\n";
+
+    assertThat(GitJobExecutor.findCommitSha(output, "v1")).contains(PEELED_SHA);
+    assertThat(GitJobExecutor.findCommitSha(output, "refs/tags/v1")).contains(PEELED_SHA);
+  }
+
+  @Test
+  void resolvesABranch() {
+    String output = BRANCH_SHA + "\trefs/heads/master\n" + TAG_SHA + "\trefs/heads/old/master\n";
+
+    assertThat(GitJobExecutor.findCommitSha(output, "master")).contains(BRANCH_SHA);
+  }
+
+  @Test
+  void doesNotResolveRefsOnlyEndingWithTheName() {
+    String output = BRANCH_SHA + "\trefs/heads/release/v1\n";
+
+    assertThat(GitJobExecutor.findCommitSha(output, "v1")).isEmpty();
+  }
+}
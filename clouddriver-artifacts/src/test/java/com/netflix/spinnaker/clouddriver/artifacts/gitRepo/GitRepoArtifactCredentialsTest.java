@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 Armory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.artifacts.gitRepo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.kork.artifacts.model.Artifact;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+class GitRepoArtifactCredentialsTest {
+  private static final String SHA = "0123456789abcdef0123456789abcdef01234567";
+  private static final byte[] ARCHIVE = "archive-contents".getBytes(StandardCharsets.UTF_8);
+
+  private final Registry registry = new DefaultRegistry();
+  private final Artifact artifact =
+      Artifact.builder()
+          .type("git/repo")
+          .reference("https://github.com/spinnaker/clouddriver.git")
+          .version("master")
+          .build();
+
+  @Test
+  void servesRepeatedRequestsFromTheArchiveCache() throws IOException {
+    FakeGitJobExecutor executor = new FakeGitJobExecutor();
+    GitRepoArtifactCredentials credentials = credentials(executor, 1024);
+
+    try (InputStream first = credentials.download(artifact)) {
+      assertThat(first).hasSameContentAs(new ByteArrayInputStream(ARCHIVE));
+    }
+    try (InputStream second = credentials.download(artifact)) {
+      assertThat(second).hasSameContentAs(new ByteArrayInputStream(ARCHIVE));
+    }
+
+    assertThat(executor.archives).isEqualTo(1);
+    assertThat(archiveCacheCount(false)).isEqualTo(1);
+    assertThat(archiveCacheCount(true)).isEqualTo(1);
+    assertThat(executor.lastOutputFile).doesNotExist();
+  }
+
+  @Test
+  void archivesAgainWhenTheCommitIsNotCached() throws IOException {
+    FakeGitJobExecutor executor = new FakeGitJobExecutor();
+    GitRepoArtifactCredentials credentials = credentials(executor, 1024);
+
+    credentials.download(artifact).close();
+    executor.sha = SHA.replace('0', 'f');
+    try (InputStream moved = credentials.download(artifact)) {
+      assertThat(moved).hasSameContentAs(new ByteArrayInputStream(ARCHIVE));
+    }
+
+    assertThat(executor.archives).isEqualTo(2);
+    assertThat(archiveCacheCount(false)).isEqualTo(2);
+  }
+
+  @Test
+  void streamsArchivesTooLargeToCacheFromDisk() throws IOException {
+    FakeGitJobExecutor executor = new FakeGitJobExecutor();
+    GitRepoArtifactCredentials credentials = credentials(executor, ARCHIVE.length - 1);
+
+    try (InputStream first = credentials.download(artifact)) {
+      assertThat(executor.lastOutputFile).exists();
+      assertThat(first).hasSameContentAs(new ByteArrayInputStream(ARCHIVE));
+    }
+    assertThat(executor.lastOutputFile).doesNotExist();
+
+    credentials.download(artifact).close();
+    assertThat(executor.archives).isEqualTo(2);
+    assertThat(archiveCacheCount(true)).isEqualTo(0);
+  }
+
+  @Test
+  void doesNotServeArchivesCachedForAnotherAccount() throws IOException {
+    GitRepoFileSystem fileSystem = fileSystem(1024);
+    FakeGitJobExecutor executor = new FakeGitJobExecutor();
+    FakeGitJobExecutor otherExecutor = new FakeGitJobExecutor("other");
+
+    new GitRepoArtifactCredentials(executor, fileSystem, registry).download(artifact).close();
+    new GitRepoArtifactCredentials(otherExecutor, fileSystem, registry).download(artifact).close();
+
+    assertThat(executor.archives).isEqualTo(1);
+    assertThat(otherExecutor.archives).isEqualTo(1);
+    assertThat(fileSystem.getLocalMirrorPath("test", artifact.getReference()))
+        .isNotEqualTo(fileSystem.getLocalMirrorPath("other", artifact.getReference()));
+  }
+
+  private GitRepoArtifactCredentials credentials(
+      FakeGitJobExecutor executor, long archiveCacheMaxBytes) {
+    return new GitRepoArtifactCredentials(executor, fileSystem(archiveCacheMaxBytes), registry);
+  }
+
+  private static GitRepoFileSystem fileSystem(long archiveCacheMaxBytes) {
+    GitRepoArtifactProviderProperties properties = new GitRepoArtifactProviderProperties();
+    properties.setMirrorEnabled(true);
+    properties.setArchiveCacheMaxBytes(archiveCacheMaxBytes);
+    return new GitRepoFileSystem(properties);
+  }
+
+  private long archiveCacheCount(boolean hit) {
+    return registry
+        .counter(
+            registry
+                .createId("artifacts.gitRepo.archiveCache")
+                .withTag("account", "test")
+                .withTag("hit", hit))
+        .count();
+  }
+
+  /** Archives a fixed content without running git. */
+  private static class FakeGitJobExecutor extends GitJobExecutor {
+    private String sha = SHA;
+    private int archives;
+    private Path lastOutputFile;
+
+    FakeGitJobExecutor() throws IOException {
+      this("test");
+    }
+
+    FakeGitJobExecutor(String account) throws IOException {
+      super(GitRepoArtifactAccount.builder().name(account).build(), null, "git");
+    }
+
+    @Override
+    public String resolveCommitSha(String repoUrl, String ref) {
+      return sha;
+    }
+
+    @Override
+    public boolean hasCommit(Path mirrorPath, String commitSha) {
+      return true;
+    }
+
+    @Override
+    public void fetchIntoMirror(String repoUrl, String ref, String commitSha, Path mirrorPath) {}
+
+    @Override
+    public void archive(Path localClone, String branch, String subDir, Path outputFile)
+        throws IOException {
+      archives++;
+      lastOutputFile = outputFile;
+      Files.write(outputFile, ARCHIVE);
+    }
+  }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.aws.data;
+
+import static com.netflix.spinnaker.clouddriver.aws.AmazonCloudProvider.ID;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.netflix.frigga.Names;
+import com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A parsed AWS cache key, exposing the same fields as {@link Keys#parse(String)} without splitting
+ * the key or building a map up front.
+ *
+ * <p>Only the separator offsets are computed when a key is parsed. Fields are extracted from the
+ * key when they are read, and the frigga {@link Names} derived fields are parsed at most once.
+ * Instances are immutable and interned in a bounded cache, so the keys that are parsed over and
+ * over by the providers share a single instance.
+ *
+ * <p>This is a read-only {@link Map}, use {@link #toMap()} for a mutable copy.
+ */
+public final class AmazonCacheKey extends AbstractMap<String, String> {
+
+  private static final int MAX_INTERNED_KEYS = 50_000;
+
+  private static final Cache<String, AmazonCacheKey> INTERNED =
+      CacheBuilder.newBuilder().maximumSize(MAX_INTERNED_KEYS).build();
+
+  private static final Map<String, Namespace> PARSEABLE_NAMESPACES;
+
+  /** Field names in the same order {@link Keys#parse(String)} has always returned them. */
+  private static final Map<Namespace, List<String>> FIELDS =
+      ImmutableMap.<Namespace, List<String>>builder()
+          .put(Namespace.IMAGES, fields("account", "region", "imageId"))
+          .put(Namespace.NAMED_IMAGES, fields("account", "imageName"))
+          .put(
+              Namespace.SERVER_GROUPS,
+              fields(
+                  "application",
+                  "cluster",
+                  "account",
+                  "region",
+                  "serverGroup",
+                  "stack",
+                  "detail",
+                  "sequence"))
+          .put(Namespace.INSTANCES, fields("account", "region", "instanceId"))
+          .put(
+              Namespace.LAUNCH_CONFIGS,
+              fields("account", "region", "launchConfig", "application", "stack"))
+          .put(
+              Namespace.LOAD_BALANCERS,
+              fields(
+                  "account",
+                  "region",
+                  "loadBalancer",
+                  "vpcId",
+                  "application",
+                  "stack",
+                  "detail",
+                  "loadBalancerType"))
+          .put(
+              Namespace.TARGET_GROUPS,
+              fields(
+                  "account",
+                  "region",
+                  "targetGroup",
+                  "vpcId",
+                  "application",
+                  "stack",
+                  "detail",
+                  "targetType"))
+          .put(Namespace.CLUSTERS, fields("application", "account", "cluster", "stack", "detail"))
+          .put(Namespace.APPLICATIONS, fields("application"))
+          .put(Namespace.HEALTH, fields("instanceId", "account", "region"))
+          .put(Namespace.STACKS, fields("stackId", "account", "region"))
+          .put(
+              Namespace.LAUNCH_TEMPLATES,
+              fields("account", "region", "launchTemplateName", "application", "stack"))
+          .build();
+
+  static {
+    ImmutableMap.Builder<String, Namespace> namespaces = ImmutableMap.builder();
+    FIELDS.keySet().forEach(namespace -> namespaces.put(namespace.ns, namespace));
+    PARSEABLE_NAMESPACES = namespaces.build();
+  }
+
+  private final String key;
+  private final Namespace namespace;
+  private final List<String> fields;
+  /** Offsets of the ':' separators, ending with key.length() as a sentinel. */
+  private final int[] boundaries;
+  /** Number of parts, ignoring trailing empty parts as String.split does. */
+  private final int partCount;
+
+  private volatile Names names;
+
+  private AmazonCacheKey(String key, Namespace namespace, int[] boundaries, int partCount) {
+    this.key = key;
+    this.namespace = namespace;
+    this.fields = FIELDS.get(namespace);
+    this.boundaries = boundaries;
+    this.partCount = partCount;
+  }
+
+  /**
+   * @return the parsed key, or null if it is not an AWS key of a type that can be parsed
+   */
+  @Nullable
+  public static AmazonCacheKey parse(String key) {
+    AmazonCacheKey parsed = INTERNED.getIfPresent(key);
+    if (parsed == null) {
+      parsed = create(key);
+      if (parsed != null) {
+        INTERNED.put(key, parsed);
+      }
+    }
+    return parsed;
+  }
+
+  @Nullable
+  private static AmazonCacheKey create(String key) {
+    if (!key.startsWith(ID) || key.length() <= ID.length() || key.charAt(ID.length()) != ':') {
+      return null;
+    }
+
+    int[] boundaries = new int[8];
+    int count = 0;
+    for (int i = key.indexOf(':'); i >= 0; i = key.indexOf(':', i + 1)) {
+      if (count == boundaries.length - 1) {
+        boundaries = Arrays.copyOf(boundaries, boundaries.length * 2);
+      }
+      boundaries[count++] = i;
+    }
+    boundaries[count] = key.length();
+
+    int partCount = count + 1;
+    while (partCount > 0 && partLength(key, boundaries, partCount - 1) == 0) {
+      partCount--;
+    }
+    if (partCount < 2) {
+      return null;
+    }
+
+    int typeStart = boundaries[0] + 1;
+    Namespace namespace = PARSEABLE_NAMESPACES.get(key.substring(typeStart, boundaries[1]));
+    if (namespace == null) {
+      return null;
+    }
+
+    return new AmazonCacheKey(key, namespace, Arrays.copyOf(boundaries, count + 1), partCount);
+  }
+
+  private static int partLength(String key, int[] boundaries, int index) {
+    int start = index == 0 ? 0 : boundaries[index - 1] + 1;
+    return boundaries[index] - start;
+  }
+
+  private static List<String> fields(String... fields) {
+    return ImmutableList.<String>builder().add("provider", "type").add(fields).build();
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public Namespace getNamespace() {
+    return namespace;
+  }
+
+  public String getProvider() {
+    return get("provider");
+  }
+
+  public String getType() {
+    return namespace.ns;
+  }
+
+  public String getAccount() {
+    return get("account");
+  }
+
+  public String getRegion() {
+    return get("region");
+  }
+
+  public String getApplication() {
+    return get("application");
+  }
+
+  /** @return a mutable copy of this key's fields, as returned by {@link Keys#parse(String)} */
+  public Map<String, String> toMap() {
+    Map<String, String> result = new LinkedHashMap<>(fields.size());
+    for (String field : fields) {
+      result.put(field, extract(field));
+    }
+    return result;
+  }
+
+  @Override
+  public String get(Object field) {
+    return containsKey(field) ? extract((String) field) : null;
+  }
+
+  @Override
+  public boolean containsKey(Object field) {
+    return fields.contains(field);
+  }
+
+  @Override
+  public int size() {
+    return fields.size();
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<Entry<String, String>>() {
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        Iterator<String> it = fields.iterator();
+        return new Iterator<Entry<String, String>>() {
+          @Override
+          public boolean hasNext() {
+            return it.hasNext();
+          }
+
+          @Override
+          public Entry<String, String> next() {
+            String field = it.next();
+            return new SimpleImmutableEntry<>(field, extract(field));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return fields.size();
+      }
+    };
+  }
+
+  private String extract(String field) {
+    switch (field) {
+      case "provider":
+        return namespace == Namespace.HEALTH ? part(5) : part(0);
+      case "type":
+        return namespace.ns;
+      default:
+        break;
+    }
+
+    switch (namespace) {
+      case IMAGES:
+        return positional(field, "account", "region", "imageId");
+      case INSTANCES:
+        return positional(field, "account", "region", "instanceId");
+      case NAMED_IMAGES:
+        return positional(field, "account", "imageName");
+      case SERVER_GROUPS:
+        switch (field) {
+          case "application":
+            return lowerCase(names(5).getApp());
+          case "cluster":
+            return part(2);
+          case "account":
+            return part(3);
+          case "region":
+            return part(4);
+          case "serverGroup":
+            return part(5);
+          default:
+            return nameField(5, field);
+        }
+      case LAUNCH_CONFIGS:
+      case LAUNCH_TEMPLATES:
+        switch (field) {
+          case "account":
+            return part(2);
+          case "region":
+            return part(3);
+          case "launchConfig":
+          case "launchTemplateName":
+            return part(4);
+          default:
+            return nameField(4, field);
+        }
+      case LOAD_BALANCERS:
+        switch (field) {
+          case "account":
+            return part(2);
+          case "region":
+            return part(3);
+          case "loadBalancer":
+            return part(4);
+          case "vpcId":
+            return emptyToNull(part(5));
+          case "loadBalancerType":
+            return emptyToNull(part(5)) != null && partCount > 6 ? part(6) : "classic";
+          default:
+            return nameField(4, field);
+        }
+      case TARGET_GROUPS:
+        switch (field) {
+          case "account":
+            return part(2);
+          case "region":
+            return part(3);
+          case "targetGroup":
+            return part(4);
+          case "targetType":
+            return part(5);
+          case "vpcId":
+            return emptyToNull(part(6));
+          default:
+            return nameField(4, field);
+        }
+      case CLUSTERS:
+        switch (field) {
+          case "application":
+            return lowerCase(part(2));
+          case "account":
+            return part(3);
+          case "cluster":
+            return part(4);
+          default:
+            return nameField(4, field);
+        }
+      case APPLICATIONS:
+        return lowerCase(part(2));
+      case HEALTH:
+        return positional(field, "instanceId", "account", "region");
+      case STACKS:
+        return positional(field, "stackId", "account", "region");
+      default:
+        return null;
+    }
+  }
+
+  /** Resolves fields that are simply the parts following the provider and type, in order. */
+  private String positional(String field, String... names) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(field)) {
+        return part(i + 2);
+      }
+    }
+    return null;
+  }
+
+  private String nameField(int index, String field) {
+    Names names = names(index);
+    switch (field) {
+      case "application":
+        return lowerCase(names.getApp());
+      case "stack":
+        return names.getStack();
+      case "detail":
+        return names.getDetail();
+      case "sequence":
+        return names.getSequence() == null ? null : names.getSequence().toString();
+      default:
+        return null;
+    }
+  }
+
+  private Names names(int index) {
+    Names result = names;
+    if (result == null) {
+      // all names derived fields of a key come from the same part, racing threads compute the same
+      result = Names.parseName(part(index));
+      names = result;
+    }
+    return result;
+  }
+
+  @Nullable
+  private String part(int index) {
+    if (index >= partCount) {
+      return null;
+    }
+    int start = index == 0 ? 0 : boundaries[index - 1] + 1;
+    return key.substring(start, boundaries[index]);
+  }
+
+  private static String lowerCase(String value) {
+    return value == null ? null : value.toLowerCase();
+  }
+
+  private static String emptyToNull(String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+}
@@ -60,11 +60,6 @@ class Keys implements KeyParser {
     return ID
   }
 
-  @Override
-  Map<String, String> parseKey(String key) {
-    return parse(key)
-  }
-
   @Override
   @TypeChecked(value = TypeCheckingMode.SKIP)
   Boolean canParseType(String type) {
@@ -76,78 +71,17 @@ class Keys implements KeyParser {
     return PARSEABLE_FIELDS.contains(field)
   }
 
-  static Map<String, String> parse(String key) {
-    def parts = key.split(':')
-
-    if (parts.length < 2) {
-      return null
-    }
-
-    def result = [provider: parts[0], type: parts[1]]
-
-    if (result.provider != ID) {
-      return null
-    }
-
-    switch (result.type) {
-      case Namespace.IMAGES.ns:
-        result << [account: parts[2], region: parts[3], imageId: parts[4]]
-        break
-      case Namespace.NAMED_IMAGES.ns:
-        result << [account: parts[2], imageName: parts[3]]
-        break
-      case Namespace.SERVER_GROUPS.ns:
-        def names = Names.parseName(parts[5])
-        result << [application: names.app.toLowerCase(), cluster: parts[2], account: parts[3], region: parts[4], serverGroup: parts[5], stack: names.stack, detail: names.detail, sequence: names.sequence?.toString()]
-        break
-      case Namespace.INSTANCES.ns:
-        result << [account: parts[2], region: parts[3], instanceId: parts[4]]
-        break
-      case Namespace.LAUNCH_CONFIGS.ns:
-        def names = Names.parseName(parts[4])
-        result << [account: parts[2], region: parts[3], launchConfig: parts[4], application: names.app?.toLowerCase(), stack: names.stack]
-        break
-      case Namespace.LOAD_BALANCERS.ns:
-        def names = Names.parseName(parts[4])
-        String vpcId = parts.length > 5 ? (parts[5] ?: null) : null
-        String loadBalancerType = vpcId && parts.length > 6 ? parts[6] : 'classic'
-        result << [account: parts[2], region: parts[3], loadBalancer: parts[4], vpcId: vpcId, application: names.app?.toLowerCase(), stack: names.stack, detail: names.detail, loadBalancerType: loadBalancerType]
-        break
-      case Namespace.TARGET_GROUPS.ns:
-        def names = Names.parseName(parts[4])
-        String vpcId = parts.length > 6 ? (parts[6] ?: null) : null
-        result << [account: parts[2], region: parts[3], targetGroup: parts[4], vpcId: vpcId, application: names.app?.toLowerCase(), stack: names.stack, detail: names.detail, targetType: parts[5]]
-        break
-      case Namespace.CLUSTERS.ns:
-        def names = Names.parseName(parts[4])
-        result << [application: parts[2].toLowerCase(), account: parts[3], cluster: parts[4], stack: names.stack, detail: names.detail]
-        break
-      case Namespace.APPLICATIONS.ns:
-        result << [application: parts[2].toLowerCase()]
-        break
-      case Namespace.HEALTH.ns:
-        result << [instanceId: parts[2], account: parts[3], region: parts[4], provider: parts[5]]
-        break
-      case Namespace.STACKS.ns:
-        result << [stackId: parts[2], account: parts[3], region: parts[4]]
-        break
-      case Namespace.LAUNCH_TEMPLATES.ns:
-        def names = Names.parseName(parts[4])
-        result << [
-          account: parts[2],
-          region: parts[ 3],
-          launchTemplateName: parts[4],
-          application: names.app?.toLowerCase(),
-          stack: names.stack
-        ]
-
-        break
-      default:
-        return null
-        break
-    }
+  @Override
+  Map<String, String> parseKey(String key) {
+    return AmazonCacheKey.parse(key)
+  }
 
-    result
+  /**
+   * @return a mutable map of the fields of {@code key}, or null if it is not a parseable AWS key.
+   * Read-only callers should prefer {@link AmazonCacheKey#parse(String)}, which is interned.
+   */
+  static Map<String, String> parse(String key) {
+    return AmazonCacheKey.parse(key)?.toMap()
   }
 
   static String getImageKey(String imageId, String account, String region) {
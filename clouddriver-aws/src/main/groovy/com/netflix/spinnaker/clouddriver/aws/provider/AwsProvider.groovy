@@ -18,6 +18,7 @@ package com.netflix.spinnaker.clouddriver.aws.provider
 
 
 import com.netflix.spinnaker.cats.cache.Cache
+import com.netflix.spinnaker.clouddriver.aws.data.AmazonCacheKey
 import com.netflix.spinnaker.clouddriver.aws.data.Keys
 import com.netflix.spinnaker.clouddriver.aws.security.NetflixAmazonCredentials
 import com.netflix.spinnaker.clouddriver.cache.KeyParser
@@ -99,7 +100,7 @@ class AwsProvider extends BaseProvider implements SearchableProvider, EurekaAwar
         return result
       }
 
-      def serverGroup = Keys.parse(item.relationships["serverGroups"][0])
+      def serverGroup = AmazonCacheKey.parse(item.relationships["serverGroups"][0])
       return result + [
         application: serverGroup.application as String,
         cluster    : serverGroup.cluster as String,
@@ -51,17 +51,21 @@ import com.netflix.spinnaker.clouddriver.aws.security.AmazonCredentials
 import com.netflix.spinnaker.clouddriver.aws.security.NetflixAmazonCredentials
 import com.netflix.spinnaker.clouddriver.cache.CustomScheduledAgent
 import com.netflix.spinnaker.credentials.CredentialsRepository
+import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
+import groovy.transform.EqualsAndHashCode
 import groovy.util.logging.Slf4j
 import org.springframework.context.ApplicationContext
 
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.ExecutorService
+import java.util.concurrent.Future
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 import java.util.function.ToDoubleFunction
 
 import static com.netflix.spinnaker.cats.agent.AgentDataType.Authority.AUTHORITATIVE
+import static com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.INSTANCES
 import static com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.RESERVATION_REPORTS
 import static com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.RESERVED_INSTANCES
 
@@ -69,6 +73,7 @@ import static com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.RE
 class ReservationReportCachingAgent implements CachingAgent, CustomScheduledAgent {
   private static final long DEFAULT_POLL_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1)
   private static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5)
+  private static final Set<String> ALLOWED_INSTANCE_STATES = ["pending", "running"] as Set<String>
 
   final Collection<AgentDataType> types = Collections.unmodifiableCollection([
     AUTHORITATIVE.forType(RESERVATION_REPORTS.ns)
@@ -85,7 +90,17 @@ class ReservationReportCachingAgent implements CachingAgent, CustomScheduledAgen
   final AccountReservationDetailSerializer accountReservationDetailSerializer
   final MetricsSupport metricsSupport
   final Registry registry
-
+  final DynamicConfigService dynamicConfigService
+
+  /**
+   * Usage per account/region, the reservations of each region built from it and the v2 and v3
+   * reports built from those when the report is computed from the cache, so that only the regions
+   * whose usage changed are rebuilt, and those reports only when some region changed. The v4 report
+   * also depends on data from S3, so it is rebuilt on every run.
+   */
+  private final Map<String, RegionUsage> usageByAccountRegion = new ConcurrentHashMap<>()
+  private final Map<String, Map<String, OverallReservationDetail>> reservationsByRegion = new ConcurrentHashMap<>()
+  private Map<String, Map> lastReports
 
   ReservationReportCachingAgent(Registry registry,
                                 AmazonClientProvider amazonClientProvider,
@@ -94,6 +109,17 @@ class ReservationReportCachingAgent implements CachingAgent, CustomScheduledAgen
                                 ObjectMapper objectMapper,
                                 ExecutorService reservationReportPool,
                                 ApplicationContext ctx) {
+    this(registry, amazonClientProvider, amazonS3DataProvider, credentialsRepository, objectMapper, reservationReportPool, ctx, null)
+  }
+
+  ReservationReportCachingAgent(Registry registry,
+                                AmazonClientProvider amazonClientProvider,
+                                AmazonS3DataProvider amazonS3DataProvider,
+                                CredentialsRepository<NetflixAmazonCredentials> credentialsRepository,
+                                ObjectMapper objectMapper,
+                                ExecutorService reservationReportPool,
+                                ApplicationContext ctx,
+                                DynamicConfigService dynamicConfigService) {
     this.amazonClientProvider = amazonClientProvider
     this.amazonS3DataProvider = amazonS3DataProvider
     this.credentialsRepository = credentialsRepository
@@ -107,6 +133,7 @@ class ReservationReportCachingAgent implements CachingAgent, CustomScheduledAgen
     this.ctx = ctx
     this.metricsSupport = new MetricsSupport(objectMapper, registry, { getCacheView() })
     this.registry = registry
+    this.dynamicConfigService = dynamicConfigService
   }
 
   @Override
@@ -165,14 +192,75 @@ class ReservationReportCachingAgent implements CachingAgent, CustomScheduledAgen
     ConcurrentHashMap<String, OverallReservationDetail> reservations = new ConcurrentHashMap<>()
     ConcurrentHashMap<String, Collection<String>> errorsByRegion = new ConcurrentHashMap<>()
 
-    accounts.each { NetflixAmazonCredentials credential ->
-      try {
-        extractReservations(reservations, errorsByRegion, credential)
-      } catch (Exception e) {
-        recordError(registry, errorsByRegion, credential, "*", e)
+    boolean fromCache = dynamicConfigService?.isEnabled("aws.features.reservation-report-from-cache", false)
+    Map<String, Map> reports = null
+    if (fromCache) {
+      Set<String> changedRegions = extractReservationsFromCache(reservations, errorsByRegion)
+      if (changedRegions.isEmpty() && errorsByRegion.isEmpty() && lastReports != null) {
+        log.info("Reservations are unchanged since the last report, only rebuilding v4 in ${agentType}")
+        reports = lastReports
+      }
+    } else {
+      usageByAccountRegion.clear()
+      reservationsByRegion.clear()
+      lastReports = null
+      accounts.each { NetflixAmazonCredentials credential ->
+        try {
+          extractReservations(reservations, errorsByRegion, credential)
+        } catch (Exception e) {
+          recordError(registry, errorsByRegion, credential, "*", e)
+        }
+      }
+    }
+
+    if (reports == null) {
+      reports = buildReports(startTime, reservations, errorsByRegion)
+      if (fromCache) {
+        lastReports = reports
       }
     }
+    def v3 = reports.v3
+
+    def v4 = [:]
+    try {
+      // v4 is experimental so let's go out of our way to prevent a failure from breaking other versions
+      v4 = objectMapper.readValue(
+        objectMapper
+          .writerWithView(AmazonReservationReport.Views.V4.class)
+          .writeValueAsString(
+          new AmazonReservationReportBuilder.V4().build(
+            amazonS3DataProvider,
+            objectMapper.convertValue(v3, AmazonReservationReport)
+          )
+        ),
+        Map
+      )
+    } catch (Exception e) {
+      recordErrorMetric(registry, null, null)
+      log.error("Failed to build 'v4' reservation report", e)
+    }
+
+    metricsSupport.registerMetrics(objectMapper.convertValue(v3, AmazonReservationReport))
+
+    return new DefaultCacheResult(
+      (RESERVATION_REPORTS.ns): [
+        new MutableCacheData("v2", ["report": reports.v2], [:]),
+
+        // temporarily backport the changes from v4 to v3 (leaving v2_5 to be what 'v3' used to be)
+        new MutableCacheData("v2_5", ["report": v3], [:]),
+        new MutableCacheData("v3", ["report": v4], [:]),
+        new MutableCacheData("v4", ["report": v4], [:])
+      ]
+    )
+  }
 
+  /**
+   * Builds the v2 and v3 reports, which only depend on the reservations and usage described from
+   * EC2 or the cache.
+   */
+  private Map<String, Map> buildReports(long startTime,
+                                        Map<String, OverallReservationDetail> reservations,
+                                        Map<String, Collection<String>> errorsByRegion) {
     def amazonReservationReport = new AmazonReservationReport(start: new Date(startTime), end: new Date())
     accounts.each { NetflixAmazonCredentials credentials ->
       amazonReservationReport.accounts << [
@@ -211,62 +299,129 @@ class ReservationReportCachingAgent implements CachingAgent, CustomScheduledAgen
       Map
     )
 
-    def v4 = [:]
-    try {
-      // v4 is experimental so let's go out of our way to prevent a failure from breaking other versions
-      v4 = objectMapper.readValue(
-        objectMapper
-          .writerWithView(AmazonReservationReport.Views.V4.class)
-          .writeValueAsString(
-          new AmazonReservationReportBuilder.V4().build(
-            amazonS3DataProvider,
-            objectMapper.convertValue(v3, AmazonReservationReport)
-          )
-        ),
-        Map
-      )
-    } catch (Exception e) {
-      recordErrorMetric(registry, null, null)
-      log.error("Failed to build 'v4' reservation report", e)
+    return [v2: v2, v3: v3]
+  }
+
+  /**
+   * Computes the usage of every account/region from the cached instances and reserved instances,
+   * concurrently across regions, rather than describing the instances again. Only the reservations
+   * of regions where the usage of some account changed are rebuilt, the others are kept from the
+   * previous run.
+   *
+   * @return the regions whose reservations were rebuilt
+   */
+  Set<String> extractReservationsFromCache(ConcurrentHashMap<String, OverallReservationDetail> reservations,
+                                           ConcurrentHashMap<String, Collection<String>> errorsByRegion) {
+    Set<String> changedRegions = ConcurrentHashMap.newKeySet()
+    Set<String> accountRegions = ConcurrentHashMap.newKeySet()
+    List<Future> futures = accounts.collectMany { NetflixAmazonCredentials credentials ->
+      credentials.regions.collect { AmazonCredentials.AWSRegion region ->
+        String accountRegion = "${credentials.name}:${region.name}".toString()
+        accountRegions << accountRegion
+        reservationReportPool.submit({
+          try {
+            def usage = getRegionUsage(credentials, region.name)
+            if (usageByAccountRegion.put(accountRegion, usage) != usage) {
+              changedRegions << region.name
+            }
+          } catch (Exception e) {
+            recordError(registry, errorsByRegion, credentials, region.name, e)
+            if (usageByAccountRegion.remove(accountRegion) != null) {
+              changedRegions << region.name
+            }
+          }
+        } as Runnable)
+      }
     }
+    futures*.get()
 
-    metricsSupport.registerMetrics(objectMapper.convertValue(v3, AmazonReservationReport))
+    // accounts and regions that are no longer configured
+    usageByAccountRegion.keySet().findAll { !accountRegions.contains(it) }.each {
+      changedRegions << usageByAccountRegion.remove(it).region
+    }
 
-    return new DefaultCacheResult(
-      (RESERVATION_REPORTS.ns): [
-        new MutableCacheData("v2", ["report": v2], [:]),
+    changedRegions.each { String region ->
+      def regionReservations = new ConcurrentHashMap<String, OverallReservationDetail>()
+      usageByAccountRegion.values().findAll { it.region == region }.each { it.apply(regionReservations) }
+      if (regionReservations.isEmpty()) {
+        reservationsByRegion.remove(region)
+      } else {
+        reservationsByRegion.put(region, regionReservations)
+      }
+    }
+    reservationsByRegion.values().each { reservations.putAll(it) }
 
-        // temporarily backport the changes from v4 to v3 (leaving v2_5 to be what 'v3' used to be)
-        new MutableCacheData("v2_5", ["report": v3], [:]),
-        new MutableCacheData("v3", ["report": v4], [:]),
-        new MutableCacheData("v4", ["report": v4], [:])
-      ]
-    )
+    return changedRegions
   }
 
-  void extractReservations(ConcurrentHashMap<String, OverallReservationDetail> reservations,
-                           ConcurrentHashMap<String, Collection<String>> errorsByRegion,
-                           NetflixAmazonCredentials credentials) {
-    def getReservation = { String region, String availabilityZone, String operatingSystemType, String instanceType ->
-      String key = availabilityZone == null ?
-        [region, operatingSystemType, instanceType].join(':') :
-        [availabilityZone, operatingSystemType, instanceType].join(':')
-
-      def newOverallReservationDetail = new OverallReservationDetail(
-        region: region,
-        availabilityZone: availabilityZone,
-        os: AmazonReservationReport.OperatingSystemType.valueOf(operatingSystemType as String).name,
-        instanceType: instanceType
-      )
+  RegionUsage getRegionUsage(NetflixAmazonCredentials credentials, String region) {
+    def cacheView = getCacheView()
+    def usage = new RegionUsage(account: credentials.name, region: region)
+
+    cacheView.getAll(
+      RESERVED_INSTANCES.ns,
+      cacheView.filterIdentifiers(RESERVED_INSTANCES.ns, Keys.getReservedInstancesKey('*', credentials.name, region)),
+      RelationshipCacheFilter.none()
+    ).collect {
+      objectMapper.convertValue(it.attributes, ReservedInstanceDetails)
+    }.findAll {
+      isActive(it)
+    }.each {
+      usage.add(usage.reserved, it.availabilityZone, operatingSystemType(it.productDescription).name, it.instanceType, it.instanceCount)
+    }
 
-      def existingOverallReservationDetail = reservations.putIfAbsent(key, newOverallReservationDetail)
-      if (existingOverallReservationDetail) {
-        return existingOverallReservationDetail
+    cacheView.getAll(
+      INSTANCES.ns,
+      cacheView.filterIdentifiers(INSTANCES.ns, Keys.getInstanceKey('*', credentials.name, region)),
+      RelationshipCacheFilter.none()
+    ).each {
+      Map<String, Object> instance = it.attributes
+      String state = (instance.state as Map)?.name as String
+      String availabilityZone = (instance.placement as Map)?.availabilityZone as String
+      if (!state || !ALLOWED_INSTANCE_STATES.contains(state.toLowerCase()) || !availabilityZone) {
+        return
       }
 
-      return newOverallReservationDetail
+      def osTypeName = operatingSystemType(instance.platform ? "Windows" : "Linux/UNIX").name
+      usage.add(instance.vpcId ? usage.usedVpc : usage.used, availabilityZone, osTypeName, instance.instanceType as String, 1)
+    }
+
+    return usage
+  }
+
+  private static boolean isActive(ReservedInstanceDetails reservedInstance) {
+    return reservedInstance.state.equalsIgnoreCase("active") &&
+      ["Heavy Utilization", "Partial Upfront", "All Upfront", "No Upfront"].contains(reservedInstance.offeringType)
+  }
+
+  static OverallReservationDetail getReservation(ConcurrentHashMap<String, OverallReservationDetail> reservations,
+                                                 String region,
+                                                 String availabilityZone,
+                                                 String operatingSystemType,
+                                                 String instanceType) {
+    String key = availabilityZone == null ?
+      [region, operatingSystemType, instanceType].join(':') :
+      [availabilityZone, operatingSystemType, instanceType].join(':')
+
+    def newOverallReservationDetail = new OverallReservationDetail(
+      region: region,
+      availabilityZone: availabilityZone,
+      os: AmazonReservationReport.OperatingSystemType.valueOf(operatingSystemType as String).name,
+      instanceType: instanceType
+    )
+
+    def existingOverallReservationDetail = reservations.putIfAbsent(key, newOverallReservationDetail)
+    if (existingOverallReservationDetail) {
+      return existingOverallReservationDetail
     }
 
+    return newOverallReservationDetail
+  }
+
+  void extractReservations(ConcurrentHashMap<String, OverallReservationDetail> reservations,
+                           ConcurrentHashMap<String, Collection<String>> errorsByRegion,
+                           NetflixAmazonCredentials credentials) {
+
     credentials.regions.each { AmazonCredentials.AWSRegion region ->
         log.info("Fetching reservation report for ${credentials.name}:${region.name}")
         long startTime = System.currentTimeMillis()
@@ -284,11 +439,10 @@ class ReservationReportCachingAgent implements CachingAgent, CustomScheduledAgen
           log.debug("Took ${System.currentTimeMillis() - startTime}ms to describe reserved instances for ${credentials.name}/${region.name}")
 
           reservedInstances.findAll {
-            it.state.equalsIgnoreCase("active") &&
-              ["Heavy Utilization", "Partial Upfront", "All Upfront", "No Upfront"].contains(it.offeringType)
+            isActive(it)
           }.each {
             def osType = operatingSystemType(it.productDescription)
-            def reservation = getReservation(region.name, it.availabilityZone, osType.name, it.instanceType)
+            def reservation = getReservation(reservations, region.name, it.availabilityZone, osType.name, it.instanceType)
             reservation.totalReserved.addAndGet(it.instanceCount)
             reservation.getAccount(credentials.name).reservedVpc.addAndGet(it.instanceCount)
           }
@@ -296,7 +450,7 @@ class ReservationReportCachingAgent implements CachingAgent, CustomScheduledAgen
           startTime = System.currentTimeMillis()
           def fetchedInstanceCount = 0
           def describeInstancesRequest = new DescribeInstancesRequest().withMaxResults(500)
-          def allowedStates = ["pending", "running"] as Set<String>
+          def allowedStates = ALLOWED_INSTANCE_STATES
           while (true) {
             log.debug("Describing instances for ${credentials.name}/${region.name}")
             def result = amazonEC2.describeInstances(describeInstancesRequest)
@@ -309,7 +463,7 @@ class ReservationReportCachingAgent implements CachingAgent, CustomScheduledAgen
                 }
 
                 def osTypeName = operatingSystemType(it.platform ? "Windows" : "Linux/UNIX").name
-                def reservation = getReservation(it.placement.availabilityZone[0..-2], it.placement.availabilityZone, osTypeName, it.instanceType)
+                def reservation = getReservation(reservations, it.placement.availabilityZone[0..-2], it.placement.availabilityZone, osTypeName, it.instanceType)
                 reservation.totalUsed.incrementAndGet()
 
                 if (it.vpcId) {
@@ -421,6 +575,42 @@ class ReservationReportCachingAgent implements CachingAgent, CustomScheduledAgen
     }
   }
 
+  /**
+   * Reserved and used instance counts of an account in a region, by availability zone (or region
+   * for regional reservations), operating system and instance type.
+   */
+  @EqualsAndHashCode
+  static class RegionUsage {
+    String account
+    String region
+    Map<List<String>, Integer> reserved = [:]
+    Map<List<String>, Integer> used = [:]
+    Map<List<String>, Integer> usedVpc = [:]
+
+    void add(Map<List<String>, Integer> counts, String availabilityZone, String os, String instanceType, int count) {
+      def key = [availabilityZone, os, instanceType]
+      counts.put(key, (counts.get(key) ?: 0) + count)
+    }
+
+    void apply(ConcurrentHashMap<String, OverallReservationDetail> reservations) {
+      reserved.each { key, count ->
+        def reservation = getReservation(reservations, region, key[0], key[1], key[2])
+        reservation.totalReserved.addAndGet(count)
+        reservation.getAccount(account).reservedVpc.addAndGet(count)
+      }
+      used.each { key, count ->
+        def reservation = getReservation(reservations, key[0][0..-2], key[0], key[1], key[2])
+        reservation.totalUsed.addAndGet(count)
+        reservation.getAccount(account).used.addAndGet(count)
+      }
+      usedVpc.each { key, count ->
+        def reservation = getReservation(reservations, key[0][0..-2], key[0], key[1], key[2])
+        reservation.totalUsed.addAndGet(count)
+        reservation.getAccount(account).usedVpc.addAndGet(count)
+      }
+    }
+  }
+
   static class ReservedInstanceDetails {
     String state
     String offeringType
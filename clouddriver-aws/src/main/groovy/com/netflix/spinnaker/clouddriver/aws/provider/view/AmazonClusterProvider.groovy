@@ -23,6 +23,7 @@ import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.cats.cache.CacheFilter
 import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter
 import com.netflix.spinnaker.clouddriver.aws.AmazonCloudProvider
+import com.netflix.spinnaker.clouddriver.aws.data.AmazonCacheKey
 import com.netflix.spinnaker.clouddriver.aws.data.Keys
 import com.netflix.spinnaker.clouddriver.aws.model.*
 import com.netflix.spinnaker.clouddriver.aws.provider.AwsProvider
@@ -151,14 +152,14 @@ class AmazonClusterProvider implements ClusterProvider<AmazonCluster>, ServerGro
 
   private static Map<String, AmazonLoadBalancer> translateLoadBalancers(Collection<CacheData> loadBalancerData) {
     loadBalancerData.collectEntries { loadBalancerEntry ->
-      Map<String, String> lbKey = Keys.parse(loadBalancerEntry.id)
+      Map<String, String> lbKey = AmazonCacheKey.parse(loadBalancerEntry.id)
       [(loadBalancerEntry.id): new AmazonLoadBalancer(name: lbKey.loadBalancer, account: lbKey.account, region: lbKey.region)]
     }
   }
 
   private static Map<String, AmazonTargetGroup> translateTargetGroups(Collection<CacheData> targetGroupData) {
     targetGroupData.collectEntries { targetGroupEntry ->
-      Map<String, String> tgKey = Keys.parse(targetGroupEntry.id)
+      Map<String, String> tgKey = AmazonCacheKey.parse(targetGroupEntry.id)
       [(targetGroupEntry.id): new AmazonTargetGroup(name: tgKey.loadBalancer, account: tgKey.account, region: tgKey.region)]
     }
   }
@@ -207,7 +208,7 @@ class AmazonClusterProvider implements ClusterProvider<AmazonCluster>, ServerGro
     )
 
     Collection<AmazonCluster> clusters = cacheResults[CLUSTERS.ns].collect { clusterData ->
-      Map<String, String> clusterKey = Keys.parse(clusterData.id)
+      Map<String, String> clusterKey = AmazonCacheKey.parse(clusterData.id)
 
       AmazonCluster cluster = new AmazonCluster()
       cluster.accountName = clusterKey.account
@@ -245,7 +246,7 @@ class AmazonClusterProvider implements ClusterProvider<AmazonCluster>, ServerGro
     }
 
     Collection<AmazonCluster> clusters = clusterData.collect { CacheData clusterDataEntry ->
-      Map<String, String> clusterKey = Keys.parse(clusterDataEntry.id)
+      Map<String, String> clusterKey = AmazonCacheKey.parse(clusterDataEntry.id)
 
       AmazonCluster cluster = new AmazonCluster()
       cluster.accountName = clusterKey.account
@@ -257,11 +258,11 @@ class AmazonClusterProvider implements ClusterProvider<AmazonCluster>, ServerGro
         cluster.targetGroups = clusterDataEntry.relationships[TARGET_GROUPS.ns]?.findResults { targetGroups.get(it) }
       } else {
         cluster.loadBalancers = clusterDataEntry.relationships[LOAD_BALANCERS.ns]?.collect { loadBalancerKey ->
-          Map parts = Keys.parse(loadBalancerKey)
+          Map parts = AmazonCacheKey.parse(loadBalancerKey)
           new AmazonLoadBalancer(name: parts.loadBalancer, account: parts.account, region: parts.region)
         }
         cluster.targetGroups = clusterDataEntry.relationships[TARGET_GROUPS.ns]?.collect { targetGroupKey ->
-          Map parts = Keys.parse(targetGroupKey)
+          Map parts = AmazonCacheKey.parse(targetGroupKey)
           new AmazonTargetGroup(name: parts.loadBalancer, account: parts.account, region: parts.region)
         }
       }
@@ -299,7 +300,7 @@ class AmazonClusterProvider implements ClusterProvider<AmazonCluster>, ServerGro
     Map<String, AmazonInstance> instances = translateInstances(instanceData)
 
     Map<String, AmazonServerGroup> serverGroups = serverGroupData?.collectEntries { sg ->
-      Map<String, String> parsed = Keys.parse(sg.id)
+      Map<String, String> parsed = AmazonCacheKey.parse(sg.id)
       AmazonServerGroup serverGroup = new AmazonServerGroup(sg.attributes)
       Set<String> asgInstanceSet = getAsgInstanceKeys(serverGroup.asg, parsed.account, parsed.region)
 
@@ -332,7 +333,7 @@ class AmazonClusterProvider implements ClusterProvider<AmazonCluster>, ServerGro
     Map<String, AmazonInstance> instances = translateInstances(allInstances)
 
     Map<String, AmazonServerGroup> serverGroups = serverGroupData.collectEntries { serverGroupEntry ->
-      Map<String, String> serverGroupKey = Keys.parse(serverGroupEntry.id)
+      Map<String, String> serverGroupKey = AmazonCacheKey.parse(serverGroupEntry.id)
 
       AmazonServerGroup serverGroup = new AmazonServerGroup(serverGroupEntry.attributes)
       def asg = serverGroupEntry.attributes.asg
@@ -431,7 +432,7 @@ class AmazonClusterProvider implements ClusterProvider<AmazonCluster>, ServerGro
   private void addHealthToInstances(Collection<CacheData> instanceData, Map<String, AmazonInstance> instances) {
     Map<String, String> healthKeysToInstance = [:]
     instanceData.each { instanceEntry ->
-      Map<String, String> instanceKey = Keys.parse(instanceEntry.id)
+      Map<String, String> instanceKey = AmazonCacheKey.parse(instanceEntry.id)
       awsProvider.healthAgents.each {
         def key = Keys.getInstanceHealthKey(instanceKey.instanceId, instanceKey.account, instanceKey.region, it.healthId)
         healthKeysToInstance.put(key, instanceEntry.id)
@@ -25,6 +25,7 @@ import com.netflix.spinnaker.clouddriver.aws.AmazonCloudProvider
 import com.netflix.spinnaker.clouddriver.aws.model.AmazonTargetGroup
 import com.netflix.spinnaker.clouddriver.aws.model.TargetGroupServerGroupProvider
 import com.netflix.spinnaker.clouddriver.model.LoadBalancerInstance
+import com.netflix.spinnaker.clouddriver.aws.data.AmazonCacheKey
 import com.netflix.spinnaker.clouddriver.aws.data.Keys
 import com.netflix.spinnaker.clouddriver.aws.model.AmazonInstance
 import com.netflix.spinnaker.clouddriver.aws.model.AmazonLoadBalancer
@@ -208,7 +209,7 @@ class AmazonLoadBalancerProvider implements LoadBalancerProvider<AmazonLoadBalan
 
   private static Set<AmazonLoadBalancer> translateLoadBalancers(Collection<CacheData> loadBalancerData, Map<String, AmazonTargetGroup> targetGroups, Map<String, AmazonServerGroup> serverGroups) {
     Set<AmazonLoadBalancer> loadBalancers = loadBalancerData.collect { loadBalancerEntry ->
-      Map<String, String> loadBalancerKey = Keys.parse(loadBalancerEntry.id)
+      Map<String, String> loadBalancerKey = AmazonCacheKey.parse(loadBalancerEntry.id)
       AmazonLoadBalancer loadBalancer = new AmazonLoadBalancer(loadBalancerEntry.attributes)
       loadBalancer.name = loadBalancerKey.loadBalancer
       loadBalancer.region = loadBalancerKey.region
@@ -237,7 +238,7 @@ class AmazonLoadBalancerProvider implements LoadBalancerProvider<AmazonLoadBalan
 
   private static Map<String, AmazonTargetGroup> translateTargetGroups(Collection<CacheData> targetGroupData, Map<String, AmazonServerGroup> serverGroups) {
     Map<String, AmazonTargetGroup> targetGroups = targetGroupData.collectEntries { targetGroupEntry ->
-      Map<String, String> targetGroupKey = Keys.parse(targetGroupEntry.id)
+      Map<String, String> targetGroupKey = AmazonCacheKey.parse(targetGroupEntry.id)
       AmazonTargetGroup targetGroup = new AmazonTargetGroup(targetGroupEntry.attributes)
       targetGroup.name = targetGroupKey.targetGroup
       targetGroup.region = targetGroupKey.region
@@ -255,12 +256,12 @@ class AmazonLoadBalancerProvider implements LoadBalancerProvider<AmazonLoadBalan
 
   private static Map<String, AmazonServerGroup> translateServerGroups(Collection<CacheData> serverGroupData, Map<String, AmazonInstance> instances) {
     Map<String, AmazonServerGroup> serverGroups = serverGroupData.collectEntries { serverGroupEntry ->
-      Map<String, String> serverGroupKey = Keys.parse(serverGroupEntry.id)
+      Map<String, String> serverGroupKey = AmazonCacheKey.parse(serverGroupEntry.id)
 
       AmazonServerGroup serverGroup = new AmazonServerGroup(name: serverGroupKey.serverGroup, region: serverGroupKey.region)
       serverGroup.instances = serverGroupEntry.relationships[INSTANCES.ns]?.findResults { instances.get(it) }
       serverGroup.asg = (Map<String, Object>)serverGroupEntry.attributes.asg
-      serverGroup.detachedInstances = serverGroupEntry.relationships[INSTANCES.ns]?.findResults { instances.get(it) ? null : Keys.parse(it).instanceId }
+      serverGroup.detachedInstances = serverGroupEntry.relationships[INSTANCES.ns]?.findResults { instances.get(it) ? null : AmazonCacheKey.parse(it).instanceId }
       [(serverGroupEntry.id) : serverGroup]
     }
 
@@ -284,7 +285,7 @@ class AmazonLoadBalancerProvider implements LoadBalancerProvider<AmazonLoadBalan
     def loadBalancingHealthAgents = awsProvider.healthAgents.findAll { it.healthId.contains('load-balancer')}
 
     instanceData.each { instanceEntry ->
-      Map<String, String> instanceKey = Keys.parse(instanceEntry.id)
+      Map<String, String> instanceKey = AmazonCacheKey.parse(instanceEntry.id)
       loadBalancingHealthAgents.each {
         def key = Keys.getInstanceHealthKey(instanceKey.instanceId, instanceKey.account, instanceKey.region, it.healthId)
         healthKeysToInstance.put(key, instanceEntry.id)
@@ -326,7 +327,7 @@ class AmazonLoadBalancerProvider implements LoadBalancerProvider<AmazonLoadBalan
     def searchKey = Keys.getLoadBalancerKey('*', '*', '*', null, null) + '*'
     Collection<String> identifiers = cacheView.filterIdentifiers(LOAD_BALANCERS.ns, searchKey)
     Map<String, Map<String, String>> targetGroupKeys = cacheView.getIdentifiers(TARGET_GROUPS.ns).collectEntries {
-      Map<String, String> parts = Keys.parse(it)
+      Map<String, String> parts = AmazonCacheKey.parse(it)
       Map<String, String> summary = [
         name: parts.targetGroup,
         targetType: parts.targetType
@@ -339,7 +340,7 @@ class AmazonLoadBalancerProvider implements LoadBalancerProvider<AmazonLoadBalan
   AmazonLoadBalancerSummary get(String name) {
     def searchKey = Keys.getLoadBalancerKey(name, '*', '*', null, null)  + "*"
     Collection<String> identifiers = cacheView.filterIdentifiers(LOAD_BALANCERS.ns, searchKey).findAll {
-      def key = Keys.parse(it)
+      def key = AmazonCacheKey.parse(it)
       key.loadBalancer == name
     }
     getSummaryForLoadBalancers(identifiers, null).get(name)
@@ -350,7 +351,7 @@ class AmazonLoadBalancerProvider implements LoadBalancerProvider<AmazonLoadBalan
                                       String name) {
     def searchKey = Keys.getLoadBalancerKey(name, account, region, null, null) + '*'
     Collection<String> identifiers = cacheView.filterIdentifiers(LOAD_BALANCERS.ns, searchKey).findAll {
-      def key = Keys.parse(it)
+      def key = AmazonCacheKey.parse(it)
       key.loadBalancer == name
     }
 
@@ -384,7 +385,7 @@ class AmazonLoadBalancerProvider implements LoadBalancerProvider<AmazonLoadBalan
     for (lb in loadBalancerKeys) {
       CacheData loadBalancerFromCache = loadBalancers[lb]
       if (loadBalancerFromCache) {
-        def parts = Keys.parse(lb)
+        def parts = AmazonCacheKey.parse(lb)
         String name = parts.loadBalancer
         String region = parts.region
         String account = parts.account
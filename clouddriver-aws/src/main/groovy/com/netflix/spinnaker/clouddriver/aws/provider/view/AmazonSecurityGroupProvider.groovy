@@ -20,6 +20,9 @@ import com.amazonaws.services.ec2.model.IpPermission
 import com.amazonaws.services.ec2.model.SecurityGroup
 import com.amazonaws.services.ec2.model.UserIdGroupPair
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.google.common.cache.CacheBuilder
+import com.google.common.cache.CacheLoader
+import com.google.common.cache.LoadingCache
 import com.netflix.spinnaker.cats.cache.Cache
 import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter
@@ -38,6 +41,8 @@ import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.stereotype.Component
 
+import java.util.concurrent.TimeUnit
+
 import static com.netflix.spinnaker.clouddriver.aws.cache.Keys.Namespace.SECURITY_GROUPS
 
 @Component
@@ -48,6 +53,21 @@ class AmazonSecurityGroupProvider implements SecurityGroupProvider<AmazonSecurit
   final Cache cacheView
   final ObjectMapper objectMapper
 
+  /**
+   * The cached security groups of each region by id, so that the groups referenced by ingress rules
+   * can be resolved without querying the cache for each of them. A group id never changes name or
+   * vpc, the index only has to be rebuilt to pick up groups created since, and references it does
+   * not know about are still looked up in the cache.
+   */
+  private final LoadingCache<String, Map<String, List<Map<String, String>>>> securityGroupsById = CacheBuilder.newBuilder()
+    .expireAfterWrite(30, TimeUnit.SECONDS)
+    .build(
+    new CacheLoader<String, Map<String, List<Map<String, String>>>>() {
+      Map<String, List<Map<String, String>>> load(String region) {
+        return indexSecurityGroups(region)
+      }
+    })
+
   @Autowired
   AmazonSecurityGroupProvider(CredentialsRepository<NetflixAmazonCredentials> credentialsRepository,
                               Cache cacheView,
@@ -147,19 +167,44 @@ class AmazonSecurityGroupProvider implements SecurityGroupProvider<AmazonSecurit
   }
 
   Collection<AmazonSecurityGroup> loadResults(boolean includeRules, Collection<String> identifiers) {
-    def transform = this.&fromCacheData.curry(includeRules)
+    def accountNames = includeRules ? getAccountNamesById() : [:]
     def data = cacheView.getAll(SECURITY_GROUPS.ns, identifiers, RelationshipCacheFilter.none())
-    def transformed = data.collect(transform)
+    def transformed = data.collect { fromCacheData(includeRules, it, accountNames) }
 
     return transformed
   }
 
   AmazonSecurityGroup fromCacheData(boolean includeRules, CacheData cacheData) {
+    return fromCacheData(includeRules, cacheData, includeRules ? getAccountNamesById() : [:])
+  }
+
+  private AmazonSecurityGroup fromCacheData(boolean includeRules, CacheData cacheData, Map<String, String> accountNames) {
     Map<String, String> parts = Keys.parse(cacheData.id)
-    return convertToAmazonSecurityGroup(includeRules, cacheData.attributes, parts.account, parts.region)
+    return convertToAmazonSecurityGroup(includeRules, cacheData.attributes, parts.account, parts.region, accountNames)
+  }
+
+  private Map<String, String> getAccountNamesById() {
+    Map<String, String> accountNames = [:]
+    credentialsRepository.getAll().each {
+      if (!accountNames.containsKey(it.accountId)) {
+        accountNames.put(it.accountId, it.name)
+      }
+    }
+    return accountNames
   }
 
-  private AmazonSecurityGroup convertToAmazonSecurityGroup(boolean includeRules, Map<String, Object> securityGroup, String account, String region) {
+  private Map<String, List<Map<String, String>>> indexSecurityGroups(String region) {
+    Map<String, List<Map<String, String>>> index = [:]
+    cacheView.filterIdentifiers(SECURITY_GROUPS.ns, Keys.getSecurityGroupKey('*', '*', region, '*', '*')).each {
+      def parts = Keys.parse(it)
+      if (parts?.id) {
+        index.computeIfAbsent(parts.id) { [] } << [name: parts.name, account: parts.account, vpcId: parts.vpcId]
+      }
+    }
+    return index
+  }
+
+  private AmazonSecurityGroup convertToAmazonSecurityGroup(boolean includeRules, Map<String, Object> securityGroup, String account, String region, Map<String, String> accountNames) {
     List<Rule> inboundRules = []
 
     if (includeRules) {
@@ -168,7 +213,7 @@ class AmazonSecurityGroupProvider implements SecurityGroupProvider<AmazonSecurit
       Map<String, Map> ipRangeRules = [:]
       amznSecurityGroup.ipPermissions.each { permission ->
         addIpRangeRules(permission, ipRangeRules)
-        addSecurityGroupRules(permission, rules, account, region, securityGroup.vpcId)
+        addSecurityGroupRules(permission, rules, account, region, securityGroup.vpcId, accountNames)
       }
       inboundRules.addAll buildSecurityGroupRules(rules)
       inboundRules.addAll buildIpRangeRules(ipRangeRules)
@@ -220,23 +265,31 @@ class AmazonSecurityGroupProvider implements SecurityGroupProvider<AmazonSecurit
       if (baseAccount != ingressAccount) {
         vpcPattern = '*'
       }
-      def keyPattern = Keys.getSecurityGroupKey('*', sg.groupId, region, ingressAccount ?: '*', vpcPattern)
-      def matches = cacheView.filterIdentifiers(SECURITY_GROUPS.ns, keyPattern)
-      if (matches) {
-        def parts = Keys.parse(matches[0])
-        ingressGroupName = parts.name
-        ingressGroupVpcId = parts.vpcId
+      def indexed = securityGroupsById.getUnchecked(region).get(sg.groupId)?.find {
+        (!ingressAccount || it.account == ingressAccount) && (vpcPattern == '*' || it.vpcId == vpcPattern)
+      }
+      if (indexed) {
+        ingressGroupName = indexed.name
+        ingressGroupVpcId = indexed.vpcId
+      } else {
+        def keyPattern = Keys.getSecurityGroupKey('*', sg.groupId, region, ingressAccount ?: '*', vpcPattern)
+        def matches = cacheView.filterIdentifiers(SECURITY_GROUPS.ns, keyPattern)
+        if (matches) {
+          def parts = Keys.parse(matches[0])
+          ingressGroupName = parts.name
+          ingressGroupVpcId = parts.vpcId
+        }
       }
     }
     return [name: ingressGroupName, vpcId: ingressGroupVpcId]
   }
 
-  private void addSecurityGroupRules(IpPermission permission, Map<GroupAndProtocol, Map> rules, String account, String region, String vpcId) {
+  private void addSecurityGroupRules(IpPermission permission, Map<GroupAndProtocol, Map> rules, String account, String region, String vpcId, Map<String, String> accountNames) {
     permission.userIdGroupPairs.each { sg ->
       def groupAndProtocol = new GroupAndProtocol(sg.groupId, permission.ipProtocol)
       if (!rules.containsKey(groupAndProtocol)) {
-        final ingressAccount = credentialsRepository.getAll().find {it.accountId == sg.userId}
-        Map<String, String> ingressGroupSummary = getIngressGroupNameAndVpcId(sg, account, ingressAccount?.name, region, vpcId)
+        final ingressAccountName = accountNames.get(sg.userId)
+        Map<String, String> ingressGroupSummary = getIngressGroupNameAndVpcId(sg, account, ingressAccountName, region, vpcId)
         rules.put(groupAndProtocol, [
           protocol     : permission.ipProtocol,
           securityGroup:
@@ -244,7 +297,7 @@ class AmazonSecurityGroupProvider implements SecurityGroupProvider<AmazonSecurit
               id: sg.groupId,
               name: ingressGroupSummary.name,
               accountId: sg.userId,
-              accountName: ingressAccount?.name,
+              accountName: ingressAccountName,
               region: region,
               vpcId: sg.vpcId ?: ingressGroupSummary.vpcId
             ),
@@ -20,12 +20,16 @@ package com.netflix.spinnaker.clouddriver.aws.security;
 import com.amazonaws.SDKGlobalConfiguration;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.util.CollectionUtils;
+import com.netflix.spectator.api.NoopRegistry;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.clouddriver.aws.security.config.AmazonCredentialsParser;
 import com.netflix.spinnaker.clouddriver.aws.security.config.CredentialsConfig;
 import com.netflix.spinnaker.credentials.CredentialsRepository;
 import com.netflix.spinnaker.credentials.definition.BasicCredentialsLoader;
 import com.netflix.spinnaker.credentials.definition.CredentialsDefinitionSource;
 import com.netflix.spinnaker.credentials.definition.CredentialsParser;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 
@@ -36,6 +40,8 @@ public class AmazonBasicCredentialsLoader<
   protected final DefaultAccountConfigurationProperties defaultAccountConfigurationProperties;
   protected String defaultEnvironment;
   protected String defaultAccountType;
+  private final CredentialsParser<T, U> credentialsParser;
+  private final Registry registry;
 
   public AmazonBasicCredentialsLoader(
       CredentialsDefinitionSource<T> definitionSource,
@@ -43,7 +49,25 @@ public class AmazonBasicCredentialsLoader<
       CredentialsRepository<U> credentialsRepository,
       CredentialsConfig credentialsConfig,
       DefaultAccountConfigurationProperties defaultAccountConfigurationProperties) {
+    this(
+        definitionSource,
+        parser,
+        credentialsRepository,
+        credentialsConfig,
+        defaultAccountConfigurationProperties,
+        new NoopRegistry());
+  }
+
+  public AmazonBasicCredentialsLoader(
+      CredentialsDefinitionSource<T> definitionSource,
+      CredentialsParser<T, U> parser,
+      CredentialsRepository<U> credentialsRepository,
+      CredentialsConfig credentialsConfig,
+      DefaultAccountConfigurationProperties defaultAccountConfigurationProperties,
+      Registry registry) {
     super(definitionSource, parser, credentialsRepository);
+    this.credentialsParser = parser;
+    this.registry = registry;
     this.credentialsConfig = credentialsConfig;
     this.defaultAccountConfigurationProperties = defaultAccountConfigurationProperties;
     this.defaultEnvironment =
@@ -95,6 +119,22 @@ public class AmazonBasicCredentialsLoader<
                 .collect(Collectors.toList()));
       }
     }
-    this.parse(definitionSource.getCredentialsDefinitions());
+
+    List<T> definitions = definitionSource.getCredentialsDefinitions();
+    long start = System.nanoTime();
+    if (credentialsParser instanceof AmazonCredentialsParser) {
+      ((AmazonCredentialsParser<?, ?>) credentialsParser).resolveRegions(definitions);
+    }
+    recordInitializationTime("resolveRegions", start);
+
+    start = System.nanoTime();
+    this.parse(definitions);
+    recordInitializationTime("loadAccounts", start);
+  }
+
+  private void recordInitializationTime(String phase, long startNanos) {
+    registry
+        .timer("aws.accounts.initializationTime", "phase", phase)
+        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
   }
 }
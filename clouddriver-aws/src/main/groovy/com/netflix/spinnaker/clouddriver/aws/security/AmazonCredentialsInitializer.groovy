@@ -17,6 +17,7 @@
 package com.netflix.spinnaker.clouddriver.aws.security
 
 import com.amazonaws.auth.AWSCredentialsProvider
+import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.clouddriver.aws.AmazonCloudProvider
 import com.netflix.spinnaker.clouddriver.aws.security.config.AmazonCredentialsParser
 import com.netflix.spinnaker.clouddriver.aws.security.config.CredentialsConfig
@@ -93,7 +94,8 @@ class AmazonCredentialsInitializer {
     @Nullable CredentialsDefinitionSource<Account> amazonCredentialsSource,
     CredentialsConfig credentialsConfig,
     CredentialsRepository<NetflixAmazonCredentials> repository,
-    DefaultAccountConfigurationProperties defaultAccountConfigurationProperties
+    DefaultAccountConfigurationProperties defaultAccountConfigurationProperties,
+    Registry registry
   ) {
     if (amazonCredentialsSource == null) {
       amazonCredentialsSource = { -> credentialsConfig.getAccounts() } as CredentialsDefinitionSource
@@ -103,7 +105,8 @@ class AmazonCredentialsInitializer {
       amazonCredentialsParser,
       repository,
       credentialsConfig,
-      defaultAccountConfigurationProperties
+      defaultAccountConfigurationProperties,
+      registry
     )
   }
 
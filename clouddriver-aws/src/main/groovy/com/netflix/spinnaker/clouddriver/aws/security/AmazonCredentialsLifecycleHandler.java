@@ -43,6 +43,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -149,9 +150,13 @@ public class AmazonCredentialsLifecycleHandler
   }
 
   private void scheduleAgents(NetflixAmazonCredentials credentials) {
+    long start = System.nanoTime();
     scheduleAWSProviderAgents(credentials);
     scheduleAwsInfrastructureProviderAgents(credentials);
     scheduleAwsCleanupAgents(credentials);
+    registry
+        .timer("aws.accounts.initializationTime", "phase", "scheduleAgents")
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
   }
 
   private void scheduleAwsInfrastructureProviderAgents(NetflixAmazonCredentials credentials) {
@@ -232,7 +237,8 @@ public class AmazonCredentialsLifecycleHandler
                   credentialsRepository,
                   objectMapper,
                   reservationReportPool.get(),
-                  ctx)));
+                  ctx,
+                  dynamicConfigService)));
       reservationReportCachingAgentScheduled = true;
     }
   }
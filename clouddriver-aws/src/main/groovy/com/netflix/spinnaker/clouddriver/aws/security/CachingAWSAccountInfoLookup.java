@@ -0,0 +1,278 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.aws.security;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.spinnaker.clouddriver.aws.security.AmazonCredentials.AWSRegion;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Remembers the account id, regions and availability zones resolved by another lookup, so that
+ * they are looked up once rather than once per account.
+ *
+ * <p>What was resolved can also be kept in a snapshot file, so that a restart does not have to
+ * look everything up again before the accounts can be loaded. Values from the snapshot are used
+ * as long as they are younger than the ttl, and are looked up again in the background the first
+ * time they are used. Accounts loaded from a value that turns out to have changed keep it until
+ * they are reloaded.
+ */
+@Slf4j
+public class CachingAWSAccountInfoLookup implements AWSAccountInfoLookup {
+  private static final String ACCOUNT_ID = "accountId";
+  private static final String REGIONS = "regions";
+  private static final String REGION_PREFIX = "region:";
+
+  private final AWSAccountInfoLookup delegate;
+  @Nullable private final Path snapshotPath;
+  private final Duration ttl;
+  private final Executor revalidationExecutor;
+  private final Clock clock;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /** Keys read from the snapshot that have not been looked up again yet. */
+  private final Set<String> unvalidated = ConcurrentHashMap.newKeySet();
+
+  public CachingAWSAccountInfoLookup(
+      AWSAccountInfoLookup delegate, @Nullable Path snapshotPath, Duration ttl) {
+    this(
+        delegate,
+        snapshotPath,
+        ttl,
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat(CachingAWSAccountInfoLookup.class.getSimpleName() + "-%d")
+                .setDaemon(true)
+                .build()),
+        Clock.systemUTC());
+  }
+
+  CachingAWSAccountInfoLookup(
+      AWSAccountInfoLookup delegate,
+      @Nullable Path snapshotPath,
+      Duration ttl,
+      Executor revalidationExecutor,
+      Clock clock) {
+    this.delegate = delegate;
+    this.snapshotPath = snapshotPath;
+    this.ttl = ttl;
+    this.revalidationExecutor = revalidationExecutor;
+    this.clock = clock;
+    readSnapshot();
+  }
+
+  @Override
+  public String findAccountId() {
+    return get(ACCOUNT_ID, () -> Collections.singletonList(delegate.findAccountId())).get(0);
+  }
+
+  @Override
+  public List<AWSRegion> listRegions(String... regionNames) {
+    return listRegions(Arrays.asList(regionNames));
+  }
+
+  @Override
+  public List<AWSRegion> listRegions(Collection<String> regionNames) {
+    Set<String> names =
+        new LinkedHashSet<>(regionNames.isEmpty() ? getRegionNames() : regionNames);
+
+    Map<String, List<String>> zones = new HashMap<>();
+    List<String> toLookup = new ArrayList<>();
+    for (String name : names) {
+      List<String> cached = getIfFresh(REGION_PREFIX + name, () -> lookupZones(name));
+      if (cached == null) {
+        toLookup.add(name);
+      } else {
+        zones.put(name, cached);
+      }
+    }
+
+    if (!toLookup.isEmpty()) {
+      zones.putAll(lookupRegions(toLookup));
+      writeSnapshot();
+    }
+
+    return names.stream()
+        .filter(zones::containsKey)
+        .map(name -> new AWSRegion(name, zones.get(name)))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public List<String> listAvailabilityZones(String region) {
+    List<AWSRegion> regions = listRegions(region);
+    if (regions.isEmpty()) {
+      throw new IllegalArgumentException("Unknown region: " + region);
+    }
+    return new ArrayList<>(regions.get(0).getAvailabilityZones());
+  }
+
+  private List<String> getRegionNames() {
+    return get(REGIONS, () -> new ArrayList<>(lookupRegions(Collections.emptyList()).keySet()));
+  }
+
+  private Map<String, List<String>> lookupRegions(Collection<String> names) {
+    Map<String, List<String>> zones = new HashMap<>();
+    for (AWSRegion region : delegate.listRegions(names)) {
+      List<String> availabilityZones = new ArrayList<>(region.getAvailabilityZones());
+      put(REGION_PREFIX + region.getName(), availabilityZones);
+      zones.put(region.getName(), availabilityZones);
+    }
+    return zones;
+  }
+
+  private List<String> lookupZones(String region) {
+    return delegate.listAvailabilityZones(region);
+  }
+
+  private List<String> get(String key, Supplier<List<String>> lookup) {
+    List<String> value = getIfFresh(key, lookup);
+    if (value == null) {
+      value = lookup.get();
+      put(key, value);
+      writeSnapshot();
+    }
+    return value;
+  }
+
+  /**
+   * @return the value of the key if it is younger than the ttl, looking it up again in the
+   *     background if it came from the snapshot
+   */
+  @Nullable
+  private List<String> getIfFresh(String key, Supplier<List<String>> lookup) {
+    Entry entry = entries.get(key);
+    if (entry == null || clock.millis() - entry.getResolvedAt() > ttl.toMillis()) {
+      return null;
+    }
+    if (unvalidated.remove(key)) {
+      revalidate(key, lookup);
+    }
+    return entry.getValue();
+  }
+
+  private void revalidate(String key, Supplier<List<String>> lookup) {
+    try {
+      revalidationExecutor.execute(
+          () -> {
+            try {
+              List<String> value = lookup.get();
+              Entry previous = entries.get(key);
+              if (previous != null && !previous.getValue().equals(value)) {
+                log.warn(
+                    "{} changed from {} to {} since it was snapshotted, accounts loaded since "
+                        + "startup keep the previous value until they are reloaded",
+                    key,
+                    previous.getValue(),
+                    value);
+              }
+              put(key, value);
+              writeSnapshot();
+            } catch (Exception e) {
+              log.warn("Failed to look up {} again, keeping its snapshotted value", key, e);
+            }
+          });
+    } catch (Exception e) {
+      log.warn("Failed to schedule looking up {} again", key, e);
+    }
+  }
+
+  private void put(String key, List<String> value) {
+    entries.put(key, new Entry(clock.millis(), value));
+    unvalidated.remove(key);
+  }
+
+  private void readSnapshot() {
+    if (snapshotPath == null || !Files.exists(snapshotPath)) {
+      return;
+    }
+
+    try {
+      Map<String, Entry> snapshot =
+          objectMapper.readValue(
+              snapshotPath.toFile(), new TypeReference<Map<String, Entry>>() {});
+      snapshot.forEach(
+          (key, entry) -> {
+            if (entry != null && entry.getValue() != null) {
+              entries.put(key, entry);
+              unvalidated.add(key);
+            }
+          });
+      log.info("Read {} account info entries from {}", entries.size(), snapshotPath);
+    } catch (Exception e) {
+      log.warn("Failed to read the account info snapshot from {}, ignoring it", snapshotPath, e);
+    }
+  }
+
+  private synchronized void writeSnapshot() {
+    if (snapshotPath == null) {
+      return;
+    }
+
+    try {
+      Path parent = snapshotPath.toAbsolutePath().getParent();
+      Files.createDirectories(parent);
+      Path temp = Files.createTempFile(parent, snapshotPath.getFileName().toString(), ".tmp");
+      try {
+        objectMapper.writeValue(temp.toFile(), new HashMap<>(entries));
+        Files.move(
+            temp,
+            snapshotPath,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (Exception e) {
+      log.warn("Failed to write the account info snapshot to {}", snapshotPath, e);
+    }
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  static class Entry {
+    private long resolvedAt;
+    private List<String> value;
+  }
+}
@@ -30,6 +30,8 @@ public class EddaTimeoutConfig {
   private static final int EDDA_CONNECT_TIMEOUT_MILLIS = 1000;
   private static final int EDDA_CONNECT_REQUEST_TIMEOUT_MILLIS = 10000;
   private static final int EDDA_SOCKET_TIMEOUT_MILLIS = 5000;
+  private static final int EDDA_ID_FETCH_PARALLELISM = 4;
+  private static final long EDDA_CONDITIONAL_FETCH_MAX_AGE_MILLIS = 600_000L;
 
   private final long retryBase;
   private final int backoffMillis;
@@ -39,6 +41,9 @@ public class EddaTimeoutConfig {
   private final int socketTimeout;
   private final Set<String> disabledRegions;
   private boolean albEnabled;
+  private final int idFetchParallelism;
+  private final boolean conditionalFetchEnabled;
+  private final long conditionalFetchMaxAgeMillis;
 
   public EddaTimeoutConfig(
       long retryBase,
@@ -49,6 +54,32 @@ public class EddaTimeoutConfig {
       int socketTimeout,
       Collection<String> disabledRegions,
       boolean albEnabled) {
+    this(
+        retryBase,
+        backoffMillis,
+        maxAttempts,
+        connectTimeout,
+        connectionRequestTimeout,
+        socketTimeout,
+        disabledRegions,
+        albEnabled,
+        EDDA_ID_FETCH_PARALLELISM,
+        false,
+        EDDA_CONDITIONAL_FETCH_MAX_AGE_MILLIS);
+  }
+
+  public EddaTimeoutConfig(
+      long retryBase,
+      int backoffMillis,
+      int maxAttempts,
+      int connectTimeout,
+      int connectionRequestTimeout,
+      int socketTimeout,
+      Collection<String> disabledRegions,
+      boolean albEnabled,
+      int idFetchParallelism,
+      boolean conditionalFetchEnabled,
+      long conditionalFetchMaxAgeMillis) {
     this.retryBase = retryBase;
     this.backoffMillis = backoffMillis;
     this.maxAttempts = maxAttempts;
@@ -60,6 +91,9 @@ public class EddaTimeoutConfig {
             ? Collections.emptySet()
             : Collections.unmodifiableSet(new LinkedHashSet<>(disabledRegions));
     this.albEnabled = albEnabled;
+    this.idFetchParallelism = Math.max(1, idFetchParallelism);
+    this.conditionalFetchEnabled = conditionalFetchEnabled;
+    this.conditionalFetchMaxAgeMillis = conditionalFetchMaxAgeMillis;
   }
 
   public long getRetryBase() {
@@ -94,6 +128,21 @@ public class EddaTimeoutConfig {
     return albEnabled;
   }
 
+  /** @return the maximum number of concurrent requests used to fetch objects by id */
+  public int getIdFetchParallelism() {
+    return idFetchParallelism;
+  }
+
+  /** @return whether full collections are kept and only re-fetched when Edda reports a change */
+  public boolean getConditionalFetchEnabled() {
+    return conditionalFetchEnabled;
+  }
+
+  /** @return how long a kept collection may be reused before it is unconditionally re-fetched */
+  public long getConditionalFetchMaxAgeMillis() {
+    return conditionalFetchMaxAgeMillis;
+  }
+
   public static class Builder {
     private long retryBase;
     private int backoffMillis;
@@ -103,6 +152,9 @@ public class EddaTimeoutConfig {
     private int socketTimeout;
     private List<String> disabledRegions;
     private boolean albEnabled;
+    private int idFetchParallelism;
+    private boolean conditionalFetchEnabled;
+    private long conditionalFetchMaxAgeMillis;
 
     public Builder() {
       this.retryBase = EDDA_RETRY_BASE_MILLIS;
@@ -113,6 +165,9 @@ public class EddaTimeoutConfig {
       this.socketTimeout = EDDA_SOCKET_TIMEOUT_MILLIS;
       this.disabledRegions = null;
       this.albEnabled = false;
+      this.idFetchParallelism = EDDA_ID_FETCH_PARALLELISM;
+      this.conditionalFetchEnabled = false;
+      this.conditionalFetchMaxAgeMillis = EDDA_CONDITIONAL_FETCH_MAX_AGE_MILLIS;
     }
 
     public EddaTimeoutConfig build() {
@@ -124,7 +179,10 @@ public class EddaTimeoutConfig {
           connectionRequestTimeout,
           socketTimeout,
           disabledRegions,
-          albEnabled);
+          albEnabled,
+          idFetchParallelism,
+          conditionalFetchEnabled,
+          conditionalFetchMaxAgeMillis);
     }
 
     public long getRetryBase() {
@@ -190,5 +248,29 @@ public class EddaTimeoutConfig {
     public void setAlbEnabled(boolean albEnabled) {
       this.albEnabled = albEnabled;
     }
+
+    public int getIdFetchParallelism() {
+      return idFetchParallelism;
+    }
+
+    public void setIdFetchParallelism(int idFetchParallelism) {
+      this.idFetchParallelism = idFetchParallelism;
+    }
+
+    public boolean getConditionalFetchEnabled() {
+      return conditionalFetchEnabled;
+    }
+
+    public void setConditionalFetchEnabled(boolean conditionalFetchEnabled) {
+      this.conditionalFetchEnabled = conditionalFetchEnabled;
+    }
+
+    public long getConditionalFetchMaxAgeMillis() {
+      return conditionalFetchMaxAgeMillis;
+    }
+
+    public void setConditionalFetchMaxAgeMillis(long conditionalFetchMaxAgeMillis) {
+      this.conditionalFetchMaxAgeMillis = conditionalFetchMaxAgeMillis;
+    }
   }
 }
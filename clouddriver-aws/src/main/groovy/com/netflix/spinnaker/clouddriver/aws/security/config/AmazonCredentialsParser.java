@@ -20,13 +20,20 @@ package com.netflix.spinnaker.clouddriver.aws.security.config;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.spinnaker.clouddriver.aws.security.*;
 import com.netflix.spinnaker.clouddriver.aws.security.config.CredentialsConfig.Account;
 import com.netflix.spinnaker.clouddriver.aws.security.config.CredentialsConfig.Region;
 import com.netflix.spinnaker.credentials.definition.CredentialsParser;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.regex.Pattern;
@@ -52,7 +59,12 @@ public class AmazonCredentialsParser<U extends Account, V extends NetflixAmazonC
       CredentialsConfig credentialsConfig) {
     this.credentialsProvider = Objects.requireNonNull(credentialsProvider, "credentialsProvider");
     this.awsAccountInfoLookup =
-        new DefaultAWSAccountInfoLookup(credentialsProvider, amazonClientProvider);
+        new CachingAWSAccountInfoLookup(
+            new DefaultAWSAccountInfoLookup(credentialsProvider, amazonClientProvider),
+            Optional.ofNullable(credentialsConfig.getAccountInfoSnapshotPath())
+                .map(Paths::get)
+                .orElse(null),
+            Duration.ofMinutes(credentialsConfig.getAccountInfoSnapshotTtlMinutes()));
     this.templateValues = Collections.emptyMap();
     this.objectMapper = new ObjectMapper();
     this.credentialTranslator = findTranslator(credentialsType, this.objectMapper);
@@ -164,6 +176,63 @@ public class AmazonCredentialsParser<U extends Account, V extends NetflixAmazonC
     return result;
   }
 
+  /**
+   * Looks up the regions of the accounts that are missing availability zones concurrently, so that
+   * parsing the accounts one at a time finds them already resolved.
+   */
+  public void resolveRegions(Collection<? extends Account> accounts) {
+    if (!(awsAccountInfoLookup instanceof CachingAWSAccountInfoLookup)) {
+      // nothing would be kept for parsing
+      return;
+    }
+
+    Set<String> toLookup = new LinkedHashSet<>();
+    for (Account account : accounts) {
+      addUnresolved(account.getRegions(), toLookup);
+    }
+    addUnresolved(credentialsConfig.getDefaultRegions(), toLookup);
+
+    int threads = Math.min(credentialsConfig.getAccountInitializationThreads(), toLookup.size());
+    if (threads < 2) {
+      return;
+    }
+
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder()
+                .setNameFormat(getClass().getSimpleName() + "-%d")
+                .setDaemon(true)
+                .build());
+    try {
+      List<Future<?>> lookups = new ArrayList<>(toLookup.size());
+      for (String region : toLookup) {
+        lookups.add(executor.submit(() -> awsAccountInfoLookup.listRegions(region)));
+      }
+      for (Future<?> lookup : lookups) {
+        try {
+          lookup.get();
+        } catch (ExecutionException e) {
+          // parsing the accounts looks the region up again and reports the failure
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void addUnresolved(List<Region> regions, Set<String> unresolved) {
+    if (regions != null) {
+      for (Region region : regions) {
+        if (region.getAvailabilityZones() == null || region.getAvailabilityZones().isEmpty()) {
+          unresolved.add(region.getName());
+        }
+      }
+    }
+  }
+
   private static Region find(List<Region> src, String name) {
     if (src != null) {
       for (Region r : src) {
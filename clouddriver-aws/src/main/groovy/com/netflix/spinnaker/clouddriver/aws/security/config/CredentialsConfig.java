@@ -379,6 +379,14 @@ public class CredentialsConfig {
   private String defaultLifecycleHookRoleARNTemplate;
   private String defaultLifecycleHookNotificationTargetARNTemplate;
 
+  /** Where resolved account ids, regions and availability zones are kept across restarts. */
+  private String accountInfoSnapshotPath;
+
+  private long accountInfoSnapshotTtlMinutes = 24 * 60;
+
+  /** How many regions are looked up concurrently while loading accounts. */
+  private int accountInitializationThreads = 8;
+
   private List<Account> accounts;
 
   public String getDefaultKeyPairTemplate() {
@@ -487,6 +495,30 @@ public class CredentialsConfig {
         defaultLifecycleHookNotificationTargetARNTemplate;
   }
 
+  public String getAccountInfoSnapshotPath() {
+    return accountInfoSnapshotPath;
+  }
+
+  public void setAccountInfoSnapshotPath(String accountInfoSnapshotPath) {
+    this.accountInfoSnapshotPath = accountInfoSnapshotPath;
+  }
+
+  public long getAccountInfoSnapshotTtlMinutes() {
+    return accountInfoSnapshotTtlMinutes;
+  }
+
+  public void setAccountInfoSnapshotTtlMinutes(long accountInfoSnapshotTtlMinutes) {
+    this.accountInfoSnapshotTtlMinutes = accountInfoSnapshotTtlMinutes;
+  }
+
+  public int getAccountInitializationThreads() {
+    return accountInitializationThreads;
+  }
+
+  public void setAccountInitializationThreads(int accountInitializationThreads) {
+    this.accountInitializationThreads = accountInitializationThreads;
+  }
+
   public String getAccessKeyId() {
     return accessKeyId;
   }
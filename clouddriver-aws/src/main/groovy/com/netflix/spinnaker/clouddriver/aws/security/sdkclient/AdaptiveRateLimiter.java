@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.aws.security.sdkclient;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.RateLimiter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A RateLimiter whose rate follows the throttling of the API it guards.
+ *
+ * <p>The rate is halved when a request is throttled, and grows back by a fixed step for every
+ * second without throttling (additive-increase/multiplicative-decrease), between a minimum and a
+ * maximum rate. Requests that are in flight when the API starts throttling tend to be throttled
+ * together, so the rate is decreased at most once per second.
+ *
+ * <p>With the minimum and maximum both set to the initial rate, this is a fixed rate limiter.
+ */
+public class AdaptiveRateLimiter {
+  private static final double DECREASE_FACTOR = 0.5d;
+  private static final long ADJUST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /** Steps needed to grow from the minimum back to the maximum rate. */
+  private static final double INCREASE_STEPS = 20d;
+
+  private final RateLimiter rateLimiter;
+  private final double minRate;
+  private final double maxRate;
+  private final double increase;
+  private final Ticker ticker;
+  private final AtomicLong throttled = new AtomicLong();
+
+  private volatile double rate;
+  private volatile long lastAdjusted;
+  private volatile long lastDecreased;
+
+  public AdaptiveRateLimiter(double rate, double minRate, double maxRate) {
+    this(rate, minRate, maxRate, Ticker.systemTicker());
+  }
+
+  AdaptiveRateLimiter(double rate, double minRate, double maxRate, Ticker ticker) {
+    if (minRate <= 0 || minRate > maxRate) {
+      throw new IllegalArgumentException(
+          "Invalid rate limit bounds [" + minRate + ", " + maxRate + "]");
+    }
+    this.minRate = minRate;
+    this.maxRate = maxRate;
+    this.rate = Math.min(maxRate, Math.max(minRate, rate));
+    this.increase = Math.max((maxRate - minRate) / INCREASE_STEPS, 0.1d);
+    this.ticker = ticker;
+    this.rateLimiter = RateLimiter.create(this.rate);
+    this.lastAdjusted = ticker.read();
+    this.lastDecreased = lastAdjusted - ADJUST_INTERVAL_NANOS;
+  }
+
+  /**
+   * Acquires a permit, blocking until it is granted.
+   *
+   * @return the time spent waiting for the permit, in seconds
+   */
+  public double acquire() {
+    return rateLimiter.acquire();
+  }
+
+  /** Increases the rate if it has not been adjusted for a while. */
+  public void onSuccess() {
+    if (rate >= maxRate || ticker.read() - lastAdjusted < ADJUST_INTERVAL_NANOS) {
+      return;
+    }
+
+    synchronized (this) {
+      long now = ticker.read();
+      if (rate < maxRate && now - lastAdjusted >= ADJUST_INTERVAL_NANOS) {
+        setRate(Math.min(maxRate, rate + increase), now);
+      }
+    }
+  }
+
+  /** Decreases the rate, unless it was already decreased for requests throttled together. */
+  public void onThrottled() {
+    throttled.incrementAndGet();
+
+    synchronized (this) {
+      long now = ticker.read();
+      if (now - lastDecreased >= ADJUST_INTERVAL_NANOS) {
+        lastDecreased = now;
+        setRate(Math.max(minRate, rate * DECREASE_FACTOR), now);
+      }
+    }
+  }
+
+  private void setRate(double rate, long now) {
+    if (rate != this.rate) {
+      this.rate = rate;
+      rateLimiter.setRate(rate);
+    }
+    lastAdjusted = now;
+  }
+
+  public double getRate() {
+    return rate;
+  }
+
+  public double getMinRate() {
+    return minRate;
+  }
+
+  public double getMaxRate() {
+    return maxRate;
+  }
+
+  /** @return the number of throttled requests reported so far */
+  public long getThrottledCount() {
+    return throttled.get();
+  }
+}
@@ -34,8 +34,11 @@ import com.amazonaws.services.elasticloadbalancingv2.model.TargetGroup;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.netflix.spectator.api.Id;
 import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.aws.security.EddaTimeoutConfig;
@@ -44,6 +47,9 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -72,6 +78,8 @@ public class AmazonClientInvocationHandler implements InvocationHandler {
   private final EddaTimeoutConfig eddaTimeoutConfig;
   private final Registry registry;
   private final Map<String, String> metricTags;
+  private final ExecutorService idFetchExecutor;
+  private final Cache<String, EddaCollection<?>> eddaCollections;
 
   public AmazonClientInvocationHandler(
       Object delegate,
@@ -82,6 +90,36 @@ public class AmazonClientInvocationHandler implements InvocationHandler {
       EddaTimeoutConfig eddaTimeoutConfig,
       Registry registry,
       Map<String, String> metricTags) {
+    this(
+        delegate,
+        serviceName,
+        edda,
+        httpClient,
+        objectMapper,
+        eddaTimeoutConfig,
+        registry,
+        metricTags,
+        null,
+        null);
+  }
+
+  /**
+   * @param idFetchExecutor used to fetch objects requested by id concurrently, or null to fetch
+   *     them one at a time
+   * @param eddaCollections full collections kept between calls so that unchanged collections are
+   *     not downloaded again, or null to always download them
+   */
+  public AmazonClientInvocationHandler(
+      Object delegate,
+      String serviceName,
+      String edda,
+      HttpClient httpClient,
+      ObjectMapper objectMapper,
+      EddaTimeoutConfig eddaTimeoutConfig,
+      Registry registry,
+      Map<String, String> metricTags,
+      ExecutorService idFetchExecutor,
+      Cache<String, EddaCollection<?>> eddaCollections) {
     this.edda = edda;
     this.httpClient = httpClient;
     this.objectMapper = objectMapper;
@@ -91,6 +129,8 @@ public class AmazonClientInvocationHandler implements InvocationHandler {
         eddaTimeoutConfig == null ? EddaTimeoutConfig.DEFAULT : eddaTimeoutConfig;
     this.registry = registry;
     this.metricTags = ImmutableMap.copyOf(metricTags);
+    this.idFetchExecutor = idFetchExecutor;
+    this.eddaCollections = eddaCollections;
   }
 
   @Override
@@ -403,48 +443,22 @@ public class AmazonClientInvocationHandler implements InvocationHandler {
           objectMapper
               .getTypeFactory()
               .constructParametrizedType(Metadata.class, Metadata.class, singleType);
-      Long mtime = null;
-      final List<T> results = new ArrayList<>();
-
       final Id deserializeJsonTimer = registry.createId("edda.deserializeJson", metricTags);
       final Id resultSizeCounter = registry.createId("edda.resultSize", metricTags);
-      if (ids.isEmpty()) {
-        HttpEntity entity = getHttpEntity(metricTags, object, null);
-        try {
-          final JavaType listMeta =
-              objectMapper
-                  .getTypeFactory()
-                  .constructParametrizedType(List.class, List.class, singleMeta);
-          final List<Metadata<T>> metadataResults =
-              registry
-                  .timer(deserializeJsonTimer)
-                  .record(() -> objectMapper.readValue(entity.getContent(), listMeta));
-          for (Metadata<T> meta : metadataResults) {
-            mtime = mtime == null ? meta.mtime : Math.min(mtime, meta.mtime);
-            results.add(meta.data);
-          }
-        } finally {
-          EntityUtils.consume(entity);
-        }
-      } else {
-        for (String id : ids) {
-          HttpEntity entity = getHttpEntity(metricTags, object, id);
-          try {
-            final Metadata<T> result =
-                registry
-                    .timer(deserializeJsonTimer)
-                    .record(() -> objectMapper.readValue(entity.getContent(), singleMeta));
-            mtime = mtime == null ? result.mtime : Math.min(mtime, result.mtime);
-            results.add(result.data);
-          } finally {
-            EntityUtils.consume(entity);
-          }
-        }
-      }
+      final EddaCollection<T> collection =
+          ids.isEmpty()
+              ? describeCollection(metricTags, object, singleMeta, deserializeJsonTimer)
+              : describeIds(metricTags, object, ids, singleMeta, deserializeJsonTimer);
+      final List<T> results = collection.results;
+      final Long mtime = collection.mtime;
+
       registry.counter(resultSizeCounter).increment(results.size());
       lastModified.set(mtime);
       return results;
     } catch (Exception e) {
+      if (e instanceof ExecutionException && e.getCause() instanceof Exception) {
+        e = (Exception) e.getCause();
+      }
       log.error(e.getMessage() + " (retries exhausted)");
 
       registry.counter(registry.createId("edda.failures", metricTags)).increment();
@@ -461,6 +475,137 @@ public class AmazonClientInvocationHandler implements InvocationHandler {
     }
   }
 
+  /**
+   * Streams a full collection, deserializing one object at a time rather than materializing the
+   * whole response first.
+   *
+   * <p>When collections are kept between calls, a kept collection is only reused if Edda reports
+   * the same set of ids and no object modified since the newest one in the kept collection. Both
+   * checks only return ids, so they are far cheaper than the expanded collection.
+   */
+  private <T> EddaCollection<T> describeCollection(
+      Map<String, String> metricTags, String object, JavaType singleMeta, Id deserializeJsonTimer)
+      throws Exception {
+    final String collectionKey = edda + "/" + object;
+    Set<String> liveIds = null;
+    if (eddaCollections != null) {
+      liveIds = getIds(metricTags, object, null);
+      @SuppressWarnings("unchecked")
+      final EddaCollection<T> kept =
+          (EddaCollection<T>) eddaCollections.getIfPresent(collectionKey);
+      final Id conditionalFetches = registry.createId("edda.conditionalFetches", metricTags);
+      if (kept != null
+          && kept.ids.equals(liveIds)
+          && getIds(metricTags, object, ";_since=" + (kept.maxMtime + 1)).isEmpty()) {
+        registry.counter(conditionalFetches.withTag("result", "unchanged")).increment();
+        return kept;
+      }
+      registry
+          .counter(conditionalFetches.withTag("result", kept == null ? "missing" : "changed"))
+          .increment();
+    }
+
+    final List<T> results = new ArrayList<>();
+    Long mtime = null;
+    long maxMtime = 0;
+    final HttpEntity entity = getHttpEntity(metricTags, object, null);
+    try {
+      final long startTime = System.nanoTime();
+      try (MappingIterator<Metadata<T>> metadata =
+          objectMapper.readerFor(singleMeta).readValues(entity.getContent())) {
+        while (metadata.hasNextValue()) {
+          final Metadata<T> meta = metadata.nextValue();
+          mtime = mtime == null ? meta.mtime : Math.min(mtime, meta.mtime);
+          maxMtime = meta.mtime == null ? maxMtime : Math.max(maxMtime, meta.mtime);
+          results.add(meta.data);
+        }
+      } finally {
+        registry
+            .timer(deserializeJsonTimer)
+            .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+      }
+    } finally {
+      EntityUtils.consume(entity);
+    }
+
+    final EddaCollection<T> collection =
+        new EddaCollection<>(Collections.unmodifiableList(results), mtime, maxMtime, liveIds);
+    if (eddaCollections != null) {
+      eddaCollections.put(collectionKey, collection);
+    }
+    return collection;
+  }
+
+  /** Fetches objects by id, with up to the configured number of requests in flight. */
+  private <T> EddaCollection<T> describeIds(
+      Map<String, String> metricTags,
+      String object,
+      Collection<String> ids,
+      JavaType singleMeta,
+      Id deserializeJsonTimer)
+      throws Exception {
+    final List<Metadata<T>> fetched = new ArrayList<>(ids.size());
+    if (idFetchExecutor == null || ids.size() == 1) {
+      for (String id : ids) {
+        fetched.add(describeId(metricTags, object, id, singleMeta, deserializeJsonTimer));
+      }
+    } else {
+      final List<Future<Metadata<T>>> futures = new ArrayList<>(ids.size());
+      try {
+        for (String id : ids) {
+          futures.add(
+              idFetchExecutor.submit(
+                  () -> describeId(metricTags, object, id, singleMeta, deserializeJsonTimer)));
+        }
+        for (Future<Metadata<T>> future : futures) {
+          fetched.add(future.get());
+        }
+      } finally {
+        futures.forEach(f -> f.cancel(true));
+      }
+    }
+
+    final List<T> results = new ArrayList<>(fetched.size());
+    Long mtime = null;
+    for (Metadata<T> result : fetched) {
+      mtime = mtime == null ? result.mtime : Math.min(mtime, result.mtime);
+      results.add(result.data);
+    }
+    return new EddaCollection<>(results, mtime, 0, null);
+  }
+
+  private <T> Metadata<T> describeId(
+      Map<String, String> metricTags,
+      String object,
+      String id,
+      JavaType singleMeta,
+      Id deserializeJsonTimer)
+      throws Exception {
+    final HttpEntity entity = getHttpEntity(metricTags, object, id);
+    try {
+      return registry
+          .timer(deserializeJsonTimer)
+          .record(() -> objectMapper.<Metadata<T>>readValue(entity.getContent(), singleMeta));
+    } finally {
+      EntityUtils.consume(entity);
+    }
+  }
+
+  private Set<String> getIds(Map<String, String> metricTags, String object, String matrixArguments)
+      throws Exception {
+    final String url =
+        edda + "/REST/v2/aws/" + object + (matrixArguments == null ? "" : matrixArguments);
+    final HttpEntity entity = getHttpEntity(metricTags, url);
+    try {
+      final JavaType listOfIds =
+          objectMapper.getTypeFactory().constructCollectionType(List.class, String.class);
+      return ImmutableSet.copyOf(
+          objectMapper.<List<String>>readValue(entity.getContent(), listOfIds));
+    } finally {
+      EntityUtils.consume(entity);
+    }
+  }
+
   private static Collection<String> getRequestIds(
       AmazonWebServiceRequest request, String idFieldName) {
     if (request == null) {
@@ -478,8 +623,13 @@ public class AmazonClientInvocationHandler implements InvocationHandler {
 
   private HttpEntity getHttpEntity(Map<String, String> metricTags, String objectName, String key)
       throws EddaException {
-    final String url =
-        edda + "/REST/v2/aws/" + objectName + (key == null ? ";_expand" : "/" + key) + ";_meta";
+    return getHttpEntity(
+        metricTags,
+        edda + "/REST/v2/aws/" + objectName + (key == null ? ";_expand" : "/" + key) + ";_meta");
+  }
+
+  private HttpEntity getHttpEntity(Map<String, String> metricTags, String url)
+      throws EddaException {
     final HttpGet get = new HttpGet(url);
     get.setConfig(
         RequestConfig.custom()
@@ -555,6 +705,21 @@ public class AmazonClientInvocationHandler implements InvocationHandler {
     throw new EddaException("Edda request " + lastUrl + " failed with " + lastExceptionMessage, ex);
   }
 
+  /** The objects returned for a request, and the metadata needed to tell if they changed. */
+  static class EddaCollection<T> {
+    final List<T> results;
+    final Long mtime;
+    final long maxMtime;
+    final Set<String> ids;
+
+    EddaCollection(List<T> results, Long mtime, long maxMtime, Set<String> ids) {
+      this.results = results;
+      this.mtime = mtime;
+      this.maxMtime = maxMtime;
+      this.ids = ids;
+    }
+  }
+
   private static class Metadata<T> {
     final Long mtime;
     final T data;
@@ -20,13 +20,19 @@ import static java.util.Objects.requireNonNull;
 
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.aws.security.EddaTemplater;
 import com.netflix.spinnaker.clouddriver.aws.security.EddaTimeoutConfig;
 import com.netflix.spinnaker.clouddriver.aws.security.NetflixAmazonCredentials;
 import java.lang.reflect.Proxy;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.apache.http.client.HttpClient;
 
 /**
@@ -40,6 +46,8 @@ public class ProxyHandlerBuilder {
   private final EddaTemplater eddaTemplater;
   private final EddaTimeoutConfig eddaTimeoutConfig;
   private final Registry registry;
+  private final ExecutorService idFetchExecutor;
+  private final Cache<String, AmazonClientInvocationHandler.EddaCollection<?>> eddaCollections;
 
   public ProxyHandlerBuilder(
       AwsSdkClientSupplier awsSdkClientSupplier,
@@ -54,6 +62,19 @@ public class ProxyHandlerBuilder {
     this.eddaTemplater = requireNonNull(eddaTemplater);
     this.eddaTimeoutConfig = eddaTimeoutConfig;
     this.registry = requireNonNull(registry);
+
+    EddaTimeoutConfig config =
+        eddaTimeoutConfig == null ? EddaTimeoutConfig.DEFAULT : eddaTimeoutConfig;
+    this.idFetchExecutor =
+        Executors.newFixedThreadPool(
+            config.getIdFetchParallelism(),
+            new ThreadFactoryBuilder().setNameFormat("edda-id-fetch-%d").setDaemon(true).build());
+    this.eddaCollections =
+        config.getConditionalFetchEnabled()
+            ? CacheBuilder.newBuilder()
+                .expireAfterWrite(config.getConditionalFetchMaxAgeMillis(), TimeUnit.MILLISECONDS)
+                .build()
+            : null;
   }
 
   public <T extends AwsClientBuilder<T, U>, U> U getProxyHandler(
@@ -115,6 +136,8 @@ public class ProxyHandlerBuilder {
         objectMapper,
         eddaTimeoutConfig,
         registry,
-        baseTags);
+        baseTags,
+        idFetchExecutor,
+        eddaCollections);
   }
 }
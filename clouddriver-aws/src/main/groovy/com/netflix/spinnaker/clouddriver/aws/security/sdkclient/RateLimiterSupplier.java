@@ -19,28 +19,34 @@ package com.netflix.spinnaker.clouddriver.aws.security.sdkclient;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.util.concurrent.RateLimiter;
 import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.aws.AmazonCloudProvider;
 import com.netflix.spinnaker.clouddriver.core.limits.ServiceLimitConfiguration;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 
-/** Factory for shared RateLimiters by SDK client interface/account/region. */
+/**
+ * Factory for shared RateLimiters by SDK client interface/account/region.
+ *
+ * <p>Rate limiters start at the configured {@link ServiceLimitConfiguration#API_RATE_LIMIT}, and
+ * adapt to throttling between {@link ServiceLimitConfiguration#API_RATE_LIMIT_MIN} and {@link
+ * ServiceLimitConfiguration#API_RATE_LIMIT_MAX}, both of which default to the configured rate.
+ */
 public class RateLimiterSupplier {
 
-  private final LoadingCache<RateLimitKey, RateLimiter> rateLimiters;
+  private final LoadingCache<RateLimitKey, AdaptiveRateLimiter> rateLimiters;
 
   public RateLimiterSupplier(
       ServiceLimitConfiguration serviceLimitConfiguration, Registry registry) {
     rateLimiters =
         CacheBuilder.newBuilder()
             .recordStats()
-            .build(new RateLimitCacheLoader(serviceLimitConfiguration));
+            .build(new RateLimitCacheLoader(serviceLimitConfiguration, registry));
     LoadingCacheMetrics.instrument("rateLimiterSupplier", registry, rateLimiters);
   }
 
-  public RateLimiter getRateLimiter(Class<?> implementation, String account, String region) {
+  public AdaptiveRateLimiter getRateLimiter(
+      Class<?> implementation, String account, String region) {
     try {
       return rateLimiters.get(new RateLimitKey(implementation, account, region));
     } catch (ExecutionException executionException) {
@@ -51,33 +57,60 @@ public class RateLimiterSupplier {
     }
   }
 
-  private static class RateLimitCacheLoader extends CacheLoader<RateLimitKey, RateLimiter> {
+  private static class RateLimitCacheLoader
+      extends CacheLoader<RateLimitKey, AdaptiveRateLimiter> {
     private static final double DEFAULT_LIMIT = 10.0d;
 
     private final ServiceLimitConfiguration serviceLimitConfiguration;
+    private final Registry registry;
     private final double defaultLimit;
 
-    public RateLimitCacheLoader(ServiceLimitConfiguration serviceLimitConfiguration) {
-      this(serviceLimitConfiguration, DEFAULT_LIMIT);
+    public RateLimitCacheLoader(
+        ServiceLimitConfiguration serviceLimitConfiguration, Registry registry) {
+      this(serviceLimitConfiguration, registry, DEFAULT_LIMIT);
     }
 
     public RateLimitCacheLoader(
-        ServiceLimitConfiguration serviceLimitConfiguration, double defaultLimit) {
+        ServiceLimitConfiguration serviceLimitConfiguration,
+        Registry registry,
+        double defaultLimit) {
       this.serviceLimitConfiguration = Objects.requireNonNull(serviceLimitConfiguration);
+      this.registry = Objects.requireNonNull(registry);
       this.defaultLimit = defaultLimit;
     }
 
     @Override
-    public RateLimiter load(RateLimitKey key) throws Exception {
-      double rateLimit =
-          serviceLimitConfiguration.getLimit(
-              ServiceLimitConfiguration.API_RATE_LIMIT,
+    public AdaptiveRateLimiter load(RateLimitKey key) throws Exception {
+      double rateLimit = getLimit(key, ServiceLimitConfiguration.API_RATE_LIMIT, defaultLimit);
+      double minRateLimit =
+          getLimit(key, ServiceLimitConfiguration.API_RATE_LIMIT_MIN, rateLimit);
+      double maxRateLimit =
+          getLimit(key, ServiceLimitConfiguration.API_RATE_LIMIT_MAX, rateLimit);
+
+      AdaptiveRateLimiter rateLimiter =
+          new AdaptiveRateLimiter(
+              rateLimit, Math.min(minRateLimit, rateLimit), Math.max(maxRateLimit, rateLimit));
+      registry.gauge(
+          registry.createId(
+              "amazonClientProvider.rateLimit",
+              "clientType",
               key.implementationClass.getSimpleName(),
+              "account",
               key.account,
-              AmazonCloudProvider.ID,
-              defaultLimit);
+              "region",
+              key.region == null ? "UNSPECIFIED" : key.region),
+          rateLimiter,
+          AdaptiveRateLimiter::getRate);
+      return rateLimiter;
+    }
 
-      return RateLimiter.create(rateLimit);
+    private double getLimit(RateLimitKey key, String limit, double defaultValue) {
+      return serviceLimitConfiguration.getLimit(
+          limit,
+          key.implementationClass.getSimpleName(),
+          key.account,
+          AmazonCloudProvider.ID,
+          defaultValue);
     }
   }
 
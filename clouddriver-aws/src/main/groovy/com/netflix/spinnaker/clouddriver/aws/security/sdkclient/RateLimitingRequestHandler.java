@@ -19,18 +19,26 @@ package com.netflix.spinnaker.clouddriver.aws.security.sdkclient;
 import static java.util.Objects.requireNonNull;
 
 import com.amazonaws.Request;
+import com.amazonaws.SdkBaseException;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
 import com.amazonaws.handlers.RequestHandler2;
-import com.google.common.util.concurrent.RateLimiter;
+import com.amazonaws.retry.RetryUtils;
 import com.netflix.spectator.api.Counter;
 import java.util.Objects;
 
-/** A RequestHandler that will throttle requests via the supplied RateLimiter. */
+/**
+ * A RequestHandler that will throttle requests via the supplied RateLimiter, and report the outcome
+ * of each attempt back to it so that its rate follows throttling by the API.
+ */
 public class RateLimitingRequestHandler extends RequestHandler2 {
   private final Counter counter;
-  private final RateLimiter rateLimiter;
+  private final Counter throttledCounter;
+  private final AdaptiveRateLimiter rateLimiter;
 
-  public RateLimitingRequestHandler(Counter counter, RateLimiter rateLimiter) {
+  public RateLimitingRequestHandler(
+      Counter counter, Counter throttledCounter, AdaptiveRateLimiter rateLimiter) {
     this.counter = requireNonNull(counter);
+    this.throttledCounter = requireNonNull(throttledCounter);
     this.rateLimiter = requireNonNull(rateLimiter);
   }
 
@@ -42,6 +50,19 @@ public class RateLimitingRequestHandler extends RequestHandler2 {
     super.beforeRequest(request);
   }
 
+  @Override
+  public void afterAttempt(HandlerAfterAttemptContext context) {
+    Exception exception = context.getException();
+    if (exception == null) {
+      rateLimiter.onSuccess();
+    } else if (exception instanceof SdkBaseException
+        && RetryUtils.isThrottlingException((SdkBaseException) exception)) {
+      throttledCounter.increment();
+      rateLimiter.onThrottled();
+    }
+    super.afterAttempt(context);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
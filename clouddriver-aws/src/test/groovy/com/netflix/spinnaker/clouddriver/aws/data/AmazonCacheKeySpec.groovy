@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.aws.data
+
+import com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class AmazonCacheKeySpec extends Specification {
+
+  @Unroll
+  def 'parsed key exposes the same fields, in the same order, as the mutable map for #key'() {
+    when:
+    def parsed = AmazonCacheKey.parse(key)
+
+    then:
+    parsed == expected
+    parsed.keySet() as List == expected.keySet() as List
+    parsed.toMap() == expected
+    expected.every { field, value -> parsed.containsKey(field) && parsed.get(field) == value }
+    !parsed.containsKey('somethingElse')
+    parsed.get('somethingElse') == null
+
+    where:
+    key                                                         || expected
+    Keys.getServerGroupKey('kato-main-v056', 'test', 'us-east-1') || [provider: 'aws', type: Namespace.SERVER_GROUPS.ns, application: 'kato', cluster: 'kato-main', account: 'test', region: 'us-east-1', serverGroup: 'kato-main-v056', stack: 'main', detail: null, sequence: '56']
+    Keys.getClusterKey('Kato-main-frontend', 'Kato', 'test')     || [provider: 'aws', type: Namespace.CLUSTERS.ns, application: 'kato', account: 'test', cluster: 'Kato-main-frontend', stack: 'main', detail: 'frontend']
+    Keys.getInstanceKey('i-1234', 'test', 'us-east-1')          || [provider: 'aws', type: Namespace.INSTANCES.ns, account: 'test', region: 'us-east-1', instanceId: 'i-1234']
+    Keys.getImageKey('ami-1234', 'test', 'us-east-1')           || [provider: 'aws', type: Namespace.IMAGES.ns, account: 'test', region: 'us-east-1', imageId: 'ami-1234']
+    Keys.getNamedImageKey('test', 'kato-1.0')                   || [provider: 'aws', type: Namespace.NAMED_IMAGES.ns, account: 'test', imageName: 'kato-1.0']
+    Keys.getInstanceHealthKey('i-1234', 'test', 'us-east-1', 'discovery') || [provider: 'discovery', type: Namespace.HEALTH.ns, instanceId: 'i-1234', account: 'test', region: 'us-east-1']
+    'aws:loadBalancers:test:us-east-1:kato-main-frontend'       || [provider: 'aws', type: Namespace.LOAD_BALANCERS.ns, account: 'test', region: 'us-east-1', loadBalancer: 'kato-main-frontend', vpcId: null, application: 'kato', stack: 'main', detail: 'frontend', loadBalancerType: 'classic']
+    'aws:loadBalancers:test:us-east-1:kato::application'        || [provider: 'aws', type: Namespace.LOAD_BALANCERS.ns, account: 'test', region: 'us-east-1', loadBalancer: 'kato', vpcId: null, application: 'kato', stack: null, detail: null, loadBalancerType: 'classic']
+    'aws:loadBalancers:test:us-east-1:kato:vpc-1:application'   || [provider: 'aws', type: Namespace.LOAD_BALANCERS.ns, account: 'test', region: 'us-east-1', loadBalancer: 'kato', vpcId: 'vpc-1', application: 'kato', stack: null, detail: null, loadBalancerType: 'application']
+    'aws:targetGroups:test:us-east-1:kato-tg:instance:vpc-1'    || [provider: 'aws', type: Namespace.TARGET_GROUPS.ns, account: 'test', region: 'us-east-1', targetGroup: 'kato-tg', vpcId: 'vpc-1', application: 'kato', stack: 'tg', detail: null, targetType: 'instance']
+    'aws:targetGroups:test:us-east-1:kato-tg:instance'          || [provider: 'aws', type: Namespace.TARGET_GROUPS.ns, account: 'test', region: 'us-east-1', targetGroup: 'kato-tg', vpcId: null, application: 'kato', stack: 'tg', detail: null, targetType: 'instance']
+  }
+
+  def 'keys that are not parseable AWS keys are not parsed'() {
+    expect:
+    AmazonCacheKey.parse(key) == null
+    Keys.parse(key) == null
+
+    where:
+    key << ['aws', 'aws:', 'aws::', 'awsx:serverGroups:a:b:c:d', 'titus:serverGroups:a:b:c:d', 'aws:securityGroups:a:b:c']
+  }
+
+  def 'parsed keys are interned and read-only'() {
+    given:
+    def key = Keys.getServerGroupKey('kato-main-v056', 'test', 'us-east-1')
+
+    when:
+    def parsed = AmazonCacheKey.parse(key)
+
+    then:
+    AmazonCacheKey.parse(new String(key)).is(parsed)
+    !Keys.parse(key).is(Keys.parse(key))
+
+    when:
+    parsed.put('application', 'other')
+
+    then:
+    thrown(UnsupportedOperationException)
+  }
+}
@@ -163,4 +163,19 @@ class ImageCachingAgentSpec extends Specification {
     !result.cacheResults[NAMED_IMAGES.ns].find { it.id == privateNamedImageKey }
   }
 
+  void "should convert public images on every run without reading them back from the cache"() {
+    given:
+    def agent = getAgent(true, false)
+
+    when:
+    agent.loadData(providerCache)
+    def second = agent.loadData(providerCache)
+
+    then:
+    2 * ec2.describeImages(_) >> new DescribeImagesResult(images: [publicImage])
+    0 * providerCache._
+
+    second.cacheResults[IMAGES.ns]*.id == [publicImageKey]
+    second.cacheResults[IMAGES.ns]*.attributes*.imageId == [publicImage.imageId]
+  }
 }
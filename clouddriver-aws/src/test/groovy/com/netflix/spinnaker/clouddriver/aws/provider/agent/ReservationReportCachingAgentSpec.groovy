@@ -17,16 +17,33 @@
 
 package com.netflix.spinnaker.clouddriver.aws.provider.agent
 
+import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spectator.api.Counter
 import com.netflix.spectator.api.Id
+import com.netflix.spectator.api.NoopRegistry
 import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.agent.CacheResult
+import com.netflix.spinnaker.cats.cache.Cache
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.mem.InMemoryCache
+import com.netflix.spinnaker.clouddriver.aws.data.Keys
 import com.netflix.spinnaker.clouddriver.aws.model.AmazonReservationReport
 import com.netflix.spinnaker.clouddriver.aws.security.AmazonCredentials
+import com.netflix.spinnaker.clouddriver.aws.provider.view.AmazonS3DataProvider
 import com.netflix.spinnaker.clouddriver.aws.security.NetflixAmazonCredentials
+import com.netflix.spinnaker.clouddriver.model.DataProvider
+import com.netflix.spinnaker.credentials.CredentialsRepository
+import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
+import org.springframework.context.ApplicationContext
 import spock.lang.Specification
 import spock.lang.Unroll
 
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+
+import static com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.INSTANCES
+import static com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.RESERVATION_REPORTS
+import static com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.RESERVED_INSTANCES
 
 class ReservationReportCachingAgentSpec extends Specification {
   def registry = Mock(Registry)
@@ -68,4 +85,156 @@ class ReservationReportCachingAgentSpec extends Specification {
     3 * registry.counter(registryId) >> counter
     3 * counter.increment()
   }
+
+  def "should compute region usage from cached instances"() {
+    given:
+    def cache = new InMemoryCache()
+    cache.mergeAll(RESERVED_INSTANCES.ns, [
+      reservedInstances("ri-1", "us-west-1a", "active", 4),
+      reservedInstances("ri-2", null, "active", 2),
+      reservedInstances("ri-3", "us-west-1a", "retired", 8)
+    ])
+    cache.mergeAll(INSTANCES.ns, [
+      instance("i-1", "running", "us-west-1a", "vpc-1"),
+      instance("i-2", "pending", "us-west-1a", "vpc-1"),
+      instance("i-3", "running", "us-west-1b", null),
+      instance("i-4", "stopped", "us-west-1a", "vpc-1"),
+      instance("i-5", "running", "us-west-1a", "vpc-1", "prod")
+    ])
+    def agent = new ReservationReportCachingAgent(
+      new NoopRegistry(), null, null, null, new ObjectMapper(), null, Stub(ApplicationContext) { getBean(Cache) >> cache }
+    )
+    def credentials = Stub(NetflixAmazonCredentials) {
+      getName() >> "test"
+    }
+    def reservations = new ConcurrentHashMap<String, AmazonReservationReport.OverallReservationDetail>()
+
+    when:
+    def usage = agent.getRegionUsage(credentials, "us-west-1")
+    usage.apply(reservations)
+
+    then:
+    usage.reserved == [["us-west-1a", "LINUX", "m5.large"]: 4, [null, "LINUX", "m5.large"]: 2]
+    usage.usedVpc == [["us-west-1a", "LINUX", "m5.large"]: 2]
+    usage.used == [["us-west-1b", "LINUX", "m5.large"]: 1]
+
+    reservations["us-west-1a:LINUX:m5.large"].totalReserved.get() == 4
+    reservations["us-west-1a:LINUX:m5.large"].totalUsed.get() == 2
+    reservations["us-west-1a:LINUX:m5.large"].getAccount("test").usedVpc.get() == 2
+    reservations["us-west-1:LINUX:m5.large"].totalReserved.get() == 2
+    reservations["us-west-1b:LINUX:m5.large"].getAccount("test").used.get() == 1
+
+    and: 'the usage is unchanged until the cached instances change'
+    agent.getRegionUsage(credentials, "us-west-1") == usage
+
+    when:
+    cache.evictAll(INSTANCES.ns, [Keys.getInstanceKey("i-3", "test", "us-west-1")])
+
+    then:
+    agent.getRegionUsage(credentials, "us-west-1") != usage
+  }
+
+  def "should only rebuild the reservations of regions whose usage changed"() {
+    given:
+    def cache = new InMemoryCache()
+    cache.mergeAll(INSTANCES.ns, [
+      instance("i-1", "running", "us-west-1a", "vpc-1"),
+      instance("i-2", "running", "us-west-2a", "vpc-1")
+    ])
+    def credentials = Stub(NetflixAmazonCredentials) {
+      getName() >> "test"
+      getRegions() >> [
+        new AmazonCredentials.AWSRegion("us-west-1", ["us-west-1a"]),
+        new AmazonCredentials.AWSRegion("us-west-2", ["us-west-2a"])
+      ]
+    }
+    def pool = Executors.newFixedThreadPool(2)
+    def agent = new ReservationReportCachingAgent(
+      new NoopRegistry(),
+      null,
+      null,
+      Stub(CredentialsRepository) { getAll() >> [credentials] },
+      new ObjectMapper(),
+      pool,
+      Stub(ApplicationContext) { getBean(Cache) >> cache }
+    )
+    def first = new ConcurrentHashMap<String, AmazonReservationReport.OverallReservationDetail>()
+    def second = new ConcurrentHashMap<String, AmazonReservationReport.OverallReservationDetail>()
+
+    when:
+    def initiallyChanged = agent.extractReservationsFromCache(first, new ConcurrentHashMap())
+    cache.mergeAll(INSTANCES.ns, [instance("i-3", "running", "us-west-2a", "vpc-1")])
+    def changed = agent.extractReservationsFromCache(second, new ConcurrentHashMap())
+
+    then:
+    initiallyChanged == ["us-west-1", "us-west-2"] as Set
+    changed == ["us-west-2"] as Set
+    second["us-west-1a:LINUX:m5.large"].is(first["us-west-1a:LINUX:m5.large"])
+    first["us-west-2a:LINUX:m5.large"].totalUsed.get() == 1
+    second["us-west-2a:LINUX:m5.large"].totalUsed.get() == 2
+
+    cleanup:
+    pool.shutdown()
+  }
+
+  def "should only reuse the EC2 derived reports when reservations are unchanged"() {
+    given:
+    def cache = new InMemoryCache()
+    cache.mergeAll(INSTANCES.ns, [instance("i-1", "running", "us-west-1a", "vpc-1")])
+    def credentials = Stub(NetflixAmazonCredentials) {
+      getName() >> "test"
+      getRegions() >> [new AmazonCredentials.AWSRegion("us-west-1", ["us-west-1a"])]
+    }
+    def dataProvider = Mock(AmazonS3DataProvider)
+    def pool = Executors.newFixedThreadPool(1)
+    def agent = new ReservationReportCachingAgent(
+      new NoopRegistry(),
+      null,
+      dataProvider,
+      Stub(CredentialsRepository) { getAll() >> [credentials] },
+      new ObjectMapper(),
+      pool,
+      Stub(ApplicationContext) { getBean(Cache) >> cache },
+      Stub(DynamicConfigService) { isEnabled("aws.features.reservation-report-from-cache", false) >> true }
+    )
+
+    when:
+    def first = agent.loadData(null)
+    def second = agent.loadData(null)
+
+    then:
+    2 * dataProvider.supportsIdentifier(DataProvider.IdentifierType.Static, "rri_weights") >> false
+    !second.is(first)
+    report(second, "v2").is(report(first, "v2"))
+    report(second, "v4") == report(first, "v4")
+
+    cleanup:
+    pool.shutdown()
+  }
+
+  private static Map report(CacheResult result, String version) {
+    return result.cacheResults[RESERVATION_REPORTS.ns].find { it.id == version }.attributes.report as Map
+  }
+
+  private static DefaultCacheData reservedInstances(String id, String availabilityZone, String state, int count) {
+    return new DefaultCacheData(Keys.getReservedInstancesKey(id, "test", "us-west-1"), [
+      state             : state,
+      offeringType      : "No Upfront",
+      productDescription: "Linux/UNIX",
+      availabilityZone  : availabilityZone,
+      region            : "us-west-1",
+      instanceType      : "m5.large",
+      instanceCount     : count
+    ], [:])
+  }
+
+  private static DefaultCacheData instance(String id, String state, String availabilityZone, String vpcId, String account = "test") {
+    return new DefaultCacheData(Keys.getInstanceKey(id, account, availabilityZone[0..-2]), [
+      instanceId  : id,
+      instanceType: "m5.large",
+      state       : [name: state],
+      placement   : [availabilityZone: availabilityZone],
+      vpcId       : vpcId
+    ], [:])
+  }
 }
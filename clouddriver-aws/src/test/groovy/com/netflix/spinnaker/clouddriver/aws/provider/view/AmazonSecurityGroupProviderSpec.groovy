@@ -30,6 +30,7 @@ import com.netflix.spinnaker.clouddriver.model.securitygroups.IpRangeRule
 import com.netflix.spinnaker.clouddriver.model.securitygroups.Rule
 import com.netflix.spinnaker.clouddriver.model.securitygroups.SecurityGroupRule
 import com.netflix.spinnaker.credentials.CredentialsRepository
+import spock.lang.Requires
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Subject
@@ -406,6 +407,106 @@ class AmazonSecurityGroupProviderSpec extends Specification {
     0 * _
   }
 
+  void "should resolve ingress groups from an index of the region instead of a query per rule"() {
+    given:
+    def spiedCache = Spy(InMemoryCache)
+    def indexedProvider = new AmazonSecurityGroupProvider(credentialsRepository, spiedCache, mapper)
+    String region = 'us-east-1'
+    def groups = (1..10).collect { n ->
+      def group = new SecurityGroup(ownerId: 'accountId1', groupId: "sg-${n}", groupName: "name-${n}", description: 'd', vpcId: 'vpc-1')
+      group.ipPermissions = [
+        new IpPermission(ipProtocol: "TCP", fromPort: 7001, toPort: 7001, userIdGroupPairs: (1..10).findAll { it != n }.collect {
+          new UserIdGroupPair(userId: "accountId1", groupId: "sg-${it}")
+        })
+      ]
+      new DefaultCacheData(
+        Keys.getSecurityGroupKey(group.groupName, group.groupId, region, 'accountName1', 'vpc-1'),
+        mapper.convertValue(group, AwsInfrastructureProvider.ATTRIBUTES),
+        [:]
+      )
+    }
+    spiedCache.mergeAll(Keys.Namespace.SECURITY_GROUPS.ns, groups)
+
+    when:
+    def securityGroups = indexedProvider.getAllByAccountAndRegion(true, 'accountName1', region)
+
+    then:
+    1 * spiedCache.filterIdentifiers(Keys.Namespace.SECURITY_GROUPS.ns, Keys.getSecurityGroupKey('*', '*', region, 'accountName1', '*'))
+    1 * spiedCache.filterIdentifiers(Keys.Namespace.SECURITY_GROUPS.ns, Keys.getSecurityGroupKey('*', '*', region, '*', '*'))
+    0 * spiedCache.filterIdentifiers(Keys.Namespace.SECURITY_GROUPS.ns, { it.contains(':sg-') })
+    securityGroups.size() == 10
+    securityGroups.every { sg ->
+      sg.inboundRules.securityGroup.name as Set == (1..10).findAll { "sg-${it}" != sg.id }.collect { "name-${it}" } as Set
+    }
+  }
+
+  void "should look up ingress groups missing from the index"() {
+    given:
+    String region = 'us-east-1'
+    provider.getAllByRegion(true, region)
+    SecurityGroup securityGroupA = new SecurityGroup(ownerId: 'accountId1', groupId: 'sg-new-a', groupName: 'new-a', description: 'a', vpcId: 'vpc-1')
+    SecurityGroup securityGroupB = new SecurityGroup(ownerId: 'accountId1', groupId: 'sg-new-b', groupName: 'new-b', description: 'b', vpcId: 'vpc-1')
+    securityGroupA.ipPermissions = [
+      new IpPermission(ipProtocol: "TCP", fromPort: 7001, toPort: 7001, userIdGroupPairs: [
+        new UserIdGroupPair(userId: "accountId1", groupId: securityGroupB.groupId)
+      ])
+    ]
+    cache.mergeAll(Keys.Namespace.SECURITY_GROUPS.ns, [securityGroupA, securityGroupB].collect {
+      new DefaultCacheData(
+        Keys.getSecurityGroupKey(it.groupName, it.groupId, region, 'accountName1', it.vpcId),
+        mapper.convertValue(it, AwsInfrastructureProvider.ATTRIBUTES),
+        [:]
+      )
+    })
+
+    when:
+    def sg = provider.get('accountName1', region, 'new-a', 'vpc-1')
+
+    then:
+    sg.inboundRules.size() == 1
+    sg.inboundRules[0].securityGroup.name == 'new-b'
+    sg.inboundRules[0].securityGroup.accountName == 'accountName1'
+  }
+
+  /**
+   * Loads 50k security groups with rules, each referencing 10 others without their names.
+   *
+   * Run with -Dclouddriver.aws.securityGroupBenchmark=true.
+   */
+  @Requires({ Boolean.getBoolean("clouddriver.aws.securityGroupBenchmark") })
+  void "benchmark getAll with rules on 50k security groups"() {
+    given:
+    def regions = ['us-east-1', 'us-west-1', 'us-west-2', 'eu-west-1', 'ap-northeast-1']
+    cache.mergeAll(Keys.Namespace.SECURITY_GROUPS.ns, (0..<50_000).collect { n ->
+      String region = regions[n % regions.size()]
+      String account = n % 2 ? 'accountName1' : 'accountName2'
+      def group = new SecurityGroup(groupId: "sg-${n}", groupName: "app-${n}", description: 'd', vpcId: "vpc-${n % 2}")
+      group.ipPermissions = [
+        new IpPermission(ipProtocol: "TCP", fromPort: 7001, toPort: 7001, userIdGroupPairs: (1..10).collect {
+          int referenced = (n + it * regions.size() * 2) % 50_000
+          new UserIdGroupPair(userId: n % 2 ? 'accountId1' : 'accountId2', groupId: "sg-${referenced}")
+        })
+      ]
+      new DefaultCacheData(
+        Keys.getSecurityGroupKey(group.groupName, group.groupId, region, account, group.vpcId),
+        mapper.convertValue(group, AwsInfrastructureProvider.ATTRIBUTES),
+        [:]
+      )
+    })
+
+    when:
+    long start = System.nanoTime()
+    def securityGroups = provider.getAll(true)
+    long elapsedMs = (System.nanoTime() - start).intdiv(1_000_000)
+    println "getAll(true) on ${securityGroups.size()} security groups: ${elapsedMs}ms"
+
+    then:
+    securityGroups.size() >= 50_000
+    securityGroups.findAll { it.id.startsWith('sg-') && it.id != 'sg-a' && it.id != 'sg-b' }.every { sg ->
+      sg.inboundRules.every { it.securityGroup.name?.startsWith('app-') }
+    }
+  }
+
   @Shared
   Map<String, Map<String, List<SecurityGroup>>> securityGroupMap = [
     prod: [
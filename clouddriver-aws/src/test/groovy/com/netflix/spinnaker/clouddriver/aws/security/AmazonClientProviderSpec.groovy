@@ -148,6 +148,61 @@ class AmazonClientProviderSpec extends Specification {
     1 * ec2.describeSecurityGroups()
   }
 
+  void "describe calls by id return results in request order"() {
+    setup:
+    def mockHttp = Mock(HttpClient)
+    def provider = new AmazonClientProvider(mockHttp)
+
+    when:
+    def client = provider.getAutoScaling(credentialsWithEdda, "us-east-1")
+    def result = client.describeAutoScalingGroups(new DescribeAutoScalingGroupsRequest().withAutoScalingGroupNames("a-v000", "b-v000", "c-v000"))
+
+    then:
+    3 * mockHttp.execute(_) >> { HttpGet get ->
+      def name = get.URI.rawPath.split('/').last() - ';_meta'
+      getMockResponse('{"mtime": ' + MTIME + ', "data": { "autoScalingGroupName": "' + name + '" }}')
+    }
+    result.autoScalingGroups*.autoScalingGroupName == ["a-v000", "b-v000", "c-v000"]
+    provider.lastModified == MTIME
+  }
+
+  void "unchanged collections are reused when conditional fetches are enabled"() {
+    setup:
+    def mockHttp = Mock(HttpClient)
+    def provider = new AmazonClientProvider.Builder()
+      .httpClient(mockHttp)
+      .eddaTimeoutConfig(new EddaTimeoutConfig.Builder(conditionalFetchEnabled: true).build())
+      .build()
+    def client = provider.getAutoScaling(credentialsWithEdda, "us-east-1")
+
+    when:
+    def first = client.describeAutoScalingGroups()
+
+    then:
+    1 * mockHttp.execute({ it.URI.rawPath.endsWith("/autoScalingGroups") }) >> getMockResponse('["my-app-v000"]')
+    1 * mockHttp.execute({ it.URI.rawPath.endsWith("_expand;_meta") }) >> getMockResponse()
+    0 * mockHttp._
+    first.autoScalingGroups*.autoScalingGroupName == ["my-app-v000"]
+
+    when:
+    def second = client.describeAutoScalingGroups()
+
+    then:
+    1 * mockHttp.execute({ it.URI.rawPath.endsWith("/autoScalingGroups") }) >> getMockResponse('["my-app-v000"]')
+    1 * mockHttp.execute({ it.URI.rawPath.endsWith(";_since=${MTIME + 1}") }) >> getMockResponse('[]')
+    0 * mockHttp._
+    second.autoScalingGroups*.autoScalingGroupName == ["my-app-v000"]
+    provider.lastModified == MTIME
+
+    when:
+    client.describeAutoScalingGroups()
+
+    then:
+    1 * mockHttp.execute({ it.URI.rawPath.endsWith("/autoScalingGroups") }) >> getMockResponse('["my-app-v000", "my-app-v001"]')
+    1 * mockHttp.execute({ it.URI.rawPath.endsWith("_expand;_meta") }) >> getMockResponse()
+    0 * mockHttp._
+  }
+
   static def MTIME = 1446701217475L
   static def OBJECT_ASG_CONTENT = '{"mtime": ' + MTIME + ', "data": { "autoScalingGroupName": "my-app-v000" }}'
   static def ARRAY_ASG_CONTENT = "[$OBJECT_ASG_CONTENT]"
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.aws.security
+
+import com.netflix.spinnaker.clouddriver.aws.security.AmazonCredentials.AWSRegion
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Clock
+import java.time.Duration
+import java.util.concurrent.Executor
+
+class CachingAWSAccountInfoLookupSpec extends Specification {
+
+  def delegate = Mock(AWSAccountInfoLookup)
+
+  long now = 1_000_000
+
+  def clock = Stub(Clock) {
+    millis() >> { now }
+  }
+
+  List<Runnable> revalidations = []
+
+  Executor executor = { revalidations << it } as Executor
+
+  Path snapshot = Files.createTempDirectory("account-info").resolve("snapshot.json")
+
+  def cleanup() {
+    snapshot.toFile().parentFile.deleteDir()
+  }
+
+  void "should look up each region and the account id once"() {
+    given:
+    def lookup = new CachingAWSAccountInfoLookup(delegate, null, Duration.ofHours(1), executor, clock)
+
+    when:
+    def first = lookup.listRegions("us-east-1", "us-west-2")
+    def second = lookup.listRegions("us-west-2")
+    def accountIds = (1..3).collect { lookup.findAccountId() }
+
+    then:
+    1 * delegate.listRegions(["us-east-1", "us-west-2"]) >> [
+      new AWSRegion("us-west-2", ["us-west-2a"]),
+      new AWSRegion("us-east-1", ["us-east-1a", "us-east-1b"])
+    ]
+    1 * delegate.findAccountId() >> "123456789012"
+    0 * delegate._
+
+    first.name == ["us-east-1", "us-west-2"]
+    first.availabilityZones == [["us-east-1a", "us-east-1b"], ["us-west-2a"]]
+    second.availabilityZones == [["us-west-2a"]]
+    accountIds == ["123456789012"] * 3
+  }
+
+  void "should use the snapshot of a previous run and look its values up again in the background"() {
+    given:
+    def previousDelegate = Stub(AWSAccountInfoLookup) {
+      listRegions(["us-east-1"]) >> [new AWSRegion("us-east-1", ["us-east-1a"])]
+    }
+    new CachingAWSAccountInfoLookup(previousDelegate, snapshot, Duration.ofHours(1), executor, clock)
+      .listRegions("us-east-1")
+    def lookup = new CachingAWSAccountInfoLookup(delegate, snapshot, Duration.ofHours(1), executor, clock)
+
+    when:
+    def regions = lookup.listRegions("us-east-1")
+
+    then:
+    0 * delegate._
+    regions.availabilityZones == [["us-east-1a"]]
+    revalidations.size() == 1
+
+    when:
+    revalidations.each { it.run() }
+    regions = lookup.listRegions("us-east-1")
+
+    then:
+    1 * delegate.listAvailabilityZones("us-east-1") >> ["us-east-1a", "us-east-1c"]
+    0 * delegate._
+    regions.availabilityZones == [["us-east-1a", "us-east-1c"]]
+    revalidations.size() == 1
+    new CachingAWSAccountInfoLookup(delegate, snapshot, Duration.ofHours(1), executor, clock)
+      .listAvailabilityZones("us-east-1") == ["us-east-1a", "us-east-1c"]
+  }
+
+  void "should look up values older than the ttl again before using them"() {
+    given:
+    def previousDelegate = Stub(AWSAccountInfoLookup) {
+      findAccountId() >> "123456789012"
+    }
+    new CachingAWSAccountInfoLookup(previousDelegate, snapshot, Duration.ofHours(1), executor, clock)
+      .findAccountId()
+    now += Duration.ofHours(2).toMillis()
+    def lookup = new CachingAWSAccountInfoLookup(delegate, snapshot, Duration.ofHours(1), executor, clock)
+
+    when:
+    def accountId = lookup.findAccountId()
+
+    then:
+    1 * delegate.findAccountId() >> "210987654321"
+    accountId == "210987654321"
+    revalidations.isEmpty()
+  }
+
+  void "should ignore an unreadable snapshot"() {
+    given:
+    snapshot.text = "{not json"
+    def lookup = new CachingAWSAccountInfoLookup(delegate, snapshot, Duration.ofHours(1), executor, clock)
+
+    when:
+    def accountId = lookup.findAccountId()
+
+    then:
+    1 * delegate.findAccountId() >> "123456789012"
+    accountId == "123456789012"
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.aws.security.sdkclient
+
+import com.amazonaws.AmazonServiceException
+import com.amazonaws.ClientConfiguration
+import com.amazonaws.auth.AWSStaticCredentialsProvider
+import com.amazonaws.auth.BasicAWSCredentials
+import com.amazonaws.client.builder.AwsClientBuilder
+import com.amazonaws.retry.PredefinedRetryPolicies
+import com.amazonaws.services.ec2.AmazonEC2ClientBuilder
+import com.google.common.base.Ticker
+import com.netflix.spectator.api.DefaultRegistry
+import com.sun.net.httpserver.HttpServer
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentLinkedDeque
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class AdaptiveRateLimiterSpec extends Specification {
+
+  long now = 0
+
+  Ticker ticker = new Ticker() {
+    @Override
+    long read() {
+      return now
+    }
+  }
+
+  @AutoCleanup("shutdownNow")
+  def executor = Executors.newFixedThreadPool(8)
+
+  HttpServer server
+
+  def cleanup() {
+    server?.stop(0)
+  }
+
+  void "should halve the rate when throttled, at most once per second"() {
+    given:
+    def rateLimiter = new AdaptiveRateLimiter(40, 5, 40, ticker)
+
+    when:
+    rateLimiter.onThrottled()
+    rateLimiter.onThrottled()
+
+    then:
+    rateLimiter.rate == 20
+    rateLimiter.throttledCount == 2
+
+    when:
+    now += TimeUnit.SECONDS.toNanos(1)
+    rateLimiter.onThrottled()
+    now += TimeUnit.SECONDS.toNanos(1)
+    rateLimiter.onThrottled()
+    now += TimeUnit.SECONDS.toNanos(1)
+    rateLimiter.onThrottled()
+
+    then:
+    rateLimiter.rate == 5
+  }
+
+  void "should increase the rate by a step per second without throttling"() {
+    given:
+    def rateLimiter = new AdaptiveRateLimiter(10, 5, 25, ticker)
+
+    when:
+    rateLimiter.onSuccess()
+
+    then: 'the rate was just set'
+    rateLimiter.rate == 10
+
+    when:
+    (1..5).each {
+      now += TimeUnit.SECONDS.toNanos(1)
+      rateLimiter.onSuccess()
+      rateLimiter.onSuccess()
+    }
+
+    then:
+    rateLimiter.rate == 15
+
+    when:
+    (1..100).each {
+      now += TimeUnit.SECONDS.toNanos(1)
+      rateLimiter.onSuccess()
+    }
+
+    then:
+    rateLimiter.rate == 25
+  }
+
+  void "should keep a fixed rate when the bounds are the rate"() {
+    given:
+    def rateLimiter = new AdaptiveRateLimiter(10, 10, 10, ticker)
+
+    when:
+    rateLimiter.onThrottled()
+    now += TimeUnit.SECONDS.toNanos(5)
+    rateLimiter.onSuccess()
+
+    then:
+    rateLimiter.rate == 10
+    rateLimiter.throttledCount == 1
+  }
+
+  void "should back off from an endpoint that throttles requests"() {
+    given: 'an endpoint allowing 5 requests per second'
+    def served = new ConcurrentLinkedDeque<Long>()
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+    server.createContext("/") { exchange ->
+      long time = System.nanoTime()
+      boolean throttled
+      synchronized (served) {
+        while (!served.isEmpty() && time - served.peekFirst() > TimeUnit.SECONDS.toNanos(1)) {
+          served.pollFirst()
+        }
+        throttled = served.size() >= 5
+        if (!throttled) {
+          served.addLast(time)
+        }
+      }
+      exchange.requestBody.bytes
+      byte[] body = (throttled
+        ? '<Response><Errors><Error><Code>RequestLimitExceeded</Code><Message>Request limit exceeded.</Message></Error></Errors><RequestID>1</RequestID></Response>'
+        : '<DescribeRegionsResponse xmlns="http://ec2.amazonaws.com/doc/2016-11-15/"><requestId>1</requestId><regionInfo/></DescribeRegionsResponse>'
+      ).bytes
+      exchange.sendResponseHeaders(throttled ? 503 : 200, body.length)
+      exchange.responseBody.withStream { it.write(body) }
+    }
+    server.start()
+
+    def registry = new DefaultRegistry()
+    def rateLimiter = new AdaptiveRateLimiter(40, 1, 40)
+    def handler = new RateLimitingRequestHandler(
+      registry.counter("rateLimitDelayMillis"), registry.counter("throttled"), rateLimiter
+    )
+    def ec2 = AmazonEC2ClientBuilder.standard()
+      .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration("http://localhost:${server.address.port}", "us-east-1"))
+      .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("foo", "bar")))
+      .withClientConfiguration(new ClientConfiguration().withRetryPolicy(PredefinedRetryPolicies.NO_RETRY_POLICY))
+      .withRequestHandlers(handler)
+      .build()
+
+    when:
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3)
+    def callers = (1..8).collect {
+      executor.submit {
+        while (System.nanoTime() < deadline) {
+          try {
+            ec2.describeRegions()
+          } catch (AmazonServiceException ignored) {
+          }
+        }
+      }
+    }
+    callers*.get()
+
+    then:
+    registry.counter("throttled").count() > 0
+    rateLimiter.throttledCount == registry.counter("throttled").count()
+    rateLimiter.rate < 10
+  }
+}
@@ -20,6 +20,8 @@ import com.netflix.spectator.api.Id
 import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.cats.agent.Agent
 import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
+import com.netflix.spinnaker.cats.cache.AgentExecutionProfile
+import com.netflix.spinnaker.cats.cache.CacheIntrospectionStore
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
@@ -35,12 +37,20 @@ class MetricInstrumentation implements ExecutionInstrumentation {
 
   private final Id timingId
   private final Id counterId
+  private final Id phaseTimingId
+  private final Id itemsId
+  private final Id estimatedBytesId
+  private final Id allocatedBytesId
 
   @Autowired
   public MetricInstrumentation(Registry registry) {
     this.registry = registry
     timingId = registry.createId('executionTime').withTag('className', MetricInstrumentation.simpleName)
     counterId = registry.createId('executionCount').withTag('className', MetricInstrumentation.simpleName)
+    phaseTimingId = registry.createId('executionPhaseTime').withTag('className', MetricInstrumentation.simpleName)
+    itemsId = registry.createId('executionItems').withTag('className', MetricInstrumentation.simpleName)
+    estimatedBytesId = registry.createId('executionEstimatedBytes').withTag('className', MetricInstrumentation.simpleName)
+    allocatedBytesId = registry.createId('executionAllocatedBytes').withTag('className', MetricInstrumentation.simpleName)
   }
 
   private static String stripPackageName(String className) {
@@ -61,11 +71,36 @@ class MetricInstrumentation implements ExecutionInstrumentation {
   void executionCompleted(Agent agent, long elapsedMs) {
     registry.timer(timingId.withTag('agent', agentName(agent))).record(elapsedMs, TimeUnit.MILLISECONDS)
     registry.counter(counterId.withTag('agent', agentName(agent)).withTag('status', 'success')).increment()
+    recordProfile(agent)
   }
 
   @Override
   void executionFailed(Agent agent, Throwable cause) {
     registry.counter(counterId.withTag('agent', agentName(agent)).withTag('status', 'failure')).increment()
   }
-}
 
+  /**
+   * Publishes the phases, item counts and sizes of the execution that just completed, when the
+   * agent's execution profiles itself (see CachingAgent.CacheExecution).
+   */
+  private void recordProfile(Agent agent) {
+    AgentExecutionProfile profile = CacheIntrospectionStore.store.getAgentIntrospection(agent.agentType)?.profile
+    if (profile == null || !profile.markPublished()) {
+      return
+    }
+
+    String name = agentName(agent)
+    profile.phaseNanos().each { phase, nanos ->
+      registry.timer(phaseTimingId.withTags('agent', name, 'phase', phase.name().toLowerCase())).record(nanos, TimeUnit.NANOSECONDS)
+    }
+    profile.items.each { type, count ->
+      registry.distributionSummary(itemsId.withTags('agent', name, 'type', type)).record(count)
+    }
+    profile.estimatedBytes.each { type, bytes ->
+      registry.distributionSummary(estimatedBytesId.withTags('agent', name, 'type', type)).record(bytes)
+    }
+    if (profile.allocatedBytes != null) {
+      registry.distributionSummary(allocatedBytesId.withTag('agent', name)).record(profile.allocatedBytes)
+    }
+  }
+}
@@ -336,8 +336,11 @@ class CloudDriverConfig {
   @Bean
   ProjectClustersService projectClustersService(Front50Service front50Service,
                                                 ObjectMapper objectMapper,
-                                                Provider<List<ClusterProvider>> clusterProviders) {
-    return new ProjectClustersService(front50Service, objectMapper, clusterProviders)
+                                                Provider<List<ClusterProvider>> clusterProviders,
+                                                ProjectClustersCachingAgentProperties projectClustersCachingAgentProperties) {
+    return new ProjectClustersService(
+      front50Service, objectMapper, clusterProviders, projectClustersCachingAgentProperties.parallelism
+    )
   }
 
   @Bean
@@ -18,13 +18,21 @@ package com.netflix.spinnaker.clouddriver.core;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.frigga.Names;
 import com.netflix.spinnaker.clouddriver.core.services.Front50Service;
 import com.netflix.spinnaker.clouddriver.model.Cluster;
 import com.netflix.spinnaker.clouddriver.model.ClusterProvider;
 import com.netflix.spinnaker.clouddriver.model.ServerGroup;
+import com.netflix.spinnaker.security.AuthenticatedRequest;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.inject.Provider;
@@ -35,18 +43,36 @@ public class ProjectClustersService {
 
   private static final Logger log = LoggerFactory.getLogger(ProjectClustersService.class);
 
+  private static final int DEFAULT_PARALLELISM = 8;
+
   private final Front50Service front50Service;
   private final ObjectMapper objectMapper;
   private final Provider<List<ClusterProvider>> clusterProviders;
+  private final ExecutorService executor;
 
   public ProjectClustersService(
       Front50Service front50Service,
       ObjectMapper objectMapper,
       Provider<List<ClusterProvider>> clusterProviders) {
+    this(front50Service, objectMapper, clusterProviders, DEFAULT_PARALLELISM);
+  }
+
+  public ProjectClustersService(
+      Front50Service front50Service,
+      ObjectMapper objectMapper,
+      Provider<List<ClusterProvider>> clusterProviders,
+      int parallelism) {
     this.front50Service = front50Service;
     this.objectMapper =
         objectMapper.copy().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
     this.clusterProviders = clusterProviders;
+    this.executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, parallelism),
+            new ThreadFactoryBuilder()
+                .setNameFormat(ProjectClustersService.class.getSimpleName() + "-%d")
+                .setDaemon(true)
+                .build());
   }
 
   public Map<String, List<ClusterModel>> getProjectClusters(List<String> projectNames) {
@@ -128,20 +154,68 @@ public class ProjectClustersService {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Cluster summaries for every (application, cluster provider) pair are fetched concurrently,
+   * followed by a second concurrent pass that expands every matching cluster. Both passes are
+   * joined from the calling thread so tasks never wait on each other within the bounded executor.
+   */
   private Map<String, Set<Cluster>> retrieveClusters(List<String> applications, Project project) {
-    Map<String, Set<Cluster>> allClusters = new HashMap<>();
+    List<ClusterProvider> providers = clusterProviders.get();
 
+    List<CompletableFuture<List<PendingCluster>>> summaryFutures = new ArrayList<>();
     for (String application : applications) {
-      for (RetrievedClusters clusters : retrieveClusters(application, project)) {
-        allClusters
-            .computeIfAbsent(clusters.application, s -> new HashSet<>())
-            .addAll(clusters.clusters);
+      for (ClusterProvider clusterProvider : providers) {
+        summaryFutures.add(
+            supplyAsync(() -> findMatchingClusters(clusterProvider, application, project)));
       }
     }
 
+    List<PendingCluster> pendingClusters =
+        join(summaryFutures).stream().flatMap(Collection::stream).collect(Collectors.toList());
+
+    Map<String, Set<Cluster>> allClusters = new HashMap<>();
+    applications.forEach(application -> allClusters.put(application, new HashSet<>()));
+
+    List<CompletableFuture<Cluster>> clusterFutures =
+        pendingClusters.stream()
+            .map(pendingCluster -> supplyAsync(pendingCluster::expand))
+            .collect(Collectors.toList());
+    List<Cluster> expandedClusters = join(clusterFutures);
+    for (int i = 0; i < pendingClusters.size(); i++) {
+      allClusters.get(pendingClusters.get(i).application).add(expandedClusters.get(i));
+    }
+
     return allClusters;
   }
 
+  /** Runs the supplier on the pool with the calling thread's request context (user, MDC, ...). */
+  private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+    Callable<T> callable = AuthenticatedRequest.propagate(supplier::get);
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return callable.call();
+          } catch (RuntimeException e) {
+            throw e;
+          } catch (Exception e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+
+  private static <T> List<T> join(List<CompletableFuture<T>> futures) {
+    try {
+      return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    } catch (CompletionException e) {
+      futures.forEach(f -> f.cancel(true));
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
   private Set<Cluster> findClustersForProject(
       Set<Cluster> appClusters, ProjectCluster projectCluster) {
     if (appClusters == null || appClusters.isEmpty()) {
@@ -159,38 +233,26 @@ public class ProjectClustersService {
         .collect(Collectors.toSet());
   }
 
-  private List<RetrievedClusters> retrieveClusters(String application, Project project) {
-    return clusterProviders.get().stream()
-        .map(
-            clusterProvider -> {
-              Map<String, Set<Cluster>> clusterSummariesByAccount =
-                  clusterProvider.getClusterSummaries(application);
-              if (clusterSummariesByAccount == null) {
-                return null;
-              }
-
-              Set<Cluster> allClusterSummaries =
-                  clusterSummariesByAccount.values().stream()
-                      .flatMap(Collection::stream)
-                      .collect(Collectors.toSet());
-
-              Set<Cluster> matchingClusterSummaries = new HashSet<>();
-              for (ProjectCluster projectCluster : project.config.clusters) {
-                matchingClusterSummaries.addAll(
-                    findClustersForProject(allClusterSummaries, projectCluster));
-              }
-
-              Set<Cluster> expandedClusters =
-                  matchingClusterSummaries.stream()
-                      .map(
-                          c ->
-                              clusterProvider.getCluster(
-                                  c.getMoniker().getApp(), c.getAccountName(), c.getName()))
-                      .collect(Collectors.toSet());
+  private List<PendingCluster> findMatchingClusters(
+      ClusterProvider clusterProvider, String application, Project project) {
+    Map<String, Set<Cluster>> clusterSummariesByAccount =
+        clusterProvider.getClusterSummaries(application);
+    if (clusterSummariesByAccount == null) {
+      return Collections.emptyList();
+    }
 
-              return new RetrievedClusters(application, expandedClusters);
-            })
-        .filter(Objects::nonNull)
+    Set<Cluster> allClusterSummaries =
+        clusterSummariesByAccount.values().stream()
+            .flatMap(Collection::stream)
+            .collect(Collectors.toSet());
+
+    Set<Cluster> matchingClusterSummaries = new HashSet<>();
+    for (ProjectCluster projectCluster : project.config.clusters) {
+      matchingClusterSummaries.addAll(findClustersForProject(allClusterSummaries, projectCluster));
+    }
+
+    return matchingClusterSummaries.stream()
+        .map(c -> new PendingCluster(application, clusterProvider, c))
         .collect(Collectors.toList());
   }
 
@@ -221,13 +283,21 @@ public class ProjectClustersService {
     public List<String> applications;
   }
 
-  static class RetrievedClusters {
-    public String application;
-    public Set<Cluster> clusters;
+  /** A cluster summary matching the project that still needs to be expanded. */
+  static class PendingCluster {
+    final String application;
+    final ClusterProvider clusterProvider;
+    final Cluster summary;
 
-    public RetrievedClusters(String application, Set<Cluster> clusters) {
+    PendingCluster(String application, ClusterProvider clusterProvider, Cluster summary) {
       this.application = application;
-      this.clusters = clusters;
+      this.clusterProvider = clusterProvider;
+      this.summary = summary;
+    }
+
+    Cluster expand() {
+      return clusterProvider.getCluster(
+          summary.getMoniker().getApp(), summary.getAccountName(), summary.getName());
     }
   }
 
@@ -19,6 +19,8 @@ package com.netflix.spinnaker.clouddriver.requestqueue;
 import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.requestqueue.pooled.PooledRequestQueue;
 import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
@@ -41,7 +43,8 @@ public interface RequestQueue {
         registry,
         config.getStartWorkTimeoutMillis(),
         config.getTimeoutMillis(),
-        config.getPoolSize());
+        config.getPoolSize(),
+        config.getBulkPartitions());
   }
 
   static RequestQueue noop() {
@@ -64,8 +67,29 @@ public interface RequestQueue {
       long startWorkTimeoutMillis,
       long timeoutMillis,
       int poolSize) {
+    return pooled(
+        dynamicConfigService,
+        registry,
+        startWorkTimeoutMillis,
+        timeoutMillis,
+        poolSize,
+        Collections.emptyList());
+  }
+
+  static RequestQueue pooled(
+      DynamicConfigService dynamicConfigService,
+      Registry registry,
+      long startWorkTimeoutMillis,
+      long timeoutMillis,
+      int poolSize,
+      Collection<String> bulkPartitions) {
     return new PooledRequestQueue(
-        dynamicConfigService, registry, startWorkTimeoutMillis, timeoutMillis, poolSize);
+        dynamicConfigService,
+        registry,
+        startWorkTimeoutMillis,
+        timeoutMillis,
+        poolSize,
+        bulkPartitions);
   }
 
   default long getDefaultTimeoutMillis() {
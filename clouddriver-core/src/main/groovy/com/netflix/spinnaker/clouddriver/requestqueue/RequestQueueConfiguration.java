@@ -16,6 +16,8 @@
 
 package com.netflix.spinnaker.clouddriver.requestqueue;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties("request-queue")
@@ -25,6 +27,12 @@ public class RequestQueueConfiguration {
   private long timeoutMillis = RequestQueue.DEFAULT_TIMEOUT_MILLIS;
   private int poolSize = 10;
 
+  /**
+   * Partitions whose requests are served from the bulk lane, i.e. only after every other partition
+   * has been offered a free executor slot.
+   */
+  private List<String> bulkPartitions = new ArrayList<>();
+
   public boolean isEnabled() {
     return enabled;
   }
@@ -56,4 +64,12 @@ public class RequestQueueConfiguration {
   public void setPoolSize(int poolSize) {
     this.poolSize = poolSize;
   }
+
+  public List<String> getBulkPartitions() {
+    return bulkPartitions;
+  }
+
+  public void setBulkPartitions(List<String> bulkPartitions) {
+    this.bulkPartitions = bulkPartitions;
+  }
 }
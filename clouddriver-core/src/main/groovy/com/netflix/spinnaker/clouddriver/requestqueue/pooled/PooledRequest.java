@@ -18,19 +18,26 @@ package com.netflix.spinnaker.clouddriver.requestqueue.pooled;
 
 import com.netflix.spectator.api.Registry;
 import com.netflix.spectator.api.Timer;
+import com.netflix.spectator.api.histogram.PercentileTimer;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 
 class PooledRequest<T> implements Runnable {
   private final Timer timer;
+  private final PercentileTimer executionTimer;
   private final Promise<T> result;
   private final Callable<T> work;
   private final long startTime = System.nanoTime();
+  private volatile long executionNanos = -1;
 
   PooledRequest(Registry registry, String partition, Callable<T> work) {
     this.timer =
         registry.timer(registry.createId("pooledRequestQueue.enqueueTime", "partition", partition));
+    this.executionTimer =
+        PercentileTimer.get(
+            registry,
+            registry.createId("pooledRequestQueue.executionTime", "partition", partition));
     this.result = new Promise<>(registry, partition);
     this.work = work;
   }
@@ -39,6 +46,11 @@ class PooledRequest<T> implements Runnable {
     return result;
   }
 
+  /** @return how long the work took to run, or -1 if it has not run (or was skipped) */
+  long getExecutionNanos() {
+    return executionNanos;
+  }
+
   void cancel() {
     result.completeWithException(new CancellationException());
   }
@@ -49,10 +61,14 @@ class PooledRequest<T> implements Runnable {
     // request may have expired with a timeout prior to this point, lets not
     // issue the work if that is the case as the caller has already moved on
     if (result.shouldStart()) {
+      long executionStartTime = System.nanoTime();
       try {
         result.complete(work.call());
       } catch (Throwable t) {
         result.completeWithException(t);
+      } finally {
+        executionNanos = System.nanoTime() - executionStartTime;
+        executionTimer.record(executionNanos, TimeUnit.NANOSECONDS);
       }
     }
   }
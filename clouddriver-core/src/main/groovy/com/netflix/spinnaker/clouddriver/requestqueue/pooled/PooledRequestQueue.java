@@ -22,7 +22,10 @@ import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueue;
 import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
@@ -32,6 +35,8 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,13 +53,25 @@ public class PooledRequestQueue implements RequestQueue {
   private final int defaultCorePoolSize;
   private final ThreadPoolExecutor executorService;
   private final BlockingQueue<Runnable> submittedRequests;
-  private final Collection<Queue<PooledRequest<?>>> requestQueues;
+  private final Collection<Queue<PooledRequest<?>>> interactiveRequestQueues;
+  private final Collection<Queue<PooledRequest<?>>> bulkRequestQueues;
+  private final Set<String> bulkPartitions;
   private final RequestDistributor requestDistributor;
 
+  /**
+   * Requests handed to the executor that have not finished yet, whether they are running or still
+   * queued in the executor.
+   */
+  private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+  /** Exponentially weighted moving average of request execution time, used to estimate waits. */
+  private final AtomicLong averageExecutionNanos = new AtomicLong();
+
   private final DynamicConfigService dynamicConfigService;
   private final Registry registry;
 
   private final AtomicBoolean isEnabled = new AtomicBoolean(true);
+  private final AtomicBoolean isAdmissionControlEnabled = new AtomicBoolean(false);
 
   public PooledRequestQueue(
       DynamicConfigService dynamicConfigService,
@@ -62,6 +79,26 @@ public class PooledRequestQueue implements RequestQueue {
       long defaultStartWorkTimeout,
       long defaultTimeout,
       int requestPoolSize) {
+    this(
+        dynamicConfigService,
+        registry,
+        defaultStartWorkTimeout,
+        defaultTimeout,
+        requestPoolSize,
+        Collections.emptyList());
+  }
+
+  /**
+   * @param bulkPartitions partitions (e.g. "applications") whose requests are only dispatched once
+   *     every other partition has been offered a free executor slot
+   */
+  public PooledRequestQueue(
+      DynamicConfigService dynamicConfigService,
+      Registry registry,
+      long defaultStartWorkTimeout,
+      long defaultTimeout,
+      int requestPoolSize,
+      Collection<String> bulkPartitions) {
 
     if (defaultStartWorkTimeout <= 0) {
       throw new IllegalArgumentException("defaultStartWorkTimeout");
@@ -81,6 +118,7 @@ public class PooledRequestQueue implements RequestQueue {
     this.defaultStartWorkTimeout = defaultStartWorkTimeout;
     this.defaultTimeout = defaultTimeout;
     this.defaultCorePoolSize = requestPoolSize;
+    this.bulkPartitions = new HashSet<>(bulkPartitions);
 
     this.submittedRequests = new LinkedBlockingQueue<>();
     registry.gauge("pooledRequestQueue.executorQueue.size", submittedRequests, Queue::size);
@@ -95,13 +133,32 @@ public class PooledRequestQueue implements RequestQueue {
             submittedRequests,
             new ThreadFactoryBuilder()
                 .setNameFormat(PooledRequestQueue.class.getSimpleName() + "-%d")
-                .build());
+                .build()) {
+          @Override
+          protected void afterExecute(Runnable r, Throwable t) {
+            super.afterExecute(r, t);
+            if (r instanceof PooledRequest) {
+              recordExecutionTime(((PooledRequest<?>) r).getExecutionNanos());
+              // the worker is still active until this returns, so the freed slot has to be
+              // released before waking the distributor or it would see no slot and wait a full poll
+              inFlightRequests.decrementAndGet();
+              pollCoordinator.notifyItemsAdded();
+            }
+          }
+        };
     registry.gauge(
         "pooledRequestQueue.corePoolSize", executorService, ThreadPoolExecutor::getCorePoolSize);
 
-    this.requestQueues = new CopyOnWriteArrayList<>();
+    this.interactiveRequestQueues = new CopyOnWriteArrayList<>();
+    this.bulkRequestQueues = new CopyOnWriteArrayList<>();
     this.requestDistributor =
-        new RequestDistributor(registry, pollCoordinator, executorService, requestQueues);
+        new RequestDistributor(
+            registry,
+            pollCoordinator,
+            this::submit,
+            interactiveRequestQueues,
+            bulkRequestQueues,
+            this::getAvailableSlots);
     executorService.submit(requestDistributor);
 
     registry.gauge("pooledRequestQueue.enabled", isEnabled, value -> value.get() ? 1.0 : 0.0);
@@ -115,6 +172,11 @@ public class PooledRequestQueue implements RequestQueue {
     while ((req = (PooledRequest<?>) submittedRequests.poll()) != null) {
       req.cancel();
     }
+    for (Queue<PooledRequest<?>> queue : partitionedRequests.values()) {
+      while ((req = queue.poll()) != null) {
+        req.cancel();
+      }
+    }
   }
 
   @Override
@@ -135,13 +197,23 @@ public class PooledRequestQueue implements RequestQueue {
       return operation.call();
     }
 
+    final boolean isBulk = bulkPartitions.contains(partition);
+    if (isAdmissionControlEnabled.get()
+        && estimateStartWaitNanos(isBulk) > unit.toNanos(startWorkTimeout)) {
+      // the request would almost certainly time out before starting, reject it without queueing
+      registry
+          .counter(registry.createId("pooledRequestQueue.rejected", "partition", partition))
+          .increment();
+      throw new PromiseNotStartedException();
+    }
+
     final long startTime = System.nanoTime();
     final Queue<PooledRequest<?>> queue;
     if (!partitionedRequests.containsKey(partition)) {
       Queue<PooledRequest<?>> newQueue = new LinkedBlockingQueue<>();
       Queue<PooledRequest<?>> existing = partitionedRequests.putIfAbsent(partition, newQueue);
       if (existing == null) {
-        requestQueues.add(newQueue);
+        (isBulk ? bulkRequestQueues : interactiveRequestQueues).add(newQueue);
         queue = newQueue;
         registry.gauge(
             registry.createId("pooledRequestQueue.partition.size", "partition", partition),
@@ -172,6 +244,48 @@ public class PooledRequestQueue implements RequestQueue {
     }
   }
 
+  private void submit(Runnable request) {
+    inFlightRequests.incrementAndGet();
+    try {
+      executorService.execute(request);
+    } catch (RuntimeException e) {
+      inFlightRequests.decrementAndGet();
+      throw e;
+    }
+  }
+
+  private int getAvailableSlots() {
+    // the distributor occupies one thread of the pool
+    return executorService.getMaximumPoolSize() - 1 - inFlightRequests.get();
+  }
+
+  private void recordExecutionTime(long executionNanos) {
+    if (executionNanos < 0) {
+      return;
+    }
+    averageExecutionNanos.accumulateAndGet(
+        executionNanos, (average, sample) -> average == 0 ? sample : (average * 7 + sample) / 8);
+  }
+
+  /**
+   * Bulk requests wait behind everything that is queued, interactive requests only behind other
+   * interactive requests.
+   */
+  private long estimateStartWaitNanos(boolean isBulk) {
+    long queuedAhead = submittedRequests.size();
+    for (Queue<PooledRequest<?>> queue : interactiveRequestQueues) {
+      queuedAhead += queue.size();
+    }
+    if (isBulk) {
+      for (Queue<PooledRequest<?>> queue : bulkRequestQueues) {
+        queuedAhead += queue.size();
+      }
+    }
+    return queuedAhead
+        * averageExecutionNanos.get()
+        / Math.max(1, executorService.getMaximumPoolSize() - 1);
+  }
+
   @Scheduled(fixedDelayString = "${request-queue.core-pool-size-refresh-ms:120000}")
   public void refreshCorePoolSize() {
     int currentCorePoolSize = executorService.getCorePoolSize();
@@ -190,5 +304,7 @@ public class PooledRequestQueue implements RequestQueue {
     }
 
     isEnabled.set(dynamicConfigService.isEnabled("request-queue", true));
+    isAdmissionControlEnabled.set(
+        dynamicConfigService.isEnabled("request-queue.admission-control", false));
   }
 }
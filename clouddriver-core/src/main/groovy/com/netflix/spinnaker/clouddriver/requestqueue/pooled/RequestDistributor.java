@@ -18,18 +18,32 @@ package com.netflix.spinnaker.clouddriver.requestqueue.pooled;
 
 import com.netflix.spectator.api.Counter;
 import com.netflix.spectator.api.Registry;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Moves requests from their partition queues onto the executor.
+ *
+ * <p>Partitions are organized in lanes, every interactive partition is offered a free executor
+ * slot before any bulk partition. Within a lane each partition gets at most one request per pass
+ * and the starting partition rotates between passes, so a busy partition cannot starve the others.
+ */
 class RequestDistributor implements Runnable {
   private final AtomicBoolean continueRunning = new AtomicBoolean(true);
   private final PollCoordinator pollCoordinator;
   private final Executor executor;
-  private final Collection<Queue<PooledRequest<?>>> requestQueues;
+  private final List<Collection<Queue<PooledRequest<?>>>> lanes;
+  private final IntSupplier availableSlots;
+  private final int[] laneOffsets;
   private final Counter submissionCounter;
 
   private final Logger log = LoggerFactory.getLogger(getClass());
@@ -39,9 +53,27 @@ class RequestDistributor implements Runnable {
       PollCoordinator pollCoordinator,
       Executor executor,
       Collection<Queue<PooledRequest<?>>> requestQueues) {
+    this(
+        registry,
+        pollCoordinator,
+        executor,
+        requestQueues,
+        Collections.emptyList(),
+        () -> Integer.MAX_VALUE);
+  }
+
+  RequestDistributor(
+      Registry registry,
+      PollCoordinator pollCoordinator,
+      Executor executor,
+      Collection<Queue<PooledRequest<?>>> interactiveRequestQueues,
+      Collection<Queue<PooledRequest<?>>> bulkRequestQueues,
+      IntSupplier availableSlots) {
     this.pollCoordinator = pollCoordinator;
     this.executor = executor;
-    this.requestQueues = requestQueues;
+    this.lanes = Arrays.asList(interactiveRequestQueues, bulkRequestQueues);
+    this.availableSlots = availableSlots;
+    this.laneOffsets = new int[lanes.size()];
     this.submissionCounter = registry.counter("pooledRequestQueue.submitted");
   }
 
@@ -60,12 +92,23 @@ class RequestDistributor implements Runnable {
     try {
       boolean hadItems = false;
       pollCoordinator.reset();
-      for (Queue<PooledRequest<?>> queue : requestQueues) {
-        final PooledRequest<?> request = queue.poll();
-        if (request != null) {
-          hadItems = true;
-          submissionCounter.increment();
-          executor.execute(request);
+      int slots = availableSlots.getAsInt();
+      for (int lane = 0; lane < lanes.size() && slots > 0; lane++) {
+        List<Queue<PooledRequest<?>>> queues = new ArrayList<>(lanes.get(lane));
+        if (queues.isEmpty()) {
+          continue;
+        }
+
+        int offset = laneOffsets[lane] % queues.size();
+        laneOffsets[lane] = (offset + 1) % queues.size();
+        for (int i = 0; i < queues.size() && slots > 0; i++) {
+          final PooledRequest<?> request = queues.get((offset + i) % queues.size()).poll();
+          if (request != null) {
+            hadItems = true;
+            slots--;
+            submissionCounter.increment();
+            executor.execute(request);
+          }
         }
       }
 
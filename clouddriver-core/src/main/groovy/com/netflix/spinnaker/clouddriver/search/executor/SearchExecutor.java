@@ -16,23 +16,40 @@
 
 package com.netflix.spinnaker.clouddriver.search.executor;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.histogram.PercentileTimer;
 import com.netflix.spinnaker.clouddriver.search.SearchProvider;
 import com.netflix.spinnaker.clouddriver.search.SearchQueryCommand;
 import com.netflix.spinnaker.clouddriver.search.SearchResultSet;
+import com.netflix.spinnaker.security.AuthenticatedRequest;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 
+/**
+ * Searches providers concurrently, collecting their results as they complete.
+ *
+ * <p>Providers that haven't completed within the timeout are cancelled, as are the remaining
+ * providers once a full page of results was found if {@link
+ * SearchExecutorConfigProperties#getReturnFullPageEarly()} is set. Each provider's results can
+ * also be reused for a few seconds, so that repeating a query doesn't search every provider again.
+ */
 @Slf4j
 public class SearchExecutor {
   private Integer timeout;
   private ExecutorService executor;
+  private boolean returnFullPageEarly;
+  private Cache<ResultKey, SearchResultSet> resultCache;
 
   @Autowired Registry registry;
 
@@ -44,50 +61,111 @@ public class SearchExecutor {
             new ThreadFactoryBuilder()
                 .setNameFormat(SearchExecutor.class.getSimpleName() + "-%d")
                 .build());
+    this.returnFullPageEarly = Boolean.TRUE.equals(configProperties.getReturnFullPageEarly());
+    if (configProperties.getResultCacheTtlSeconds() > 0) {
+      this.resultCache =
+          CacheBuilder.newBuilder()
+              .expireAfterWrite(configProperties.getResultCacheTtlSeconds(), TimeUnit.SECONDS)
+              .maximumSize(1000)
+              .build();
+    }
   }
 
   public List<SearchResultSet> searchAllProviders(
       List<SearchProvider> providers, SearchQueryCommand searchQuery) {
-    List<Callable<SearchResultSet>> searchTasks =
-        providers.stream()
-            .map(p -> new SearchTask(p, searchQuery, registry))
-            .collect(Collectors.toList());
-    List<Future<SearchResultSet>> resultFutures = null;
+    String user = AuthenticatedRequest.getSpinnakerUser().orElse("anonymous");
+    SearchResultSet[] results = new SearchResultSet[providers.size()];
+    CompletionService<SearchResultSet> completionService =
+        new ExecutorCompletionService<>(executor);
+    Map<Future<SearchResultSet>, Integer> pending = new HashMap<>();
+    int found = 0;
+
+    for (int i = 0; i < providers.size(); i++) {
+      SearchProvider provider = providers.get(i);
+      SearchResultSet cached =
+          resultCache == null
+              ? null
+              : resultCache.getIfPresent(new ResultKey(provider, searchQuery, user));
+      if (cached != null) {
+        results[i] = cached;
+        found += cached.getResults().size();
+      } else {
+        pending.put(completionService.submit(new SearchTask(provider, searchQuery, registry)), i);
+      }
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
     try {
-      resultFutures = executor.invokeAll(searchTasks, timeout, TimeUnit.SECONDS);
+      while (!pending.isEmpty() && !(returnFullPageEarly && found >= searchQuery.getPageSize())) {
+        Future<SearchResultSet> f =
+            completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (f == null) {
+          break;
+        }
+
+        int i = pending.remove(f);
+        SearchResultSet resultSet = getFuture(f, registry, searchQuery.getQ());
+        if (resultSet != null && resultCache != null) {
+          resultCache.put(new ResultKey(providers.get(i), searchQuery, user), resultSet);
+        }
+        results[i] = emptyIfNull(resultSet);
+        found += results[i].getResults().size();
+      }
     } catch (InterruptedException ie) {
       log.error(
           String.format(
               "Search for '%s' in '%s' interrupted", searchQuery.getQ(), searchQuery.getPlatform()),
           ie);
+      Thread.currentThread().interrupt();
     }
 
-    if (resultFutures == null) {
-      return Collections.EMPTY_LIST;
+    boolean timedOut = !(returnFullPageEarly && found >= searchQuery.getPageSize());
+    for (Map.Entry<Future<SearchResultSet>, Integer> entry : pending.entrySet()) {
+      entry.getKey().cancel(true);
+      if (timedOut) {
+        log.error(
+            String.format(
+                "Search for '%s' in '%s' timed out",
+                searchQuery.getQ(), providers.get(entry.getValue()).getPlatform()));
+        recordFailure(registry, searchQuery.getQ());
+      }
+      results[entry.getValue()] = emptyIfNull(null);
     }
-    return resultFutures.stream()
-        .map(f -> getFuture(f, registry, searchQuery.getQ()))
-        .collect(Collectors.toList());
+
+    return Arrays.asList(results);
   }
 
   private static SearchResultSet getFuture(Future<SearchResultSet> f, Registry registry, String q) {
-    SearchResultSet resultSet = null;
     try {
-      resultSet = f.get();
+      return f.get();
     } catch (ExecutionException | InterruptedException e) {
       log.error(String.format("Retrieving future %s failed", f), e);
     } catch (CancellationException e) {
       log.error(String.format("Retrieving result failed due to cancelled task: %s", f));
-      String counterId = String.format("searchExecutor.%s.failures", q != null ? q : "*");
-      registry.counter(registry.createId(counterId)).increment(1);
+      recordFailure(registry, q);
     }
+    return null;
+  }
 
+  private static SearchResultSet emptyIfNull(SearchResultSet resultSet) {
     if (resultSet == null) {
       return new SearchResultSet().setTotalMatches(0).setResults(Collections.EMPTY_LIST);
     }
     return resultSet;
   }
 
+  private static void recordFailure(Registry registry, String q) {
+    String counterId = String.format("searchExecutor.%s.failures", q != null ? q : "*");
+    registry.counter(registry.createId(counterId)).increment(1);
+  }
+
+  @Value
+  private static class ResultKey {
+    SearchProvider provider;
+    SearchQueryCommand query;
+    String user;
+  }
+
   private static class SearchTask implements Callable<SearchResultSet> {
     private SearchProvider provider;
     private SearchQueryCommand searchQuery;
@@ -99,6 +177,7 @@ public class SearchExecutor {
       this.registry = registry;
     }
 
+    /** @return the provider's results, or null if the search failed */
     public SearchResultSet call() {
       Map<String, String> filters =
           searchQuery.getFilters().entrySet().stream()
@@ -106,18 +185,40 @@ public class SearchExecutor {
               .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
 
       String q = searchQuery.getQ();
+      long start = System.nanoTime();
+      boolean success = false;
       try {
+        SearchResultSet resultSet;
         if (searchQuery.getType() != null && !searchQuery.getType().isEmpty()) {
-          return provider.search(
-              q, searchQuery.getType(), searchQuery.getPage(), searchQuery.getPageSize(), filters);
+          resultSet =
+              provider.search(
+                  q,
+                  searchQuery.getType(),
+                  searchQuery.getPage(),
+                  searchQuery.getPageSize(),
+                  filters);
         } else {
-          return provider.search(q, searchQuery.getPage(), searchQuery.getPageSize(), filters);
+          resultSet =
+              provider.search(q, searchQuery.getPage(), searchQuery.getPageSize(), filters);
         }
+        success = true;
+        return resultSet;
       } catch (Exception e) {
+        if (e instanceof InterruptedException || Thread.currentThread().isInterrupted()) {
+          // cancelled, searchAllProviders already accounted for it
+          return null;
+        }
         log.error(String.format("Search for '%s' in '%s' failed", q, searchQuery.getPlatform()), e);
-        String counterId = String.format("searchExecutor.%s.failures", q != null ? q : "*");
-        registry.counter(registry.createId(counterId)).increment(1);
-        return new SearchResultSet().setTotalMatches(0).setResults(Collections.EMPTY_LIST);
+        recordFailure(registry, q);
+        return null;
+      } finally {
+        PercentileTimer.get(
+                registry,
+                registry
+                    .createId("searchExecutor.providerLatency")
+                    .withTag("platform", String.valueOf(provider.getPlatform()))
+                    .withTag("success", String.valueOf(success)))
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
       }
     }
   }
@@ -27,4 +27,16 @@ class SearchExecutorConfigProperties {
   private Boolean enabled;
   private Integer threadPoolSize = 3;
   private Integer timeout = 10;
+
+  /**
+   * Seconds a provider's results are reused for the same query and user, or 0 to always search
+   * every provider.
+   */
+  private Integer resultCacheTtlSeconds = 0;
+
+  /**
+   * Whether to stop waiting on the remaining providers, and cancel their searches, once the
+   * providers that completed returned a full page of results.
+   */
+  private Boolean returnFullPageEarly = false;
 }
@@ -21,6 +21,8 @@ import com.netflix.spinnaker.clouddriver.model.Cluster
 import com.netflix.spinnaker.clouddriver.model.ClusterProvider
 import com.netflix.spinnaker.clouddriver.model.LoadBalancer
 import com.netflix.spinnaker.clouddriver.model.ServerGroup
+import com.netflix.spinnaker.security.AuthenticatedRequest
+import org.slf4j.MDC
 import spock.lang.Shared
 import spock.lang.Specification
 
@@ -77,6 +79,33 @@ class ProjectClustersServiceSpec extends Specification {
     0 * _
   }
 
+  void "retrieves clusters on the service's pool with the caller's request context"() {
+    given:
+    projectConfig.config.clusters = [
+      [account: "prod", stack: "main"]
+    ]
+    def threads = Collections.synchronizedList([])
+    def users = Collections.synchronizedList([])
+    MDC.put("X-SPINNAKER-USER", "test-user")
+
+    when:
+    def result = subject.getProjectClusters(allowList)
+
+    then:
+    1 * front50Service.getProject(_) >> { projectConfig }
+    2 * clusterProvider.getClusterSummaries(_) >> {
+      threads << Thread.currentThread().name
+      users << AuthenticatedRequest.getSpinnakerUser().orElse(null)
+      return [:]
+    }
+    result["Spinnaker"][0].applications*.application == ["orca", "deck"]
+    threads.every { it.startsWith(ProjectClustersService.simpleName) }
+    users == ["test-user", "test-user"]
+
+    cleanup:
+    MDC.clear()
+  }
+
   void "builds the very specific model we probably want for the project dashboard"() {
     projectConfig.config.clusters = [
       [account: "prod", stack: "main"]
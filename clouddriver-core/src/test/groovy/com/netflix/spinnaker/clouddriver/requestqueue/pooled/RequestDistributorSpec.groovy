@@ -57,4 +57,36 @@ class RequestDistributorSpec extends Specification {
     reqs[1].getPromise().blockingGetOrThrow(1, 1, TimeUnit.MILLISECONDS) == 2
 
   }
+
+  def "should offer free slots to interactive partitions before bulk partitions"() {
+    given:
+    Registry registry = new NoopRegistry()
+    Collection<Queue<PooledRequest>> interactive = [new LinkedBlockingQueue<>()]
+    Collection<Queue<PooledRequest>> bulk = [new LinkedBlockingQueue<>()]
+    bulk[0].add(new PooledRequest<Integer>(registry, "applications", {return 0}))
+    interactive[0].add(new PooledRequest<Integer>(registry, "appA", {return 1}))
+    interactive[0].add(new PooledRequest<Integer>(registry, "appA", {return 2}))
+    def coord = Mock(PollCoordinator)
+    List<PooledRequest<Integer>> reqs = []
+    def exec = Stub(Executor) {
+      execute(_) >> { Runnable r ->
+        reqs.add(r)
+        r.run()
+      }
+    }
+
+    RequestDistributor dist = new RequestDistributor(registry, coord, exec, interactive, bulk, { slots })
+
+    when:
+    dist.processPartitions()
+
+    then:
+    reqs*.getPromise()*.blockingGetOrThrow(1, 1, TimeUnit.MILLISECONDS) == expected
+
+    where:
+    slots || expected
+    0     || []
+    1     || [1]
+    2     || [1, 0]
+  }
 }
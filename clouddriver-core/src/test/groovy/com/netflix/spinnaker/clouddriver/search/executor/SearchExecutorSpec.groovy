@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.search.executor
+
+import com.netflix.spectator.api.DefaultRegistry
+import com.netflix.spinnaker.clouddriver.search.SearchProvider
+import com.netflix.spinnaker.clouddriver.search.SearchQueryCommand
+import com.netflix.spinnaker.clouddriver.search.SearchResultSet
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class SearchExecutorSpec extends Specification {
+  def registry = new DefaultRegistry()
+  def query = new SearchQueryCommand(q: "app", page: 1, pageSize: 2, filters: [:])
+
+  def fast = Stub(SearchProvider) {
+    getPlatform() >> "fast"
+    excludedFilters() >> []
+    search("app", 1, 2, [:]) >> resultSet("fast", 2)
+  }
+
+  def "returns results in provider order, and an empty result set for providers that timed out"() {
+    given:
+    def latch = new CountDownLatch(1)
+    def slow = slowProvider(latch)
+    def executor = executor(new SearchExecutorConfigProperties(timeout: 1))
+
+    when:
+    def results = executor.searchAllProviders([slow, fast], query)
+
+    then:
+    results*.platform == [null, "fast"]
+    results[0].results.isEmpty()
+    latch.await(1, TimeUnit.SECONDS)
+    registry.counter("searchExecutor.app.failures").count() == 1
+    registry.timers().filter { it.id().name() == "searchExecutor.providerLatency" }.count() > 0
+  }
+
+  def "cancels the remaining providers once a full page of results was found"() {
+    given:
+    def latch = new CountDownLatch(1)
+    def slow = slowProvider(latch)
+    def executor = executor(new SearchExecutorConfigProperties(timeout: 10, returnFullPageEarly: true))
+
+    when:
+    long start = System.nanoTime()
+    def results = executor.searchAllProviders([slow, fast], query)
+
+    then:
+    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5
+    results*.platform == [null, "fast"]
+    latch.await(1, TimeUnit.SECONDS)
+    registry.counter("searchExecutor.app.failures").count() == 0
+  }
+
+  def "reuses the results of a provider for the same query"() {
+    given:
+    def provider = Mock(SearchProvider)
+    def executor = executor(new SearchExecutorConfigProperties(resultCacheTtlSeconds: 60))
+
+    when:
+    def first = executor.searchAllProviders([provider], query)
+    def second = executor.searchAllProviders([provider], query)
+    executor.searchAllProviders([provider], new SearchQueryCommand(q: "other", page: 1, pageSize: 2, filters: [:]))
+
+    then:
+    _ * provider.excludedFilters() >> []
+    1 * provider.search("app", 1, 2, [:]) >> resultSet("mock", 1)
+    1 * provider.search("other", 1, 2, [:]) >> resultSet("mock", 0)
+    second == first
+  }
+
+  def "does not reuse failed searches"() {
+    given:
+    def provider = Mock(SearchProvider)
+    def executor = executor(new SearchExecutorConfigProperties(resultCacheTtlSeconds: 60))
+
+    when:
+    executor.searchAllProviders([provider], query)
+    def results = executor.searchAllProviders([provider], query)
+
+    then:
+    _ * provider.excludedFilters() >> []
+    2 * provider.search("app", 1, 2, [:]) >> { throw new RuntimeException("failed") } >> resultSet("mock", 1)
+    results*.platform == ["mock"]
+  }
+
+  private SearchExecutor executor(SearchExecutorConfigProperties properties) {
+    def executor = new SearchExecutor(properties)
+    executor.registry = registry
+    return executor
+  }
+
+  /**
+   * A provider that searches until it is interrupted, counting down the latch once it is.
+   */
+  private SearchProvider slowProvider(CountDownLatch interrupted) {
+    return Stub(SearchProvider) {
+      getPlatform() >> "slow"
+      excludedFilters() >> []
+      search("app", 1, 2, [:]) >> {
+        try {
+          Thread.sleep(TimeUnit.SECONDS.toMillis(30))
+        } catch (InterruptedException e) {
+          interrupted.countDown()
+          throw e
+        }
+        resultSet("slow", 2)
+      }
+    }
+  }
+
+  private static SearchResultSet resultSet(String platform, int count) {
+    return new SearchResultSet(
+      platform: platform,
+      totalMatches: count,
+      results: (0..<count).collect { [name: "${platform}-${it}".toString()] }
+    )
+  }
+}
@@ -23,6 +23,8 @@ import static org.mockito.Mockito.mock;
 
 import com.netflix.spectator.api.NoopRegistry;
 import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -127,6 +129,29 @@ final class PooledRequestQueueTest {
     assertThat(testJobRan.get()).isFalse();
   }
 
+  @Test
+  void startsQueuedRequestsAsSoonAsASlotIsFreed() throws Exception {
+    PooledRequestQueue queue =
+        new PooledRequestQueue(dynamicConfigService, new NoopRegistry(), 5000, 5000, 1);
+
+    int requests = 20;
+    ExecutorService executor = Executors.newFixedThreadPool(requests);
+    List<Future<Void>> results = new ArrayList<>();
+    long startTime = System.nanoTime();
+    for (int i = 0; i < requests; i++) {
+      results.add(executor.submit(safeRun(() -> queue.execute("foo", () -> 12345L))));
+    }
+    for (Future<Void> result : results) {
+      result.get();
+    }
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    executor.shutdown();
+
+    // the single slot is saturated throughout, if the distributor missed freed slots every
+    // request would wait out the distributor's 50ms poll interval
+    assertThat(elapsedMillis).isLessThan(requests * 50 / 2);
+  }
+
   /**
    * Translates a {@link ThrowingRunnable} into a {@link Callable<Void>}.
    *
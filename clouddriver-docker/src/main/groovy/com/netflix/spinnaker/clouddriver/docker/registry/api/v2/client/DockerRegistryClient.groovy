@@ -31,12 +31,14 @@ import retrofit.RetrofitError
 import retrofit.client.Response
 import retrofit.converter.GsonConverter
 import retrofit.http.GET
+import retrofit.http.HEAD
 import retrofit.http.Header
 import retrofit.http.Headers
 import retrofit.http.Path
 import retrofit.http.Query
 
 import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
 
 @Slf4j
 class DockerRegistryClient {
@@ -238,6 +240,12 @@ class DockerRegistryClient {
     ])
     Response getManifest(@Path(value="name", encode=false) String name, @Path(value="reference", encode=false) String reference, @Header("Authorization") String token, @Header("User-Agent") String agent)
 
+    @HEAD("/v2/{name}/manifests/{reference}")
+    @Headers([
+      "Docker-Distribution-API-Version: registry/2.0"
+    ])
+    Response headManifest(@Path(value="name", encode=false) String name, @Path(value="reference", encode=false) String reference, @Header("Authorization") String token, @Header("User-Agent") String agent)
+
     @GET("/v2/{name}/manifests/{reference}")
     @Headers([
       "Docker-Distribution-API-Version: registry/2.0",
@@ -280,6 +288,21 @@ class DockerRegistryClient {
     return digest?.value
   }
 
+  /**
+   * Same digest as {@link #getDigest}, but resolved with a HEAD request so the manifest body isn't transferred.
+   */
+  public String getManifestDigest(String name, String tag) {
+    def response = request({
+      registryService.headManifest(name, tag, tokenService.basicAuthHeader, userAgent)
+    }, { token ->
+      registryService.headManifest(name, tag, token, userAgent)
+    }, name)
+    def digest = response.headers?.find {
+      it.name.equalsIgnoreCase("Docker-Content-Digest")
+    }
+    return digest?.value
+  }
+
   public String getConfigDigest(String name, String tag) {
     def response = getSchemaV2Manifest(name, tag)
     def manifestMap = converter.fromBody(response.body, Map) as Map
@@ -295,7 +318,7 @@ class DockerRegistryClient {
     return converter.fromBody(response.body, Map)
   }
 
-  private Map tagDateCache = [:]
+  private Map tagDateCache = new ConcurrentHashMap()
 
   public Instant getCreationDate(String name, String tag) {
     String key = "${name}:${tag}"
@@ -16,7 +16,10 @@
 
 package com.netflix.spinnaker.clouddriver.docker.registry.provider.agent
 
+import com.netflix.spectator.api.NoopRegistry
+import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.cats.agent.*
+import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.cats.provider.ProviderCache
 import com.netflix.spinnaker.clouddriver.docker.registry.DockerRegistryCloudProvider
 import com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client.DockerRegistryTags
@@ -28,7 +31,11 @@ import com.netflix.spinnaker.clouddriver.docker.registry.security.DockerRegistry
 import groovy.util.logging.Slf4j
 import retrofit.RetrofitError
 
+import java.time.Instant
+import java.time.format.DateTimeParseException
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.Semaphore
 import java.util.concurrent.TimeUnit
 
 import static java.util.Collections.unmodifiableSet
@@ -40,6 +47,11 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware, Age
     AgentDataType.Authority.AUTHORITATIVE.forType(Keys.Namespace.IMAGE_ID.ns)
   ] as Set)
 
+  // Upper bound on in-flight manifest/blob requests against a single registry, shared by every account and agent
+  // pointed at it.
+  static final int MAX_CONCURRENT_REGISTRY_REQUESTS = 8
+  private static final ConcurrentMap<String, Semaphore> registryPermits = new ConcurrentHashMap<>()
+
   private DockerRegistryCredentials credentials
   private DockerRegistryCloudProvider dockerRegistryCloudProvider
   private String accountName
@@ -47,6 +59,7 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware, Age
   private final int threadCount
   private final long interval
   private String registry
+  private final Registry metricRegistry
 
   DockerRegistryImageCachingAgent(DockerRegistryCloudProvider dockerRegistryCloudProvider,
                                   String accountName,
@@ -55,6 +68,17 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware, Age
                                   int threadCount,
                                   Long intervalSecs,
                                   String registry) {
+    this(dockerRegistryCloudProvider, accountName, credentials, index, threadCount, intervalSecs, registry, new NoopRegistry())
+  }
+
+  DockerRegistryImageCachingAgent(DockerRegistryCloudProvider dockerRegistryCloudProvider,
+                                  String accountName,
+                                  DockerRegistryCredentials credentials,
+                                  int index,
+                                  int threadCount,
+                                  Long intervalSecs,
+                                  String registry,
+                                  Registry metricRegistry) {
     this.dockerRegistryCloudProvider = dockerRegistryCloudProvider
     this.accountName = accountName
     this.credentials = credentials
@@ -62,6 +86,7 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware, Age
     this.threadCount = threadCount
     this.interval = TimeUnit.SECONDS.toMillis(intervalSecs)
     this.registry = registry
+    this.metricRegistry = metricRegistry
   }
 
   @Override
@@ -73,7 +98,7 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware, Age
   CacheResult loadData(ProviderCache providerCache) {
     Map<String, Set<String>> tags = loadTags()
 
-    buildCacheResult(tags)
+    buildCacheResult(tags, loadPreviousTags(providerCache, tags))
   }
 
   @Override
@@ -126,7 +151,24 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware, Age
     return accountName
   }
 
-  private CacheResult buildCacheResult(Map<String, Set<String>> tagMap) {
+  /**
+   * Tags rarely move, so the previously cached tagged images act as a memo: when a tag's manifest digest is unchanged
+   * its digest, labels and creation date are reused instead of being fetched again.
+   */
+  private Map<String, CacheData> loadPreviousTags(ProviderCache providerCache,
+                                                  Map<String, Set<String>> tagMap) {
+    if (providerCache == null || !(credentials.trackDigests || credentials.inspectDigests || credentials.sortTagsByDate)) {
+      return [:]
+    }
+
+    def tagKeys = tagMap.collectMany { repository, tags ->
+      tags.findAll { it }.collect { tag -> Keys.getTaggedImageKey(accountName, repository, tag) }
+    }
+
+    providerCache.getAll(Keys.Namespace.TAGGED_IMAGE.ns, tagKeys).collectEntries { [(it.id): it] }
+  }
+
+  private CacheResult buildCacheResult(Map<String, Set<String>> tagMap, Map<String, CacheData> previousTags) {
     log.info("Describing items in ${agentType}")
 
     ConcurrentMap<String, DefaultCacheDataBuilder> cachedTags = DefaultCacheDataBuilder.defaultCacheDataBuilderMap()
@@ -141,12 +183,40 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware, Age
         def tagKey = Keys.getTaggedImageKey(accountName, repository, tag)
         def imageIdKey = Keys.getImageIdKey(DockerRegistryProviderUtils.imageId(registry, repository, tag))
         def digest = null
-        def digestContent = null
+        def labels = null
         def creationDate = null
+        def manifestDigest = null
+
+        def previous = previousTags[tagKey]?.attributes
+        if (previous?.manifestDigest) {
+          try {
+            manifestDigest = withRegistryPermit { credentials.client.getManifestDigest(repository, tag) }
+          } catch (Exception e) {
+            log.debug("Unable to revalidate manifest digest for $tagKey, reason: $e.message")
+          }
+
+          if (manifestDigest && manifestDigest == previous.manifestDigest) {
+            creationDate = toInstant(previous.date)
+            // details whose lookup failed last time are not reused, they are fetched again below
+            boolean digestReusable = previous.digest || !(credentials.trackDigests || credentials.inspectDigests)
+            if ((!credentials.sortTagsByDate || creationDate) && digestReusable) {
+              recordMemoResult("hit")
+              cachedTags.put(tagKey, buildTagData(tagKey, repository, tag, manifestDigest, previous.digest, creationDate, previous.labels))
+              cachedIds.put(imageIdKey, buildIdData(imageIdKey, tagKey))
+              return
+            }
+            recordMemoResult("incomplete")
+          } else {
+            recordMemoResult("changed")
+          }
+        } else {
+          recordMemoResult("miss")
+        }
 
         if (credentials.trackDigests) {
           try {
-            digest = credentials.client.getDigest(repository, tag)
+            digest = withRegistryPermit { credentials.client.getDigest(repository, tag) }
+            manifestDigest = digest
           } catch (Exception e) {
             if (e instanceof RetrofitError && ((RetrofitError) e).response?.status == 404) {
               // Indicates inconsistency in registry, or deletion between call for all tags and manifest retrieval.
@@ -163,8 +233,8 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware, Age
 
         if (credentials.inspectDigests) {
           try {
-            digest = credentials.client.getConfigDigest(repository, tag)
-            digestContent = credentials.client.getDigestContent(repository, digest)
+            digest = withRegistryPermit { credentials.client.getConfigDigest(repository, tag) }
+            labels = withRegistryPermit { credentials.client.getDigestContent(repository, digest) }?.config?.Labels
           } catch (Exception e) {
             log.warn("Error retrieving config digest for $tagKey; digest and tag will not be cached: $e.message")
           }
@@ -172,28 +242,23 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware, Age
 
         if (credentials.sortTagsByDate) {
           try {
-            creationDate = credentials.client.getCreationDate(repository, tag)
+            creationDate = withRegistryPermit { credentials.client.getCreationDate(repository, tag) }
           } catch (Exception e) {
             log.warn("Unable to fetch tag creation date, reason: {} (tag: {}, repository: {})", e.message, tag, repository)
           }
         }
 
-        def tagData = new DefaultCacheDataBuilder()
-        tagData.setId(tagKey)
-        tagData.attributes.put("name", "${repository}:${tag}".toString())
-        tagData.attributes.put("account", accountName)
-        tagData.attributes.put("digest", digest)
-        tagData.attributes.put("date", creationDate)
-        if (digestContent?.config != null) {
-          tagData.attributes.put("labels", digestContent.config.Labels)
+        if (!manifestDigest && (credentials.inspectDigests || credentials.sortTagsByDate)) {
+          // remember which manifest the details above were read from so the next cycle can revalidate with a HEAD
+          try {
+            manifestDigest = withRegistryPermit { credentials.client.getManifestDigest(repository, tag) }
+          } catch (Exception e) {
+            log.debug("Unable to resolve manifest digest for $tagKey, reason: $e.message")
+          }
         }
-        cachedTags.put(tagKey, tagData)
 
-        def idData = new DefaultCacheDataBuilder()
-        idData.setId(imageIdKey)
-        idData.attributes.put("tagKey", tagKey)
-        idData.attributes.put("account", accountName)
-        cachedIds.put(imageIdKey, idData)
+        cachedTags.put(tagKey, buildTagData(tagKey, repository, tag, manifestDigest, digest, creationDate, labels))
+        cachedIds.put(imageIdKey, buildIdData(imageIdKey, tagKey))
       }
 
       null
@@ -208,6 +273,79 @@ class DockerRegistryImageCachingAgent implements CachingAgent, AccountAware, Age
     ])
   }
 
+  private DefaultCacheDataBuilder buildTagData(String tagKey,
+                                               String repository,
+                                               String tag,
+                                               String manifestDigest,
+                                               Object digest,
+                                               Instant creationDate,
+                                               Object labels) {
+    def tagData = new DefaultCacheDataBuilder()
+    tagData.setId(tagKey)
+    tagData.attributes.put("name", "${repository}:${tag}".toString())
+    tagData.attributes.put("account", accountName)
+    tagData.attributes.put("digest", digest)
+    tagData.attributes.put("date", creationDate)
+    if (manifestDigest != null) {
+      tagData.attributes.put("manifestDigest", manifestDigest)
+    }
+    if (labels != null) {
+      tagData.attributes.put("labels", labels)
+    }
+    tagData
+  }
+
+  private DefaultCacheDataBuilder buildIdData(String imageIdKey, String tagKey) {
+    def idData = new DefaultCacheDataBuilder()
+    idData.setId(imageIdKey)
+    idData.attributes.put("tagKey", tagKey)
+    idData.attributes.put("account", accountName)
+    idData
+  }
+
+  private <T> T withRegistryPermit(Closure<T> request) {
+    Semaphore permits = registryPermits.computeIfAbsent(credentials.client.address ?: registry) {
+      new Semaphore(MAX_CONCURRENT_REGISTRY_REQUESTS)
+    }
+    permits.acquire()
+    try {
+      return request.call()
+    } finally {
+      permits.release()
+    }
+  }
+
+  private void recordMemoResult(String result) {
+    metricRegistry.counter(
+      metricRegistry.createId("dockerRegistry.digestMemo").withTag("account", accountName).withTag("result", result)
+    ).increment()
+  }
+
+  /**
+   * Creation dates read back from a persistent cache may have been serialized as epoch seconds, an ISO-8601 string or
+   * as the Instant's fields.
+   */
+  private static Instant toInstant(Object date) {
+    if (date instanceof Instant) {
+      return (Instant) date
+    }
+    if (date instanceof CharSequence) {
+      try {
+        return Instant.parse(date.toString())
+      } catch (DateTimeParseException ignored) {
+        return null
+      }
+    }
+    if (date instanceof Number) {
+      BigDecimal seconds = new BigDecimal(date.toString())
+      return Instant.ofEpochSecond(seconds.longValue(), seconds.remainder(BigDecimal.ONE).movePointRight(9).longValue())
+    }
+    if (date instanceof Map && date.epochSecond != null) {
+      return Instant.ofEpochSecond(((Number) date.epochSecond).longValue(), ((Number) (date.nano ?: 0)).longValue())
+    }
+    return null
+  }
+
   @Override
   Long getAgentInterval() {
     return interval
@@ -17,6 +17,8 @@
 package com.netflix.spinnaker.clouddriver.docker.registry.provider.agent
 
 import com.netflix.spinnaker.cats.agent.CacheResult
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.provider.ProviderCache
 import com.netflix.spinnaker.clouddriver.docker.registry.DockerRegistryCloudProvider
 import com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client.DockerRegistryClient
 import com.netflix.spinnaker.clouddriver.docker.registry.api.v2.client.DockerRegistryTags
@@ -174,6 +176,64 @@ class DockerRegistryImageCachingAgentTest extends Specification {
     }
   }
 
+  def "unchanged manifest digest should reuse previously cached tag"() {
+    given:
+    credentials.trackDigests >> true
+    credentials.sortTagsByDate >> true
+    credentials.repositories >> ["repo-1"]
+    client.getTags("repo-1") >> new DockerRegistryTags().tap { name="repo-1"; tags=["tag-1", "tag-2"] }
+    def providerCache = Mock(ProviderCache)
+    providerCache.getAll(CACHE_GROUP_TAGGED_IMAGE, _ as Collection<String>) >> [
+      new DefaultCacheData(buildTaggedImageCacheKey("repo-1", "tag-1"), [
+        name: "repo-1:tag-1", account: ACCOUNT_NAME, digest: "sha-1", manifestDigest: "sha-1", date: "1970-01-01T00:00:01Z"
+      ], [:]),
+      new DefaultCacheData(buildTaggedImageCacheKey("repo-1", "tag-2"), [
+        name: "repo-1:tag-2", account: ACCOUNT_NAME, digest: "sha-2", manifestDigest: "sha-2", date: "1970-01-01T00:00:02Z"
+      ], [:])
+    ]
+
+    when:
+    def cacheResult = agent.loadData(providerCache)
+
+    then:
+    1 * client.getManifestDigest("repo-1", "tag-1") >> "sha-1"
+    1 * client.getManifestDigest("repo-1", "tag-2") >> "sha-2-moved"
+    0 * client.getDigest("repo-1", "tag-1")
+    0 * client.getCreationDate("repo-1", "tag-1")
+    1 * client.getDigest("repo-1", "tag-2") >> "sha-2-moved"
+    1 * client.getCreationDate("repo-1", "tag-2") >> Instant.ofEpochSecond(3)
+
+    sortCacheResult(cacheResult)
+    def cacheResultTaggedImages = cacheResult.cacheResults.get(CACHE_GROUP_TAGGED_IMAGE)
+    cacheResultTaggedImages*.attributes*.get("digest") == ["sha-1", "sha-2-moved"]
+    cacheResultTaggedImages*.attributes*.get("date") == [Instant.ofEpochSecond(1), Instant.ofEpochSecond(3)]
+  }
+
+  def "previously cached tag without a digest should not be reused"() {
+    given:
+    credentials.inspectDigests >> true
+    credentials.repositories >> ["repo-1"]
+    client.getTags("repo-1") >> new DockerRegistryTags().tap { name="repo-1"; tags=["tag-1"] }
+    def providerCache = Mock(ProviderCache)
+    providerCache.getAll(CACHE_GROUP_TAGGED_IMAGE, _ as Collection<String>) >> [
+      new DefaultCacheData(buildTaggedImageCacheKey("repo-1", "tag-1"), [
+        name: "repo-1:tag-1", account: ACCOUNT_NAME, digest: null, manifestDigest: "sha-1"
+      ], [:])
+    ]
+
+    when:
+    def cacheResult = agent.loadData(providerCache)
+
+    then:
+    1 * client.getManifestDigest("repo-1", "tag-1") >> "sha-1"
+    1 * client.getConfigDigest("repo-1", "tag-1") >> "digest-1"
+    1 * client.getDigestContent("repo-1", "digest-1") >> ["config": ["Labels": ["commitId": "id1"]]]
+
+    def cacheResultTaggedImages = cacheResult.cacheResults.get(CACHE_GROUP_TAGGED_IMAGE)
+    cacheResultTaggedImages*.attributes*.get("digest") == ["digest-1"]
+    cacheResultTaggedImages*.attributes*.get("labels") == [["commitId": "id1"]]
+  }
+
   def "error loading tags returns empty result"() {
     given:
     credentials.repositories >> ["repo-1"]
@@ -21,7 +21,10 @@ import static java.lang.String.format;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.netflix.frigga.Names;
+import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.core.services.Front50Service;
 import com.netflix.spinnaker.clouddriver.helpers.OperationPoller;
 import com.netflix.spinnaker.clouddriver.model.EntityTags;
@@ -32,6 +35,7 @@ import com.netflix.spinnaker.security.AuthenticatedRequest;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestResult;
 import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
 import io.searchbox.core.ClearScroll;
 import io.searchbox.core.Delete;
 import io.searchbox.core.Index;
@@ -44,10 +48,13 @@ import io.searchbox.params.Parameters;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.lucene.search.join.ScoreMode;
 import org.elasticsearch.index.query.BoolQueryBuilder;
@@ -69,11 +76,15 @@ public class ElasticSearchEntityTagsProvider implements EntityTagsProvider {
   private final ObjectMapper objectMapper;
   private final Front50Service front50Service;
   private final JestClient jestClient;
+  private final Registry registry;
 
   private final String activeElasticSearchIndex;
 
   private final String mappingTypeName;
 
+  private final int bulkIndexBatchSize;
+  private final ExecutorService bulkIndexExecutor;
+
   @Autowired
   public ElasticSearchEntityTagsProvider(
       ApplicationContext applicationContext,
@@ -81,14 +92,25 @@ public class ElasticSearchEntityTagsProvider implements EntityTagsProvider {
       ObjectMapper objectMapper,
       Front50Service front50Service,
       JestClient jestClient,
-      ElasticSearchConfigProperties elasticSearchConfigProperties) {
+      ElasticSearchConfigProperties elasticSearchConfigProperties,
+      Registry registry) {
     this.applicationContext = applicationContext;
     this.retrySupport = retrySupport;
     this.objectMapper = objectMapper;
     this.front50Service = front50Service;
     this.jestClient = jestClient;
+    this.registry = registry;
     this.activeElasticSearchIndex = elasticSearchConfigProperties.getActiveIndex();
     this.mappingTypeName = elasticSearchConfigProperties.getMappingTypeName();
+    this.bulkIndexBatchSize = elasticSearchConfigProperties.getBulkIndexBatchSize();
+    this.bulkIndexExecutor =
+        Executors.newFixedThreadPool(
+            elasticSearchConfigProperties.getBulkIndexConcurrency(),
+            new ThreadFactoryBuilder()
+                .setNameFormat(
+                    ElasticSearchEntityTagsProvider.class.getSimpleName() + "-bulkIndex-%d")
+                .setDaemon(true)
+                .build());
   }
 
   @Override
@@ -215,46 +237,103 @@ public class ElasticSearchEntityTagsProvider implements EntityTagsProvider {
 
   @Override
   public void bulkIndex(Collection<EntityTags> multipleEntityTags) {
-    Lists.partition(new ArrayList<>(multipleEntityTags), 1000)
-        .forEach(
-            tags -> {
-              Bulk.Builder builder = new Bulk.Builder().defaultIndex(activeElasticSearchIndex);
+    AtomicLong countIndexed = new AtomicLong();
+    List<CompletableFuture<Void>> batches =
+        Lists.partition(new ArrayList<>(multipleEntityTags), bulkIndexBatchSize).stream()
+            .map(
+                tags ->
+                    CompletableFuture.runAsync(
+                        () -> {
+                          indexBatch(tags);
+                          log.debug(
+                              "Indexed {} out of {} entity tags",
+                              countIndexed.addAndGet(tags.size()),
+                              multipleEntityTags.size());
+                        },
+                        bulkIndexExecutor))
+            .collect(Collectors.toList());
 
-              for (EntityTags entityTags : tags) {
-                Map tag =
-                    objectMapper.convertValue(prepareForWrite(objectMapper, entityTags), Map.class);
-                builder =
-                    builder.addAction(
-                        new Index.Builder(tag)
-                            .index(activeElasticSearchIndex)
-                            .type(mappingTypeName)
-                            .id(entityTags.getId())
-                            .build());
-              }
+    try {
+      CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof ElasticSearchException) {
+        throw (ElasticSearchException) e.getCause();
+      }
+      throw e;
+    }
+  }
 
-              Bulk bulk = builder.build();
-              retrySupport.retry(
-                  () -> {
-                    try {
-                      JestResult jestResult = jestClient.execute(bulk);
-                      if (!jestResult.isSucceeded()) {
-                        throw new ElasticSearchException(
-                            format(
-                                "Failed to index bulk entity tags, reason: '%s'",
-                                jestResult.getErrorMessage()));
-                      }
-                      return true;
-                    } catch (IOException e) {
-                      String message =
-                          format("Failed to index bulk entity tags, reason: '%s'", e.getMessage());
-                      log.error(message + " ... retrying!");
-                      throw new ElasticSearchException(message);
-                    }
-                  },
-                  5,
-                  1000,
-                  false);
-            });
+  /**
+   * Indexes a single batch of entity tags, only the items that Elasticsearch reports as failed are
+   * retried (up to 5 attempts).
+   */
+  private void indexBatch(List<EntityTags> tags) {
+    Map<String, EntityTags> pending = new LinkedHashMap<>();
+    tags.forEach(entityTags -> pending.put(entityTags.getId(), entityTags));
+
+    long startTime = registry.clock().monotonicTime();
+    try {
+      retrySupport.retry(
+          () -> {
+            indexPending(pending);
+            return true;
+          },
+          5,
+          1000,
+          false);
+    } finally {
+      registry
+          .timer("entityTags.bulkIndex.batches")
+          .record(registry.clock().monotonicTime() - startTime, TimeUnit.NANOSECONDS);
+      registry
+          .counter("entityTags.bulkIndex.items", "success", "true")
+          .increment(tags.size() - pending.size());
+      registry.counter("entityTags.bulkIndex.items", "success", "false").increment(pending.size());
+    }
+  }
+
+  /** Bulk indexes the pending entity tags, removing those that were indexed from it. */
+  private void indexPending(Map<String, EntityTags> pending) {
+    Bulk.Builder builder = new Bulk.Builder().defaultIndex(activeElasticSearchIndex);
+    for (EntityTags entityTags : pending.values()) {
+      Map tag = objectMapper.convertValue(prepareForWrite(objectMapper, entityTags), Map.class);
+      builder =
+          builder.addAction(
+              new Index.Builder(tag)
+                  .index(activeElasticSearchIndex)
+                  .type(mappingTypeName)
+                  .id(entityTags.getId())
+                  .build());
+    }
+
+    BulkResult bulkResult;
+    try {
+      bulkResult = jestClient.execute(builder.build());
+    } catch (IOException e) {
+      String message =
+          format(
+              "Failed to index %d bulk entity tags, reason: '%s'", pending.size(), e.getMessage());
+      log.error(message + " ... retrying!");
+      throw new ElasticSearchException(message);
+    }
+
+    if (bulkResult.isSucceeded()) {
+      pending.clear();
+      return;
+    }
+
+    Set<String> failedIds =
+        bulkResult.getFailedItems().stream().map(item -> item.id).collect(Collectors.toSet());
+    if (!failedIds.isEmpty()) {
+      // otherwise the bulk request itself was rejected, and all of it is retried
+      pending.keySet().retainAll(failedIds);
+    }
+    String message =
+        format(
+            "Failed to index %d bulk entity tags, reason: '%s'",
+            pending.size(), bulkResult.getErrorMessage());
+    log.error(message + " ... retrying!");
+    throw new ElasticSearchException(message);
   }
 
   @Override
@@ -333,12 +412,18 @@ public class ElasticSearchEntityTagsProvider implements EntityTagsProvider {
         filteredEntityTags.size(),
         entityTags.size() - filteredEntityTags.size());
 
+    long startTime = System.currentTimeMillis();
     bulkIndex(
         filteredEntityTags.stream()
             .filter(e -> e.getEntityRef() != null)
             .collect(Collectors.toList()));
 
-    log.info("Indexed {} entity tags", filteredEntityTags.size());
+    long durationMs = Math.max(1, System.currentTimeMillis() - startTime);
+    log.info(
+        "Indexed {} entity tags in {}ms ({} entity tags/s)",
+        filteredEntityTags.size(),
+        durationMs,
+        filteredEntityTags.size() * 1000L / durationMs);
   }
 
   @Override
@@ -355,7 +440,7 @@ public class ElasticSearchEntityTagsProvider implements EntityTagsProvider {
                                     .getEntityType())
                             .orElse("unknown")));
 
-    Map<String, List<EntityTags>> entityTagsByEntityTypeElasticsearch = new HashMap<>();
+    Map<String, Set<String>> entityIdsByEntityTypeElasticsearch = new HashMap<>();
     entityTagsByEntityTypeFront50
         .keySet()
         .forEach(
@@ -364,8 +449,9 @@ public class ElasticSearchEntityTagsProvider implements EntityTagsProvider {
               queryBuilder =
                   queryBuilder.must(QueryBuilders.termQuery("entityRef.entityType", entityType));
 
-              entityTagsByEntityTypeElasticsearch.put(
-                  entityType, fetchAll(queryBuilder, 5000, "2m"));
+              // only the ids are compared, avoid materializing every indexed document
+              entityIdsByEntityTypeElasticsearch.put(
+                  entityType, fetchAllIds(queryBuilder, 5000, "2m"));
             });
 
     Map<String, Map> metadata = new HashMap<>();
@@ -383,9 +469,7 @@ public class ElasticSearchEntityTagsProvider implements EntityTagsProvider {
                       .collect(Collectors.toSet());
 
               Set<String> entityIdsElasticsearch =
-                  entityTagsByEntityTypeElasticsearch.get(entityType).stream()
-                      .map(EntityTags::getId)
-                      .collect(Collectors.toSet());
+                  entityIdsByEntityTypeElasticsearch.get(entityType);
 
               entityTypeMetadata.put("front50_count", entityIdsFront50.size());
               entityTypeMetadata.put("elasticsearch_count", entityIdsElasticsearch.size());
@@ -703,33 +787,56 @@ public class ElasticSearchEntityTagsProvider implements EntityTagsProvider {
   }
 
   private List<EntityTags> fetchAll(QueryBuilder queryBuilder, int scrollSize, String scrollTime) {
-    SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-    searchSourceBuilder.query(queryBuilder);
+    List<EntityTags> allEntityTags = new ArrayList<>();
+    scroll(
+        new SearchSourceBuilder().query(queryBuilder),
+        scrollSize,
+        scrollTime,
+        result -> {
+          List<EntityTags> entityTags = result.getSourceAsObjectList(EntityTags.class);
+          allEntityTags.addAll(entityTags);
+          return entityTags.size();
+        });
+    return allEntityTags;
+  }
 
-    Search.Builder builder =
-        new Search.Builder(searchSourceBuilder.toString()).addIndex(activeElasticSearchIndex);
+  private Set<String> fetchAllIds(QueryBuilder queryBuilder, int scrollSize, String scrollTime) {
+    Set<String> allIds = new HashSet<>();
+    scroll(
+        new SearchSourceBuilder().query(queryBuilder).fetchSource(new String[] {"id"}, null),
+        scrollSize,
+        scrollTime,
+        result -> collectIds(result, allIds));
+    return allIds;
+  }
 
+  /**
+   * Scrolls through all hits of a search, handing each page of results to {@code collector} until
+   * it reports a page without hits.
+   */
+  private void scroll(
+      SearchSourceBuilder searchSourceBuilder,
+      int scrollSize,
+      String scrollTime,
+      Function<JestResult, Integer> collector) {
     Search search =
-        builder
+        new Search.Builder(searchSourceBuilder.toString())
+            .addIndex(activeElasticSearchIndex)
             .setParameter(Parameters.SIZE, scrollSize)
             .setParameter(Parameters.SCROLL, scrollTime)
             .build();
 
-    List<EntityTags> allEntityTags = new ArrayList<>();
-
     JestResult result;
     try {
       result = jestClient.execute(search);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-    Collection<EntityTags> entityTags = result.getSourceAsObjectList(EntityTags.class);
-    allEntityTags.addAll(entityTags);
-
+    int hits = collector.apply(result);
     String scrollId = result.getJsonObject().get("_scroll_id").getAsString();
 
     try {
-      while (entityTags.size() > 0) {
+      while (hits > 0) {
         SearchScroll scroll = new SearchScroll.Builder(scrollId, scrollTime).build();
 
         try {
@@ -738,13 +845,9 @@ public class ElasticSearchEntityTagsProvider implements EntityTagsProvider {
           throw new RuntimeException(e);
         }
 
-        entityTags = result.getSourceAsObjectList(EntityTags.class);
-        allEntityTags.addAll(entityTags);
-
+        hits = collector.apply(result);
         scrollId = result.getJsonObject().getAsJsonPrimitive("_scroll_id").getAsString();
       }
-
-      return allEntityTags;
     } finally {
       try {
         jestClient.execute(new ClearScroll.Builder().addScrollId(scrollId).build());
@@ -754,6 +857,18 @@ public class ElasticSearchEntityTagsProvider implements EntityTagsProvider {
     }
   }
 
+  private static int collectIds(JestResult result, Set<String> ids) {
+    int hits = 0;
+    for (JsonElement hit : result.getJsonObject().getAsJsonObject("hits").getAsJsonArray("hits")) {
+      JsonObject source = hit.getAsJsonObject().getAsJsonObject("_source");
+      if (source != null && source.has("id")) {
+        ids.add(source.get("id").getAsString());
+      }
+      hits++;
+    }
+    return hits;
+  }
+
   private ElasticSearchEntityTagsReconciler getElasticSearchEntityTagsReconciler() {
     return applicationContext.getBean(ElasticSearchEntityTagsReconciler.class);
   }
@@ -36,6 +36,11 @@ public class ElasticSearchConfigProperties {
   // recommended for forward compatibility with Elasticsearch 7.0.
   private String mappingTypeName = "_doc";
 
+  // Entity tags are bulk indexed in batches of bulkIndexBatchSize, with up to
+  // bulkIndexConcurrency batches in flight at once.
+  private int bulkIndexBatchSize = 1000;
+  private int bulkIndexConcurrency = 4;
+
   public String getActiveIndex() {
     return activeIndex;
   }
@@ -75,4 +80,20 @@ public class ElasticSearchConfigProperties {
   public String getMappingTypeName() {
     return mappingTypeName;
   }
+
+  public int getBulkIndexBatchSize() {
+    return bulkIndexBatchSize;
+  }
+
+  public void setBulkIndexBatchSize(int bulkIndexBatchSize) {
+    this.bulkIndexBatchSize = bulkIndexBatchSize;
+  }
+
+  public int getBulkIndexConcurrency() {
+    return bulkIndexConcurrency;
+  }
+
+  public void setBulkIndexConcurrency(int bulkIndexConcurrency) {
+    this.bulkIndexConcurrency = bulkIndexConcurrency;
+  }
 }
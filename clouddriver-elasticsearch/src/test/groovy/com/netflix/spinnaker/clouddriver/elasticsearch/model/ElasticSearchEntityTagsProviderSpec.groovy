@@ -18,13 +18,19 @@
 package com.netflix.spinnaker.clouddriver.elasticsearch.model
 
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.google.gson.Gson
+import com.google.gson.JsonParser
+import com.netflix.spectator.api.NoopRegistry
 import com.netflix.spinnaker.clouddriver.core.services.Front50Service
 import com.netflix.spinnaker.clouddriver.model.EntityTags
 import com.netflix.spinnaker.config.ElasticSearchConfig
 import com.netflix.spinnaker.config.ElasticSearchConfigProperties
 import com.netflix.spinnaker.kork.core.RetrySupport
+import groovy.json.JsonOutput
 import io.searchbox.client.JestClient
 import io.searchbox.client.JestResult
+import io.searchbox.core.Bulk
+import io.searchbox.core.BulkResult
 import io.searchbox.indices.CreateIndex
 import io.searchbox.indices.DeleteIndex
 import io.searchbox.indices.Refresh
@@ -179,7 +185,8 @@ class ElasticSearchEntityTagsProviderSpec extends Specification {
       objectMapper,
       front50Service,
       jestClient,
-      elasticSearchConfigProperties
+      elasticSearchConfigProperties,
+      new NoopRegistry()
     )
   }
 
@@ -325,6 +332,44 @@ class ElasticSearchEntityTagsProviderSpec extends Specification {
     verifyNotIndexed(allEntityTags[2])
   }
 
+  def "should only retry the entity tags that failed to index (bulk)"() {
+    given:
+    def bulkJestClient = Mock(JestClient)
+    def provider = new ElasticSearchEntityTagsProvider(
+      applicationContext,
+      retrySupport,
+      objectMapper,
+      front50Service,
+      bulkJestClient,
+      elasticSearchConfigProperties,
+      new NoopRegistry()
+    )
+    def allEntityTags = [
+      buildEntityTags("aws:servergroup:clouddriver-main-v001:myaccount:us-west-1", [:]),
+      buildEntityTags("aws:servergroup:clouddriver-main-v002:myaccount:us-west-1", [:]),
+    ]
+    def bulkRequests = []
+
+    when:
+    provider.bulkIndex(allEntityTags)
+
+    then:
+    2 * bulkJestClient.execute(_ as Bulk) >> { Bulk bulk ->
+      bulkRequests << bulk.getData(new Gson())
+      return bulkRequests.size() == 1 ? bulkResult(allEntityTags[0].id, allEntityTags[1].id) : bulkResult(null, allEntityTags[1].id)
+    }
+    bulkRequests[0].contains(allEntityTags[0].id) && bulkRequests[0].contains(allEntityTags[1].id)
+    !bulkRequests[1].contains(allEntityTags[0].id) && bulkRequests[1].contains(allEntityTags[1].id)
+
+    when:
+    provider.bulkIndex(allEntityTags)
+
+    then:
+    5 * bulkJestClient.execute(_ as Bulk) >> { bulkResult(null, allEntityTags[0].id) }
+    def e = thrown(ElasticSearchException)
+    e.message.contains("Failed to index 1 bulk entity tags")
+  }
+
   def "should delete all entity tags in namespace"() {
     given:
     def allEntityTags = [
@@ -411,6 +456,26 @@ class ElasticSearchEntityTagsProviderSpec extends Specification {
     )
   }
 
+  /**
+   * A bulk result where the first id failed to index and the second succeeded (either may be null).
+   */
+  private static BulkResult bulkResult(String failedId, String indexedId) {
+    def items = []
+    if (failedId) {
+      items << [index: [_index: "tags_v1", _type: "_doc", _id: failedId, status: 500, error: [type: "es_rejected_execution_exception", reason: "rejected"]]]
+    }
+    if (indexedId) {
+      items << [index: [_index: "tags_v1", _type: "_doc", _id: indexedId, status: 201]]
+    }
+    def json = JsonOutput.toJson([errors: failedId != null, items: items])
+    def result = new BulkResult(new Gson())
+    result.setJsonString(json)
+    result.setJsonObject(new JsonParser().parse(json).getAsJsonObject())
+    result.setSucceeded(failedId == null)
+    result.setErrorMessage(failedId ? "One or more of the items in the Bulk request failed" : null)
+    return result
+  }
+
   private void refreshIndices() {
     JestResult result = jestClient.execute(new Refresh.Builder().build())
     if (!result.isSucceeded()) {
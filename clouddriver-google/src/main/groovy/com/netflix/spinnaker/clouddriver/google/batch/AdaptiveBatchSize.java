@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.google.batch;
+
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.compute.Compute;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The number of requests sent per batch through a {@link Compute} client, shared by {@link
+ * GoogleBatchRequest} and the BatchComputeRequest implementation. It halves, down to
+ * MIN_BATCH_SIZE, after an execution where any request was rate limited, and grows back by
+ * MIN_BATCH_SIZE after each execution that was not, up to MAX_BATCH_SIZE.
+ */
+@Slf4j
+public final class AdaptiveBatchSize {
+
+  // Platform-specified max to not overwhelm batch backends.
+  public static final int MAX_BATCH_SIZE = 100;
+  public static final int MIN_BATCH_SIZE = 10;
+
+  /**
+   * Each {@link Compute} client belongs to a single account (and therefore project), so it is used
+   * to key that project's batch size.
+   */
+  private static final LoadingCache<Compute, AdaptiveBatchSize> BATCH_SIZES =
+      CacheBuilder.newBuilder().weakKeys().build(CacheLoader.from(AdaptiveBatchSize::new));
+
+  private final AtomicInteger batchSize = new AtomicInteger(MAX_BATCH_SIZE);
+
+  private AdaptiveBatchSize() {}
+
+  public static AdaptiveBatchSize forClient(Compute compute) {
+    return BATCH_SIZES.getUnchecked(compute);
+  }
+
+  public int get() {
+    return batchSize.get();
+  }
+
+  public void update(boolean rateLimited) {
+    int previous =
+        batchSize.getAndUpdate(
+            size ->
+                rateLimited
+                    ? Math.max(MIN_BATCH_SIZE, size / 2)
+                    : Math.min(MAX_BATCH_SIZE, size + MIN_BATCH_SIZE));
+    if (rateLimited && previous > MIN_BATCH_SIZE) {
+      log.warn(
+          "Rate limited by GCE, reducing batch size to {}", Math.max(MIN_BATCH_SIZE, previous / 2));
+    }
+  }
+
+  /** Wraps a callback to set rateLimited when its request is rate limited. */
+  public static <T> JsonBatchCallback<T> trackingRateLimits(
+      JsonBatchCallback<T> callback, AtomicBoolean rateLimited) {
+    return new RateLimitAwareCallback<>(callback, rateLimited);
+  }
+
+  @AllArgsConstructor
+  private static class RateLimitAwareCallback<T> extends JsonBatchCallback<T> {
+    private final JsonBatchCallback<T> delegate;
+    private final AtomicBoolean rateLimited;
+
+    @Override
+    public void onSuccess(T t, HttpHeaders responseHeaders) throws IOException {
+      delegate.onSuccess(t, responseHeaders);
+    }
+
+    @Override
+    public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) throws IOException {
+      if (e.getCode() == 429
+          || (e.getErrors() != null
+              && e.getErrors().stream()
+                  .anyMatch(
+                      error ->
+                          "rateLimitExceeded".equals(error.getReason())
+                              || "userRateLimitExceeded".equals(error.getReason())))) {
+        rateLimited.set(true);
+      }
+      delegate.onFailure(e, responseHeaders);
+    }
+  }
+}
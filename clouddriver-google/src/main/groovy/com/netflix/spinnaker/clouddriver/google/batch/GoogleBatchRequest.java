@@ -22,14 +22,22 @@ import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.services.compute.Compute;
 import com.google.api.services.compute.ComputeRequest;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -38,11 +46,29 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class GoogleBatchRequest {
 
-  private static final int MAX_BATCH_SIZE =
-      100; // Platform specified max to not overwhelm batch backends.
+  @VisibleForTesting static final int MAX_CONCURRENT_BATCHES_PER_CLIENT = 10;
   private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(2);
   private static final int DEFAULT_READ_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(2);
 
+  /**
+   * Batches from every GoogleBatchRequest run on this pool instead of a pool per execute(). A batch
+   * is only submitted once it holds one of its client's permits, so the pool never has more than
+   * MAX_CONCURRENT_BATCHES_PER_CLIENT busy threads per client.
+   */
+  private static final ExecutorService BATCH_EXECUTOR =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder()
+              .setNameFormat(GoogleBatchRequest.class.getSimpleName() + "-%d")
+              .setDaemon(true)
+              .build());
+
+  /**
+   * Each {@link Compute} client belongs to a single account (and therefore project), so it is used
+   * to key that project's concurrency budget.
+   */
+  private static final LoadingCache<Compute, ClientBudget> CLIENT_BUDGETS =
+      CacheBuilder.newBuilder().weakKeys().build(CacheLoader.from(ClientBudget::new));
+
   private List<QueuedRequest> queuedRequests;
   private String clouddriverUserAgentApplicationName;
   private Compute compute;
@@ -59,15 +85,23 @@ public class GoogleBatchRequest {
       return;
     }
 
+    ClientBudget budget = CLIENT_BUDGETS.getUnchecked(compute);
+    AdaptiveBatchSize batchSize = AdaptiveBatchSize.forClient(compute);
+    AtomicBoolean rateLimited = new AtomicBoolean();
+
     List<BatchRequest> queuedBatches = new ArrayList<>();
-    List<List<QueuedRequest>> requestPartitions = Lists.partition(queuedRequests, MAX_BATCH_SIZE);
+    List<List<QueuedRequest>> requestPartitions =
+        Lists.partition(queuedRequests, batchSize.get());
     requestPartitions.forEach(
         requestPart -> {
           BatchRequest newBatch = newBatch();
           requestPart.forEach(
               qr -> {
                 try {
-                  qr.getRequest().queue(newBatch, qr.getCallback());
+                  qr.getRequest()
+                      .queue(
+                          newBatch,
+                          AdaptiveBatchSize.trackingRateLimits(qr.getCallback(), rateLimited));
                 } catch (IOException ioe) {
                   log.error("Queueing request {} in batch failed.", qr);
                   throw new RuntimeException(ioe);
@@ -76,23 +110,29 @@ public class GoogleBatchRequest {
           queuedBatches.add(newBatch);
         });
 
-    ExecutorService threadPool = new ForkJoinPool(10);
-    try {
-      threadPool
-          .submit(() -> queuedBatches.stream().parallel().forEach(this::executeInternalBatch))
-          .get();
-    } catch (InterruptedException | ExecutionException e) {
-      throw new RuntimeException(e);
-    }
-    threadPool.shutdown();
-  }
-
-  private void executeInternalBatch(BatchRequest b) {
+    // The client's budget is acquired here, before a batch is handed to the pool, so that batches
+    // waiting for their turn don't each park a pool thread.
+    List<PermittedBatch> submitted = new ArrayList<>();
+    List<Future<?>> futures = new ArrayList<>();
     try {
-      b.execute();
-    } catch (IOException ioe) {
-      log.error("Executing batch {} failed.", b);
-      throw new RuntimeException(ioe);
+      for (BatchRequest batch : queuedBatches) {
+        budget.getPermits().acquire();
+        PermittedBatch permittedBatch = new PermittedBatch(budget, batch);
+        submitted.add(permittedBatch);
+        futures.add(BATCH_EXECUTOR.submit(permittedBatch));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException | ExecutionException | RuntimeException e) {
+      submitted.forEach(PermittedBatch::abandon);
+      futures.forEach(f -> f.cancel(true));
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+    } finally {
+      batchSize.update(rateLimited.get());
     }
   }
 
@@ -122,4 +162,49 @@ public class GoogleBatchRequest {
     private ComputeRequest request;
     private JsonBatchCallback callback;
   }
+
+  /** Limits a client to MAX_CONCURRENT_BATCHES_PER_CLIENT batches in flight. */
+  private static class ClientBudget {
+    private final Semaphore permits = new Semaphore(MAX_CONCURRENT_BATCHES_PER_CLIENT);
+
+    Semaphore getPermits() {
+      return permits;
+    }
+  }
+
+  /**
+   * A batch holding one of its client's permits. The permit is released exactly once, either after
+   * the batch ran or when it is abandoned before it started.
+   */
+  private static class PermittedBatch implements Runnable {
+    private final ClientBudget budget;
+    private final BatchRequest batch;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    PermittedBatch(ClientBudget budget, BatchRequest batch) {
+      this.budget = budget;
+      this.batch = batch;
+    }
+
+    @Override
+    public void run() {
+      if (!claimed.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        batch.execute();
+      } catch (IOException ioe) {
+        log.error("Executing batch {} failed.", batch);
+        throw new RuntimeException(ioe);
+      } finally {
+        budget.getPermits().release();
+      }
+    }
+
+    void abandon() {
+      if (claimed.compareAndSet(false, true)) {
+        budget.getPermits().release();
+      }
+    }
+  }
 }
@@ -30,6 +30,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.netflix.spinnaker.clouddriver.google.batch.AdaptiveBatchSize;
 import com.netflix.spectator.api.Registry;
 import java.io.IOException;
 import java.io.InterruptedIOException;
@@ -41,6 +42,7 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
@@ -50,8 +52,7 @@ import org.apache.http.client.HttpResponseException;
 final class BatchComputeRequestImpl<RequestT extends ComputeRequest<ResponseT>, ResponseT>
     implements BatchComputeRequest<RequestT, ResponseT> {
 
-  // Platform-specified max to not overwhelm batch backends.
-  @VisibleForTesting static final int MAX_BATCH_SIZE = 100;
+  @VisibleForTesting static final int MAX_BATCH_SIZE = AdaptiveBatchSize.MAX_BATCH_SIZE;
   private static final Duration CONNECT_TIMEOUT = Duration.ofMinutes(2);
   private static final Duration READ_TIMEOUT = Duration.ofMinutes(2);
 
@@ -82,9 +83,12 @@ final class BatchComputeRequestImpl<RequestT extends ComputeRequest<ResponseT>,
       return;
     }
 
+    // the batch size shrinks while the client's project is rate limited, see AdaptiveBatchSize
+    AdaptiveBatchSize batchSize = AdaptiveBatchSize.forClient(compute);
+    AtomicBoolean rateLimited = new AtomicBoolean();
     List<List<QueuedRequest<RequestT, ResponseT>>> requestPartitions =
-        partition(queuedRequests, MAX_BATCH_SIZE);
-    List<BatchRequest> queuedBatches = createBatchRequests(requestPartitions);
+        partition(queuedRequests, batchSize.get());
+    List<BatchRequest> queuedBatches = createBatchRequests(requestPartitions, rateLimited);
 
     var statusCode = "500";
     String success = "false";
@@ -97,6 +101,7 @@ final class BatchComputeRequestImpl<RequestT extends ComputeRequest<ResponseT>,
       statusCode = Integer.toString(e.getStatusCode());
       throw e;
     } finally {
+      batchSize.update(rateLimited.get());
       long nanos = registry.clock().monotonicTime() - start;
       String status = statusCode.charAt(0) + "xx";
       Map<String, String> tags =
@@ -144,7 +149,8 @@ final class BatchComputeRequestImpl<RequestT extends ComputeRequest<ResponseT>,
   }
 
   private List<BatchRequest> createBatchRequests(
-      List<List<QueuedRequest<RequestT, ResponseT>>> requestPartitions) throws IOException {
+      List<List<QueuedRequest<RequestT, ResponseT>>> requestPartitions, AtomicBoolean rateLimited)
+      throws IOException {
 
     List<BatchRequest> queuedBatches = new ArrayList<>();
 
@@ -153,7 +159,14 @@ final class BatchComputeRequestImpl<RequestT extends ComputeRequest<ResponseT>,
           partition -> {
             BatchRequest batch = newBatch();
             partition.forEach(
-                qr -> wrapIOException(() -> qr.getRequest().queue(batch, qr.getCallback())));
+                qr ->
+                    wrapIOException(
+                        () ->
+                            qr.getRequest()
+                                .queue(
+                                    batch,
+                                    AdaptiveBatchSize.trackingRateLimits(
+                                        qr.getCallback(), rateLimited))));
             queuedBatches.add(batch);
           });
       return queuedBatches;
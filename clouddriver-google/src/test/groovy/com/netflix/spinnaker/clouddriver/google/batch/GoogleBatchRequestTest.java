@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.google.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Image;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class GoogleBatchRequestTest {
+
+  private static final String USER_AGENT = "spinnaker-test";
+  private static final String MIME_BOUNDARY = "batch_foobarbaz";
+  private static final String BATCH_CONTENT_TYPE = "multipart/mixed; boundary=" + MIME_BOUNDARY;
+  private static final int BATCH_SIZE = 100;
+  private static final int BATCHES = 25;
+
+  @Test
+  public void limitsConcurrentBatchesPerClient() throws IOException {
+    ConcurrencyTrackingTransport transport = new ConcurrencyTrackingTransport();
+    Compute compute =
+        new Compute(
+            transport, JacksonFactory.getDefaultInstance(), /* httpRequestInitializer= */ null);
+
+    GoogleBatchRequest batchRequest = new GoogleBatchRequest(compute, USER_AGENT);
+    CountResponses responses = new CountResponses();
+    for (int i = 0; i < BATCH_SIZE * BATCHES; ++i) {
+      batchRequest.queue(compute.images().get("project", "image-name"), responses);
+    }
+
+    batchRequest.execute();
+
+    assertThat(responses.successes).hasValue(BATCH_SIZE * BATCHES);
+    assertThat(transport.requests).hasValue(BATCHES);
+    assertThat(transport.maxInFlight.get())
+        .isGreaterThan(1)
+        .isLessThanOrEqualTo(GoogleBatchRequest.MAX_CONCURRENT_BATCHES_PER_CLIENT);
+    assertThat(
+            Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().startsWith(GoogleBatchRequest.class.getSimpleName()))
+                .count())
+        .isLessThanOrEqualTo(GoogleBatchRequest.MAX_CONCURRENT_BATCHES_PER_CLIENT);
+  }
+
+  /** Answers every batch successfully after a short delay, recording how many overlap. */
+  private static class ConcurrencyTrackingTransport extends HttpTransport {
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Override
+    protected LowLevelHttpRequest buildRequest(String method, String url) {
+      return new LowLevelHttpRequest() {
+        @Override
+        public void addHeader(String name, String value) {}
+
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          requests.incrementAndGet();
+          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          try {
+            Thread.sleep(20);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+          } finally {
+            inFlight.decrementAndGet();
+          }
+          return successBatchResponse();
+        }
+      };
+    }
+  }
+
+  private static MockLowLevelHttpResponse successBatchResponse() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < BATCH_SIZE; ++i) {
+      sb.append("--" + MIME_BOUNDARY + "\n")
+          .append("Content-Type: application/http\n")
+          .append('\n')
+          .append("HTTP/1.1 200 OK\n")
+          .append("Content-Type: application/json\n")
+          .append("\n")
+          .append("{\"name\":\"foobar\"}\n\n");
+    }
+    sb.append("--" + MIME_BOUNDARY + "--\n");
+    return new MockLowLevelHttpResponse()
+        .setStatusCode(200)
+        .addHeader("Content-Type", BATCH_CONTENT_TYPE)
+        .setContent(sb.toString());
+  }
+
+  private static class CountResponses extends JsonBatchCallback<Image> {
+    AtomicInteger successes = new AtomicInteger();
+
+    @Override
+    public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) {}
+
+    @Override
+    public void onSuccess(Image image, HttpHeaders responseHeaders) {
+      successes.incrementAndGet();
+    }
+  }
+}
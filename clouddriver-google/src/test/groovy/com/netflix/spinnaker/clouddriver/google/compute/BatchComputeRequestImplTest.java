@@ -166,6 +166,41 @@ public class BatchComputeRequestImplTest {
     assertThat(responses.failures).hasValue(1);
   }
 
+  @Test
+  public void shrinksBatchesAfterRateLimiting() throws IOException {
+
+    StringBuilder rateLimitedContent = new StringBuilder();
+    appendRateLimitedResponse(rateLimitedContent);
+    rateLimitedContent.append(MIME_END);
+
+    int halfBatch = BatchComputeRequestImpl.MAX_BATCH_SIZE / 2;
+    Compute compute =
+        computeWithResponses(
+            () -> batchResponse(rateLimitedContent.toString()),
+            () -> successBatchResponse(halfBatch),
+            () -> successBatchResponse(halfBatch));
+
+    BatchComputeRequest<Get, Image> rateLimited =
+        new BatchComputeRequestImpl<>(
+            compute, registry, USER_AGENT, MoreExecutors.newDirectExecutorService());
+    CountResponses rateLimitedResponses = new CountResponses();
+    rateLimited.queue(request(compute), rateLimitedResponses);
+    rateLimited.execute("batchContext");
+
+    BatchComputeRequest<Get, Image> batchRequest =
+        new BatchComputeRequestImpl<>(
+            compute, registry, USER_AGENT, MoreExecutors.newDirectExecutorService());
+    CountResponses responses = new CountResponses();
+    for (int i = 0; i < BatchComputeRequestImpl.MAX_BATCH_SIZE; ++i) {
+      batchRequest.queue(request(compute), responses);
+    }
+    batchRequest.execute("batchContext");
+
+    assertThat(rateLimitedResponses.failures).hasValue(1);
+    assertThat(responses.successes).hasValue(BatchComputeRequestImpl.MAX_BATCH_SIZE);
+    assertThat(responses.failures).hasValue(0);
+  }
+
   @Test
   public void propagatesFirstException() throws IOException {
 
@@ -418,6 +453,16 @@ public class BatchComputeRequestImplTest {
         .append("{}\n\n");
   }
 
+  private static void appendRateLimitedResponse(StringBuilder sb) {
+    sb.append(MIME_PART_START)
+        .append("Content-Type: application/http\n")
+        .append('\n')
+        .append("HTTP/1.1 429 Too Many Requests\n")
+        .append("Content-Type: application/json\n")
+        .append("\n")
+        .append("{\"error\":{\"code\":429,\"errors\":[{\"reason\":\"rateLimitExceeded\"}]}}\n\n");
+  }
+
   private static class CountResponses extends JsonBatchCallback<Image> {
     AtomicInteger successes = new AtomicInteger();
     AtomicInteger failures = new AtomicInteger();
@@ -17,6 +17,7 @@
 
 package com.netflix.spinnaker.clouddriver.kubernetes.caching.view.provider;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.ImmutableSetMultimap.flatteningToImmutableSetMultimap;
@@ -26,8 +27,12 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimaps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.cats.cache.Cache;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter;
@@ -42,9 +47,16 @@ import com.netflix.spinnaker.clouddriver.kubernetes.op.handler.KubernetesHandler
 import com.netflix.spinnaker.kork.annotations.NonnullByDefault;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,33 +65,62 @@ import org.springframework.stereotype.Component;
 @Component
 @NonnullByDefault
 class KubernetesCacheUtils {
+  /**
+   * Threads reading types concurrently across all calls; further reads queue for a thread while the
+   * calling thread reads one type itself.
+   */
+  private static final int READ_THREADS = 8;
+
   private final Cache cache;
   private final KubernetesSpinnakerKindMap kindMap;
   private final KubernetesAccountResolver resourcePropertyResolver;
+  private final Registry registry;
+  private final Id readsId;
+  private final Id readKeysId;
+  private final ThreadPoolExecutor executorService;
 
   @Autowired
   public KubernetesCacheUtils(
       Cache cache,
       KubernetesSpinnakerKindMap kindMap,
-      KubernetesAccountResolver resourcePropertyResolver) {
+      KubernetesAccountResolver resourcePropertyResolver,
+      Registry registry) {
     this.cache = cache;
     this.kindMap = kindMap;
     this.resourcePropertyResolver = resourcePropertyResolver;
+    this.registry = registry;
+    this.readsId = registry.createId("kubernetes.cacheUtils.reads");
+    this.readKeysId = registry.createId("kubernetes.cacheUtils.readKeys");
+    this.executorService =
+        new ThreadPoolExecutor(
+            READ_THREADS,
+            READ_THREADS,
+            1,
+            TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat(getClass().getSimpleName() + "-%d")
+                .setDaemon(true)
+                .build());
+    this.executorService.allowCoreThreadTimeOut(true);
   }
 
   Collection<CacheData> getAllKeys(String type) {
+    recordRead(type);
     return cache.getAll(type);
   }
 
   Collection<String> getAllKeysMatchingPattern(String type, String key) {
+    recordRead(type);
     return cache.filterIdentifiers(type, key);
   }
 
   Collection<CacheData> getAllDataMatchingPattern(String type, String key) {
-    return cache.getAll(type, getAllKeysMatchingPattern(type, key));
+    return getAll(type, getAllKeysMatchingPattern(type, key)).values();
   }
 
   Optional<CacheData> getSingleEntry(String type, String key) {
+    recordRead(type);
     return Optional.ofNullable(cache.get(type, key));
   }
 
@@ -110,6 +151,7 @@ class KubernetesCacheUtils {
 
   Optional<CacheData> getSingleEntryWithRelationships(
       String type, String key, RelationshipCacheFilter cacheFilter) {
+    recordRead(type);
     return Optional.ofNullable(cache.get(type, key, cacheFilter));
   }
 
@@ -142,7 +184,7 @@ class KubernetesCacheUtils {
    */
   Collection<CacheData> getRelationships(
       CacheData cacheData, String relationshipType, Stream<String> relationshipKeys) {
-    return cache.getAll(relationshipType, relationshipKeys.collect(toImmutableSet()));
+    return getAll(relationshipType, relationshipKeys.collect(toImmutableSet())).values();
   }
 
   /** Gets the data for all relationships of a given Spinnaker kind for a single CacheData item. */
@@ -154,11 +196,7 @@ class KubernetesCacheUtils {
   /** Gets the data for all relationships for a single CacheData item. */
   ImmutableCollection<CacheData> getAllRelationships(CacheData cacheData) {
     ImmutableList.Builder<CacheData> result = ImmutableList.builder();
-    cacheData
-        .getRelationships()
-        .forEach(
-            (kind, relationships) ->
-                result.addAll(getRelationships(cacheData, kind, relationships.stream())));
+    getAll(cacheData.getRelationships()).values().forEach(data -> result.addAll(data.values()));
     return result.build();
   }
 
@@ -168,31 +206,73 @@ class KubernetesCacheUtils {
    */
   ImmutableMultimap<String, CacheData> getRelationships(
       Collection<CacheData> cacheData, SpinnakerKind spinnakerKind) {
+    ImmutableMap<String, ImmutableMultimap<String, String>> relKeysByType =
+        relationshipTypes(spinnakerKind)
+            .collect(toImmutableMap(type -> type, type -> getRelationshipKeys(cacheData, type)));
+
+    // Prefetch the cache data for all relationships, of all types at once. This is to avoid making
+    // a separate call to the cache for each of the source items.
+    ImmutableMap<String, ImmutableMap<String, CacheData>> relDataByType =
+        getAll(Maps.transformValues(relKeysByType, ImmutableMultimap::values));
+
     ImmutableListMultimap.Builder<String, CacheData> result = ImmutableListMultimap.builder();
-    relationshipTypes(spinnakerKind)
-        .forEach(type -> result.putAll(getRelationships(cacheData, type)));
+    relKeysByType.forEach(
+        (type, relKeys) -> {
+          ImmutableMap<String, CacheData> relData =
+              relDataByType.getOrDefault(type, ImmutableMap.of());
+          // Note that the filterValues here is important to handle race conditions where a
+          // relationship is deleted by the time we look it up; in that case, relData might not
+          // contain the data for a requested key.
+          result.putAll(
+              Multimaps.filterValues(
+                  Multimaps.transformValues(relKeys, relData::get), Objects::nonNull));
+        });
     return result.build();
   }
 
-  /** Gets the data for all relationships of a given type for a collection of CacheData items. */
-  private Multimap<String, CacheData> getRelationships(
-      Collection<CacheData> cacheData, String type) {
-    ImmutableMultimap<String, String> relKeys = getRelationshipKeys(cacheData, type);
+  /**
+   * Gets the data for the given keys of each type. Types are read concurrently on a bounded pool,
+   * as each is a separate call to the cache, and types without keys are not read at all.
+   */
+  private ImmutableMap<String, ImmutableMap<String, CacheData>> getAll(
+      Map<String, ? extends Collection<String>> keysByType) {
+    List<String> types =
+        keysByType.entrySet().stream()
+            .filter(e -> !e.getValue().isEmpty())
+            .map(Map.Entry::getKey)
+            .collect(toImmutableList());
+    if (types.isEmpty()) {
+      return ImmutableMap.of();
+    }
 
-    // Prefetch the cache data for all relationships. This is to avoid making a separate call
-    // the cache for each of the source items.
-    // Note that relKeys.values() is not deduplicated; we'll defer to the cache implementation
+    Map<String, Future<ImmutableMap<String, CacheData>>> pending = new LinkedHashMap<>();
+    for (String type : types.subList(1, types.size())) {
+      pending.put(type, executorService.submit(() -> getAll(type, keysByType.get(type))));
+    }
+
+    ImmutableMap.Builder<String, ImmutableMap<String, CacheData>> result = ImmutableMap.builder();
+    result.put(types.get(0), getAll(types.get(0), keysByType.get(types.get(0))));
+    pending.forEach((type, data) -> result.put(type, Futures.getUnchecked(data)));
+    return result.build();
+  }
+
+  /** Gets the data for the given keys of a type, by key. */
+  private ImmutableMap<String, CacheData> getAll(String type, Collection<String> keys) {
+    if (keys.isEmpty()) {
+      return ImmutableMap.of();
+    }
+
+    recordRead(type);
+    registry.distributionSummary(readKeysId.withTag("type", type)).record(keys.size());
+    // Note that keys are not necessarily deduplicated; we'll defer to the cache implementation
     // to decide whether it's worth deduplicating before fetching data. In the event that we
     // do get back duplicates, we'll just keep the first for each key.
-    ImmutableMap<String, CacheData> relData =
-        cache.getAll(type, relKeys.values()).stream()
-            .collect(toImmutableMap(CacheData::getId, cd -> cd, (cd1, cd2) -> cd1));
-
-    // Note that the filterValues here is important to handle race conditions where a relationship
-    // is deleted by the time we look it up; in that case, relData might not contain the data for
-    // a requested key.
-    return Multimaps.filterValues(
-        Multimaps.transformValues(relKeys, relData::get), Objects::nonNull);
+    return cache.getAll(type, keys).stream()
+        .collect(toImmutableMap(CacheData::getId, cd -> cd, (cd1, cd2) -> cd1));
+  }
+
+  private void recordRead(String type) {
+    registry.counter(readsId.withTag("type", type)).increment();
   }
 
   /** Returns a stream of all relationships of a given type for a given CacheData. */
@@ -17,6 +17,7 @@
 
 package com.netflix.spinnaker.clouddriver.kubernetes.caching.view.provider;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.netflix.spinnaker.clouddriver.kubernetes.caching.Keys.LogicalKind.APPLICATIONS;
@@ -158,15 +159,31 @@ public class KubernetesClusterProvider implements ClusterProvider<KubernetesClus
     ImmutableMultimap<String, CacheData> clusterToServerGroups =
         cacheUtils.getRelationships(clusterData, SERVER_GROUPS);
 
+    // Load the server groups and load balancers of all clusters at once, rather than cluster by
+    // cluster, so that each instance and load balancer is only read once from the cache.
+    ImmutableList<CacheData> allServerGroups =
+        clusterToServerGroups.values().stream()
+            .filter(cacheUtils.distinctById())
+            .collect(toImmutableList());
+    ImmutableMap<String, KubernetesServerGroup> allServerGroupsById =
+        loadServerGroups(allServerGroups);
+    ImmutableMultimap<String, CacheData> serverGroupToLoadBalancers =
+        cacheUtils.getRelationships(allServerGroups, LOAD_BALANCERS);
+
     return clusterData.stream()
         .map(
             clusterDatum -> {
               ImmutableCollection<CacheData> clusterServerGroups =
                   clusterToServerGroups.get(clusterDatum.getId());
               ImmutableMap<String, KubernetesServerGroup> serverGroups =
-                  loadServerGroups(clusterServerGroups);
+                  clusterServerGroups.stream()
+                      .map(CacheData::getId)
+                      .distinct()
+                      .filter(allServerGroupsById::containsKey)
+                      .collect(toImmutableMap(id -> id, allServerGroupsById::get));
               List<KubernetesLoadBalancer> loadBalancers =
-                  cacheUtils.getRelationships(clusterServerGroups, LOAD_BALANCERS).values().stream()
+                  serverGroups.keySet().stream()
+                      .flatMap(id -> serverGroupToLoadBalancers.get(id).stream())
                       .filter(cacheUtils.distinctById())
                       .map(
                           cd ->
@@ -31,9 +31,11 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Iterables;
 import com.netflix.spectator.api.NoopRegistry;
 import com.netflix.spinnaker.cats.agent.AgentDataType;
 import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.cats.cache.AgentExecutionProfile;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.DefaultJsonCacheData;
 import com.netflix.spinnaker.cats.mem.InMemoryCache;
@@ -54,6 +56,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.stream.IntStream;
 import lombok.Value;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.junit.platform.runner.JUnitPlatform;
@@ -256,6 +259,21 @@ final class KubernetesCoreCachingAgentTest {
         .containsExactly(STORAGE_CLASS_NAME);
   }
 
+  @Test
+  public void recordsConversionInTheExecutionProfile() {
+    KubernetesCoreCachingAgent cachingAgent =
+        Iterables.getOnlyElement(createCachingAgents(getNamedAccountCredentials(), 1));
+    AgentExecutionProfile profile = AgentExecutionProfile.start();
+    try {
+      cachingAgent.loadData(new DefaultProviderCache(new InMemoryCache()));
+    } finally {
+      profile.finish();
+    }
+
+    assertThat(profile.phaseNanos()).containsKey(AgentExecutionProfile.Phase.CONVERT);
+    assertThat(AgentExecutionProfile.current()).isNull();
+  }
+
   /**
    * Given an on-demand cache request, constructs a set of caching agents and sends the on-demand
    * request to those agents, returning a collection of all non-null results of handing those
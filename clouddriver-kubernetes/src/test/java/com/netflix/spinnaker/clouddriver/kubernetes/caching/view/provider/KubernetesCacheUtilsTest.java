@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.caching.view.provider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.cats.cache.Cache;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.KubernetesSpinnakerKindMap;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.SpinnakerKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKind;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+
+@RunWith(JUnitPlatform.class)
+final class KubernetesCacheUtilsTest {
+  private static final String REPLICA_SET = KubernetesKind.REPLICA_SET.toString();
+  private static final String STATEFUL_SET = KubernetesKind.STATEFUL_SET.toString();
+  private static final String SERVICE = KubernetesKind.SERVICE.toString();
+  private static final String POD = KubernetesKind.POD.toString();
+
+  private final Cache cache = mock(Cache.class);
+  private final Registry registry = new DefaultRegistry();
+  private KubernetesCacheUtils cacheUtils;
+
+  @BeforeEach
+  void setup() {
+    KubernetesSpinnakerKindMap kindMap = mock(KubernetesSpinnakerKindMap.class);
+    when(kindMap.translateSpinnakerKind(SpinnakerKind.SERVER_GROUPS))
+        .thenReturn(ImmutableSet.of(KubernetesKind.REPLICA_SET, KubernetesKind.STATEFUL_SET));
+    cacheUtils =
+        new KubernetesCacheUtils(cache, kindMap, mock(KubernetesAccountResolver.class), registry);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void readsTheRelationshipsOfAllItemsOnceAndSkipsKindsWithoutAny() {
+    CacheData first = item("deployment-1", ImmutableMap.of(REPLICA_SET, ImmutableList.of("rs-1")));
+    CacheData second =
+        item("deployment-2", ImmutableMap.of(REPLICA_SET, ImmutableList.of("rs-2", "rs-3")));
+    when(cache.getAll(eq(REPLICA_SET), anyCollection()))
+        .thenReturn(
+            ImmutableList.of(
+                item("rs-1", ImmutableMap.of()),
+                item("rs-2", ImmutableMap.of()),
+                item("rs-3", ImmutableMap.of())));
+
+    ImmutableMultimap<String, CacheData> relationships =
+        cacheUtils.getRelationships(ImmutableList.of(first, second), SpinnakerKind.SERVER_GROUPS);
+
+    ArgumentCaptor<Collection<String>> keys = ArgumentCaptor.forClass(Collection.class);
+    verify(cache, times(1)).getAll(eq(REPLICA_SET), keys.capture());
+    assertThat(keys.getValue()).containsExactlyInAnyOrder("rs-1", "rs-2", "rs-3");
+    verify(cache, never()).getAll(eq(STATEFUL_SET), anyCollection());
+    assertThat(reads(REPLICA_SET)).isEqualTo(1);
+    assertThat(reads(STATEFUL_SET)).isEqualTo(0);
+    assertThat(ids(relationships.get("deployment-1"))).containsExactly("rs-1");
+    assertThat(ids(relationships.get("deployment-2"))).containsExactlyInAnyOrder("rs-2", "rs-3");
+  }
+
+  @Test
+  void readsEachRelationshipTypeOfAnItemOnce() {
+    CacheData deployment =
+        item(
+            "deployment-1",
+            ImmutableMap.of(
+                REPLICA_SET, ImmutableList.of("rs-1"),
+                SERVICE, ImmutableList.of("svc-1", "svc-2"),
+                POD, ImmutableList.of()));
+    when(cache.getAll(eq(REPLICA_SET), anyCollection()))
+        .thenReturn(ImmutableList.of(item("rs-1", ImmutableMap.of())));
+    when(cache.getAll(eq(SERVICE), anyCollection()))
+        .thenReturn(
+            ImmutableList.of(item("svc-1", ImmutableMap.of()), item("svc-2", ImmutableMap.of())));
+
+    Collection<CacheData> relationships = cacheUtils.getAllRelationships(deployment);
+
+    verify(cache, times(1)).getAll(eq(REPLICA_SET), anyCollection());
+    verify(cache, times(1)).getAll(eq(SERVICE), anyCollection());
+    verify(cache, never()).getAll(eq(POD), anyCollection());
+    assertThat(reads(POD)).isEqualTo(0);
+    assertThat(ids(relationships)).containsExactlyInAnyOrder("rs-1", "svc-1", "svc-2");
+  }
+
+  private long reads(String type) {
+    return registry
+        .counter(registry.createId("kubernetes.cacheUtils.reads").withTag("type", type))
+        .count();
+  }
+
+  private static List<String> ids(Collection<CacheData> cacheData) {
+    return cacheData.stream().map(CacheData::getId).collect(ImmutableList.toImmutableList());
+  }
+
+  private static CacheData item(
+      String id, Map<String, ? extends Collection<String>> relationships) {
+    return new DefaultCacheData(
+        id, ImmutableMap.of(), ImmutableMap.<String, Collection<String>>copyOf(relationships));
+  }
+}
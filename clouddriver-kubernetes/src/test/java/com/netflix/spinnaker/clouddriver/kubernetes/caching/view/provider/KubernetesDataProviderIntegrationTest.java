@@ -125,7 +125,8 @@ final class KubernetesDataProviderIntegrationTest {
       new KubernetesCacheUtils(
           providerRegistry.getProviderCache(kubernetesProvider.getProviderName()),
           kindMap,
-          accountResolver);
+          accountResolver,
+          registry);
   private static final ImmutableSetMultimap<String, String> manifestsByNamespace =
       ImmutableSetMultimap.<String, String>builder()
           .putAll(
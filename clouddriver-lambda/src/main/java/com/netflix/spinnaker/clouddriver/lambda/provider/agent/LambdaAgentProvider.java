@@ -18,6 +18,7 @@ package com.netflix.spinnaker.clouddriver.lambda.provider.agent;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.awsobjectmapper.AmazonObjectMapperConfigurer;
+import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.cats.agent.Agent;
 import com.netflix.spinnaker.cats.agent.AgentProvider;
 import com.netflix.spinnaker.clouddriver.aws.provider.AwsProvider;
@@ -29,17 +30,25 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class LambdaAgentProvider implements AgentProvider {
   private final ObjectMapper objectMapper;
   private final AmazonClientProvider amazonClientProvider;
+  private final Registry registry;
+  private final int cachingParallelism;
 
   @Autowired
-  public LambdaAgentProvider(AmazonClientProvider amazonClientProvider) {
+  public LambdaAgentProvider(
+      AmazonClientProvider amazonClientProvider,
+      Registry registry,
+      @Value("${aws.lambda.caching-parallelism:8}") int cachingParallelism) {
     this.objectMapper = AmazonObjectMapperConfigurer.createConfigured();
     this.amazonClientProvider = amazonClientProvider;
+    this.registry = registry;
+    this.cachingParallelism = cachingParallelism;
   }
 
   @Override
@@ -57,7 +66,12 @@ public class LambdaAgentProvider implements AgentProvider {
       for (AmazonCredentials.AWSRegion region : netflixAmazonCredentials.getRegions()) {
         agents.add(
             new LambdaCachingAgent(
-                objectMapper, amazonClientProvider, netflixAmazonCredentials, region.getName()));
+                objectMapper,
+                amazonClientProvider,
+                netflixAmazonCredentials,
+                region.getName(),
+                registry,
+                cachingParallelism));
       }
     }
     return agents;
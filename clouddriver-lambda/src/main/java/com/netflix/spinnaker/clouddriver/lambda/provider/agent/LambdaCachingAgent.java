@@ -25,9 +25,11 @@ import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.model.*;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.frigga.Names;
 import com.netflix.spectator.api.DefaultRegistry;
 import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.histogram.PercentileTimer;
 import com.netflix.spinnaker.cats.agent.AccountAware;
 import com.netflix.spinnaker.cats.agent.AgentDataType;
 import com.netflix.spinnaker.cats.agent.CacheResult;
@@ -46,7 +48,13 @@ import com.netflix.spinnaker.clouddriver.cache.OnDemandMetricsSupport;
 import com.netflix.spinnaker.clouddriver.cache.OnDemandType;
 import com.netflix.spinnaker.clouddriver.lambda.cache.Keys;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 
@@ -62,6 +70,8 @@ public class LambdaCachingAgent implements CachingAgent, AccountAware, OnDemandA
         }
       };
 
+  static final int DEFAULT_PARALLELISM = 8;
+
   private final ObjectMapper objectMapper;
 
   private final AmazonClientProvider amazonClientProvider;
@@ -69,18 +79,49 @@ public class LambdaCachingAgent implements CachingAgent, AccountAware, OnDemandA
   private final String region;
   private OnDemandMetricsSupport metricsSupport;
   private final Registry registry;
+  private final ThreadPoolExecutor describeExecutor;
 
   LambdaCachingAgent(
       ObjectMapper objectMapper,
       AmazonClientProvider amazonClientProvider,
       NetflixAmazonCredentials account,
       String region) {
+    this(
+        objectMapper,
+        amazonClientProvider,
+        account,
+        region,
+        new DefaultRegistry(),
+        DEFAULT_PARALLELISM);
+  }
+
+  LambdaCachingAgent(
+      ObjectMapper objectMapper,
+      AmazonClientProvider amazonClientProvider,
+      NetflixAmazonCredentials account,
+      String region,
+      Registry registry,
+      int parallelism) {
     this.objectMapper = objectMapper;
 
     this.amazonClientProvider = amazonClientProvider;
     this.account = account;
     this.region = region;
-    this.registry = new DefaultRegistry();
+    this.registry = registry;
+    // per-function calls still go through the throttled client from the AmazonClientProvider, this
+    // only bounds how many of them are in flight at once. Idle threads are released between cycles.
+    this.describeExecutor =
+        new ThreadPoolExecutor(
+            parallelism,
+            parallelism,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat(account.getName() + "-" + region + "-lambda-describe-%d")
+                .setDaemon(true)
+                .build());
+    this.describeExecutor.allowCoreThreadTimeOut(true);
     this.metricsSupport =
         new OnDemandMetricsSupport(
             registry,
@@ -114,48 +155,20 @@ public class LambdaCachingAgent implements CachingAgent, AccountAware, OnDemandA
 
     AWSLambda lambda = amazonClientProvider.getAmazonLambda(account, region);
 
-    String nextMarker = null;
-    List<FunctionConfiguration> lstFunction = new ArrayList<FunctionConfiguration>();
-
-    do {
-      ListFunctionsRequest listFunctionsRequest = new ListFunctionsRequest();
-      if (nextMarker != null) {
-        listFunctionsRequest.setMarker(nextMarker);
-      }
-
-      ListFunctionsResult listFunctionsResult = lambda.listFunctions(listFunctionsRequest);
-
-      lstFunction.addAll(listFunctionsResult.getFunctions());
-      nextMarker = listFunctionsResult.getNextMarker();
+    List<FunctionConfiguration> lstFunction = timed("listFunctions", () -> listFunctions(lambda));
 
-    } while (nextMarker != null && nextMarker.length() != 0);
+    List<Map<String, Object>> allAttributes =
+        timed("describeFunctions", () -> describeFunctions(lambda, lstFunction));
 
     Collection<CacheData> data = new LinkedList<>();
     Collection<CacheData> appData = new LinkedList<>();
     Map<String, Collection<String>> appRelationships = new HashMap<String, Collection<String>>();
 
     Map<String, Collection<CacheData>> cacheResults = new HashMap<>();
-    for (FunctionConfiguration x : lstFunction) {
-      Map<String, Object> attributes = objectMapper.convertValue(x, ATTRIBUTES);
-      attributes.put("account", account.getName());
-      attributes.put("region", region);
-      attributes.put("revisions", listFunctionRevisions(x.getFunctionArn()));
-      List<AliasConfiguration> allAliases = listAliasConfiguration(x.getFunctionArn());
-      attributes.put("aliasConfigurations", allAliases);
-      List<EventSourceMappingConfiguration> eventSourceMappings =
-          listEventSourceMappingConfiguration(x.getFunctionArn());
-      List<EventSourceMappingConfiguration> aliasEvents = new ArrayList<>();
-      for (AliasConfiguration currAlias : allAliases) {
-        List<EventSourceMappingConfiguration> currAliasEvents =
-            listEventSourceMappingConfiguration(currAlias.getAliasArn());
-        aliasEvents.addAll(currAliasEvents);
-      }
-      eventSourceMappings.addAll(aliasEvents);
-      attributes.put("eventSourceMappings", eventSourceMappings);
-
-      attributes = addConfigAttributes(attributes, x, lambda);
+    for (int i = 0; i < lstFunction.size(); i++) {
+      FunctionConfiguration x = lstFunction.get(i);
+      Map<String, Object> attributes = allAttributes.get(i);
       String functionName = x.getFunctionName();
-      attributes.put("targetGroups", getTargetGroupNames(lambda, functionName));
       Names names = Names.parseName(functionName);
       if (null != names.getApp()) {
         String appKey =
@@ -189,6 +202,104 @@ public class LambdaCachingAgent implements CachingAgent, AccountAware, OnDemandA
     return new DefaultCacheResult(cacheResults);
   }
 
+  private List<FunctionConfiguration> listFunctions(AWSLambda lambda) {
+    String nextMarker = null;
+    List<FunctionConfiguration> lstFunction = new ArrayList<FunctionConfiguration>();
+
+    do {
+      ListFunctionsRequest listFunctionsRequest = new ListFunctionsRequest();
+      if (nextMarker != null) {
+        listFunctionsRequest.setMarker(nextMarker);
+      }
+
+      ListFunctionsResult listFunctionsResult = lambda.listFunctions(listFunctionsRequest);
+
+      lstFunction.addAll(listFunctionsResult.getFunctions());
+      nextMarker = listFunctionsResult.getNextMarker();
+
+    } while (nextMarker != null && nextMarker.length() != 0);
+
+    return lstFunction;
+  }
+
+  /** Describes functions concurrently, returning their attributes in the order given. */
+  private List<Map<String, Object>> describeFunctions(
+      AWSLambda lambda, List<FunctionConfiguration> functions) {
+    List<Future<Map<String, Object>>> futures = new ArrayList<>(functions.size());
+    for (FunctionConfiguration x : functions) {
+      futures.add(describeExecutor.submit(() -> describeFunction(lambda, x)));
+    }
+
+    List<Map<String, Object>> allAttributes = new ArrayList<>(functions.size());
+    try {
+      for (Future<Map<String, Object>> future : futures) {
+        allAttributes.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(f -> f.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while describing lambda functions", e);
+    } catch (ExecutionException e) {
+      futures.forEach(f -> f.cancel(true));
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+
+    registry
+        .counter(
+            registry.createId(
+                "lambda.caching.functions", "account", account.getName(), "region", region))
+        .increment(functions.size());
+
+    return allAttributes;
+  }
+
+  private Map<String, Object> describeFunction(AWSLambda lambda, FunctionConfiguration x) {
+    Map<String, Object> attributes = objectMapper.convertValue(x, ATTRIBUTES);
+    attributes.put("account", account.getName());
+    attributes.put("region", region);
+
+    attributes.put("revisions", listFunctionRevisions(x.getFunctionArn()));
+
+    List<AliasConfiguration> allAliases = listAliasConfiguration(x.getFunctionArn());
+    attributes.put("aliasConfigurations", allAliases);
+    List<EventSourceMappingConfiguration> eventSourceMappings =
+        listEventSourceMappingConfiguration(x.getFunctionArn());
+    List<EventSourceMappingConfiguration> aliasEvents = new ArrayList<>();
+    for (AliasConfiguration currAlias : allAliases) {
+      List<EventSourceMappingConfiguration> currAliasEvents =
+          listEventSourceMappingConfiguration(currAlias.getAliasArn());
+      aliasEvents.addAll(currAliasEvents);
+    }
+    eventSourceMappings.addAll(aliasEvents);
+    attributes.put("eventSourceMappings", eventSourceMappings);
+
+    addConfigAttributes(attributes, x, lambda);
+    attributes.put("targetGroups", getTargetGroupNames(lambda, x.getFunctionName()));
+    return attributes;
+  }
+
+  private <T> T timed(String phase, Supplier<T> supplier) {
+    long startTime = System.nanoTime();
+    try {
+      return supplier.get();
+    } finally {
+      PercentileTimer.get(
+              registry,
+              registry.createId(
+                  "lambda.caching.phase",
+                  "account",
+                  account.getName(),
+                  "region",
+                  region,
+                  "phase",
+                  phase))
+          .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+  }
+
   private Map<String, String> listFunctionRevisions(String functionArn) {
     AWSLambda lambda = amazonClientProvider.getAmazonLambda(account, region);
     String nextMarker = null;
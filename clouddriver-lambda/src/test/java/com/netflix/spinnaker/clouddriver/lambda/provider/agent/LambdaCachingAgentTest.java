@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.lambda.provider.agent;
+
+import static com.netflix.spinnaker.clouddriver.lambda.cache.Keys.Namespace.LAMBDA_FUNCTIONS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.model.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.provider.ProviderCache;
+import com.netflix.spinnaker.clouddriver.aws.security.AmazonClientProvider;
+import com.netflix.spinnaker.clouddriver.aws.security.NetflixAmazonCredentials;
+import com.netflix.spinnaker.clouddriver.lambda.cache.Keys;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LambdaCachingAgentTest {
+  private static final String ACCOUNT = "test-account";
+  private static final String REGION = "us-west-2";
+  private static final String FUNCTION_NAME = "app-stack-function";
+  private static final String FUNCTION_ARN =
+      "arn:aws:lambda:us-west-2:123456789012:function:" + FUNCTION_NAME;
+  private static final String FUNCTION_KEY =
+      Keys.getLambdaFunctionKey(ACCOUNT, REGION, FUNCTION_NAME);
+
+  private final AWSLambda lambda = mock(AWSLambda.class);
+  private final ProviderCache providerCache = mock(ProviderCache.class);
+  private LambdaCachingAgent agent;
+
+  @BeforeEach
+  void setUp() {
+    NetflixAmazonCredentials credentials = mock(NetflixAmazonCredentials.class);
+    when(credentials.getName()).thenReturn(ACCOUNT);
+    AmazonClientProvider clientProvider = mock(AmazonClientProvider.class);
+    when(clientProvider.getAmazonLambda(credentials, REGION)).thenReturn(lambda);
+    agent = new LambdaCachingAgent(new ObjectMapper(), clientProvider, credentials, REGION);
+
+    when(lambda.listFunctions(any()))
+        .thenReturn(
+            new ListFunctionsResult()
+                .withFunctions(
+                    new FunctionConfiguration()
+                        .withFunctionName(FUNCTION_NAME)
+                        .withFunctionArn(FUNCTION_ARN)
+                        .withRevisionId("rev-1")
+                        .withLastModified("2021-01-01T00:00:00.000+0000")));
+    when(lambda.listVersionsByFunction(any()))
+        .thenReturn(
+            new ListVersionsByFunctionResult()
+                .withVersions(
+                    new FunctionConfiguration().withRevisionId("rev-1").withVersion("1")));
+    when(lambda.listAliases(any())).thenReturn(new ListAliasesResult());
+    when(lambda.listEventSourceMappings(any())).thenReturn(new ListEventSourceMappingsResult());
+    when(lambda.getPolicy(any())).thenThrow(new ResourceNotFoundException("no policy"));
+    when(lambda.getFunction(any()))
+        .thenReturn(
+            new GetFunctionResult()
+                .withConfiguration(new FunctionConfiguration())
+                .withCode(new FunctionCodeLocation().withLocation("s3://new"))
+                .withTags(Collections.singletonMap("owner", "new")));
+  }
+
+  @Test
+  void describesAnUnchangedFunctionInFull() {
+    cachePreviousFunction("rev-1");
+
+    Map<String, Object> attributes = describe();
+
+    verify(lambda).getFunction(new GetFunctionRequest().withFunctionName(FUNCTION_ARN));
+    verify(lambda, never()).listTags(any());
+    verify(lambda, never()).getFunctionConcurrency(any());
+    verify(providerCache, never()).getAll(eq(LAMBDA_FUNCTIONS.ns), anyCollection());
+    assertThat(attributes.get("code"))
+        .isEqualTo(new FunctionCodeLocation().withLocation("s3://new"));
+    assertThat(attributes.get("tags")).isEqualTo(Collections.singletonMap("owner", "new"));
+    assertThat(attributes.get("revisions")).isEqualTo(Collections.singletonMap("rev-1", "1"));
+  }
+
+  private void cachePreviousFunction(String revisionId) {
+    Map<String, Object> previous = new HashMap<>();
+    previous.put("revisionId", revisionId);
+    previous.put("lastModified", "2021-01-01T00:00:00.000+0000");
+    previous.put("code", "previous-code");
+    previous.put("vpcConfig", "previous-vpc");
+    CacheData cacheData = new DefaultCacheData(FUNCTION_KEY, previous, Collections.emptyMap());
+    when(providerCache.getAll(eq(LAMBDA_FUNCTIONS.ns), anyCollection()))
+        .thenReturn(Collections.singletonList(cacheData));
+  }
+
+  private Map<String, Object> describe() {
+    CacheResult result = agent.loadData(providerCache);
+    return result.getCacheResults().get(LAMBDA_FUNCTIONS.ns).iterator().next().getAttributes();
+  }
+}
@@ -39,6 +39,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.util.JsonFormat;
 import com.netflix.frigga.Names;
@@ -72,6 +73,7 @@ import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService;
 import com.netflix.titus.grpc.protogen.Job;
 import com.netflix.titus.grpc.protogen.JobChangeNotification;
 import com.netflix.titus.grpc.protogen.JobStatus;
+import com.netflix.titus.grpc.protogen.LoadBalancerId;
 import com.netflix.titus.grpc.protogen.ObserveJobsQuery;
 import com.netflix.titus.grpc.protogen.ScalingPolicy;
 import com.netflix.titus.grpc.protogen.ScalingPolicyResult;
@@ -86,6 +88,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -115,6 +118,8 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
   private final ObjectMapper objectMapper;
   private final Registry registry;
   private final Id metricId;
+  private final Id reconnectsId;
+  private final Id reconciledId;
   private final Provider<AwsLookupUtil> awsLookupUtil;
   private final DynamicConfigService dynamicConfigService;
 
@@ -195,6 +200,16 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
             .createId("titus.cache.streaming")
             .withTag("account", account.getName())
             .withTag("region", region.getName());
+    this.reconnectsId =
+        registry
+            .createId("titus.cache.streaming.reconnects")
+            .withTag("account", account.getName())
+            .withTag("region", region.getName());
+    this.reconciledId =
+        registry
+            .createId("titus.cache.streaming.reconciled")
+            .withTag("account", account.getName())
+            .withTag("region", region.getName());
   }
 
   @Override
@@ -245,13 +260,22 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
      * <p>After the initial snapshot persist, the agent continues to consume observeJobs events,
      * updating StreamingCacheState, including a list of jobIds we've received events for. Once
      * either titus.streaming.changeThreshold events have been consumed, or
-     * titus.streaming.timeThresholdMs ms has passed, cacheResults are built for the full resource
-     * graph of applications that have had job/task updates. This is more work than only directly
-     * updating i.e. server groups based on job updates or instance based on task updates, but
-     * avoids pitfalls in properly maintaining relationships to or deleting higher level objects. if
-     * the last server group in a cluster is deleted, the cluster object must also be deleted, and
-     * the application object updated. The later cannot currently be done incrementally in an atomic
-     * operation; safely updating an application object requires rebuilding it with full context.
+     * titus.streaming.timeThresholdMs ms has passed, cacheResults are built for the applications
+     * that have had job/task updates. Server groups and instances are only rebuilt for the updated
+     * jobs, but applications, clusters and images are rebuilt with the full context of their
+     * application, from server group data memoized in StreamingCacheState. If the last server
+     * group in a cluster is deleted, the cluster object must also be deleted, and the application
+     * object updated. The later cannot currently be done incrementally in an atomic operation;
+     * safely updating an application object requires rebuilding it with full context.
+     *
+     * <p>Scaling policies and load balancers are fetched in full with the snapshot and then every
+     * titus.streaming.policy-refresh-interval-ms, in between they are only fetched for jobs that
+     * received a job update.
+     *
+     * <p>When the stream is re-established after a gRPC failure, the new snapshot is reconciled
+     * against the state built so far and only the jobs and tasks that differ are written, instead of
+     * replacing the full snapshot. Every execution of this agent still starts from an empty state,
+     * so its first snapshot is persisted authoritatively and corrects any drift.
      */
     @Override
     public void executeAgent(Agent agent) {
@@ -264,84 +288,7 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
               new ThreadFactoryBuilder()
                   .setNameFormat(TitusStreamingUpdateAgent.class.getSimpleName() + "-%d")
                   .build());
-      final Future handler =
-          executor.submit(
-              () -> {
-                Iterator<JobChangeNotification> notificationIt = observeJobs();
-
-                while (continueStreaming(startTime)) {
-                  try {
-                    while (notificationIt.hasNext() && continueStreaming(startTime)) {
-                      JobChangeNotification notification = notificationIt.next();
-                      switch (notification.getNotificationCase()) {
-                        case JOBUPDATE:
-                          updateJob(state, notification.getJobUpdate().getJob());
-                          break;
-                        case TASKUPDATE:
-                          if (notification.getTaskUpdate().getMovedFromAnotherJob()) {
-                            Task task = notification.getTaskUpdate().getTask();
-                            String destinationJobId = task.getJobId();
-                            String sourceJobId =
-                                task.getTaskContextOrDefault("task.movedFromJob", null);
-                            log.info(
-                                "{} task moved from job {} to {}",
-                                task.getId(),
-                                sourceJobId,
-                                destinationJobId);
-                            updateMovedTask(state, task, sourceJobId);
-                          }
-                          updateTask(state, notification.getTaskUpdate().getTask());
-                          break;
-                        case SNAPSHOTEND:
-                          state.lastUpdate.set(0);
-                          log.info(
-                              "{} snapshot finished in {}ms",
-                              getAgentType(),
-                              System.currentTimeMillis() - startTime);
-                          state.tasks.keySet().retainAll(state.jobs.keySet());
-                          if (state.snapshotComplete) {
-                            log.error(
-                                "{} received >1 SNAPSHOTEND events, this is unexpected and may be handled incorrectly",
-                                getAgentType());
-                          }
-                          state.snapshotComplete = true;
-                          break;
-                      }
-
-                      if (state.snapshotComplete) {
-                        writeToCache(state);
-                        if (!state.savedSnapshot) {
-                          state.savedSnapshot = true;
-                        }
-                      }
-                    }
-                  } catch (io.grpc.StatusRuntimeException e) {
-                    Integer backoff =
-                        dynamicConfigService.getConfig(
-                            Integer.class, "titus.streaming.retry-backoff-ms", 2000);
-                    log.warn(
-                        "gRPC exception while streaming {} updates, attempting to reconnect in {}ms",
-                        getAgentType(),
-                        backoff,
-                        e);
-
-                    try {
-                      Thread.sleep(backoff);
-                    } catch (InterruptedException ex) {
-                      log.warn(
-                          "Interrupted while attempting to reconnect to observeJobs, bailing on this invocation",
-                          ex);
-                      break;
-                    }
-
-                    notificationIt = observeJobs();
-                    state.snapshotComplete = false;
-                    state.savedSnapshot = false;
-                  } catch (Exception e) {
-                    log.error("Exception while streaming {} titus updates", getAgentType(), e);
-                  }
-                }
-              });
+      final Future handler = executor.submit(() -> stream(state, startTime));
 
       executor.schedule(
           () -> {
@@ -353,6 +300,156 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
       executor.shutdown();
     }
 
+    private void stream(StreamingCacheState state, long startTime) {
+      Iterator<JobChangeNotification> notificationIt = observeJobs();
+
+      while (continueStreaming(startTime)) {
+        try {
+          while (notificationIt.hasNext() && continueStreaming(startTime)) {
+            handleNotification(state, notificationIt.next(), startTime);
+          }
+        } catch (io.grpc.StatusRuntimeException e) {
+          Integer backoff =
+              dynamicConfigService.getConfig(
+                  Integer.class, "titus.streaming.retry-backoff-ms", 2000);
+          log.warn(
+              "gRPC exception while streaming {} updates, attempting to reconnect in {}ms",
+              getAgentType(),
+              backoff,
+              e);
+
+          try {
+            Thread.sleep(backoff);
+          } catch (InterruptedException ex) {
+            log.warn(
+                "Interrupted while attempting to reconnect to observeJobs, bailing on this invocation",
+                ex);
+            break;
+          }
+
+          beginResync(state);
+          notificationIt = observeJobs();
+        } catch (Exception e) {
+          log.error("Exception while streaming {} titus updates", getAgentType(), e);
+        }
+      }
+    }
+
+    /** Applies a single observeJobs notification, writing to the cache once thresholds are met. */
+    @VisibleForTesting
+    void handleNotification(
+        StreamingCacheState state, JobChangeNotification notification, long startTime) {
+      switch (notification.getNotificationCase()) {
+        case JOBUPDATE:
+          updateJob(state, notification.getJobUpdate().getJob());
+          break;
+        case TASKUPDATE:
+          if (notification.getTaskUpdate().getMovedFromAnotherJob()) {
+            Task task = notification.getTaskUpdate().getTask();
+            String destinationJobId = task.getJobId();
+            String sourceJobId = task.getTaskContextOrDefault("task.movedFromJob", null);
+            log.info(
+                "{} task moved from job {} to {}", task.getId(), sourceJobId, destinationJobId);
+            updateMovedTask(state, task, sourceJobId);
+          }
+          updateTask(state, notification.getTaskUpdate().getTask());
+          break;
+        case SNAPSHOTEND:
+          state.lastUpdate.set(0);
+          log.info(
+              "{} snapshot finished in {}ms",
+              getAgentType(),
+              System.currentTimeMillis() - startTime);
+          state.tasks.keySet().retainAll(state.jobs.keySet());
+          if (state.snapshotComplete) {
+            log.error(
+                "{} received >1 SNAPSHOTEND events, this is unexpected and may be handled incorrectly",
+                getAgentType());
+          }
+          state.snapshotComplete = true;
+          if (state.previousJobs != null) {
+            reconcileSnapshot(state);
+          }
+          break;
+      }
+
+      if (state.snapshotComplete) {
+        writeToCache(state);
+        if (!state.savedSnapshot) {
+          state.savedSnapshot = true;
+        }
+      }
+    }
+
+    /**
+     * Sets aside the current jobs and tasks so the next snapshot can be reconciled against them. If
+     * nothing has been persisted yet, the next snapshot is persisted in full as before.
+     */
+    @VisibleForTesting
+    void beginResync(StreamingCacheState state) {
+      registry.counter(reconnectsId).increment();
+      state.snapshotComplete = false;
+      if (!state.savedSnapshot) {
+        return;
+      }
+
+      if (state.previousJobs == null) {
+        // an interrupted resync keeps reconciling against the last persisted state
+        state.previousJobs = state.jobs;
+        state.previousTasks = state.tasks;
+      }
+      state.jobs = new HashMap<>();
+      state.tasks = new HashMap<>();
+      state.changes.set(0);
+    }
+
+    /** Marks every job that differs between the last persisted state and the new snapshot. */
+    private void reconcileSnapshot(StreamingCacheState state) {
+      Set<String> jobIds = new HashSet<>(state.previousJobs.keySet());
+      jobIds.addAll(state.jobs.keySet());
+
+      int completedInstances = 0;
+      for (String jobId : jobIds) {
+        Set<Task> previousTasks = state.previousTasks.getOrDefault(jobId, emptySet());
+        Set<Task> currentTasks = state.tasks.getOrDefault(jobId, emptySet());
+        if (Objects.equals(state.previousJobs.get(jobId), state.jobs.get(jobId))
+            && previousTasks.equals(currentTasks)) {
+          continue;
+        }
+
+        state.updatedJobs.add(jobId);
+        if (!Objects.equals(state.previousJobs.get(jobId), state.jobs.get(jobId))) {
+          state.jobLevelUpdatedJobs.add(jobId);
+        }
+        Set<String> currentTaskIds =
+            currentTasks.stream().map(Task::getId).collect(Collectors.toSet());
+        for (Task task : previousTasks) {
+          if (!currentTaskIds.contains(task.getId())) {
+            state.completedInstanceIds.add(
+                Keys.getInstanceV2Key(task.getId(), account.getName(), region.getName()));
+            completedInstances++;
+          }
+        }
+      }
+
+      log.info(
+          "{} reconciled snapshot: {} of {} jobs changed, {} instances completed",
+          getAgentType(),
+          state.updatedJobs.size(),
+          jobIds.size(),
+          completedInstances);
+      registry
+          .distributionSummary(reconciledId.withTag("type", "jobs"))
+          .record(state.updatedJobs.size());
+      registry
+          .distributionSummary(reconciledId.withTag("type", "instances"))
+          .record(completedInstances);
+
+      state.changes.set(state.updatedJobs.size() + completedInstances);
+      state.previousJobs = null;
+      state.previousTasks = null;
+    }
+
     private Iterator<JobChangeNotification> observeJobs() {
       return titusClient.observeJobs(
           ObserveJobsQuery.newBuilder()
@@ -369,6 +466,7 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
       state.jobIdToApp.put(jobId, application);
       if (state.snapshotComplete) {
         state.updatedJobs.add(jobId);
+        state.jobLevelUpdatedJobs.add(jobId);
       }
 
       if (FINISHED_JOB_STATES.contains(job.getStatus().getState())) {
@@ -458,22 +556,9 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
               getAgentType());
         }
 
-        List<ScalingPolicyResult> scalingPolicyResults =
-            titusAutoscalingClient != null
-                ? titusAutoscalingClient.getAllScalingPolicies()
-                : emptyList();
-        PercentileTimer.get(registry, metricId.withTag("operation", "getScalingPolicies"))
-            .record(System.currentTimeMillis() - startTime, MILLISECONDS);
-
-        long startLoadBalancerTime = System.currentTimeMillis();
-        Map<String, List<String>> allLoadBalancers =
-            titusLoadBalancerClient != null
-                ? titusLoadBalancerClient.getAllLoadBalancers()
-                : emptyMap();
-        PercentileTimer.get(registry, metricId.withTag("operation", "getLoadBalancers"))
-            .record(System.currentTimeMillis() - startLoadBalancerTime, MILLISECONDS);
+        refreshScalingPoliciesAndLoadBalancers(state);
 
-        CacheResult result = buildCacheResult(state, scalingPolicyResults, allLoadBalancers);
+        CacheResult result = buildCacheResult(state);
 
         Collection<String> authoritative =
             TYPES.stream()
@@ -492,8 +577,10 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
         Set<String> completedJobs = new HashSet<>(state.jobIdToApp.keySet());
         completedJobs.removeAll(state.jobs.keySet());
         completedJobs.forEach(j -> state.jobIdToApp.remove(j));
+        state.serverGroupDataByJob.keySet().retainAll(state.jobs.keySet());
 
         state.updatedJobs = new HashSet<>();
+        state.jobLevelUpdatedJobs = new HashSet<>();
         state.lastUpdate.set(System.currentTimeMillis());
         state.changes.set(0);
 
@@ -502,10 +589,114 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
       }
     }
 
-    private CacheResult buildCacheResult(
-        StreamingCacheState state,
-        List<ScalingPolicyResult> scalingPolicyResults,
-        Map<String, List<String>> allLoadBalancers) {
+    /**
+     * Fetches all scaling policies and load balancers with a snapshot or once the refresh interval
+     * has elapsed, marking any job whose policies or load balancers changed as updated. Otherwise
+     * they are only fetched for jobs whose job-level state changed, unless there are too many of
+     * them for that to be cheaper. Task updates alone never change either.
+     */
+    private void refreshScalingPoliciesAndLoadBalancers(StreamingCacheState state) {
+      long startTime = System.currentTimeMillis();
+      boolean fullRefresh =
+          !state.savedSnapshot
+              || startTime - state.scalingPoliciesAndLoadBalancersRefreshed
+                  >= dynamicConfigService.getConfig(
+                      Long.class, "titus.streaming.policy-refresh-interval-ms", 60000L)
+              || state.jobLevelUpdatedJobs.size()
+                  > dynamicConfigService.getConfig(
+                      Integer.class, "titus.streaming.policy-refresh-max-jobs", 100);
+
+      if (fullRefresh) {
+        Map<String, List<ScalingPolicyResult>> scalingPolicies =
+            titusAutoscalingClient != null
+                ? titusAutoscalingClient.getAllScalingPolicies().stream()
+                    .collect(Collectors.groupingBy(it -> it.getJobId().toLowerCase()))
+                : emptyMap();
+        PercentileTimer.get(registry, metricId.withTag("operation", "getScalingPolicies"))
+            .record(System.currentTimeMillis() - startTime, MILLISECONDS);
+
+        long startLoadBalancerTime = System.currentTimeMillis();
+        Map<String, List<String>> loadBalancers =
+            titusLoadBalancerClient != null
+                ? titusLoadBalancerClient.getAllLoadBalancers()
+                : emptyMap();
+        PercentileTimer.get(registry, metricId.withTag("operation", "getLoadBalancers"))
+            .record(System.currentTimeMillis() - startLoadBalancerTime, MILLISECONDS);
+
+        if (state.savedSnapshot) {
+          state.jobs.keySet().stream()
+              .filter(
+                  jobId ->
+                      !Objects.equals(
+                              state.scalingPoliciesByJob.get(jobId.toLowerCase()),
+                              scalingPolicies.get(jobId.toLowerCase()))
+                          || !Objects.equals(
+                              state.loadBalancersByJob.get(jobId), loadBalancers.get(jobId)))
+              .forEach(state.updatedJobs::add);
+        }
+
+        state.scalingPoliciesByJob = new HashMap<>(scalingPolicies);
+        state.loadBalancersByJob = new HashMap<>(loadBalancers);
+        state.scalingPoliciesAndLoadBalancersRefreshed = startTime;
+        return;
+      }
+
+      for (String jobId : state.jobLevelUpdatedJobs) {
+        if (!state.jobs.containsKey(jobId)) {
+          state.scalingPoliciesByJob.remove(jobId.toLowerCase());
+          state.loadBalancersByJob.remove(jobId);
+          continue;
+        }
+
+        try {
+          if (titusAutoscalingClient != null) {
+            state.scalingPoliciesByJob.put(
+                jobId.toLowerCase(), titusAutoscalingClient.getJobScalingPolicies(jobId));
+          }
+          if (titusLoadBalancerClient != null) {
+            state.loadBalancersByJob.put(
+                jobId,
+                titusLoadBalancerClient.getJobLoadBalancers(jobId).stream()
+                    .map(LoadBalancerId::getId)
+                    .collect(Collectors.toList()));
+          }
+        } catch (Exception e) {
+          log.warn(
+              "{} failed to fetch scaling policies or load balancers for job {}, using last known",
+              getAgentType(),
+              jobId,
+              e);
+        }
+      }
+      PercentileTimer.get(registry, metricId.withTag("operation", "getJobPoliciesAndLoadBalancers"))
+          .record(System.currentTimeMillis() - startTime, MILLISECONDS);
+    }
+
+    private ServerGroupData buildServerGroupData(StreamingCacheState state, Job job) {
+      List<ScalingPolicyData> jobScalingPolicies =
+          state.scalingPoliciesByJob.getOrDefault(job.getId().toLowerCase(), emptyList()).stream()
+              .filter(it -> CACHEABLE_POLICY_STATES.contains(it.getPolicyState().getState()))
+              .map(
+                  it ->
+                      new ScalingPolicyData(
+                          it.getId().getId(), it.getScalingPolicy(), it.getPolicyState()))
+              .collect(Collectors.toList());
+
+      List<String> jobLoadBalancers =
+          state.loadBalancersByJob.getOrDefault(job.getId(), emptyList());
+
+      return new ServerGroupData(
+          new com.netflix.spinnaker.clouddriver.titus.client.model.Job(job, EMPTY_LIST),
+          jobScalingPolicies,
+          jobLoadBalancers,
+          state.tasks.getOrDefault(job.getId(), emptySet()).stream()
+              .map(Task::getId)
+              .collect(Collectors.toSet()),
+          account.getName(),
+          region.getName());
+    }
+
+    private CacheResult buildCacheResult(StreamingCacheState state) {
       // INITIALIZE CACHES
       Map<String, CacheData> applicationCache = createCache();
       Map<String, CacheData> clusterCache = createCache();
@@ -558,39 +749,25 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
         jobs = state.jobs;
       }
 
+      if (!state.savedSnapshot) {
+        state.serverGroupDataByJob.clear();
+      }
+
+      // Only jobs with updates are rebuilt, the rest of their applications are memoized
+      Set<String> rebuiltJobs = new HashSet<>();
+      jobs.forEach(
+          (jobId, job) -> {
+            if (!state.savedSnapshot
+                || state.updatedJobs.contains(jobId)
+                || !state.serverGroupDataByJob.containsKey(jobId)) {
+              state.serverGroupDataByJob.put(jobId, buildServerGroupData(state, job));
+              rebuiltJobs.add(jobId);
+            }
+          });
+
       List<ServerGroupData> serverGroupDatas =
-          jobs.values().stream()
-              .map(
-                  job -> {
-                    List<ScalingPolicyData> jobScalingPolicies =
-                        scalingPolicyResults.stream()
-                            .filter(
-                                it ->
-                                    it.getJobId().equalsIgnoreCase(job.getId())
-                                        && CACHEABLE_POLICY_STATES.contains(
-                                            it.getPolicyState().getState()))
-                            .map(
-                                it ->
-                                    new ScalingPolicyData(
-                                        it.getId().getId(),
-                                        it.getScalingPolicy(),
-                                        it.getPolicyState()))
-                            .collect(Collectors.toList());
-
-                    List<String> jobLoadBalancers =
-                        allLoadBalancers.getOrDefault(job.getId(), emptyList());
-
-                    return new ServerGroupData(
-                        new com.netflix.spinnaker.clouddriver.titus.client.model.Job(
-                            job, EMPTY_LIST),
-                        jobScalingPolicies,
-                        jobLoadBalancers,
-                        state.tasks.getOrDefault(job.getId(), emptySet()).stream()
-                            .map(Task::getId)
-                            .collect(Collectors.toSet()),
-                        account.getName(),
-                        region.getName());
-                  })
+          jobs.keySet().stream()
+              .map(state.serverGroupDataByJob::get)
               .collect(Collectors.toList());
 
       serverGroupDatas.forEach(
@@ -615,10 +792,14 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
 
             cacheApplication(data, applicationCache);
             cacheCluster(data, clusterCache);
-            cacheServerGroup(data, serverGroupCache);
             cacheImage(data, imageCache);
             addJobIdsByServerGroupKey(data, jobIdsByServerGroupKey);
 
+            if (!rebuiltJobs.contains(data.job.getId())) {
+              return;
+            }
+
+            cacheServerGroup(data, serverGroupCache);
             for (Task task : (Set<Task>) state.tasks.getOrDefault(data.job.getId(), EMPTY_SET)) {
               InstanceData instanceData =
                   new InstanceData(
@@ -798,6 +979,18 @@ public class TitusStreamingUpdateAgent implements CustomScheduledAgent, CachingA
 
       Set<String> completedInstanceIds = new HashSet<>();
       Set<String> updatedJobs = new HashSet<>();
+      // the updated jobs whose job-level state changed, rather than only their tasks
+      Set<String> jobLevelUpdatedJobs = new HashSet<>();
+
+      Map<String, ServerGroupData> serverGroupDataByJob = new HashMap<>();
+      // keyed by lower cased job id, as scaling policies are matched to jobs case insensitively
+      Map<String, List<ScalingPolicyResult>> scalingPoliciesByJob = new HashMap<>();
+      Map<String, List<String>> loadBalancersByJob = new HashMap<>();
+      long scalingPoliciesAndLoadBalancersRefreshed = 0;
+
+      // the last persisted jobs and tasks while a new snapshot is being reconciled against them
+      Map<String, Job> previousJobs;
+      Map<String, Set<Task>> previousTasks;
 
       Boolean snapshotComplete = false;
       Boolean savedSnapshot = false;
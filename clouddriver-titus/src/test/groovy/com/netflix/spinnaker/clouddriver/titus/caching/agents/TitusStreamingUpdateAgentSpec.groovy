@@ -0,0 +1,375 @@
+/*
+ * Copyright 2021 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.titus.caching.agents
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spectator.api.NoopRegistry
+import com.netflix.spinnaker.cats.agent.CacheResult
+import com.netflix.spinnaker.cats.provider.ProviderCache
+import com.netflix.spinnaker.cats.provider.ProviderRegistry
+import com.netflix.spinnaker.clouddriver.titus.TitusClientProvider
+import com.netflix.spinnaker.clouddriver.titus.caching.Keys
+import com.netflix.spinnaker.clouddriver.titus.caching.utils.AwsLookupUtil
+import com.netflix.spinnaker.clouddriver.titus.client.TitusAutoscalingClient
+import com.netflix.spinnaker.clouddriver.titus.client.TitusClient
+import com.netflix.spinnaker.clouddriver.titus.client.TitusLoadBalancerClient
+import com.netflix.spinnaker.clouddriver.titus.client.TitusRegion
+import com.netflix.spinnaker.clouddriver.titus.credentials.NetflixTitusCredentials
+import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
+import com.netflix.titus.grpc.protogen.Capacity
+import com.netflix.titus.grpc.protogen.Container
+import com.netflix.titus.grpc.protogen.Image
+import com.netflix.titus.grpc.protogen.Job
+import com.netflix.titus.grpc.protogen.JobChangeNotification
+import com.netflix.titus.grpc.protogen.JobDescriptor
+import com.netflix.titus.grpc.protogen.JobStatus
+import com.netflix.titus.grpc.protogen.ScalingPolicyID
+import com.netflix.titus.grpc.protogen.ScalingPolicyResult
+import com.netflix.titus.grpc.protogen.ScalingPolicyStatus
+import com.netflix.titus.grpc.protogen.ServiceJobSpec
+import com.netflix.titus.grpc.protogen.Task
+import com.netflix.titus.grpc.protogen.TaskStatus
+import spock.lang.Specification
+
+import javax.inject.Provider
+
+import static com.netflix.spinnaker.clouddriver.titus.caching.Keys.Namespace.CLUSTERS
+import static com.netflix.spinnaker.clouddriver.titus.caching.Keys.Namespace.INSTANCES
+import static com.netflix.spinnaker.clouddriver.titus.caching.Keys.Namespace.SERVER_GROUPS
+
+class TitusStreamingUpdateAgentSpec extends Specification {
+  static final String ACCOUNT = 'test'
+  static final String REGION = 'us-east-1'
+
+  TitusClient titusClient = Mock()
+  TitusAutoscalingClient autoscalingClient = Mock()
+  TitusLoadBalancerClient loadBalancerClient = Mock()
+  ProviderCache cache = Mock()
+
+  Map<String, Object> config = ['titus.streaming.change-threshold': 1]
+
+  TitusStreamingUpdateAgent agent
+  TitusStreamingUpdateAgent.StreamingCacheExecution execution
+  def state
+
+  def setup() {
+    def titusClientProvider = Stub(TitusClientProvider) {
+      getTitusClient(_, _) >> titusClient
+      getTitusAutoscalingClient(_, _) >> autoscalingClient
+      getTitusLoadBalancerClient(_, _) >> loadBalancerClient
+    }
+    def awsLookupUtil = Stub(AwsLookupUtil) {
+      awsAccountId(_, _) >> '123456789012'
+      awsAccountName(_, _) >> 'test-aws'
+      awsVpcId(_, _) >> 'vpc-1'
+    }
+    def dynamicConfigService = Stub(DynamicConfigService) {
+      getConfig(_, _, _) >> { Class type, String name, Object defaultValue ->
+        config.getOrDefault(name, defaultValue)
+      }
+    }
+
+    agent = new TitusStreamingUpdateAgent(
+      titusClientProvider,
+      Stub(NetflixTitusCredentials) { getName() >> ACCOUNT },
+      Stub(TitusRegion) { getName() >> REGION },
+      new ObjectMapper(),
+      new NoopRegistry(),
+      { awsLookupUtil } as Provider<AwsLookupUtil>,
+      dynamicConfigService
+    )
+    execution = agent.getAgentExecution(Stub(ProviderRegistry) { getProviderCache(_) >> cache })
+    state = new TitusStreamingUpdateAgent.StreamingCacheExecution.StreamingCacheState(execution)
+
+    autoscalingClient.getAllScalingPolicies() >> [policy('job-1', 'p1'), policy('job-2', 'p2')]
+    autoscalingClient.getJobScalingPolicies(_) >> []
+    loadBalancerClient.getAllLoadBalancers() >> [:]
+    loadBalancerClient.getJobLoadBalancers(_) >> []
+  }
+
+  void 'incremental updates only rebuild server groups for updated jobs'() {
+    given:
+    snapshot(job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'))
+    def memoized = state.serverGroupDataByJob['job-2']
+    CacheResult result = null
+
+    when:
+    notify(taskUpdate('task-1', 'job-1'))
+
+    then:
+    0 * autoscalingClient.getAllScalingPolicies()
+    0 * loadBalancerClient.getAllLoadBalancers()
+    1 * cache.addCacheResult(_, _, _) >> { agentType, authoritative, cacheResult ->
+      result = cacheResult
+    }
+
+    serverGroupKeys(result) == [serverGroupKey('app-main-v001')] as Set
+    scalingPolicyIds(result, 'app-main-v001') == ['p1']
+    result.cacheResults[CLUSTERS.ns].collectMany { it.relationships[SERVER_GROUPS.ns] } as Set ==
+      [serverGroupKey('app-main-v001'), serverGroupKey('app-main-v002')] as Set
+    state.serverGroupDataByJob['job-2'].is(memoized)
+  }
+
+  void 'task updates do not fetch the policies and load balancers of their job'() {
+    given:
+    snapshot(job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'))
+
+    when:
+    notify(taskUpdate('task-1', 'job-1'))
+
+    then:
+    0 * autoscalingClient.getJobScalingPolicies(_)
+    0 * loadBalancerClient.getJobLoadBalancers(_)
+    1 * cache.addCacheResult(_, _, _)
+  }
+
+  void 'job updates only fetch the policies and load balancers of the updated job'() {
+    given:
+    snapshot(job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'))
+    CacheResult result = null
+
+    when:
+    notify(jobUpdate(job('job-1', 'app-main-v001', 3)))
+
+    then:
+    0 * autoscalingClient.getAllScalingPolicies()
+    1 * autoscalingClient.getJobScalingPolicies('job-1') >> [policy('job-1', 'p4')]
+    0 * autoscalingClient.getJobScalingPolicies('job-2')
+    1 * loadBalancerClient.getJobLoadBalancers('job-1') >> []
+    0 * loadBalancerClient.getJobLoadBalancers('job-2')
+    1 * cache.addCacheResult(_, _, _) >> { agentType, authoritative, cacheResult ->
+      result = cacheResult
+    }
+
+    scalingPolicyIds(result, 'app-main-v001') == ['p4']
+  }
+
+  void 'a full policy refresh rebuilds the server groups of jobs whose policies changed'() {
+    given:
+    snapshot(job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'))
+    config['titus.streaming.policy-refresh-interval-ms'] = 0L
+    CacheResult result = null
+
+    when:
+    notify(taskUpdate('task-1', 'job-1'))
+
+    then:
+    1 * autoscalingClient.getAllScalingPolicies() >> [policy('job-1', 'p1'), policy('job-2', 'p3')]
+    0 * autoscalingClient.getJobScalingPolicies(_)
+    1 * cache.addCacheResult(_, _, _) >> { agentType, authoritative, cacheResult ->
+      result = cacheResult
+    }
+
+    serverGroupKeys(result) ==
+      [serverGroupKey('app-main-v001'), serverGroupKey('app-main-v002')] as Set
+    scalingPolicyIds(result, 'app-main-v002') == ['p3']
+  }
+
+  void 'a full policy refresh keeps the memoized server groups of jobs whose policies did not change'() {
+    given:
+    snapshot(job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'))
+    config['titus.streaming.policy-refresh-interval-ms'] = 0L
+    def memoized = state.serverGroupDataByJob['job-2']
+    CacheResult result = null
+
+    when:
+    notify(taskUpdate('task-1', 'job-1'))
+
+    then:
+    1 * autoscalingClient.getAllScalingPolicies() >> [policy('job-1', 'p1'), policy('job-2', 'p2')]
+    1 * cache.addCacheResult(_, _, _) >> { agentType, authoritative, cacheResult ->
+      result = cacheResult
+    }
+
+    serverGroupKeys(result) == [serverGroupKey('app-main-v001')] as Set
+    state.serverGroupDataByJob['job-2'].is(memoized)
+  }
+
+  void 'memoized server group data is replaced when its job is updated and dropped once it finishes'() {
+    given:
+    snapshot(job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'))
+    def memoized = state.serverGroupDataByJob['job-2']
+
+    when:
+    notify(jobUpdate(job('job-2', 'app-main-v002', 3)))
+
+    then:
+    1 * cache.addCacheResult(_, _, _)
+    !state.serverGroupDataByJob['job-2'].is(memoized)
+    state.serverGroupDataByJob['job-2'].job.instancesDesired == 3
+
+    when:
+    notify(jobUpdate(job('job-2', 'app-main-v002', 3, JobStatus.JobState.Finished)))
+
+    then:
+    1 * cache.evictDeletedItems(SERVER_GROUPS.ns, [serverGroupKey('app-main-v002')])
+    1 * cache.addCacheResult(_, _, _)
+    !state.serverGroupDataByJob.containsKey('job-2')
+    state.serverGroupDataByJob.containsKey('job-1')
+  }
+
+  void 'a reconnect only writes the jobs and instances that differ from the persisted state'() {
+    given:
+    notify(taskUpdate('task-1', 'job-1'))
+    notify(taskUpdate('task-2', 'job-2'))
+    snapshot(job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'))
+    execution.beginResync(state)
+    CacheResult result = null
+
+    when:
+    notify(taskUpdate('task-1', 'job-1'))
+    snapshot(
+      job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'), job('job-3', 'app-main-v003'))
+
+    then:
+    0 * cache.putCacheResult(_, _, _)
+    1 * cache.evictDeletedItems(INSTANCES.ns, { it as Set == [instanceKey('task-2')] as Set })
+    1 * cache.addCacheResult(_, _, _) >> { agentType, authoritative, cacheResult ->
+      result = cacheResult
+    }
+
+    serverGroupKeys(result) ==
+      [serverGroupKey('app-main-v002'), serverGroupKey('app-main-v003')] as Set
+    state.previousJobs == null
+    state.previousTasks == null
+  }
+
+  void 'a reconnect that receives an identical snapshot writes nothing'() {
+    given:
+    notify(taskUpdate('task-1', 'job-1'))
+    snapshot(job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'))
+    execution.beginResync(state)
+
+    when:
+    notify(taskUpdate('task-1', 'job-1'))
+    snapshot(job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'))
+
+    then:
+    0 * cache.putCacheResult(_, _, _)
+    0 * cache.addCacheResult(_, _, _)
+    0 * cache.evictDeletedItems(_, _)
+    state.jobs.keySet() == ['job-1', 'job-2'] as Set
+    state.changes.get() == 0
+  }
+
+  void 'an interrupted reconnect keeps reconciling against the last persisted state'() {
+    given:
+    snapshot(job('job-1', 'app-main-v001'), job('job-2', 'app-main-v002'))
+    execution.beginResync(state)
+    notify(jobUpdate(job('job-1', 'app-main-v001')))
+    execution.beginResync(state)
+
+    when:
+    snapshot(job('job-1', 'app-main-v001'))
+
+    then:
+    0 * cache.putCacheResult(_, _, _)
+    1 * cache.evictDeletedItems(SERVER_GROUPS.ns, [serverGroupKey('app-main-v002')])
+    1 * cache.addCacheResult(_, _, _)
+  }
+
+  void 'a reconnect before the first snapshot was persisted persists the next snapshot in full'() {
+    given:
+    notify(jobUpdate(job('job-1', 'app-main-v001')))
+    execution.beginResync(state)
+
+    when:
+    snapshot(job('job-1', 'app-main-v001'))
+
+    then:
+    1 * cache.putCacheResult(_, _, _)
+    0 * cache.addCacheResult(_, _, _)
+  }
+
+  private void snapshot(Job... jobs) {
+    jobs.each { notify(jobUpdate(it)) }
+    notify(snapshotEnd())
+    assert state.savedSnapshot
+  }
+
+  private void notify(JobChangeNotification notification) {
+    execution.handleNotification(state, notification, System.currentTimeMillis())
+  }
+
+  private static Set<String> serverGroupKeys(CacheResult result) {
+    return result.cacheResults[SERVER_GROUPS.ns]*.id as Set
+  }
+
+  private static List<String> scalingPolicyIds(CacheResult result, String serverGroupName) {
+    def serverGroup = result.cacheResults[SERVER_GROUPS.ns].find {
+      it.id == serverGroupKey(serverGroupName)
+    }
+    return serverGroup.attributes.scalingPolicies*.id
+  }
+
+  private static String instanceKey(String taskId) {
+    return Keys.getInstanceV2Key(taskId, ACCOUNT, REGION)
+  }
+
+  private static String serverGroupKey(String name) {
+    return Keys.getServerGroupV2Key(name, ACCOUNT, REGION)
+  }
+
+  private static JobChangeNotification jobUpdate(Job job) {
+    return JobChangeNotification.newBuilder()
+      .setJobUpdate(JobChangeNotification.JobUpdate.newBuilder().setJob(job))
+      .build()
+  }
+
+  private static JobChangeNotification snapshotEnd() {
+    return JobChangeNotification.newBuilder()
+      .setSnapshotEnd(JobChangeNotification.SnapshotEnd.newBuilder())
+      .build()
+  }
+
+  private static JobChangeNotification taskUpdate(String taskId, String jobId) {
+    def task = Task.newBuilder()
+      .setId(taskId)
+      .setJobId(jobId)
+      .setStatus(TaskStatus.newBuilder().setState(TaskStatus.TaskState.Started))
+    return JobChangeNotification.newBuilder()
+      .setTaskUpdate(JobChangeNotification.TaskUpdate.newBuilder().setTask(task))
+      .build()
+  }
+
+  private static Job job(
+    String id,
+    String name,
+    int desired = 1,
+    JobStatus.JobState jobState = JobStatus.JobState.Accepted) {
+    return Job.newBuilder()
+      .setId(id)
+      .setJobDescriptor(JobDescriptor.newBuilder()
+        .setApplicationName('app')
+        .putAttributes('name', name)
+        .setService(ServiceJobSpec.newBuilder()
+          .setCapacity(Capacity.newBuilder().setMin(desired).setMax(desired).setDesired(desired)))
+        .setContainer(Container.newBuilder()
+          .setImage(Image.newBuilder().setName('app').setTag('1.0'))))
+      .setStatus(JobStatus.newBuilder().setState(jobState))
+      .build()
+  }
+
+  private static ScalingPolicyResult policy(String jobId, String policyId) {
+    return ScalingPolicyResult.newBuilder()
+      .setJobId(jobId)
+      .setId(ScalingPolicyID.newBuilder().setId(policyId))
+      .setPolicyState(ScalingPolicyStatus.newBuilder()
+        .setState(ScalingPolicyStatus.ScalingPolicyState.Applied))
+      .build()
+  }
+}
@@ -26,7 +26,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
@@ -64,7 +63,7 @@ public class ArtifactController {
           "Artifacts have not been enabled. Enable them using 'artifacts.enabled' in clouddriver");
     }
 
-    return outputStream -> IOUtils.copy(artifactDownloader.download(artifact), outputStream);
+    return outputStream -> artifactDownloader.download(artifact, outputStream);
   }
 
   @RequestMapping(method = RequestMethod.GET, value = "/account/{accountName}/names")